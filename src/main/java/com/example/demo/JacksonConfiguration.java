@@ -1,10 +1,23 @@
 package com.example.demo;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.hibernate.Hibernate;
+import org.hibernate.engine.spi.PersistentAttributeInterceptable;
 import org.springframework.boot.autoconfigure.jackson.Jackson2ObjectMapperBuilderCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanPropertyWriter;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.deser.LocalDateTimeDeserializer;
 import com.fasterxml.jackson.datatype.jsr310.ser.LocalDateSerializer;
@@ -31,5 +44,47 @@ public class JacksonConfiguration {
             builder.serializers(new LocalDateTimeSerializer(dateTimeFormatter));
         };
     }
+
+    /**
+     * Refuses to write a lazy attribute an enhanced entity has not loaded.
+     * Writing a response must not go back to the database (or fail on a
+     * closed session), and must not quietly leave the attribute out either:
+     * the query that reads an entity for a response fetches everything it
+     * writes (Appointment.FULL), listings answer with summaries instead.
+     */
+    @Bean
+    public Module unloadedAttributesModule() {
+        SimpleModule module = new SimpleModule("UnloadedAttributes");
+        module.setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            public List<BeanPropertyWriter> changeProperties(SerializationConfig config, BeanDescription description, List<BeanPropertyWriter> properties) {
+                if (!PersistentAttributeInterceptable.class.isAssignableFrom(description.getBeanClass())) {
+                    return properties;
+                }
+                List<BeanPropertyWriter> loadedOnly = new ArrayList<>(properties.size());
+                for (BeanPropertyWriter property : properties) {
+                    loadedOnly.add(new LoadedPropertyWriter(property));
+                }
+                return loadedOnly;
+            }
+        });
+        return module;
+    }
+
+    static class LoadedPropertyWriter extends BeanPropertyWriter {
+
+        LoadedPropertyWriter(BeanPropertyWriter base) {
+            super(base);
+        }
+
+        @Override
+        public void serializeAsField(Object bean, JsonGenerator gen, SerializerProvider prov) throws Exception {
+            if (!Hibernate.isPropertyInitialized(bean, getName())) {
+                throw JsonMappingException.from(gen, bean.getClass().getSimpleName() + "." + getName()
+                        + " was not loaded by the query that read it");
+            }
+            super.serializeAsField(bean, gen, prov);
+        }
+    }
 }
 
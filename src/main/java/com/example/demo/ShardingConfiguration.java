@@ -0,0 +1,84 @@
+package com.example.demo;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.sql.DataSource;
+
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import com.example.demo.sites.SiteFilter;
+import com.example.demo.sites.SiteProperties;
+import com.example.demo.sites.SiteRoutingDataSource;
+import com.example.demo.sites.SiteSchema;
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * With techhub.sites.enabled every site gets its own database: the default
+ * site keeps spring.datasource, the others are listed under
+ * techhub.sites.datasources. Without it there is one database, and only the
+ * default site is accepted in X-Site.
+ */
+@Configuration
+@EnableConfigurationProperties(SiteProperties.class)
+public class ShardingConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<SiteFilter> siteFilter(SiteProperties properties){
+        Set<String> sites = new LinkedHashSet<>();
+        sites.add(properties.getDefaultSite());
+        if (properties.isEnabled()){
+            sites.addAll(properties.getDatasources().keySet());
+        }
+        FilterRegistrationBean<SiteFilter> registration = new FilterRegistrationBean<>(new SiteFilter(sites));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 100);
+        return registration;
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "techhub.sites", name = "enabled", havingValue = "true")
+    public SiteRoutingDataSource dataSource(DataSourceProperties defaultSite, SiteProperties properties){
+        HikariDataSource main = defaultSite.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        main.setPoolName("site-" + properties.getDefaultSite());
+
+        Map<String, DataSource> sites = new LinkedHashMap<>();
+        for (Map.Entry<String, SiteProperties.Site> entry : properties.getDatasources().entrySet()){
+            SiteProperties.Site site = entry.getValue();
+            HikariDataSource pool = new HikariDataSource();
+            pool.setPoolName("site-" + entry.getKey());
+            pool.setJdbcUrl(site.getUrl());
+            pool.setUsername(site.getUsername());
+            pool.setPassword(site.getPassword());
+            if (site.getDriverClassName() != null){
+                pool.setDriverClassName(site.getDriverClassName());
+            }
+            pool.setMaximumPoolSize(site.getMaximumPoolSize());
+            sites.put(entry.getKey(), pool);
+        }
+        return new SiteRoutingDataSource(main, sites);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "techhub.sites", name = "enabled", havingValue = "true")
+    public SiteSchema siteSchema(){
+        return new SiteSchema();
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "techhub.sites", name = "enabled", havingValue = "true")
+    public HibernatePropertiesCustomizer siteSchemaCapture(SiteSchema siteSchema){
+        return properties -> properties.put("hibernate.integrator_provider",
+                (IntegratorProvider) () -> Collections.singletonList(siteSchema));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.demo;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import com.example.demo.services.AppointmentWriteBehind;
+import com.example.demo.services.ChangeFeed;
+import com.example.demo.services.ShardRouter;
+
+/**
+ * Startup tuning, used by the fast-startup profile (application-fast-startup.properties).
+ *
+ * Lazy initialization is only safe for beans that do nothing until they are
+ * called. Beans with @Scheduled methods are only scheduled once created, and
+ * a few start background work or prepare the databases when they are
+ * created; those stay eager. Event listeners need no exception, Spring
+ * creates them on the first event they get.
+ */
+@Configuration
+public class StartupConfiguration {
+
+    private static final Set<Class<?>> EAGER = new HashSet<>(Arrays.asList(
+            AppointmentWriteBehind.class, ChangeFeed.class, ShardRouter.class));
+
+    @Bean
+    static LazyInitializationExcludeFilter backgroundWorkIsEager(){
+        return (beanName, definition, type) -> type != null && (EAGER.contains(type) || hasScheduledMethods(type));
+    }
+
+    /** Stops the application as soon as it is ready, for the AppCDS training run (techhub.startup.exit-when-ready). */
+    @Bean
+    @ConditionalOnProperty(prefix = "techhub.startup", name = "exit-when-ready", havingValue = "true")
+    ApplicationListener<ApplicationReadyEvent> exitWhenReady(){
+        return event -> System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+
+    private static boolean hasScheduledMethods(Class<?> type){
+        return !MethodIntrospector.selectMethods(type,
+                (MethodIntrospector.MetadataLookup<Scheduled>) method -> AnnotatedElementUtils.findMergedAnnotation(method, Scheduled.class))
+                .isEmpty();
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.UtilizationAnalytics;
+import com.example.demo.services.UtilizationAnalytics.Granularity;
+import com.example.demo.services.UtilizationAnalytics.ResourceType;
+import com.example.demo.services.UtilizationAnalytics.UtilizationRow;
+
+import com.example.demo.sites.SiteContext;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api/analytics")
+public class AnalyticsController {
+
+    @Autowired
+    UtilizationAnalytics utilizationAnalytics;
+
+    @GetMapping("/utilization")
+    public ResponseEntity<List<UtilizationRow>> getUtilization(@RequestParam(value = "granularity", defaultValue = "day") String granularity,
+                                                               @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate from,
+                                                               @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate to,
+                                                               @RequestParam(value = "resource", required = false) String resource){
+        // The counters only follow the default site.
+        if (!SiteContext.isDefault()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Granularity period;
+        ResourceType type = null;
+        try {
+            period = Granularity.valueOf(granularity.toUpperCase());
+            if (resource != null){
+                type = ResourceType.valueOf(resource.toUpperCase());
+            }
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(6);
+        if (start.isAfter(end)){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<UtilizationRow> rows = utilizationAnalytics.report(period, start, end, type);
+
+        if (rows.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(rows, HttpStatus.OK);
+    }
+
+    @PostMapping("/utilization/rebuild")
+    public ResponseEntity<HttpStatus> rebuildUtilization(){
+        if (!SiteContext.isDefault()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        utilizationAnalytics.rebuild();
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+}
@@ -2,20 +2,54 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.AppointmentArchive;
+import com.example.demo.services.AppointmentChangeLog;
+import com.example.demo.services.AppointmentChangeLog.ChangeSet;
+import com.example.demo.services.AppointmentExpansion;
+import com.example.demo.services.AppointmentExpansion.Party;
+import com.example.demo.services.AppointmentWriteBehind;
+import com.example.demo.services.BookingGuard.SlotTakenException;
+import com.example.demo.services.FieldSelector;
+import com.example.demo.services.FieldSelector.FieldSelection;
+import com.example.demo.services.MultiGet;
+import com.example.demo.services.AppointmentWriteBehind.Ticket;
+import com.example.demo.services.RoomOccupancy;
+import com.example.demo.services.RoomOccupancy.SlotState;
+import com.example.demo.services.ScheduleStore;
+import com.example.demo.services.SeriesScheduler;
+import com.example.demo.services.ShardRouter;
+import com.example.demo.services.Waitlist;
+import com.example.demo.sites.SiteContext;
 
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -26,11 +60,81 @@ public class AppointmentController {
     @Autowired
     AppointmentRepository appointmentRepository;
 
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    AppointmentChangeLog appointmentChangeLog;
+
+    @Autowired
+    AppointmentWriteBehind writeBehind;
+
+    @Autowired
+    SeriesScheduler seriesScheduler;
+
+    @Autowired
+    AppointmentArchive appointmentArchive;
+
+    @Autowired
+    ScheduleStore scheduleStore;
+
+    @Autowired
+    ShardRouter shardRouter;
+
+    @Autowired
+    FieldSelector fieldSelector;
+
+    @Autowired
+    Waitlist waitlist;
+
+    @Autowired
+    MultiGet multiGet;
+
+    @Autowired
+    AppointmentExpansion appointmentExpansion;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    private static final Comparator<AppointmentSummary> SUMMARY_BY_START = Comparator.comparing(AppointmentSummary::getStartsAt)
+            .thenComparingLong(AppointmentSummary::getId);
+
+    private static final Comparator<Map<String, Object>> ROW_BY_START = Comparator.comparing((Map<String, Object> row) -> (LocalDateTime) row.get("startsAt"))
+            .thenComparingLong(row -> (Long) row.get("id"));
+
+    /**
+     * Summaries by default, patient, doctor and room only as ids; ?expand=
+     * names the parties to load and set next to their ids.
+     */
     @GetMapping("/appointments")
-    public ResponseEntity<List<Appointment>> getAllAppointments(){
-        List<Appointment> appointments = new ArrayList<>();
+    public ResponseEntity<List<AppointmentSummary>> getAllAppointments(@RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate from,
+                                                                       @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate to,
+                                                                       @RequestParam(value = "expand", required = false) String expand,
+                                                                       @RequestHeader(value = SiteContext.HEADER, required = false) String site){
+        Set<Party> parties;
+        try {
+            parties = appointmentExpansion.parse(expand);
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
 
-        appointmentRepository.findAll().forEach(appointments::add);
+        // Without a range only the hot table is listed; a range reaching before the archive horizon also reads the archive.
+        Supplier<List<AppointmentSummary>> query;
+        if (from != null || to != null){
+            LocalDate start = from != null ? from : LocalDate.now();
+            LocalDate end = to != null ? to : start.plusDays(13);
+            if (end.isBefore(start)){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            query = () -> appointmentExpansion.expand(appointmentArchive.findSummaries(start.atStartOfDay(), end.plusDays(1).atStartOfDay()), parties);
+        } else {
+            query = () -> appointmentExpansion.expand(appointmentRepository.findAllSummaries(), parties);
+        }
+
+        // Without X-Site a sharded deployment lists every site, merged by start time.
+        List<AppointmentSummary> appointments = site == null && shardRouter.isSharded()
+                ? shardRouter.gather(query, SUMMARY_BY_START)
+                : query.get();
 
         if (appointments.isEmpty()){
             return new ResponseEntity<>(HttpStatus.NO_CONTENT);
@@ -39,9 +143,157 @@ public class AppointmentController {
         return new ResponseEntity<>(appointments, HttpStatus.OK);
     }
 
+    /** GET /appointments with ?fields=: the same listing, reading only the selected columns. */
+    @GetMapping(value = "/appointments", params = {"fields", "!ids"})
+    public ResponseEntity<List<Map<String, Object>>> getAppointmentFields(@RequestParam("fields") String fields,
+                                                                         @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate from,
+                                                                         @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate to,
+                                                                         @RequestParam(value = "expand", required = false) String expand,
+                                                                         @RequestHeader(value = SiteContext.HEADER, required = false) String site){
+        // The selected fields already say which associations to read.
+        if (expand != null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        FieldSelection selection;
+        try {
+            selection = fieldSelector.parse(Appointment.class, fields);
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        // Start and id are read in any case, merging sites and the archive sorts by them.
+        FieldSelection sorted = selection.including("startsAt", "id");
+
+        Supplier<List<Map<String, Object>>> query;
+        if (from != null || to != null){
+            LocalDate start = from != null ? from : LocalDate.now();
+            LocalDate end = to != null ? to : start.plusDays(13);
+            if (end.isBefore(start)){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            LocalDateTime rangeStart = start.atStartOfDay();
+            LocalDateTime rangeEnd = end.plusDays(1).atStartOfDay();
+            query = () -> {
+                List<Map<String, Object>> rows = new ArrayList<>(fieldSelector.select(Appointment.class, sorted, overlapping(rangeStart, rangeEnd), "startsAt", "id"));
+                if (appointmentArchive.covers(rangeStart)){
+                    rows.addAll(fieldSelector.select(ArchivedAppointment.class, fieldSelector.retain(ArchivedAppointment.class, sorted),
+                            overlapping(rangeStart, rangeEnd), "startsAt", "id"));
+                    rows.sort(ROW_BY_START);
+                }
+                return rows;
+            };
+        } else {
+            query = () -> fieldSelector.select(Appointment.class, sorted, null, "id");
+        }
+
+        List<Map<String, Object>> rows = site == null && shardRouter.isSharded()
+                ? shardRouter.gather(query, ROW_BY_START)
+                : query.get();
+
+        if (rows.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(selection.trim(rows), HttpStatus.OK);
+    }
+
+    /**
+     * GET /appointments with ?ids=: summaries of the appointments asked for, in
+     * that order, expanded like the listing; ids missing from the hot table are
+     * looked up in the archive.
+     */
+    @GetMapping(value = "/appointments", params = "ids")
+    public ResponseEntity<List<AppointmentSummary>> getAppointmentsById(@RequestParam("ids") List<Long> ids,
+                                                                        @RequestParam(value = "fields", required = false) String fields,
+                                                                        @RequestParam(value = "expand", required = false) String expand){
+        // Sparse fieldsets are not supported on multi-get; say so rather than answer with other fields than asked for.
+        if (fields != null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<AppointmentSummary> appointments;
+        try {
+            Set<Party> parties = appointmentExpansion.parse(expand);
+            appointments = multiGet.load(ids, batch -> {
+                List<AppointmentSummary> found = new ArrayList<>(appointmentRepository.findSummariesByIdIn(batch));
+                if (found.size() < batch.size()){
+                    found.addAll(appointmentArchive.findArchivedSummaries(MultiGet.missing(batch, found, AppointmentSummary::getId)));
+                }
+                return appointmentExpansion.expand(found, parties);
+            }, AppointmentSummary::getId);
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (appointments.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(appointments, HttpStatus.OK);
+    }
+
+    private static <T> Specification<T> overlapping(LocalDateTime from, LocalDateTime to){
+        return (root, query, builder) -> builder.and(builder.lessThan(root.<LocalDateTime>get("startsAt"), to), builder.greaterThan(root.<LocalDateTime>get("finishesAt"), from));
+    }
+
+    /** Ids and times only, read from the appointment table alone; the hot table only, archived appointments are not summarised. */
+    @GetMapping("/appointments/summaries")
+    public ResponseEntity<List<AppointmentSummary>> getAppointmentSummaries(@RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate from,
+                                                                            @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate to,
+                                                                            @RequestHeader(value = SiteContext.HEADER, required = false) String site){
+        Supplier<List<AppointmentSummary>> query;
+        if (from != null || to != null){
+            LocalDate start = from != null ? from : LocalDate.now();
+            LocalDate end = to != null ? to : start.plusDays(13);
+            if (end.isBefore(start)){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+            query = () -> appointmentRepository.findSummariesBetween(start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+        } else {
+            query = appointmentRepository::findAllSummaries;
+        }
+
+        List<AppointmentSummary> summaries = site == null && shardRouter.isSharded()
+                ? shardRouter.gather(query, SUMMARY_BY_START)
+                : query.get();
+
+        if (summaries.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(summaries, HttpStatus.OK);
+    }
+
+    @GetMapping("/appointments/changes")
+    public ResponseEntity<ChangeSet> getAppointmentChanges(@RequestParam(value = "since", required = false) String since,
+                                                           @RequestParam(value = "limit", defaultValue = "500") int limit){
+        Long token = null;
+        if (since != null && !since.isEmpty()){
+            try {
+                token = Long.parseLong(since);
+            } catch (NumberFormatException e){
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            }
+        }
+        ChangeSet changes = appointmentChangeLog.changes(token, Math.max(1, Math.min(limit, 5000)));
+        return new ResponseEntity<>(changes, HttpStatus.OK);
+    }
+
+    @GetMapping("/appointments/pending/{ticket}")
+    public ResponseEntity<Ticket> getPendingAppointment(@PathVariable("ticket") long id){
+        Ticket ticket = writeBehind.getTicket(id);
+
+        if (ticket == null){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity<>(ticket, HttpStatus.OK);
+    }
+
     @GetMapping("/appointments/{id}")
     public ResponseEntity<Appointment> getAppointmentById(@PathVariable("id") long id){
         Optional<Appointment> appointment = appointmentRepository.findById(id);
+        if (!appointment.isPresent()){
+            appointment = appointmentArchive.findArchived(id);
+        }
 
         if (appointment.isPresent()){
             return new ResponseEntity<>(appointment.get(),HttpStatus.OK);
@@ -52,11 +304,87 @@ public class AppointmentController {
 
     @PostMapping("/appointment")
     public ResponseEntity<List<Appointment>> createAppointment(@RequestBody Appointment appointment){
-        /** TODO 
-         * Implement this function, which acts as the POST /api/appointment endpoint.
-         * Make sure to check out the whole project. Specially the Appointment.java class
-         */
-        return new ResponseEntity<>(HttpStatus.I_AM_A_TEAPOT);
+        if (appointment.getRoom() == null || appointment.getStartsAt() == null || appointment.getFinishesAt() == null
+                || !appointment.getStartsAt().isBefore(appointment.getFinishesAt())){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (!SiteContext.isDefault()){
+            return createOnSite(appointment);
+        }
+
+        // The occupancy bitmap settles most requests; only off-grid bookings need the column scan.
+        SlotState slot = roomOccupancy.tryReserve(appointment);
+        if (slot == SlotState.TAKEN){
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        }
+        if (seriesScheduler.conflicts(appointment) || appointmentArchive.conflicts(appointment)){
+            if (slot == SlotState.FREE){
+                roomOccupancy.release(appointment);
+            }
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        }
+        if (slot == SlotState.UNKNOWN){
+            if (scheduleStore.isLoaded()){
+                if (scheduleStore.conflicts(appointment)){
+                    return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+                }
+            } else {
+                for (Appointment existing : appointmentRepository.findAll()){
+                    if (existing.overlaps(appointment)){
+                        return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+                    }
+                }
+            }
+        }
+
+        // Write-behind only takes bookings the bitmap reserved, so pending ones are always visible to later checks.
+        if (slot == SlotState.FREE && writeBehind.isEnabled()){
+            Ticket ticket = writeBehind.submit(appointment);
+            if (ticket != null){
+                HttpHeaders headers = new HttpHeaders();
+                headers.setLocation(URI.create("/api/appointments/pending/" + ticket.getId()));
+                return new ResponseEntity<>(Collections.singletonList(appointment), headers, HttpStatus.ACCEPTED);
+            }
+        }
+
+        try {
+            appointmentChangeLog.save(appointment);
+        } catch (SlotTakenException e){
+            // Booked through another instance since the local checks ran.
+            if (slot == SlotState.FREE){
+                roomOccupancy.release(appointment);
+            }
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        } catch (OptimisticLockingFailureException e){
+            // Kept losing the room to concurrent bookings, the client may try again.
+            if (slot == SlotState.FREE){
+                roomOccupancy.release(appointment);
+            }
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        } catch (RuntimeException e){
+            if (slot == SlotState.FREE){
+                roomOccupancy.release(appointment);
+            }
+            throw e;
+        }
+        eventPublisher.publishEvent(EntityChangeEvent.created(appointment));
+
+        return new ResponseEntity<>(Collections.singletonList(appointment), HttpStatus.OK);
+    }
+
+    /** The in-memory indexes only hold the default site, other sites are checked by BookingGuard in their own database. */
+    private ResponseEntity<List<Appointment>> createOnSite(Appointment appointment){
+        try {
+            appointmentChangeLog.save(appointment);
+        } catch (SlotTakenException e){
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        } catch (OptimisticLockingFailureException e){
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        eventPublisher.publishEvent(EntityChangeEvent.created(appointment));
+
+        return new ResponseEntity<>(Collections.singletonList(appointment), HttpStatus.OK);
     }
 
 
@@ -69,7 +397,10 @@ public class AppointmentController {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
 
-        appointmentRepository.deleteById(id);
+        appointmentChangeLog.delete(appointment.get());
+        eventPublisher.publishEvent(EntityChangeEvent.deleted(appointment.get()));
+        // After the listeners, so the in-memory views have released the slot before it is booked again.
+        waitlist.slotFreed(appointment.get());
 
         return new ResponseEntity<>(HttpStatus.OK);
         
@@ -77,7 +408,8 @@ public class AppointmentController {
 
     @DeleteMapping("/appointments")
     public ResponseEntity<HttpStatus> deleteAllAppointments(){
-        appointmentRepository.deleteAll();
+        appointmentChangeLog.deleteAll();
+        eventPublisher.publishEvent(EntityChangeEvent.cleared(Appointment.class));
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -0,0 +1,50 @@
+package com.example.demo.controllers;
+
+import com.example.demo.repositories.*;
+import com.example.demo.services.CalendarCache;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.CalendarCache.WeekCalendar;
+
+import java.time.LocalDate;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api")
+public class CalendarController {
+
+    @Autowired
+    CalendarCache calendarCache;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @GetMapping("/doctors/{id}/calendar")
+    public ResponseEntity<WeekCalendar> getDoctorCalendar(@PathVariable("id") long id, @RequestParam(value = "date", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate date){
+        if (!doctorRepository.existsById(id)){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(calendarCache.doctorWeek(id, date != null ? date : LocalDate.now()), HttpStatus.OK);
+    }
+
+    @GetMapping("/rooms/{roomName}/calendar")
+    public ResponseEntity<WeekCalendar> getRoomCalendar(@PathVariable("roomName") String roomName, @RequestParam(value = "date", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate date){
+        if (!roomDirectory.idOf(roomName).isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(calendarCache.roomWeek(roomName, date != null ? date : LocalDate.now()), HttpStatus.OK);
+    }
+
+}
@@ -0,0 +1,82 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.ChangeFeed;
+import com.example.demo.services.ChangeFeed.FeedEvent;
+import com.example.demo.services.ChangeFeed.Subscription;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+
+@RestController
+@RequestMapping("/api")
+public class ChangeFeedController {
+
+    @Autowired
+    ChangeFeed changeFeed;
+
+    @Value("${techhub.feed.timeout-ms:1800000}")
+    long timeout;
+
+    /**
+     * Stream of created / deleted / cleared events for appointments, doctors,
+     * patients and rooms. Reconnect with the Last-Event-ID header (or ?since=)
+     * to resume where the stream left off.
+     */
+    @GetMapping(value = "/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamEvents(@RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                   @RequestParam(value = "since", required = false) String since,
+                                   @RequestParam(value = "types", required = false) String types){
+        SseEmitter emitter = new SseEmitter(timeout);
+        Set<String> typeFilter = new HashSet<>();
+        if (types != null){
+            for (String type : Arrays.asList(types.toLowerCase().split(","))){
+                if (!type.trim().isEmpty()){
+                    typeFilter.add(type.trim());
+                }
+            }
+        }
+
+        Subscription subscription = changeFeed.subscribe(lastEventId != null ? lastEventId : since, typeFilter, new ChangeFeed.Subscriber(){
+            @Override
+            public void send(FeedEvent event) throws IOException {
+                if ("HEARTBEAT".equals(event.getKind())){
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                    return;
+                }
+                SseEmitter.SseEventBuilder builder = SseEmitter.event()
+                        .name(event.getType() != null ? event.getType() + "." + event.getKind().toLowerCase() : event.getKind().toLowerCase())
+                        .data(event, MediaType.APPLICATION_JSON);
+                if (event.getId() != null){
+                    builder.id(event.getId());
+                }
+                emitter.send(builder);
+            }
+
+            @Override
+            public void close(){
+                emitter.complete();
+            }
+        });
+
+        if (subscription != null){
+            emitter.onCompletion(subscription::cancel);
+            emitter.onTimeout(subscription::cancel);
+            emitter.onError(e -> subscription.cancel());
+        }
+        return emitter;
+    }
+
+}
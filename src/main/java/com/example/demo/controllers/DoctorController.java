@@ -2,20 +2,34 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Doctor;
-
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.FieldSelector;
+import com.example.demo.services.MultiGet;
+import com.example.demo.services.EmailRegistry;
+import com.example.demo.services.ImportReport;
+import com.example.demo.services.PersonCsvImportService;
+import com.example.demo.services.DoctorSearchIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -26,6 +40,24 @@ public class DoctorController {
     @Autowired
     DoctorRepository doctorRepository;
 
+    @Autowired
+    PersonCsvImportService importService;
+
+    @Autowired
+    DoctorSearchIndex searchIndex;
+
+    @Autowired
+    EmailRegistry emailRegistry;
+
+    @Autowired
+    FieldSelector fieldSelector;
+
+    @Autowired
+    MultiGet multiGet;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
     @GetMapping("/doctors")
     public ResponseEntity<List<Doctor>> getAllDoctors(){
         List<Doctor> doctors = new ArrayList<>();
@@ -39,6 +71,56 @@ public class DoctorController {
         return new ResponseEntity<>(doctors, HttpStatus.OK);
     }
 
+    /** GET /doctors with ?fields=: reads only the selected columns. */
+    @GetMapping(value = "/doctors", params = {"fields", "!ids"})
+    public ResponseEntity<List<Map<String, Object>>> getDoctorFields(@RequestParam("fields") String fields){
+        List<Map<String, Object>> doctors;
+        try {
+            doctors = fieldSelector.select(Doctor.class, fieldSelector.parse(Doctor.class, fields), null, "id");
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (doctors.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(doctors, HttpStatus.OK);
+    }
+
+    /** GET /doctors with ?ids=: the doctors asked for, in that order, in one query per batch. */
+    @GetMapping(value = "/doctors", params = "ids")
+    public ResponseEntity<List<Doctor>> getDoctorsById(@RequestParam("ids") List<Long> ids,
+                                                       @RequestParam(value = "fields", required = false) String fields){
+        // Sparse fieldsets are not supported on multi-get; say so rather than answer with other fields than asked for.
+        if (fields != null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Doctor> doctors;
+        try {
+            doctors = multiGet.load(ids, doctorRepository::findAllById, Doctor::getId);
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (doctors.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(doctors, HttpStatus.OK);
+    }
+
+    @GetMapping("/doctors/search")
+    public ResponseEntity<List<Doctor>> searchDoctors(@RequestParam("q") String query, @RequestParam(value = "limit", defaultValue = "20") int limit){
+        List<Doctor> doctors = searchIndex.search(query, Math.max(1, Math.min(limit, 100)));
+
+        if (doctors.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(doctors, HttpStatus.OK);
+    }
+
     @GetMapping("/doctors/{id}")
     public ResponseEntity<Doctor> getDoctorById(@PathVariable("id") long id){
         Optional<Doctor> doctor = doctorRepository.findById(id);
@@ -51,11 +133,26 @@ public class DoctorController {
 
     @PostMapping("/doctor")
     public ResponseEntity<Doctor> createDoctor(@RequestBody Doctor doc){
+        if (emailRegistry.isTaken(Doctor.class, doc.getEmail())){
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+
         Doctor d = new Doctor(doc.getFirstName(), doc.getLastName(), doc.getAge(), doc.getEmail());
-        doctorRepository.save(d);
+        try {
+            doctorRepository.save(d);
+        } catch (DataIntegrityViolationException e){
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        eventPublisher.publishEvent(EntityChangeEvent.created(d));
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/doctors/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<ImportReport> importDoctors(InputStream csv) throws IOException {
+        ImportReport report = importService.importDoctors(csv);
+        return new ResponseEntity<>(report, HttpStatus.OK);
+    }
+
     @DeleteMapping("/doctors/{id}")
     public ResponseEntity<HttpStatus> deleteDoctor(@PathVariable("id") long id){
         Optional<Doctor> doctor = doctorRepository.findById(id);
@@ -65,12 +162,14 @@ public class DoctorController {
         }
 
         doctorRepository.deleteById(id);
+        eventPublisher.publishEvent(EntityChangeEvent.deleted(doctor.get()));
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/doctors")
     public ResponseEntity<HttpStatus> deleteAllDoctors(){
-        doctorRepository.deleteAll();
+        doctorRepository.deleteAllInBatch();
+        eventPublisher.publishEvent(EntityChangeEvent.cleared(Doctor.class));
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -0,0 +1,53 @@
+package com.example.demo.controllers;
+
+import com.example.demo.services.RoomOccupancy;
+import com.example.demo.services.RoomOccupancy.Utilization;
+
+import com.example.demo.sites.SiteContext;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api")
+public class OccupancyController {
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @GetMapping("/occupancy")
+    public ResponseEntity<List<Utilization>> getOccupancy(@RequestParam(value = "date", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate date){
+        // The bitmaps only follow the default site.
+        if (!SiteContext.isDefault()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Utilization> rooms = roomOccupancy.utilization(date != null ? date : LocalDate.now());
+
+        if (rooms.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(rooms, HttpStatus.OK);
+    }
+
+    @GetMapping("/rooms/{roomName}/occupancy")
+    public ResponseEntity<Utilization> getRoomOccupancy(@PathVariable("roomName") String roomName, @RequestParam(value = "date", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate date){
+        if (!SiteContext.isDefault()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        Utilization utilization = roomOccupancy.utilization(roomName, date != null ? date : LocalDate.now());
+        return new ResponseEntity<>(utilization, HttpStatus.OK);
+    }
+
+}
@@ -3,20 +3,34 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Patient;
-
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.FieldSelector;
+import com.example.demo.services.MultiGet;
+import com.example.demo.services.EmailRegistry;
+import com.example.demo.services.ImportReport;
+import com.example.demo.services.PersonCsvImportService;
+import com.example.demo.services.PatientSearchIndex;
+
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -27,6 +41,24 @@ public class PatientController {
     @Autowired
     PatientRepository patientRepository;
 
+    @Autowired
+    PersonCsvImportService importService;
+
+    @Autowired
+    PatientSearchIndex searchIndex;
+
+    @Autowired
+    EmailRegistry emailRegistry;
+
+    @Autowired
+    FieldSelector fieldSelector;
+
+    @Autowired
+    MultiGet multiGet;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
     @GetMapping("/patients")
     public ResponseEntity<List<Patient>> getAllPatients(){
         List<Patient> patients = new ArrayList<>();
@@ -40,6 +72,56 @@ public class PatientController {
         return new ResponseEntity<>(patients, HttpStatus.OK);
     }
 
+    /** GET /patients with ?fields=: reads only the selected columns. */
+    @GetMapping(value = "/patients", params = {"fields", "!ids"})
+    public ResponseEntity<List<Map<String, Object>>> getPatientFields(@RequestParam("fields") String fields){
+        List<Map<String, Object>> patients;
+        try {
+            patients = fieldSelector.select(Patient.class, fieldSelector.parse(Patient.class, fields), null, "id");
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (patients.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(patients, HttpStatus.OK);
+    }
+
+    /** GET /patients with ?ids=: the patients asked for, in that order, in one query per batch. */
+    @GetMapping(value = "/patients", params = "ids")
+    public ResponseEntity<List<Patient>> getPatientsById(@RequestParam("ids") List<Long> ids,
+                                                         @RequestParam(value = "fields", required = false) String fields){
+        // Sparse fieldsets are not supported on multi-get; say so rather than answer with other fields than asked for.
+        if (fields != null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+        List<Patient> patients;
+        try {
+            patients = multiGet.load(ids, patientRepository::findAllById, Patient::getId);
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (patients.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(patients, HttpStatus.OK);
+    }
+
+    @GetMapping("/patients/search")
+    public ResponseEntity<List<Patient>> searchPatients(@RequestParam("q") String query, @RequestParam(value = "limit", defaultValue = "20") int limit){
+        List<Patient> patients = searchIndex.search(query, Math.max(1, Math.min(limit, 100)));
+
+        if (patients.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(patients, HttpStatus.OK);
+    }
+
     @GetMapping("/patients/{id}")
     public ResponseEntity<Patient> getPatientById(@PathVariable("id") long id){
         Optional<Patient> patient = patientRepository.findById(id);
@@ -51,11 +133,26 @@ public class PatientController {
 
     @PostMapping("/patient")
     public ResponseEntity<Patient> createPatient(@RequestBody Patient pat){
+        if (emailRegistry.isTaken(Patient.class, pat.getEmail())){
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+
         Patient d = new Patient(pat.getFirstName(), pat.getLastName(), pat.getAge(), pat.getEmail());
-        patientRepository.save(d);
+        try {
+            patientRepository.save(d);
+        } catch (DataIntegrityViolationException e){
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        eventPublisher.publishEvent(EntityChangeEvent.created(d));
         return new ResponseEntity<>(d, HttpStatus.CREATED);
     }
 
+    @PostMapping(value = "/patients/import", consumes = {"text/csv", MediaType.TEXT_PLAIN_VALUE})
+    public ResponseEntity<ImportReport> importPatients(InputStream csv) throws IOException {
+        ImportReport report = importService.importPatients(csv);
+        return new ResponseEntity<>(report, HttpStatus.OK);
+    }
+
     @DeleteMapping("/patients/{id}")
     public ResponseEntity<HttpStatus> deletePatient(@PathVariable("id") long id){
         Optional<Patient> patient = patientRepository.findById(id);
@@ -63,12 +160,14 @@ public class PatientController {
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
         patientRepository.deleteById(id);
+        eventPublisher.publishEvent(EntityChangeEvent.deleted(patient.get()));
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/patients")
     public ResponseEntity<HttpStatus> deleteAllPatients(){
-        patientRepository.deleteAll();
+        patientRepository.deleteAllInBatch();
+        eventPublisher.publishEvent(EntityChangeEvent.cleared(Patient.class));
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -3,20 +3,31 @@ package com.example.demo.controllers;
 
 import com.example.demo.repositories.*;
 import com.example.demo.entities.Room;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.FieldSelector;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.RoomEvacuation;
+import com.example.demo.services.RoomEvacuation.Evacuation;
+import com.example.demo.services.BookingGuard.SlotTakenException;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
 
@@ -27,6 +38,18 @@ public class RoomController {
     @Autowired
     RoomRepository roomRepository;
 
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @Autowired
+    FieldSelector fieldSelector;
+
+    @Autowired
+    RoomEvacuation roomEvacuation;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
     @GetMapping("/rooms")
     public ResponseEntity<List<Room>> getAllRooms(){
         List<Room> rooms = new ArrayList<>();
@@ -40,9 +63,26 @@ public class RoomController {
         return new ResponseEntity<>(rooms, HttpStatus.OK);
     }
 
+    /** GET /rooms with ?fields=: reads only the selected columns. */
+    @GetMapping(value = "/rooms", params = "fields")
+    public ResponseEntity<List<Map<String, Object>>> getRoomFields(@RequestParam("fields") String fields){
+        List<Map<String, Object>> rooms;
+        try {
+            rooms = fieldSelector.select(Room.class, fieldSelector.parse(Room.class, fields), null, "id");
+        } catch (IllegalArgumentException e){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        if (rooms.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(rooms, HttpStatus.OK);
+    }
+
     @GetMapping("/rooms/{roomName}")
     public ResponseEntity<Room> getRoomByRoomName(@PathVariable("roomName") String roomName){
-        Optional<Room> room = roomRepository.findByRoomName(roomName);
+        Optional<Room> room = roomDirectory.findStored(roomName);
         if (!room.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
@@ -51,24 +91,77 @@ public class RoomController {
 
     @PostMapping("/room")
     public ResponseEntity<Room> createRoom(@RequestBody Room room){
-        Room tmp = new Room(room.getRoomName());
-        roomRepository.save(tmp);
+        // Names are unique, posting an existing one hands back the stored room.
+        Optional<Room> existing = roomDirectory.findStored(room.getRoomName());
+        if (existing.isPresent()){
+            return new ResponseEntity<>(existing.get(), HttpStatus.CREATED);
+        }
+        Room tmp;
+        try {
+            tmp = roomRepository.saveAndFlush(new Room(room.getRoomName()));
+        } catch (DataIntegrityViolationException e){
+            // Another request created the name in between, hand back its room.
+            Optional<Room> stored = roomRepository.findByRoomName(room.getRoomName());
+            if (!stored.isPresent()){
+                throw e;
+            }
+            return new ResponseEntity<>(stored.get(), HttpStatus.CREATED);
+        }
+        eventPublisher.publishEvent(EntityChangeEvent.created(tmp));
         return new ResponseEntity<>(tmp, HttpStatus.CREATED);
     }
 
+    /**
+     * Moves every future appointment of the room into the other rooms (or the
+     * ones in ?into=), keeping their times; 409 with the leftovers, and
+     * nothing moved, when they do not all fit.
+     */
+    @PostMapping("/rooms/{roomName}/evacuate")
+    public ResponseEntity<Evacuation> evacuateRoom(@PathVariable("roomName") String roomName,
+                                                   @RequestParam(value = "into", required = false) List<String> into){
+        Optional<Room> room = roomDirectory.find(roomName);
+        if (!room.isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        List<Room> targets = new ArrayList<>();
+        if (into != null){
+            for (String name : into){
+                Optional<Room> target = roomDirectory.find(name);
+                if (!target.isPresent()){
+                    return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+                }
+                targets.add(target.get());
+            }
+        }
+
+        Evacuation evacuation;
+        try {
+            evacuation = roomEvacuation.evacuate(room.get(), targets);
+        } catch (SlotTakenException | OptimisticLockingFailureException e){
+            // Booked through another instance meanwhile, the client may try again.
+            return new ResponseEntity<>(HttpStatus.CONFLICT);
+        }
+        if (!evacuation.isComplete()){
+            return new ResponseEntity<>(evacuation, HttpStatus.CONFLICT);
+        }
+        return new ResponseEntity<>(evacuation, HttpStatus.OK);
+    }
+
     @DeleteMapping("/rooms/{roomName}")
     public ResponseEntity<HttpStatus> deleteRoom(@PathVariable("roomName") String roomName){
-        Optional<Room> room = roomRepository.findByRoomName(roomName);
+        Optional<Room> room = roomDirectory.find(roomName);
         if (! room.isPresent()){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
-        roomRepository.deleteByRoomName(roomName);
+        roomRepository.deleteById(room.get().getId());
+        eventPublisher.publishEvent(EntityChangeEvent.deleted(room.get()));
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     @DeleteMapping("/rooms")
     public ResponseEntity<HttpStatus> deleteAllRooms(){
-        roomRepository.deleteAll();
+        roomRepository.deleteAllInBatch();
+        eventPublisher.publishEvent(EntityChangeEvent.cleared(Room.class));
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
@@ -0,0 +1,157 @@
+package com.example.demo.controllers;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.entities.AppointmentSeries.Occurrence;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.SeriesScheduler;
+import com.example.demo.services.SeriesScheduler.Outcome;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api")
+public class SeriesController {
+
+    private static final int MAX_INTERVAL = 52;
+    private static final long MAX_RANGE_DAYS = 366;
+
+    @Autowired
+    SeriesScheduler seriesScheduler;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @GetMapping("/series")
+    public ResponseEntity<List<AppointmentSeries>> getAllSeries(){
+        List<AppointmentSeries> series = seriesScheduler.findAll();
+
+        if (series.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(series, HttpStatus.OK);
+    }
+
+    @GetMapping("/series/{id}")
+    public ResponseEntity<AppointmentSeries> getSeriesById(@PathVariable("id") long id){
+        Optional<AppointmentSeries> series = seriesScheduler.find(id);
+
+        if (!series.isPresent()){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+
+        return new ResponseEntity<>(series.get(), HttpStatus.OK);
+    }
+
+    @GetMapping("/series/occurrences")
+    public ResponseEntity<List<Occurrence>> getOccurrences(@RequestParam(value = "room", required = false) String roomName,
+                                                           @RequestParam(value = "from", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate from,
+                                                           @RequestParam(value = "to", required = false) @DateTimeFormat(pattern = "dd/MM/yyyy") LocalDate to){
+        LocalDate start = from != null ? from : LocalDate.now();
+        LocalDate end = to != null ? to : start.plusDays(6);
+        if (end.isBefore(start) || ChronoUnit.DAYS.between(start, end) >= MAX_RANGE_DAYS){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        List<Occurrence> occurrences = seriesScheduler.occurrences(roomName, start.atStartOfDay(), end.plusDays(1).atStartOfDay());
+
+        if (occurrences.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(occurrences, HttpStatus.OK);
+    }
+
+    @PostMapping("/series")
+    public ResponseEntity<AppointmentSeries> createSeries(@RequestBody AppointmentSeries series){
+        if (series.getStartsAt() == null || series.getFrequency() == null
+                || series.getInterval() < 1 || series.getInterval() > MAX_INTERVAL
+                || series.getDurationMinutes() < 1 || series.getDurationMinutes() > series.getPeriodMinutes()
+                || (series.getCount() != null && series.getCount() < 1)
+                || series.getPatient() == null || series.getDoctor() == null || series.getRoom() == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Optional<Patient> patient = patientRepository.findById(series.getPatient().getId());
+        Optional<Doctor> doctor = doctorRepository.findById(series.getDoctor().getId());
+        Optional<Room> room = roomDirectory.find(series.getRoom().getRoomName());
+        if (!patient.isPresent() || !doctor.isPresent() || !room.isPresent()){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        AppointmentSeries tmp = new AppointmentSeries(patient.get(), doctor.get(), room.get(), series.getStartsAt(),
+                series.getDurationMinutes(), series.getFrequency(), series.getInterval(), series.getCount(), series.getUntil());
+        if (tmp.getLastIndex() < 0){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        AppointmentSeries saved = seriesScheduler.create(tmp);
+        if (saved == null){
+            return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+        }
+
+        return new ResponseEntity<>(saved, HttpStatus.CREATED);
+    }
+
+    @PostMapping("/series/{id}/exceptions")
+    public ResponseEntity<HttpStatus> addSeriesException(@PathVariable("id") long id, @RequestBody SeriesException exception){
+        if (exception.getOccurrenceDate() == null){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        SeriesException tmp;
+        if (exception.isCancelled()){
+            tmp = SeriesException.cancel(exception.getOccurrenceDate());
+        } else if (exception.getStartsAt() != null && exception.getFinishesAt() != null
+                && exception.getStartsAt().isBefore(exception.getFinishesAt())){
+            tmp = SeriesException.move(exception.getOccurrenceDate(), exception.getStartsAt(), exception.getFinishesAt());
+        } else {
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Outcome outcome = seriesScheduler.addException(id, tmp);
+        switch (outcome){
+            case NOT_FOUND:
+                return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+            case NOT_AN_OCCURRENCE:
+                return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+            case CONFLICT:
+                return new ResponseEntity<>(HttpStatus.NOT_ACCEPTABLE);
+            default:
+                return new ResponseEntity<>(HttpStatus.CREATED);
+        }
+    }
+
+    @DeleteMapping("/series/{id}")
+    public ResponseEntity<HttpStatus> deleteSeries(@PathVariable("id") long id){
+        if (!seriesScheduler.delete(id)){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.example.demo.controllers;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.Waitlist;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+
+
+@RestController
+@RequestMapping("/api")
+public class WaitlistController {
+
+    @Autowired
+    Waitlist waitlist;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @GetMapping("/waitlist")
+    public ResponseEntity<List<WaitlistEntry>> getWaitlist(){
+        List<WaitlistEntry> entries = waitlist.findAll();
+
+        if (entries.isEmpty()){
+            return new ResponseEntity<>(HttpStatus.NO_CONTENT);
+        }
+
+        return new ResponseEntity<>(entries, HttpStatus.OK);
+    }
+
+    @PostMapping("/waitlist")
+    public ResponseEntity<WaitlistEntry> addToWaitlist(@RequestBody WaitlistEntry entry){
+        if (entry.getPatient() == null || (entry.getDoctor() == null && entry.getRoom() == null)
+                || entry.getEarliestStart() == null || entry.getLatestEnd() == null || entry.getDurationMinutes() < 1
+                || entry.getEarliestStart().plusMinutes(entry.getDurationMinutes()).isAfter(entry.getLatestEnd())
+                || !entry.getLatestEnd().isAfter(LocalDateTime.now())){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        Optional<Patient> patient = patientRepository.findById(entry.getPatient().getId());
+        Optional<Doctor> doctor = entry.getDoctor() != null ? doctorRepository.findById(entry.getDoctor().getId()) : Optional.empty();
+        Optional<Room> room = entry.getRoom() != null ? roomDirectory.find(entry.getRoom().getRoomName()) : Optional.empty();
+        if (!patient.isPresent() || (entry.getDoctor() != null && !doctor.isPresent()) || (entry.getRoom() != null && !room.isPresent())){
+            return new ResponseEntity<>(HttpStatus.BAD_REQUEST);
+        }
+
+        WaitlistEntry tmp = waitlist.add(new WaitlistEntry(patient.get(), doctor.orElse(null), room.orElse(null),
+                entry.getEarliestStart(), entry.getLatestEnd(), entry.getDurationMinutes(), entry.getPriority()));
+        return new ResponseEntity<>(tmp, HttpStatus.CREATED);
+    }
+
+    @DeleteMapping("/waitlist/{id}")
+    public ResponseEntity<HttpStatus> removeFromWaitlist(@PathVariable("id") long id){
+        if (!waitlist.remove(id)){
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        return new ResponseEntity<>(HttpStatus.OK);
+    }
+
+}
@@ -6,26 +6,42 @@ import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.*;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
 import com.fasterxml.jackson.annotation.JsonFormat;
+import com.example.demo.sites.SiteContext;
 
 @Entity
+@Table(indexes = @Index(name = "idx_appointment_change_seq", columnList = "changeSeq"))
+@NamedEntityGraph(name = Appointment.FULL, attributeNodes = {
+    @NamedAttributeNode("patient"), @NamedAttributeNode("doctor"), @NamedAttributeNode("room")
+})
 public class Appointment {
 
+    /** Entity graph that fetches patient, doctor and room with the appointment, in the same query. */
+    public static final String FULL = "Appointment.full";
+
     @Id
     @GeneratedValue(strategy=GenerationType.AUTO)
     private long id;
 
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    // The parties are loaded only when asked for, by the FULL entity graph or on first access (no proxies, the class is enhanced at build time).
+    // New ones are saved with the appointment; cancelling it leaves them, they may be waiting for another slot.
+    @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.LAZY)
+    @LazyToOne(LazyToOneOption.NO_PROXY)
     @JoinColumn(name = "patient_id", referencedColumnName = "id")
     private Patient patient;
 
-    @ManyToOne(cascade = CascadeType.ALL)
+    @ManyToOne(cascade = {CascadeType.PERSIST, CascadeType.MERGE}, fetch = FetchType.LAZY)
+    @LazyToOne(LazyToOneOption.NO_PROXY)
     @JoinColumn(name = "doctor_id", referencedColumnName = "id")
     private Doctor doctor;
 
-    @ManyToOne(cascade = CascadeType.ALL)
-    @JoinColumn(name = "room_id", referencedColumnName = "roomName")
+    // Rooms are reference data, resolved by name through RoomDirectory before an appointment is saved.
+    @ManyToOne(fetch = FetchType.LAZY)
+    @LazyToOne(LazyToOneOption.NO_PROXY)
+    @JoinColumn(name = "room_id", referencedColumnName = "id")
     private Room room;
 
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
@@ -34,6 +50,15 @@ public class Appointment {
     @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
     private LocalDateTime finishesAt;
 
+    // Position in the appointment change log, set by AppointmentChangeLog on every write.
+    private long changeSeq;
+
+    @Version
+    private long version;
+
+    // The site whose database holds the row, stamped on insert.
+    private String site;
+
     public Appointment(){
         super();
     }
@@ -68,6 +93,21 @@ public class Appointment {
         this.finishesAt = finishesAt;
     }
 
+    public long getChangeSeq(){
+        return this.changeSeq;
+    }
+    public void setChangeSeq(long changeSeq){
+        this.changeSeq = changeSeq;
+    }
+
+    public long getVersion(){
+        return this.version;
+    }
+
+    public String getSite(){
+        return this.site;
+    }
+
     public Patient getPatient(){
         return this.patient;
     }
@@ -89,6 +129,11 @@ public class Appointment {
         this.room = room;
     }
     
+    @PrePersist
+    void stampSite(){
+        this.site = SiteContext.name();
+    }
+
     public boolean overlaps( Appointment appointment){
         /// True when:
         // Case 1: A.starts == B.starts
@@ -106,6 +151,9 @@ public class Appointment {
             if ( appointment.getStartsAt().isAfter(this.getStartsAt()) && appointment.getStartsAt().isBefore(this.getFinishesAt())){
                 return true;
             }
+            if ( appointment.getStartsAt().isBefore(this.getStartsAt()) && appointment.getFinishesAt().isAfter(this.getFinishesAt())){
+                return true;
+            }
         }
         
         return false;
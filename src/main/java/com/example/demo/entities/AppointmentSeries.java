@@ -0,0 +1,311 @@
+package com.example.demo.entities;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.persistence.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * A recurring appointment stored as a rule, like a small RRULE:
+ * FREQ (daily / weekly), INTERVAL, and optionally COUNT and UNTIL. Weekly
+ * series repeat on the weekday of the first occurrence.
+ *
+ * Occurrence k starts at startsAt + k * period, so everything here is
+ * arithmetic on occurrence indexes: the occurrences in a range, or whether a
+ * time range hits one, are found without listing the series. Exceptions
+ * cancel or move single occurrences, keyed by their original date.
+ */
+@Entity
+@Table(name = "appointment_series")
+public class AppointmentSeries {
+
+    public enum Frequency { DAILY, WEEKLY }
+
+    /** Cap for series without COUNT or UNTIL, keeps index arithmetic far from overflow. */
+    public static final long UNBOUNDED = Integer.MAX_VALUE;
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    private long id;
+
+    @ManyToOne
+    @JoinColumn(name = "patient_id", referencedColumnName = "id")
+    private Patient patient;
+
+    @ManyToOne
+    @JoinColumn(name = "doctor_id", referencedColumnName = "id")
+    private Doctor doctor;
+
+    @ManyToOne
+    @JoinColumn(name = "room_id", referencedColumnName = "id")
+    private Room room;
+
+    // First occurrence
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime startsAt;
+
+    private int durationMinutes;
+
+    @Enumerated(EnumType.STRING)
+    private Frequency frequency;
+
+    @Column(name = "repeat_interval")
+    private int interval = 1;
+
+    @Column(name = "occurrence_count")
+    private Integer count;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd/MM/yyyy")
+    private LocalDate until;
+
+    @OneToMany(mappedBy = "series", cascade = CascadeType.ALL, orphanRemoval = true)
+    private List<SeriesException> exceptions = new ArrayList<>();
+
+    public AppointmentSeries(){
+        super();
+    }
+
+    public AppointmentSeries(Patient patient, Doctor doctor, Room room, LocalDateTime startsAt, int durationMinutes, Frequency frequency, int interval, Integer count, LocalDate until){
+        this.patient = patient;
+        this.doctor = doctor;
+        this.room = room;
+        this.startsAt = startsAt;
+        this.durationMinutes = durationMinutes;
+        this.frequency = frequency;
+        this.interval = interval;
+        this.count = count;
+        this.until = until;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public void setId(long id){
+        this.id = id;
+    }
+
+    public Patient getPatient(){
+        return this.patient;
+    }
+    public void setPatient(Patient patient){
+        this.patient = patient;
+    }
+
+    public Doctor getDoctor(){
+        return this.doctor;
+    }
+    public void setDoctor(Doctor doctor){
+        this.doctor = doctor;
+    }
+
+    public Room getRoom(){
+        return this.room;
+    }
+    public void setRoom(Room room){
+        this.room = room;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public int getDurationMinutes(){
+        return this.durationMinutes;
+    }
+
+    public Frequency getFrequency(){
+        return this.frequency;
+    }
+
+    public int getInterval(){
+        return this.interval;
+    }
+
+    public Integer getCount(){
+        return this.count;
+    }
+
+    public LocalDate getUntil(){
+        return this.until;
+    }
+
+    public List<SeriesException> getExceptions(){
+        return this.exceptions;
+    }
+
+    public void addException(SeriesException exception){
+        exception.setSeries(this);
+        this.exceptions.add(exception);
+    }
+
+    @JsonIgnore
+    public long getPeriodMinutes(){
+        return (frequency == Frequency.WEEKLY ? 7L : 1L) * 24 * 60 * interval;
+    }
+
+    /** Index of the last occurrence, -1 when there is none, {@link #UNBOUNDED} when the series never ends. */
+    @JsonIgnore
+    public long getLastIndex(){
+        long last = UNBOUNDED;
+        if (count != null){
+            last = Math.min(last, count - 1L);
+        }
+        if (until != null){
+            // Occurrences must start before the end of the until day.
+            long end = minutes(until.plusDays(1).atStartOfDay());
+            last = Math.min(last, Math.floorDiv(end - 1 - minutes(startsAt), getPeriodMinutes()));
+        }
+        return Math.max(last, -1);
+    }
+
+    /** Start of the last occurrence, or null for open-ended series. */
+    @JsonIgnore
+    public LocalDateTime getLastStartsAt(){
+        long last = getLastIndex();
+        return last == UNBOUNDED || last < 0 ? null : occurrenceStart(last);
+    }
+
+    public LocalDateTime occurrenceStart(long index){
+        return startsAt.plusMinutes(index * getPeriodMinutes());
+    }
+
+    /** Index of the regular occurrence starting on that date, or -1. */
+    public long indexOf(LocalDate date){
+        long offset = minutes(date.atTime(startsAt.toLocalTime())) - minutes(startsAt);
+        if (offset < 0 || offset % getPeriodMinutes() != 0){
+            return -1;
+        }
+        long index = offset / getPeriodMinutes();
+        return index <= getLastIndex() ? index : -1;
+    }
+
+    /**
+     * Occurrences overlapping [from, to), moved ones at their new time, sorted
+     * by start. Only the indexes inside the range are visited.
+     */
+    public List<Occurrence> occurrences(LocalDateTime from, LocalDateTime to){
+        Map<LocalDate, SeriesException> byDate = exceptionsByDate();
+        List<Occurrence> result = new ArrayList<>();
+        long[] range = indexRange(from, to);
+        for (long k = range[0]; k <= range[1]; k++){
+            LocalDateTime start = occurrenceStart(k);
+            if (!byDate.containsKey(start.toLocalDate())){
+                result.add(new Occurrence(this.id, k, start, start.plusMinutes(durationMinutes), false));
+            }
+        }
+        for (SeriesException exception : exceptions){
+            if (exception.isMoved() && exception.getStartsAt().isBefore(to) && exception.getFinishesAt().isAfter(from)){
+                result.add(new Occurrence(this.id, indexOf(exception.getOccurrenceDate()), exception.getStartsAt(), exception.getFinishesAt(), true));
+            }
+        }
+        result.sort(Comparator.comparing(Occurrence::getStartsAt));
+        return result;
+    }
+
+    /**
+     * Whether any occurrence overlaps [start, end). Stops at the first regular
+     * occurrence that is not an exception, so the work is bounded by the number
+     * of exceptions, not by the length of the range.
+     */
+    public boolean overlaps(LocalDateTime start, LocalDateTime end){
+        Map<LocalDate, SeriesException> byDate = exceptionsByDate();
+        long[] range = indexRange(start, end);
+        for (long k = range[0]; k <= range[1]; k++){
+            if (!byDate.containsKey(occurrenceStart(k).toLocalDate())){
+                return true;
+            }
+        }
+        for (SeriesException exception : exceptions){
+            if (exception.isMoved() && exception.getStartsAt().isBefore(end) && exception.getFinishesAt().isAfter(start)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Same room and some occurrence overlaps the appointment. */
+    public boolean overlaps(Appointment appointment){
+        return room != null && appointment.getRoom() != null
+                && room.getRoomName().equals(appointment.getRoom().getRoomName())
+                && overlaps(appointment.getStartsAt(), appointment.getFinishesAt());
+    }
+
+    /** Whether the regular occurrence k was cancelled or moved. */
+    public boolean isException(long k){
+        LocalDate date = occurrenceStart(k).toLocalDate();
+        for (SeriesException exception : exceptions){
+            if (exception.getOccurrenceDate().equals(date)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** [first, last] indexes of the regular occurrences overlapping [from, to), empty when first > last. */
+    private long[] indexRange(LocalDateTime from, LocalDateTime to){
+        long period = getPeriodMinutes();
+        long first = minutes(startsAt);
+        // start + duration > from  and  start < to
+        long lo = Math.max(0, Math.floorDiv(minutes(from) - durationMinutes - first, period) + 1);
+        long hi = Math.min(getLastIndex(), Math.floorDiv(minutes(to) - first - 1, period));
+        return new long[]{lo, hi};
+    }
+
+    private Map<LocalDate, SeriesException> exceptionsByDate(){
+        Map<LocalDate, SeriesException> byDate = new HashMap<>();
+        for (SeriesException exception : exceptions){
+            byDate.put(exception.getOccurrenceDate(), exception);
+        }
+        return byDate;
+    }
+
+    public static long minutes(LocalDateTime time){
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    public static class Occurrence {
+        private final long seriesId;
+        private final long index;
+        private final LocalDateTime startsAt;
+        private final LocalDateTime finishesAt;
+        private final boolean moved;
+
+        public Occurrence(long seriesId, long index, LocalDateTime startsAt, LocalDateTime finishesAt, boolean moved){
+            this.seriesId = seriesId;
+            this.index = index;
+            this.startsAt = startsAt;
+            this.finishesAt = finishesAt;
+            this.moved = moved;
+        }
+
+        public long getSeriesId(){
+            return this.seriesId;
+        }
+
+        public long getIndex(){
+            return this.index;
+        }
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+        public LocalDateTime getStartsAt(){
+            return this.startsAt;
+        }
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+        public LocalDateTime getFinishesAt(){
+            return this.finishesAt;
+        }
+
+        public boolean isMoved(){
+            return this.moved;
+        }
+    }
+}
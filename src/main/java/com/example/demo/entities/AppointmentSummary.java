@@ -0,0 +1,91 @@
+package com.example.demo.entities;
+
+import java.time.LocalDateTime;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * An appointment as ids and times, read straight from the appointment row:
+ * listing these never touches the patient, doctor or room tables. A listing
+ * asked to expand a party sets it next to its id, see AppointmentExpansion.
+ */
+public class AppointmentSummary {
+
+    private final long id;
+    private final Long patientId;
+    private final Long doctorId;
+    private final Long roomId;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private final LocalDateTime finishesAt;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Patient patient;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Doctor doctor;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Room room;
+
+    public AppointmentSummary(long id, Long patientId, Long doctorId, Long roomId, LocalDateTime startsAt, LocalDateTime finishesAt){
+        this.id = id;
+        this.patientId = patientId;
+        this.doctorId = doctorId;
+        this.roomId = roomId;
+        this.startsAt = startsAt;
+        this.finishesAt = finishesAt;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public Long getPatientId(){
+        return this.patientId;
+    }
+
+    public Long getDoctorId(){
+        return this.doctorId;
+    }
+
+    public Long getRoomId(){
+        return this.roomId;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public Patient getPatient(){
+        return this.patient;
+    }
+
+    public void setPatient(Patient patient){
+        this.patient = patient;
+    }
+
+    public Doctor getDoctor(){
+        return this.doctor;
+    }
+
+    public void setDoctor(Doctor doctor){
+        this.doctor = doctor;
+    }
+
+    public Room getRoom(){
+        return this.room;
+    }
+
+    public void setRoom(Room room){
+        this.room = room;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.demo.entities;
+
+import java.time.LocalDateTime;
+import javax.persistence.*;
+
+/**
+ * Left behind when an appointment is deleted so delta sync clients learn
+ * about it. A tombstone without appointment id stands for "every appointment
+ * up to this change was deleted" (DELETE /api/appointments). A moved one
+ * records the room an appointment left (room evacuation): the row itself
+ * lives on with a later change, so sync clients do not see it as deleted.
+ */
+@Entity
+@Table(name = "appointment_tombstone", indexes = @Index(name = "idx_appointment_tombstone_change_seq", columnList = "changeSeq"))
+public class AppointmentTombstone {
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    private long id;
+
+    private Long appointmentId;
+
+    private long changeSeq;
+
+    private LocalDateTime deletedAt;
+
+    // What the deleted appointment occupied, so in-memory schedules can replay the delete.
+    private String roomName;
+
+    private LocalDateTime startsAt;
+
+    private LocalDateTime finishesAt;
+
+    // Nullable so ddl-auto can add the column to a table that already has rows.
+    private Boolean moved;
+
+    public AppointmentTombstone(){
+        super();
+    }
+
+    public AppointmentTombstone(Long appointmentId, long changeSeq, LocalDateTime deletedAt){
+        this.appointmentId = appointmentId;
+        this.changeSeq = changeSeq;
+        this.deletedAt = deletedAt;
+    }
+
+    public AppointmentTombstone(Appointment appointment, long changeSeq, LocalDateTime deletedAt){
+        this(appointment.getId(), changeSeq, deletedAt);
+        this.roomName = appointment.getRoom() != null ? appointment.getRoom().getRoomName() : null;
+        this.startsAt = appointment.getStartsAt();
+        this.finishesAt = appointment.getFinishesAt();
+    }
+
+    /** The room and times an appointment is moved out of. */
+    public static AppointmentTombstone moved(Appointment appointment, long changeSeq, LocalDateTime movedAt){
+        AppointmentTombstone tombstone = new AppointmentTombstone(appointment, changeSeq, movedAt);
+        tombstone.moved = Boolean.TRUE;
+        return tombstone;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public Long getAppointmentId(){
+        return this.appointmentId;
+    }
+
+    public long getChangeSeq(){
+        return this.changeSeq;
+    }
+
+    public LocalDateTime getDeletedAt(){
+        return this.deletedAt;
+    }
+
+    public String getRoomName(){
+        return this.roomName;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public boolean isMoved(){
+        return Boolean.TRUE.equals(this.moved);
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.demo.entities;
+
+import java.time.LocalDateTime;
+import javax.persistence.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * An appointment that finished before the archive horizon, moved out of the
+ * hot appointment table by the archival job. Keeps the original id, so a
+ * lookup by id falls through to here unchanged.
+ */
+@Entity
+@Table(name = "appointment_archive", indexes = {
+        @Index(name = "idx_appointment_archive_starts_at", columnList = "startsAt"),
+        @Index(name = "idx_appointment_archive_room_starts_at", columnList = "room_id,startsAt")
+})
+public class ArchivedAppointment {
+
+    @Id
+    private long id;
+
+    @ManyToOne
+    @JoinColumn(name = "patient_id", referencedColumnName = "id")
+    private Patient patient;
+
+    @ManyToOne
+    @JoinColumn(name = "doctor_id", referencedColumnName = "id")
+    private Doctor doctor;
+
+    @ManyToOne
+    @JoinColumn(name = "room_id", referencedColumnName = "id")
+    private Room room;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime finishesAt;
+
+    private long changeSeq;
+
+    public ArchivedAppointment(){
+        super();
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public Patient getPatient(){
+        return this.patient;
+    }
+
+    public Doctor getDoctor(){
+        return this.doctor;
+    }
+
+    public Room getRoom(){
+        return this.room;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    public long getChangeSeq(){
+        return this.changeSeq;
+    }
+
+    /** The archived row as a plain (detached) appointment, for reads that merge both tables. */
+    public Appointment toAppointment(){
+        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
+        appointment.setId(id);
+        appointment.setChangeSeq(changeSeq);
+        return appointment;
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.demo.entities;
+
+import java.time.LocalDateTime;
+import javax.persistence.*;
+
+/**
+ * One line of the audit trail: an entity created or deleted (or a whole
+ * type cleared, without entity id), as written by AuditLog to the
+ * audit_log table or file. Rows are only ever appended.
+ */
+@Entity
+@Table(name = "audit_log")
+public class AuditRecord {
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    private long id;
+
+    // Position in the audit log of this process, in publishing order.
+    private long seq;
+
+    private LocalDateTime recordedAt;
+
+    private String action;
+
+    private String entityType;
+
+    private Long entityId;
+
+    private String site;
+
+    public AuditRecord(){
+        super();
+    }
+
+    public AuditRecord(long seq, LocalDateTime recordedAt, String action, String entityType, Long entityId, String site){
+        this.seq = seq;
+        this.recordedAt = recordedAt;
+        this.action = action;
+        this.entityType = entityType;
+        this.entityId = entityId;
+        this.site = site;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public long getSeq(){
+        return this.seq;
+    }
+
+    public LocalDateTime getRecordedAt(){
+        return this.recordedAt;
+    }
+
+    public String getAction(){
+        return this.action;
+    }
+
+    public String getEntityType(){
+        return this.entityType;
+    }
+
+    public Long getEntityId(){
+        return this.entityId;
+    }
+
+    public String getSite(){
+        return this.site;
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.demo.entities;
+
+import java.time.LocalDateTime;
+import javax.persistence.*;
+
+/**
+ * The lowest change number one application instance may still commit in a
+ * site, see {@link com.example.demo.services.ChangeNumbers}. Only its owner
+ * writes the row, and deletes it when it has nothing in flight; a row not
+ * renewed within the lease timeout belongs to an instance that died.
+ */
+@Entity
+@Table(name = "change_lease")
+public class ChangeLease {
+
+    @Id
+    private String owner;
+
+    @Column(name = "low_value", nullable = false)
+    private long low;
+
+    private LocalDateTime renewedAt;
+
+    public ChangeLease(){
+        super();
+    }
+
+    public ChangeLease(String owner, long low, LocalDateTime renewedAt){
+        this.owner = owner;
+        this.low = low;
+        this.renewedAt = renewedAt;
+    }
+
+    public String getOwner(){
+        return this.owner;
+    }
+
+    public long getLow(){
+        return this.low;
+    }
+
+    public LocalDateTime getRenewedAt(){
+        return this.renewedAt;
+    }
+}
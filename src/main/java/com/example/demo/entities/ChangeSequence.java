@@ -0,0 +1,39 @@
+package com.example.demo.entities;
+
+import javax.persistence.*;
+
+/**
+ * A named counter row, changed under a row lock. The "appointments" one is
+ * only advanced a block at a time in a short transaction of its own (see
+ * com.example.demo.services.ChangeNumbers), the others hold watermarks.
+ */
+@Entity
+@Table(name = "change_sequence")
+public class ChangeSequence {
+
+    @Id
+    private String name;
+
+    @Column(name = "next_value", nullable = false)
+    private long value;
+
+    public ChangeSequence(){
+        super();
+    }
+
+    public ChangeSequence(String name){
+        this.name = name;
+    }
+
+    public String getName(){
+        return this.name;
+    }
+
+    public long getValue(){
+        return this.value;
+    }
+
+    public void setValue(long value){
+        this.value = value;
+    }
+}
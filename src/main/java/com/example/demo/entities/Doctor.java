@@ -3,7 +3,10 @@ package com.example.demo.entities;
 import javax.persistence.*;
 
 @Entity
-@Table(name="doctors")
+@Table(name="doctors", indexes = {
+    @Index(name = "idx_doctors_last_name", columnList = "lastName"),
+    @Index(name = "idx_doctors_first_name", columnList = "firstName")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_doctors_email", columnNames = "email"))
 public class Doctor extends Person {
 
     @Id
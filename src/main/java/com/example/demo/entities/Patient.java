@@ -4,8 +4,15 @@ import javax.persistence.Entity;
 import javax.persistence.Id;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import javax.persistence.UniqueConstraint;
 
 @Entity
+@Table(indexes = {
+    @Index(name = "idx_patient_last_name", columnList = "lastName"),
+    @Index(name = "idx_patient_first_name", columnList = "firstName")
+}, uniqueConstraints = @UniqueConstraint(name = "uk_patient_email", columnNames = "email"))
 public class Patient extends Person{
 
     @Id
@@ -1,6 +1,7 @@
 package com.example.demo.entities;
 
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
 
 @MappedSuperclass
 public class Person {
@@ -8,6 +9,9 @@ public class Person {
     private String lastName;
     private int age;
     private String email;
+
+    @Version
+    private long version;
     
     public Person(){
         super();
@@ -42,6 +46,10 @@ public class Person {
         this.age = age;
     }
 
+    public long getVersion(){
+        return this.version;
+    }
+
     public String getEmail(){
         return this.email;
     }
@@ -1,14 +1,27 @@
 package com.example.demo.entities;
 
-import javax.persistence.Entity;
-import javax.persistence.Id;
+import javax.persistence.*;
+
+import com.example.demo.sites.SiteContext;
 
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_room_name", columnNames = "roomName"))
 public class Room {
 
     @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    private long id;
+
+    @Column(nullable = false)
     private String roomName;
 
+    // The site whose database holds the row, stamped on insert.
+    private String site;
+
+    // Bumped by BookingGuard on every booking in the room, so concurrent bookings conflict here instead of waiting on a lock.
+    @Version
+    private long version;
+
     public Room(){
         super();
     }
@@ -18,9 +31,31 @@ public class Room {
         this.roomName = roomName;
     }
 
+    public Room(long id, String roomName){
+        super();
+        this.id = id;
+        this.roomName = roomName;
+    }
+
+    public long getId(){
+        return this.id;
+    }
 
     public String getRoomName(){
         return this.roomName;
     }
 
+    public String getSite(){
+        return this.site;
+    }
+
+    public long getVersion(){
+        return this.version;
+    }
+
+    @PrePersist
+    void stampSite(){
+        this.site = SiteContext.name();
+    }
+
 }
@@ -0,0 +1,99 @@
+package com.example.demo.entities;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import javax.persistence.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * Cancels, or moves to another time, the occurrence of a series that would
+ * start on occurrenceDate.
+ */
+@Entity
+@Table(name = "series_exception", uniqueConstraints = @UniqueConstraint(name = "uk_series_exception",
+        columnNames = {"series_id", "occurrence_date"}))
+public class SeriesException {
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    private long id;
+
+    @JsonIgnore
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "series_id", referencedColumnName = "id")
+    private AppointmentSeries series;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd/MM/yyyy")
+    @Column(name = "occurrence_date", nullable = false)
+    private LocalDate occurrenceDate;
+
+    private boolean cancelled;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime startsAt;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime finishesAt;
+
+    public SeriesException(){
+        super();
+    }
+
+    public static SeriesException cancel(LocalDate occurrenceDate){
+        SeriesException exception = new SeriesException();
+        exception.occurrenceDate = occurrenceDate;
+        exception.cancelled = true;
+        return exception;
+    }
+
+    public static SeriesException move(LocalDate occurrenceDate, LocalDateTime startsAt, LocalDateTime finishesAt){
+        SeriesException exception = new SeriesException();
+        exception.occurrenceDate = occurrenceDate;
+        exception.startsAt = startsAt;
+        exception.finishesAt = finishesAt;
+        return exception;
+    }
+
+    /** A new, unsaved exception for the same date and times. */
+    public SeriesException copy(){
+        SeriesException copy = new SeriesException();
+        copy.occurrenceDate = this.occurrenceDate;
+        copy.cancelled = this.cancelled;
+        copy.startsAt = this.startsAt;
+        copy.finishesAt = this.finishesAt;
+        return copy;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public AppointmentSeries getSeries(){
+        return this.series;
+    }
+    void setSeries(AppointmentSeries series){
+        this.series = series;
+    }
+
+    public LocalDate getOccurrenceDate(){
+        return this.occurrenceDate;
+    }
+
+    public boolean isCancelled(){
+        return this.cancelled;
+    }
+
+    public LocalDateTime getStartsAt(){
+        return this.startsAt;
+    }
+
+    public LocalDateTime getFinishesAt(){
+        return this.finishesAt;
+    }
+
+    @JsonIgnore
+    public boolean isMoved(){
+        return !cancelled && startsAt != null && finishesAt != null;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.entities;
+
+import java.time.LocalDate;
+import javax.persistence.*;
+
+/**
+ * Booked minutes and appointment count of one room or doctor for one day.
+ * Maintained incrementally by the analytics service, see UtilizationAnalytics.
+ */
+@Entity
+@Table(name = "utilization_summary", uniqueConstraints = @UniqueConstraint(name = "uk_utilization_summary",
+        columnNames = {"resource_type", "resource_key", "summary_day"}))
+public class UtilizationSummary {
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    private long id;
+
+    @Column(name = "resource_type", nullable = false, length = 16)
+    private String resourceType;
+
+    @Column(name = "resource_key", nullable = false)
+    private String resourceKey;
+
+    @Column(name = "summary_day", nullable = false)
+    private LocalDate day;
+
+    private long bookedMinutes;
+
+    private long appointments;
+
+    public UtilizationSummary(){
+        super();
+    }
+
+    public UtilizationSummary(String resourceType, String resourceKey, LocalDate day, long bookedMinutes, long appointments){
+        this.resourceType = resourceType;
+        this.resourceKey = resourceKey;
+        this.day = day;
+        this.bookedMinutes = bookedMinutes;
+        this.appointments = appointments;
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public String getResourceType(){
+        return this.resourceType;
+    }
+
+    public String getResourceKey(){
+        return this.resourceKey;
+    }
+
+    public LocalDate getDay(){
+        return this.day;
+    }
+
+    public long getBookedMinutes(){
+        return this.bookedMinutes;
+    }
+    public void setBookedMinutes(long bookedMinutes){
+        this.bookedMinutes = bookedMinutes;
+    }
+
+    public long getAppointments(){
+        return this.appointments;
+    }
+    public void setAppointments(long appointments){
+        this.appointments = appointments;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.demo.entities;
+
+import java.time.LocalDateTime;
+import javax.persistence.*;
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * A patient waiting for a slot: with a given doctor, in a given room, or
+ * both, for durationMinutes anywhere between earliestStart and latestEnd.
+ * When an appointment that frees a matching slot is cancelled, the waiting
+ * request with the highest priority (then the oldest) is booked into it.
+ */
+@Entity
+@Table(name = "waitlist_entry")
+public class WaitlistEntry {
+
+    @Id
+    @GeneratedValue(strategy=GenerationType.AUTO)
+    private long id;
+
+    @ManyToOne
+    @JoinColumn(name = "patient_id", referencedColumnName = "id")
+    private Patient patient;
+
+    // Null: any doctor.
+    @ManyToOne
+    @JoinColumn(name = "doctor_id", referencedColumnName = "id")
+    private Doctor doctor;
+
+    // Null: any room.
+    @ManyToOne
+    @JoinColumn(name = "room_id", referencedColumnName = "id")
+    private Room room;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime earliestStart;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime latestEnd;
+
+    private int durationMinutes;
+
+    // Higher goes first.
+    private int priority;
+
+    @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "HH:mm dd/MM/yyyy")
+    private LocalDateTime createdAt;
+
+    public WaitlistEntry(){
+        super();
+    }
+
+    public WaitlistEntry(Patient patient, Doctor doctor, Room room, LocalDateTime earliestStart, LocalDateTime latestEnd,
+                         int durationMinutes, int priority){
+        this.patient = patient;
+        this.doctor = doctor;
+        this.room = room;
+        this.earliestStart = earliestStart;
+        this.latestEnd = latestEnd;
+        this.durationMinutes = durationMinutes;
+        this.priority = priority;
+    }
+
+    @PrePersist
+    void stampCreatedAt(){
+        if (this.createdAt == null){
+            this.createdAt = LocalDateTime.now();
+        }
+    }
+
+    public long getId(){
+        return this.id;
+    }
+
+    public Patient getPatient(){
+        return this.patient;
+    }
+
+    public Doctor getDoctor(){
+        return this.doctor;
+    }
+
+    public Room getRoom(){
+        return this.room;
+    }
+
+    public LocalDateTime getEarliestStart(){
+        return this.earliestStart;
+    }
+
+    public LocalDateTime getLatestEnd(){
+        return this.latestEnd;
+    }
+
+    public int getDurationMinutes(){
+        return this.durationMinutes;
+    }
+
+    public int getPriority(){
+        return this.priority;
+    }
+
+    public LocalDateTime getCreatedAt(){
+        return this.createdAt;
+    }
+}
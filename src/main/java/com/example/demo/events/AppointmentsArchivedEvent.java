@@ -0,0 +1,43 @@
+package com.example.demo.events;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import com.example.demo.sites.SiteContext;
+
+/**
+ * Published by the archival job after a chunk of appointments moved from the
+ * hot table to appointment_archive. It is not a deletion: the appointments
+ * still exist, only views built from the hot table (for conflict checks)
+ * drop them. Like {@link EntityChangeEvent} it remembers its site.
+ */
+public class AppointmentsArchivedEvent {
+
+    private final List<Long> ids;
+    private final LocalDateTime before;
+    private final String site;
+
+    public AppointmentsArchivedEvent(List<Long> ids, LocalDateTime before){
+        this.ids = ids;
+        this.before = before;
+        this.site = SiteContext.name();
+    }
+
+    /** Ids of the appointments moved. */
+    public List<Long> getIds(){
+        return this.ids;
+    }
+
+    /** The archive horizon: every appointment finished before it has moved, or is about to. */
+    public LocalDateTime getBefore(){
+        return this.before;
+    }
+
+    public String getSite(){
+        return this.site;
+    }
+
+    public boolean isDefaultSite(){
+        return this.site.equals(SiteContext.getDefault());
+    }
+}
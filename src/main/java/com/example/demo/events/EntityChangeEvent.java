@@ -0,0 +1,63 @@
+package com.example.demo.events;
+
+import com.example.demo.sites.SiteContext;
+
+/**
+ * Published by the controllers (and bulk writers) after an entity has been
+ * created or deleted, so in-memory views of the data can follow along.
+ * CLEARED is used for the "delete all" endpoints and carries no entity.
+ * The event remembers the site it was published for; the in-memory views
+ * only follow the default site.
+ */
+public class EntityChangeEvent {
+
+    public enum Kind { CREATED, DELETED, CLEARED }
+
+    private final Kind kind;
+    private final Class<?> entityType;
+    private final Object entity;
+    private final String site;
+
+    private EntityChangeEvent(Kind kind, Class<?> entityType, Object entity){
+        this.kind = kind;
+        this.entityType = entityType;
+        this.entity = entity;
+        this.site = SiteContext.name();
+    }
+
+    public static EntityChangeEvent created(Object entity){
+        return new EntityChangeEvent(Kind.CREATED, entity.getClass(), entity);
+    }
+
+    public static EntityChangeEvent deleted(Object entity){
+        return new EntityChangeEvent(Kind.DELETED, entity.getClass(), entity);
+    }
+
+    public static EntityChangeEvent cleared(Class<?> entityType){
+        return new EntityChangeEvent(Kind.CLEARED, entityType, null);
+    }
+
+    public Kind getKind(){
+        return this.kind;
+    }
+
+    public Class<?> getEntityType(){
+        return this.entityType;
+    }
+
+    public Object getEntity(){
+        return this.entity;
+    }
+
+    public String getSite(){
+        return this.site;
+    }
+
+    public boolean isDefaultSite(){
+        return this.site.equals(SiteContext.getDefault());
+    }
+
+    public boolean isAbout(Class<?> type){
+        return type.isAssignableFrom(this.entityType);
+    }
+}
@@ -1,14 +1,79 @@
 
 package com.example.demo.repositories;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 import com.example.demo.entities.Appointment;
+import com.example.demo.entities.AppointmentSummary;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface AppointmentRepository extends JpaRepository<Appointment, Long> {
+    // Patient, doctor and room are lazy; finders whose results leave the transaction
+    // (single reads, the change feed, in-memory views, archive copies) fetch them in the
+    // same query. Listings read the summaries below instead.
+    @EntityGraph(Appointment.FULL)
     List<Appointment> findAll();
+    @EntityGraph(Appointment.FULL)
+    Optional<Appointment> findById(Long id);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findAllById(Iterable<Long> ids);
     Appointment save(Appointment appointment);
     void delete(Appointment appointment);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByIdGreaterThan(long id, Pageable pageable);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByIdBetween(long from, long to);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByDoctorIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(long doctorId, LocalDateTime end, LocalDateTime start);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByRoomIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(long roomId, LocalDateTime end, LocalDateTime start);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByRoomIdAndStartsAtAfterOrderByStartsAtAscIdAsc(long roomId, LocalDateTime after);
+    boolean existsByRoomIdAndStartsAtBeforeAndFinishesAtAfter(long roomId, LocalDateTime end, LocalDateTime start);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByStartsAtBeforeAndFinishesAtAfter(LocalDateTime end, LocalDateTime start);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByChangeSeqGreaterThanOrderByChangeSeq(long changeSeq, Pageable pageable);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByChangeSeqBetweenOrderByChangeSeq(long from, long to, Pageable pageable);
+    @EntityGraph(Appointment.FULL)
+    List<Appointment> findByRoomRoomNameAndStartsAtBeforeAndFinishesAtAfter(String roomName, LocalDateTime end, LocalDateTime start);
+
+    @Query("select new com.example.demo.entities.AppointmentSummary(a.id, a.patient.id, a.doctor.id, a.room.id, a.startsAt, a.finishesAt)"
+            + " from Appointment a order by a.startsAt, a.id")
+    List<AppointmentSummary> findAllSummaries();
+
+    @Query("select new com.example.demo.entities.AppointmentSummary(a.id, a.patient.id, a.doctor.id, a.room.id, a.startsAt, a.finishesAt)"
+            + " from Appointment a where a.startsAt < :end and a.finishesAt > :start order by a.startsAt, a.id")
+    List<AppointmentSummary> findSummariesBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("select new com.example.demo.entities.AppointmentSummary(a.id, a.patient.id, a.doctor.id, a.room.id, a.startsAt, a.finishesAt)"
+            + " from Appointment a where a.id in :ids")
+    List<AppointmentSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select a.id from Appointment a where a.finishesAt < :before order by a.id")
+    List<Long> findIdsFinishedBefore(@Param("before") LocalDateTime before, Pageable pageable);
+
+    @Query("select min(a.id) from Appointment a")
+    Long findMinId();
+
+    @Query("select max(a.id) from Appointment a")
+    Long findMaxId();
+
+    @Modifying
+    @Query("update Appointment a set a.changeSeq = a.id where a.changeSeq = 0")
+    int backfillChangeSeq();
+
+    @Modifying
+    @Query("delete from Appointment a where a.id in :ids")
+    int deleteByIdIn(@Param("ids") List<Long> ids);
 }
@@ -0,0 +1,21 @@
+package com.example.demo.repositories;
+
+import java.util.List;
+import java.util.Optional;
+
+import com.example.demo.entities.AppointmentSeries;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AppointmentSeriesRepository extends JpaRepository<AppointmentSeries, Long> {
+    @Query("select distinct s from AppointmentSeries s left join fetch s.exceptions")
+    List<AppointmentSeries> findAllWithExceptions();
+
+    @Query("select distinct s from AppointmentSeries s left join fetch s.exceptions where s.id = :id")
+    Optional<AppointmentSeries> findWithExceptions(@Param("id") long id);
+
+    @Query("select distinct s from AppointmentSeries s left join fetch s.exceptions where s.room.id = :roomId")
+    List<AppointmentSeries> findByRoomIdWithExceptions(@Param("roomId") long roomId);
+}
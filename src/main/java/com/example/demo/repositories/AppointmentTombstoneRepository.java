@@ -0,0 +1,27 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import com.example.demo.entities.AppointmentTombstone;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface AppointmentTombstoneRepository extends JpaRepository<AppointmentTombstone, Long> {
+    List<AppointmentTombstone> findByChangeSeqGreaterThanOrderByChangeSeq(long changeSeq, Pageable pageable);
+    Optional<AppointmentTombstone> findFirstByAppointmentIdIsNullAndChangeSeqGreaterThanOrderByChangeSeqDesc(long changeSeq);
+    List<AppointmentTombstone> findByChangeSeqBetweenOrderByChangeSeq(long from, long to, Pageable pageable);
+    Optional<AppointmentTombstone> findFirstByAppointmentIdIsNullAndChangeSeqBetweenOrderByChangeSeqDesc(long from, long to);
+
+    @Query("select max(t.changeSeq) from AppointmentTombstone t where t.deletedAt < :before")
+    Long findMaxChangeSeqDeletedBefore(@Param("before") LocalDateTime before);
+
+    @Modifying
+    @Query("delete from AppointmentTombstone t where t.changeSeq <= :changeSeq")
+    int deleteUpTo(@Param("changeSeq") long changeSeq);
+}
@@ -0,0 +1,48 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+import com.example.demo.entities.AppointmentSummary;
+import com.example.demo.entities.ArchivedAppointment;
+
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ArchivedAppointmentRepository extends JpaRepository<ArchivedAppointment, Long> {
+    // Patient, doctor and room in the same query, not one select each.
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    List<ArchivedAppointment> findAllById(Iterable<Long> ids);
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    List<ArchivedAppointment> findByStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(LocalDateTime end, LocalDateTime start);
+    List<ArchivedAppointment> findByRoomIdAndStartsAtBeforeAndFinishesAtAfter(long roomId, LocalDateTime end, LocalDateTime start);
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    List<ArchivedAppointment> findByDoctorIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(long doctorId, LocalDateTime end, LocalDateTime start);
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    List<ArchivedAppointment> findByRoomIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(long roomId, LocalDateTime end, LocalDateTime start);
+    @EntityGraph(attributePaths = {"patient", "doctor", "room"})
+    List<ArchivedAppointment> findByIdBetween(long from, long to);
+
+    @Query("select new com.example.demo.entities.AppointmentSummary(a.id, a.patient.id, a.doctor.id, a.room.id, a.startsAt, a.finishesAt)"
+            + " from ArchivedAppointment a where a.startsAt < :end and a.finishesAt > :start order by a.startsAt, a.id")
+    List<AppointmentSummary> findSummariesBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    @Query("select new com.example.demo.entities.AppointmentSummary(a.id, a.patient.id, a.doctor.id, a.room.id, a.startsAt, a.finishesAt)"
+            + " from ArchivedAppointment a where a.id in :ids")
+    List<AppointmentSummary> findSummariesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select min(a.id) from ArchivedAppointment a")
+    Long findMinId();
+
+    @Query("select max(a.id) from ArchivedAppointment a")
+    Long findMaxId();
+
+    @Modifying
+    @Query("insert into ArchivedAppointment (id, patient, doctor, room, startsAt, finishesAt, changeSeq)"
+            + " select a.id, a.patient, a.doctor, a.room, a.startsAt, a.finishesAt, a.changeSeq from Appointment a where a.id in :ids")
+    int copyFromAppointments(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,11 @@
+package com.example.demo.repositories;
+
+import java.util.List;
+
+import com.example.demo.entities.AuditRecord;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface AuditRecordRepository extends JpaRepository<AuditRecord, Long> {
+    List<AuditRecord> findAllByOrderBySeq();
+}
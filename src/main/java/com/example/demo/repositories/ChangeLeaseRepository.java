@@ -0,0 +1,14 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDateTime;
+
+import com.example.demo.entities.ChangeLease;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ChangeLeaseRepository extends JpaRepository<ChangeLease, String> {
+    @Query("select min(l.low) from ChangeLease l where l.owner <> :owner and l.renewedAt > :since")
+    Long findLowestOfOthers(@Param("owner") String owner, @Param("since") LocalDateTime since);
+}
@@ -0,0 +1,32 @@
+package com.example.demo.repositories;
+
+import java.util.Optional;
+
+import javax.persistence.LockModeType;
+
+import com.example.demo.entities.ChangeSequence;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+public interface ChangeSequenceRepository extends JpaRepository<ChangeSequence, String> {
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from ChangeSequence s where s.name = :name")
+    Optional<ChangeSequence> lockByName(@Param("name") String name);
+
+    // A scalar read, not served from the persistence context of a longer transaction.
+    @Query("select s.value from ChangeSequence s where s.name = :name")
+    Optional<Long> findValueByName(@Param("name") String name);
+
+    /** The row locked for the rest of the transaction, created at 0 the first time. */
+    default ChangeSequence lockOrCreate(String name){
+        Optional<ChangeSequence> sequence = lockByName(name);
+        if (sequence.isPresent()){
+            return sequence.get();
+        }
+        saveAndFlush(new ChangeSequence(name));
+        return lockByName(name).get();
+    }
+}
@@ -1,13 +1,32 @@
 package com.example.demo.repositories;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import com.example.demo.entities.Doctor;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
     List<Doctor> findAll();
     Doctor save(Doctor doc);
     void delete(Doctor doc);
+    Optional<Doctor> findByEmail(String email);
+    List<Doctor> findByIdGreaterThan(long id, Pageable pageable);
+
+    // % and _ in the prefix match themselves: escaped, with the escape character bound as a parameter.
+    @Query("select d from Doctor d where d.lastName like ?#{escape([0])}% escape ?#{escapeCharacter()}"
+            + " or d.firstName like ?#{escape([0])}% escape ?#{escapeCharacter()}"
+            + " or d.email like ?#{escape([0])}% escape ?#{escapeCharacter()}")
+    List<Doctor> findByNameOrEmailPrefix(String prefix, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("select d.email from Doctor d")
+    Stream<String> streamAllEmails();
 }
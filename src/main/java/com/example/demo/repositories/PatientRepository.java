@@ -2,13 +2,32 @@
 package com.example.demo.repositories;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import javax.persistence.QueryHint;
 
 import com.example.demo.entities.Patient;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 public interface PatientRepository extends JpaRepository<Patient, Long> {
     List<Patient> findAll();
     Patient save(Patient doc);
     void delete(Patient doc);
+    Optional<Patient> findByEmail(String email);
+    List<Patient> findByIdGreaterThan(long id, Pageable pageable);
+
+    // % and _ in the prefix match themselves: escaped, with the escape character bound as a parameter.
+    @Query("select p from Patient p where p.lastName like ?#{escape([0])}% escape ?#{escapeCharacter()}"
+            + " or p.firstName like ?#{escape([0])}% escape ?#{escapeCharacter()}"
+            + " or p.email like ?#{escape([0])}% escape ?#{escapeCharacter()}")
+    List<Patient> findByNameOrEmailPrefix(String prefix, Pageable pageable);
+
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "1000"))
+    @Query("select p.email from Patient p")
+    Stream<String> streamAllEmails();
 }
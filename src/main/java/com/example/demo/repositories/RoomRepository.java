@@ -7,6 +7,9 @@ import java.util.Optional;
 import com.example.demo.entities.Room;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface RoomRepository extends JpaRepository<Room, Long> {
     List<Room> findAll();
@@ -14,4 +17,12 @@ public interface RoomRepository extends JpaRepository<Room, Long> {
     Room save(Room room);
     void delete(Room room);
     void deleteByRoomName(String roomName);
+
+    @Query("select r.version from Room r where r.id = :id")
+    Optional<Long> findVersionById(@Param("id") long id);
+
+    /** Compare-and-set on the version column, 0 when another transaction bumped it first. */
+    @Modifying
+    @Query("update Room r set r.version = r.version + 1 where r.id = :id and r.version = :version")
+    int bumpVersion(@Param("id") long id, @Param("version") long version);
 }
@@ -0,0 +1,14 @@
+package com.example.demo.repositories;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import com.example.demo.entities.UtilizationSummary;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface UtilizationSummaryRepository extends JpaRepository<UtilizationSummary, Long> {
+    List<UtilizationSummary> findAll();
+    Optional<UtilizationSummary> findByResourceTypeAndResourceKeyAndDay(String resourceType, String resourceKey, LocalDate day);
+}
@@ -0,0 +1,11 @@
+package com.example.demo.repositories;
+
+import java.util.List;
+
+import com.example.demo.entities.WaitlistEntry;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface WaitlistEntryRepository extends JpaRepository<WaitlistEntry, Long> {
+    List<WaitlistEntry> findAllByOrderByPriorityDescCreatedAtAscIdAsc();
+}
@@ -0,0 +1,214 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.events.AppointmentsArchivedEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Hot/cold split of the appointment table.
+ *
+ * The archival job moves appointments that finished more than horizon-days
+ * ago into appointment_archive, chunk-size rows per transaction (insert-select
+ * then delete by id, nothing is loaded into memory). Everything the booking
+ * path and the calendars touch stays in the small hot table.
+ *
+ * The archived-before watermark is stored before any row moves, so a range
+ * read starting before it looks in both tables, and a range starting after it
+ * never touches the archive. Archival is not a deletion: no tombstones or
+ * change events are written, delta sync clients keep the rows they have. A
+ * deleted event would take the bookings out of UtilizationAnalytics' history
+ * and show them as deleted in the change feed. Each chunk publishes an
+ * {@link AppointmentsArchivedEvent} instead, on which the views built from
+ * the hot table for conflict checks drop the rows; a booking in the archived
+ * past is checked against the archive by {@link #conflicts(Appointment)}.
+ * Calendars and analytics read both tables.
+ */
+@Service
+public class AppointmentArchive {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentArchive.class);
+
+    static final String WATERMARK = "appointments-archived-before";
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    ArchivedAppointmentRepository archiveRepository;
+
+    @Autowired
+    ChangeSequenceRepository sequenceRepository;
+
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Value("${techhub.archive.horizon-days:90}")
+    int horizonDays;
+
+    @Value("${techhub.archive.chunk-size:1000}")
+    int chunkSize;
+
+    // Start of the first day that is still entirely in the hot table, null until anything is archived.
+    private volatile LocalDateTime archivedBefore;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        archivedBefore = sequenceRepository.findById(WATERMARK)
+                .filter(watermark -> watermark.getValue() > 0)
+                .map(watermark -> LocalDateTime.ofEpochSecond(watermark.getValue() * 60, 0, ZoneOffset.UTC))
+                .orElse(null);
+    }
+
+    @Scheduled(cron = "${techhub.archive.cron:0 0 4 * * *}")
+    public void archive(){
+        archiveBefore(LocalDate.now().minusDays(horizonDays).atStartOfDay());
+    }
+
+    /** Moves every appointment finishing before the given time to the archive. Returns how many moved. */
+    public synchronized long archiveBefore(LocalDateTime horizon){
+        if (archivedBefore == null || horizon.isAfter(archivedBefore)){
+            transactionTemplate.executeWithoutResult(status -> {
+                ChangeSequence watermark = sequenceRepository.findById(WATERMARK).orElseGet(() -> new ChangeSequence(WATERMARK));
+                watermark.setValue(horizon.toEpochSecond(ZoneOffset.UTC) / 60);
+                sequenceRepository.save(watermark);
+            });
+            archivedBefore = horizon;
+        }
+
+        long moved = 0;
+        List<Long> chunk;
+        do {
+            chunk = transactionTemplate.execute(status -> {
+                List<Long> ids = appointmentRepository.findIdsFinishedBefore(horizon, PageRequest.of(0, chunkSize));
+                if (!ids.isEmpty()){
+                    archiveRepository.copyFromAppointments(ids);
+                    appointmentRepository.deleteByIdIn(ids);
+                }
+                return ids;
+            });
+            if (!chunk.isEmpty()){
+                eventPublisher.publishEvent(new AppointmentsArchivedEvent(chunk, horizon));
+            }
+            moved += chunk.size();
+        } while (chunk.size() == chunkSize);
+
+        if (moved > 0){
+            log.info("Archived {} appointments finished before {}", moved, horizon);
+        }
+        return moved;
+    }
+
+    public LocalDateTime getArchivedBefore(){
+        return this.archivedBefore;
+    }
+
+    /** Whether a read of a range starting at from has to look in the archive. */
+    public boolean covers(LocalDateTime from){
+        LocalDateTime watermark = archivedBefore;
+        return watermark != null && from.isBefore(watermark);
+    }
+
+    /** Appointments overlapping [from, to) from the hot table, and from the archive only when the range reaches into it. */
+    public List<Appointment> find(LocalDateTime from, LocalDateTime to){
+        return merge(appointmentRepository.findByStartsAtBeforeAndFinishesAtAfter(to, from), from,
+                () -> archiveRepository.findByStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(to, from));
+    }
+
+    /** A doctor's appointments overlapping [from, to), read like {@link #find(LocalDateTime, LocalDateTime)}. */
+    public List<Appointment> findByDoctor(long doctorId, LocalDateTime from, LocalDateTime to){
+        return merge(appointmentRepository.findByDoctorIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(doctorId, to, from), from,
+                () -> archiveRepository.findByDoctorIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(doctorId, to, from));
+    }
+
+    /** A room's appointments overlapping [from, to), read like {@link #find(LocalDateTime, LocalDateTime)}. */
+    public List<Appointment> findByRoom(long roomId, LocalDateTime from, LocalDateTime to){
+        return merge(appointmentRepository.findByRoomIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(roomId, to, from), from,
+                () -> archiveRepository.findByRoomIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(roomId, to, from));
+    }
+
+    private List<Appointment> merge(List<Appointment> hot, LocalDateTime from, Supplier<List<ArchivedAppointment>> archive){
+        List<Appointment> appointments = new ArrayList<>(hot);
+        if (covers(from)){
+            for (ArchivedAppointment archived : archive.get()){
+                appointments.add(archived.toAppointment());
+            }
+        }
+        appointments.sort(Comparator.comparing(Appointment::getStartsAt).thenComparingLong(Appointment::getId));
+        return appointments;
+    }
+
+    /** Summaries of the appointments overlapping [from, to), read like {@link #find(LocalDateTime, LocalDateTime)}. */
+    public List<AppointmentSummary> findSummaries(LocalDateTime from, LocalDateTime to){
+        List<AppointmentSummary> summaries = new ArrayList<>(appointmentRepository.findSummariesBetween(from, to));
+        if (covers(from)){
+            summaries.addAll(archiveRepository.findSummariesBetween(from, to));
+            summaries.sort(Comparator.comparing(AppointmentSummary::getStartsAt).thenComparingLong(AppointmentSummary::getId));
+        }
+        return summaries;
+    }
+
+    /** Looks up an id that is no longer in the hot table. */
+    public Optional<Appointment> findArchived(long id){
+        if (archivedBefore == null){
+            return Optional.empty();
+        }
+        return archiveRepository.findById(id).map(ArchivedAppointment::toAppointment);
+    }
+
+    /** Looks up ids that are no longer in the hot table, in one query. */
+    public List<Appointment> findArchived(List<Long> ids){
+        List<Appointment> appointments = new ArrayList<>();
+        if (archivedBefore == null || ids.isEmpty()){
+            return appointments;
+        }
+        for (ArchivedAppointment archived : archiveRepository.findAllById(ids)){
+            appointments.add(archived.toAppointment());
+        }
+        return appointments;
+    }
+
+    /** Summaries of ids that are no longer in the hot table, in one query. */
+    public List<AppointmentSummary> findArchivedSummaries(List<Long> ids){
+        if (archivedBefore == null || ids.isEmpty()){
+            return new ArrayList<>();
+        }
+        return archiveRepository.findSummariesByIdIn(ids);
+    }
+
+    /** Whether a booking in the archived past would overlap an archived appointment in its room. */
+    public boolean conflicts(Appointment appointment){
+        if (!covers(appointment.getStartsAt())){
+            return false;
+        }
+        Optional<Long> roomId = roomDirectory.idOf(appointment.getRoom().getRoomName());
+        return roomId.isPresent() && !archiveRepository.findByRoomIdAndStartsAtBeforeAndFinishesAtAfter(
+                roomId.get(), appointment.getFinishesAt(), appointment.getStartsAt()).isEmpty();
+    }
+}
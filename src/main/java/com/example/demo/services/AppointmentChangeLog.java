@@ -0,0 +1,338 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToLongFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Appointment writes that delta sync clients can follow.
+ *
+ * Every insert stamps the row with a number from {@link ChangeNumbers}, and
+ * every delete leaves a tombstone with its own number. Numbers are handed out
+ * from per-instance blocks and commit out of order, so a sync only reads up
+ * to the safe point, below which every number has committed or never will: a
+ * client that has seen up to N never misses a change numbered below N later.
+ * A sync is then two index range scans from the client's token.
+ *
+ * Tombstones older than the retention period are pruned; a client whose
+ * token predates the pruning gets a full reload.
+ *
+ * Inserts go through {@link BookingGuard} first, so an overlapping booking
+ * made by another instance fails with a SlotTakenException. A booking that
+ * raced another one for the same room is run again by {@link RetryPolicy},
+ * which then finds the other booking, or the slot still free.
+ *
+ * The callers announce the appointments they saved. Rooms, patients and
+ * doctors a booking inserted along with it are announced here, with an
+ * {@link EntityChangeEvent} published once the transaction has committed.
+ */
+@Service
+public class AppointmentChangeLog {
+
+    static final String SEQUENCE = "appointments";
+    static final String PRUNED = "appointment-tombstones-pruned";
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    AppointmentTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    ChangeSequenceRepository sequenceRepository;
+
+    @Autowired
+    ChangeNumbers changeNumbers;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @Autowired
+    BookingGuard bookingGuard;
+
+    @Autowired
+    RetryPolicy retryPolicy;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Value("${techhub.sync.tombstone-retention-days:30}")
+    int retentionDays;
+
+    /** Appointments from before the change sequence existed all have 0, number them once by id. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfill(){
+        transactionTemplate.executeWithoutResult(status -> {
+            ChangeSequence sequence = sequenceRepository.lockOrCreate(SEQUENCE);
+            if (appointmentRepository.backfillChangeSeq() > 0){
+                Long maxId = appointmentRepository.findMaxId();
+                sequence.setValue(Math.max(sequence.getValue(), maxId != null ? maxId : 0));
+                sequenceRepository.save(sequence);
+            }
+        });
+    }
+
+    public Appointment save(Appointment appointment){
+        // Every attempt resolves the room as given, a room created by a rolled back attempt is gone.
+        Room requested = appointment.getRoom();
+        return retryPolicy.execute("appointment.save", () -> transactionTemplate.execute(status -> {
+            List<Object> created = new ArrayList<>();
+            appointment.setRoom(roomDirectory.resolve(requested, created));
+            attachParties(appointment, created);
+            bookingGuard.claim(Collections.singletonList(appointment));
+            appointment.setChangeSeq(changeNumbers.take(1));
+            Appointment saved = appointmentRepository.save(appointment);
+            announceOnCommit(created);
+            return saved;
+        }));
+    }
+
+    /** Inserts the whole batch in one transaction, one commit for all of them. */
+    public List<Appointment> saveAll(List<Appointment> appointments){
+        List<Room> requested = new ArrayList<>();
+        for (Appointment appointment : appointments){
+            requested.add(appointment.getRoom());
+        }
+        return retryPolicy.execute("appointment.save_all", () -> transactionTemplate.execute(status -> {
+            List<Object> created = new ArrayList<>();
+            for (int i = 0; i < appointments.size(); i++){
+                appointments.get(i).setRoom(roomDirectory.resolve(requested.get(i), created));
+                attachParties(appointments.get(i), created);
+            }
+            bookingGuard.claim(appointments);
+            long seq = changeNumbers.take(appointments.size());
+            for (Appointment appointment : appointments){
+                appointment.setChangeSeq(seq++);
+            }
+            List<Appointment> saved = appointmentRepository.saveAll(appointments);
+            announceOnCommit(created);
+            return saved;
+        }));
+    }
+
+    /**
+     * Moves appointments.get(i) to rooms.get(i), all in one transaction: the
+     * target rooms are claimed like a batch of bookings, and every moved row
+     * gets a new change sequence value so sync clients pick up its new room.
+     * Each move also leaves a moved tombstone with the old room and times,
+     * numbered just before the row, so a snapshot replay reloads the old room.
+     * Not retried here, the caller plans and moves in one retried transaction.
+     */
+    public List<Appointment> moveAll(List<Appointment> appointments, List<Room> rooms){
+        return transactionTemplate.execute(status -> {
+            List<Appointment> moved = new ArrayList<>();
+            for (int i = 0; i < appointments.size(); i++){
+                Appointment appointment = appointments.get(i);
+                moved.add(new Appointment(appointment.getPatient(), appointment.getDoctor(), rooms.get(i),
+                        appointment.getStartsAt(), appointment.getFinishesAt()));
+            }
+            // Checked as new rows, the appointments still sit in their old rooms.
+            bookingGuard.claim(moved);
+            long seq = changeNumbers.take(2 * appointments.size());
+            LocalDateTime now = LocalDateTime.now();
+            List<AppointmentTombstone> left = new ArrayList<>();
+            for (int i = 0; i < appointments.size(); i++){
+                // The room left behind, then the row in its new one.
+                left.add(AppointmentTombstone.moved(appointments.get(i), seq++, now));
+                appointments.get(i).setRoom(rooms.get(i));
+                appointments.get(i).setChangeSeq(seq++);
+            }
+            tombstoneRepository.saveAll(left);
+            return appointmentRepository.saveAll(appointments);
+        });
+    }
+
+    // A patient or doctor given with an id is a stored one: the new row joins to it instead of inserting it again.
+    private void attachParties(Appointment appointment, List<Object> created){
+        appointment.setPatient(attach(appointment.getPatient(), Patient::getId, patientRepository, created));
+        appointment.setDoctor(attach(appointment.getDoctor(), Doctor::getId, doctorRepository, created));
+    }
+
+    // Any other one is inserted by the cascade along with the appointment, and goes into created (once per instance).
+    private static <T> T attach(T party, ToLongFunction<T> id, JpaRepository<T, Long> repository, List<Object> created){
+        if (party == null){
+            return null;
+        }
+        if (id.applyAsLong(party) != 0){
+            Optional<T> stored = repository.findById(id.applyAsLong(party));
+            if (stored.isPresent()){
+                return stored.get();
+            }
+        }
+        for (Object seen : created){
+            if (seen == party){
+                return party;
+            }
+        }
+        created.add(party);
+        return party;
+    }
+
+    private void announceOnCommit(List<Object> created){
+        if (created.isEmpty()){
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization(){
+            @Override
+            public void afterCommit(){
+                for (Object entity : created){
+                    eventPublisher.publishEvent(EntityChangeEvent.created(entity));
+                }
+            }
+        });
+    }
+
+    public void delete(Appointment appointment){
+        transactionTemplate.executeWithoutResult(status -> {
+            long seq = changeNumbers.take(1);
+            appointmentRepository.deleteById(appointment.getId());
+            tombstoneRepository.save(new AppointmentTombstone(appointment, seq, LocalDateTime.now()));
+        });
+    }
+
+    public void deleteAll(){
+        transactionTemplate.executeWithoutResult(status -> {
+            long seq = changeNumbers.take(1);
+            // One bulk delete, the tombstone stands for every row.
+            appointmentRepository.deleteAllInBatch();
+            tombstoneRepository.save(new AppointmentTombstone((Long) null, seq, LocalDateTime.now()));
+        });
+    }
+
+    /**
+     * Up to limit changes after the token, in change order. Without a token,
+     * or when the client has to start over, every current appointment is
+     * returned (in pages) and the change set is flagged as a reset. Nothing
+     * past the safe point is returned, it may still have gaps.
+     */
+    public ChangeSet changes(Long since, int limit){
+        return transactionTemplate.execute(status -> {
+            long safePoint = changeNumbers.safePoint();
+            long pruned = sequenceRepository.findById(PRUNED).map(ChangeSequence::getValue).orElse(0L);
+            boolean reset = since == null || since < pruned;
+            long from = reset ? -1 : since;
+
+            if (!reset){
+                Optional<AppointmentTombstone> cleared = tombstoneRepository
+                        .findFirstByAppointmentIdIsNullAndChangeSeqBetweenOrderByChangeSeqDesc(from + 1, safePoint);
+                if (cleared.isPresent()){
+                    reset = true;
+                    from = cleared.get().getChangeSeq();
+                }
+            }
+
+            List<Appointment> appointments = appointmentRepository.findByChangeSeqBetweenOrderByChangeSeq(from + 1, safePoint, PageRequest.of(0, limit + 1));
+            List<AppointmentTombstone> tombstones = reset && from < 0 ? Collections.emptyList()
+                    : tombstoneRepository.findByChangeSeqBetweenOrderByChangeSeq(from + 1, safePoint, PageRequest.of(0, limit + 1));
+
+            List<Appointment> changed = new ArrayList<>();
+            List<Long> deleted = new ArrayList<>();
+            long token = from;
+            int a = 0;
+            int t = 0;
+            while (a + t < limit && (a < appointments.size() || t < tombstones.size())){
+                boolean takeAppointment = t >= tombstones.size()
+                        || (a < appointments.size() && appointments.get(a).getChangeSeq() < tombstones.get(t).getChangeSeq());
+                if (takeAppointment){
+                    Appointment appointment = appointments.get(a++);
+                    changed.add(appointment);
+                    token = appointment.getChangeSeq();
+                } else {
+                    AppointmentTombstone tombstone = tombstones.get(t++);
+                    if (tombstone.getAppointmentId() != null && !tombstone.isMoved()){
+                        deleted.add(tombstone.getAppointmentId());
+                    }
+                    token = tombstone.getChangeSeq();
+                }
+            }
+            boolean hasMore = a < appointments.size() || t < tombstones.size();
+            if (a == 0 && t == 0){
+                token = Math.max(token, safePoint);
+            }
+            return new ChangeSet(String.valueOf(token), reset, changed, deleted, hasMore);
+        });
+    }
+
+    @Scheduled(cron = "${techhub.sync.prune-cron:0 30 3 * * *}")
+    public void prune(){
+        transactionTemplate.executeWithoutResult(status -> {
+            Long upTo = tombstoneRepository.findMaxChangeSeqDeletedBefore(LocalDateTime.now().minusDays(retentionDays));
+            if (upTo == null){
+                return;
+            }
+            ChangeSequence pruned = sequenceRepository.lockOrCreate(PRUNED);
+            pruned.setValue(Math.max(pruned.getValue(), upTo));
+            sequenceRepository.save(pruned);
+            tombstoneRepository.deleteUpTo(upTo);
+        });
+    }
+
+    public static class ChangeSet {
+        private final String token;
+        private final boolean reset;
+        private final List<Appointment> appointments;
+        private final List<Long> deleted;
+        private final boolean hasMore;
+
+        public ChangeSet(String token, boolean reset, List<Appointment> appointments, List<Long> deleted, boolean hasMore){
+            this.token = token;
+            this.reset = reset;
+            this.appointments = appointments;
+            this.deleted = deleted;
+            this.hasMore = hasMore;
+        }
+
+        /** Pass back as ?since= on the next sync. */
+        public String getToken(){
+            return this.token;
+        }
+
+        /** True when the client must drop what it has and rebuild from this and the following pages. */
+        public boolean isReset(){
+            return this.reset;
+        }
+
+        /** Created or updated since the token. */
+        public List<Appointment> getAppointments(){
+            return this.appointments;
+        }
+
+        /** Ids of appointments deleted since the token. */
+        public List<Long> getDeleted(){
+            return this.deleted;
+        }
+
+        public boolean isHasMore(){
+            return this.hasMore;
+        }
+    }
+}
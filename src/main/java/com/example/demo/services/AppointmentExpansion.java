@@ -0,0 +1,99 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Component;
+
+/**
+ * ?expand= on the appointment listings (?expand=patient,doctor,room).
+ *
+ * A listing answers with {@link AppointmentSummary} rows, ids and times read
+ * from the appointment table alone. Each party named in expand is then loaded
+ * once for all the distinct ids in the rows, one IN query per batch-size ids,
+ * and set on the rows next to its id. Nothing is expanded unless asked for.
+ */
+@Component
+public class AppointmentExpansion {
+
+    public enum Party { PATIENT, DOCTOR, ROOM }
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Value("${techhub.multi-get.batch-size:500}")
+    int batchSize;
+
+    /** The parties named in expand, none for null. Throws IllegalArgumentException for any other name. */
+    public Set<Party> parse(String expand){
+        Set<Party> parties = EnumSet.noneOf(Party.class);
+        if (expand == null){
+            return parties;
+        }
+        for (String name : expand.split(",")){
+            try {
+                parties.add(Party.valueOf(name.trim().toUpperCase()));
+            } catch (IllegalArgumentException e){
+                throw new IllegalArgumentException("Cannot expand " + name.trim());
+            }
+        }
+        return parties;
+    }
+
+    /** Sets the given parties on the summaries and returns them. Runs on the site the summaries were read from. */
+    public List<AppointmentSummary> expand(List<AppointmentSummary> summaries, Set<Party> parties){
+        if (parties.contains(Party.PATIENT)){
+            fill(summaries, AppointmentSummary::getPatientId, patientRepository, Patient::getId, AppointmentSummary::setPatient);
+        }
+        if (parties.contains(Party.DOCTOR)){
+            fill(summaries, AppointmentSummary::getDoctorId, doctorRepository, Doctor::getId, AppointmentSummary::setDoctor);
+        }
+        if (parties.contains(Party.ROOM)){
+            fill(summaries, AppointmentSummary::getRoomId, roomRepository, Room::getId, AppointmentSummary::setRoom);
+        }
+        return summaries;
+    }
+
+    private <T> void fill(List<AppointmentSummary> summaries, Function<AppointmentSummary, Long> idOf,
+                          JpaRepository<T, Long> repository, ToLongFunction<T> id, BiConsumer<AppointmentSummary, T> set){
+        Set<Long> ids = new LinkedHashSet<>();
+        for (AppointmentSummary summary : summaries){
+            if (idOf.apply(summary) != null){
+                ids.add(idOf.apply(summary));
+            }
+        }
+        List<Long> all = new ArrayList<>(ids);
+        Map<Long, T> found = new HashMap<>();
+        for (int from = 0; from < all.size(); from += batchSize){
+            for (T party : repository.findAllById(all.subList(from, Math.min(from + batchSize, all.size())))){
+                found.put(id.applyAsLong(party), party);
+            }
+        }
+        for (AppointmentSummary summary : summaries){
+            Long partyId = idOf.apply(summary);
+            if (partyId != null){
+                set.accept(summary, found.get(partyId));
+            }
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.Appointment;
+import com.example.demo.events.EntityChangeEvent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Optional write-behind path for new appointments (techhub.booking.write-behind.enabled).
+ *
+ * The booking has already been reserved in {@link RoomOccupancy}, so the
+ * conflict decision is final when {@link #submit(Appointment)} returns a
+ * ticket. A single flusher thread takes up to batch-size appointments from
+ * the bounded queue, waiting at most max-delay-ms for a batch to fill, and
+ * inserts them in one transaction: one commit (and one fsync) per batch
+ * instead of per booking. A batch the database rejects is retried row by
+ * row; rows that still fail release their reservation and fail their ticket.
+ *
+ * Durability: a booking is durable once its ticket is COMMITTED, not when it
+ * is accepted. On a clean shutdown the queue is drained first. On a crash the
+ * PENDING bookings (at most queue-capacity, normally one batch) are lost and
+ * their reservations with them, since occupancy is rebuilt from the table
+ * or from a snapshot, which leaves out reservations not committed yet;
+ * clients that must know poll the ticket. When the queue is full the caller
+ * falls back to a synchronous insert, so the queue is also the backpressure.
+ */
+@Component
+public class AppointmentWriteBehind {
+
+    private static final Logger log = LoggerFactory.getLogger(AppointmentWriteBehind.class);
+
+    public enum State { PENDING, COMMITTED, FAILED }
+
+    @Autowired
+    AppointmentChangeLog appointmentChangeLog;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${techhub.booking.write-behind.enabled:false}")
+    boolean enabled;
+
+    @Value("${techhub.booking.write-behind.queue-capacity:10000}")
+    int queueCapacity;
+
+    @Value("${techhub.booking.write-behind.batch-size:500}")
+    int batchSize;
+
+    @Value("${techhub.booking.write-behind.max-delay-ms:5}")
+    long maxDelayMs;
+
+    @Value("${techhub.booking.write-behind.ticket-retention-ms:600000}")
+    long ticketRetentionMs;
+
+    private ArrayBlockingQueue<Ticket> queue;
+    private final Map<Long, Ticket> tickets = new ConcurrentHashMap<>();
+    private final AtomicLong ticketIds = new AtomicLong();
+    private volatile boolean running;
+    private Thread flusher;
+
+    private Timer flushTimer;
+    private Timer commitLag;
+    private DistributionSummary batchSizes;
+    private Counter fallbacks;
+    private Counter failures;
+
+    @PostConstruct
+    void init(){
+        queue = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        flushTimer = Timer.builder("techhub.appointments.write_behind.flush")
+                .description("Time to insert and commit one batch")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        commitLag = Timer.builder("techhub.appointments.write_behind.lag")
+                .description("Time from accepting a booking to its commit")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        batchSizes = DistributionSummary.builder("techhub.appointments.write_behind.batch_size").register(meterRegistry);
+        fallbacks = Counter.builder("techhub.appointments.write_behind.fallbacks")
+                .description("Bookings written synchronously because the queue was full")
+                .register(meterRegistry);
+        failures = Counter.builder("techhub.appointments.write_behind.failures").register(meterRegistry);
+        Gauge.builder("techhub.appointments.write_behind.queue", queue, ArrayBlockingQueue::size).register(meterRegistry);
+
+        if (enabled){
+            running = true;
+            flusher = new Thread(this::run, "appointment-write-behind");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException {
+        if (flusher == null){
+            return;
+        }
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(30));
+    }
+
+    public boolean isEnabled(){
+        return this.enabled;
+    }
+
+    /** Queues an already reserved appointment. Returns null when the queue is full and the caller has to write it itself. */
+    public Ticket submit(Appointment appointment){
+        if (!running){
+            return null;
+        }
+        Ticket ticket = new Ticket(ticketIds.incrementAndGet(), appointment);
+        tickets.put(ticket.id, ticket);
+        if (!queue.offer(ticket)){
+            tickets.remove(ticket.id);
+            fallbacks.increment();
+            return null;
+        }
+        return ticket;
+    }
+
+    public Ticket getTicket(long id){
+        return tickets.get(id);
+    }
+
+    public int getQueueSize(){
+        return queue.size();
+    }
+
+    private void run(){
+        List<Ticket> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()){
+            // Every pass, idle ones included, or tickets stay around as long as no bookings come in.
+            expireTickets();
+            try {
+                Ticket first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null){
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxDelayMs);
+                while (batch.size() < batchSize){
+                    long wait = deadline - System.nanoTime();
+                    Ticket next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null){
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e){
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e){
+                log.error("Write-behind flush failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void flush(List<Ticket> batch){
+        List<Appointment> appointments = new ArrayList<>(batch.size());
+        for (Ticket ticket : batch){
+            appointments.add(ticket.appointment);
+        }
+        batchSizes.record(batch.size());
+        long start = System.nanoTime();
+        try {
+            appointmentChangeLog.saveAll(appointments);
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            for (Ticket ticket : batch){
+                committed(ticket);
+            }
+        } catch (RuntimeException e){
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            // Find the rows the database does not want and commit the rest.
+            for (Ticket ticket : batch){
+                ticket.rewind();
+                try {
+                    appointmentChangeLog.saveAll(Collections.singletonList(ticket.appointment));
+                    committed(ticket);
+                } catch (RuntimeException rowError){
+                    roomOccupancy.release(ticket.appointment);
+                    ticket.fail(rowError.getMessage());
+                    failures.increment();
+                }
+            }
+        }
+    }
+
+    private void committed(Ticket ticket){
+        ticket.commit();
+        commitLag.record(System.nanoTime() - ticket.acceptedAt, TimeUnit.NANOSECONDS);
+        eventPublisher.publishEvent(EntityChangeEvent.created(ticket.appointment));
+    }
+
+    private void expireTickets(){
+        long cutoff = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ticketRetentionMs);
+        tickets.values().removeIf(ticket -> ticket.state != State.PENDING && ticket.acceptedAt < cutoff);
+    }
+
+    public static class Ticket {
+        private final long id;
+        private final Appointment appointment;
+        private final long acceptedAt = System.nanoTime();
+        private final long patientId;
+        private final long doctorId;
+        private volatile State state = State.PENDING;
+        private volatile String error;
+
+        Ticket(long id, Appointment appointment){
+            this.id = id;
+            this.appointment = appointment;
+            this.patientId = appointment.getPatient() != null ? appointment.getPatient().getId() : 0;
+            this.doctorId = appointment.getDoctor() != null ? appointment.getDoctor().getId() : 0;
+        }
+
+        /** Undoes the ids handed out by a rolled back insert, so the appointment can be persisted again. */
+        void rewind(){
+            appointment.setId(0);
+            if (appointment.getPatient() != null){
+                appointment.getPatient().setId(patientId);
+            }
+            if (appointment.getDoctor() != null){
+                appointment.getDoctor().setId(doctorId);
+            }
+        }
+
+        void commit(){
+            this.state = State.COMMITTED;
+        }
+
+        void fail(String error){
+            this.error = error;
+            this.state = State.FAILED;
+        }
+
+        public long getId(){
+            return this.id;
+        }
+
+        public State getState(){
+            return this.state;
+        }
+
+        /** Id of the stored appointment, once committed. */
+        public Long getAppointmentId(){
+            return state == State.COMMITTED ? appointment.getId() : null;
+        }
+
+        public String getError(){
+            return this.error;
+        }
+
+        @JsonIgnore
+        public Appointment getAppointment(){
+            return this.appointment;
+        }
+    }
+}
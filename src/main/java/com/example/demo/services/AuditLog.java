@@ -0,0 +1,319 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.AuditRecord;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.repositories.AuditRecordRepository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Audit trail of every create, delete and clear, written off the request
+ * path.
+ *
+ * Request threads publish into a ring of buffer-size pre-allocated slots:
+ * a compare-and-set on the producer cursor claims a sequence, the event is
+ * copied into the slot's fields and the slot's volatile sequence publishes
+ * it. No lock and no queue node per event. A single writer thread reads
+ * the published slots in order, up to batch-size at a time, and appends
+ * them to the audit file (one tab separated line per event) or to the
+ * audit_log table (one transaction per batch). When the ring is full,
+ * publishers wait for the writer rather than drop an audit event.
+ *
+ * Durability (techhub.audit.durability, file sink): NONE leaves the lines
+ * to the OS page cache, BATCH forces them to disk after every batch, and
+ * INTERVAL at most every fsync-interval-ms. A table batch is durable when it
+ * commits. A batch that fails to write is kept and tried again.
+ *
+ * Metrics: techhub.audit.lag (events published but not durable yet),
+ * techhub.audit.flush (time to write one batch), techhub.audit.full_waits
+ * (publishers that found the ring full) and techhub.audit.failures.
+ */
+@Service
+public class AuditLog {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditLog.class);
+
+    public enum Sink { FILE, TABLE }
+
+    public enum Durability { NONE, BATCH, INTERVAL }
+
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long RETRY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Autowired
+    AuditRecordRepository auditRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${techhub.audit.sink:FILE}")
+    Sink sink;
+
+    @Value("${techhub.audit.file:audit.log}")
+    String file;
+
+    @Value("${techhub.audit.durability:BATCH}")
+    Durability durability;
+
+    @Value("${techhub.audit.fsync-interval-ms:1000}")
+    long fsyncIntervalMs;
+
+    @Value("${techhub.audit.buffer-size:8192}")
+    int bufferSize;
+
+    @Value("${techhub.audit.batch-size:512}")
+    int batchSize;
+
+    private Slot[] slots;
+    private int mask;
+
+    // Next sequence to claim; everything below it is claimed, not necessarily published yet.
+    private final AtomicLong claimed = new AtomicLong();
+    // Everything below it has been copied out by the writer, its slots can be reused.
+    private final AtomicLong consumed = new AtomicLong();
+    // Everything below it is durable under the configured policy.
+    private final AtomicLong durable = new AtomicLong();
+
+    private FileChannel channel;
+    private long lastForce;
+    private long written;
+
+    private volatile boolean running;
+    private Thread writer;
+
+    private Timer flushTimer;
+    private Counter fullWaits;
+    private Counter failures;
+
+    @PostConstruct
+    void init() throws IOException {
+        int capacity = Integer.highestOneBit(Math.max(2, bufferSize) * 2 - 1);
+        slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++){
+            slots[i] = new Slot();
+        }
+        mask = capacity - 1;
+
+        if (sink == Sink.FILE){
+            Path path = Paths.get(file).toAbsolutePath();
+            if (path.getParent() != null){
+                Files.createDirectories(path.getParent());
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            lastForce = System.nanoTime();
+        }
+
+        flushTimer = Timer.builder("techhub.audit.flush")
+                .description("Time to write one batch of audit events")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        fullWaits = Counter.builder("techhub.audit.full_waits")
+                .description("Publishers that waited for the audit writer because the ring was full")
+                .register(meterRegistry);
+        failures = Counter.builder("techhub.audit.failures").register(meterRegistry);
+        Gauge.builder("techhub.audit.lag", this, AuditLog::getLag)
+                .description("Audit events published but not yet durable")
+                .register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::run, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    void shutdown() throws InterruptedException, IOException {
+        running = false;
+        writer.join(TimeUnit.SECONDS.toMillis(30));
+        if (channel != null){
+            channel.force(false);
+            channel.close();
+        }
+    }
+
+    @EventListener
+    public void onChange(EntityChangeEvent event){
+        publish(event.getKind(), event.getEntityType(), event.getEntity() != null ? idOf(event.getEntity()) : null, event.getSite());
+    }
+
+    public void publish(EntityChangeEvent.Kind kind, Class<?> entityType, Long entityId, String site){
+        long sequence = claim();
+        Slot slot = slots[(int) sequence & mask];
+        slot.at = System.currentTimeMillis();
+        slot.kind = kind;
+        slot.entityType = entityType;
+        slot.entityId = entityId;
+        slot.site = site;
+        slot.sequence = sequence;
+    }
+
+    /** Events published and not yet durable. */
+    public long getLag(){
+        return claimed.get() - durable.get();
+    }
+
+    private long claim(){
+        boolean waited = false;
+        while (true){
+            long next = claimed.get();
+            if (next - consumed.get() >= slots.length){
+                if (!waited){
+                    fullWaits.increment();
+                    waited = true;
+                }
+                LockSupport.parkNanos(IDLE_NANOS);
+            } else if (claimed.compareAndSet(next, next + 1)){
+                return next;
+            }
+        }
+    }
+
+    private Long idOf(Object entity){
+        try {
+            Object id = entityManagerFactory.getPersistenceUnitUtil().getIdentifier(entity);
+            return id instanceof Number ? ((Number) id).longValue() : null;
+        } catch (IllegalArgumentException e){
+            return null;
+        }
+    }
+
+    private void run(){
+        List<AuditRecord> batch = new ArrayList<>(batchSize);
+        long cursor = 0;
+        while (true){
+            boolean stopping = !running;
+            while (batch.size() < batchSize){
+                Slot slot = slots[(int) cursor & mask];
+                if (slot.sequence != cursor){
+                    break;
+                }
+                batch.add(slot.toRecord());
+                cursor++;
+            }
+            consumed.lazySet(cursor);
+
+            if (batch.isEmpty()){
+                if (stopping){
+                    return;
+                }
+                forceIfDue();
+                LockSupport.parkNanos(IDLE_NANOS);
+                continue;
+            }
+            try {
+                long start = System.nanoTime();
+                write(batch);
+                flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                batch.clear();
+                written = cursor;
+                if (durability != Durability.INTERVAL || sink == Sink.TABLE){
+                    durable.set(cursor);
+                } else {
+                    forceIfDue();
+                }
+            } catch (IOException | RuntimeException e){
+                failures.increment();
+                log.error("Writing {} audit events failed, trying again", batch.size(), e);
+                if (stopping){
+                    return;
+                }
+                LockSupport.parkNanos(RETRY_NANOS);
+            }
+        }
+    }
+
+    private void write(List<AuditRecord> batch) throws IOException {
+        if (sink == Sink.TABLE){
+            transactionTemplate.executeWithoutResult(status -> auditRepository.saveAll(batch));
+            return;
+        }
+        StringBuilder lines = new StringBuilder(batch.size() * 96);
+        for (AuditRecord record : batch){
+            lines.append(record.getSeq()).append('\t')
+                    .append(record.getRecordedAt()).append('\t')
+                    .append(record.getAction()).append('\t')
+                    .append(record.getEntityType()).append('\t')
+                    .append(record.getEntityId() != null ? record.getEntityId().toString() : "-").append('\t')
+                    .append(record.getSite()).append('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+        while (bytes.hasRemaining()){
+            channel.write(bytes);
+        }
+        if (durability == Durability.BATCH){
+            channel.force(false);
+        }
+    }
+
+    /** INTERVAL: forces what was written once fsync-interval-ms have passed since the last force. */
+    private void forceIfDue(){
+        if (sink != Sink.FILE || durability != Durability.INTERVAL || durable.get() == written){
+            return;
+        }
+        long now = System.nanoTime();
+        if (now - lastForce < TimeUnit.MILLISECONDS.toNanos(fsyncIntervalMs)){
+            return;
+        }
+        try {
+            channel.force(false);
+            lastForce = now;
+            durable.set(written);
+        } catch (IOException e){
+            failures.increment();
+            log.error("Forcing the audit file to disk failed", e);
+        }
+    }
+
+    /** One pre-allocated ring entry, reused every buffer-size events. Published by the write of sequence. */
+    private static final class Slot {
+        volatile long sequence = -1;
+        long at;
+        EntityChangeEvent.Kind kind;
+        Class<?> entityType;
+        Long entityId;
+        String site;
+
+        AuditRecord toRecord(){
+            return new AuditRecord(sequence, LocalDateTime.ofInstant(Instant.ofEpochMilli(at), ZoneId.systemDefault()),
+                    kind.name(), entityType.getSimpleName(), entityId, site);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.demo.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread-safe Bloom filter over strings. {@link #mightContain(String)} never
+ * returns false for a key that was put, and returns true for an absent key
+ * with roughly the configured false positive probability as long as no more
+ * than the expected number of keys has been inserted.
+ *
+ * Bits live in an {@link AtomicLongArray} and are set with CAS, so readers and
+ * writers never block each other. Keys cannot be removed.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitSize;
+    private final int hashes;
+    private final LongAdder insertions = new LongAdder();
+
+    public BloomFilter(long expectedInsertions, double falsePositiveProbability){
+        long n = Math.max(1, expectedInsertions);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveProbability) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (m + 63) / 64);
+        this.words = new AtomicLongArray(Math.max(1, wordCount));
+        this.bitSize = (long) this.words.length() * 64;
+        this.hashes = Math.max(1, (int) Math.round((double) m / n * Math.log(2)));
+    }
+
+    public void put(String key){
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++){
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+            int index = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long word;
+            do {
+                word = words.get(index);
+                if ((word & mask) != 0){
+                    break;
+                }
+            } while (!words.compareAndSet(index, word, word | mask));
+        }
+        insertions.increment();
+    }
+
+    public boolean mightContain(String key){
+        long hash = hash(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashes; i++){
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitSize;
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear(){
+        for (int i = 0; i < words.length(); i++){
+            words.set(i, 0L);
+        }
+        insertions.reset();
+    }
+
+    public long getInsertions(){
+        return insertions.sum();
+    }
+
+    public long getBitSize(){
+        return this.bitSize;
+    }
+
+    public int getHashes(){
+        return this.hashes;
+    }
+
+    /** FNV-1a over the UTF-8 bytes, followed by the murmur3 finalizer to spread the bits. */
+    private static long hash(String key){
+        long h = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)){
+            h ^= (b & 0xff);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+/**
+ * Conflict check that holds across application instances. The in-memory
+ * structures (occupancy bitmap, schedule store, write-behind queue) only see
+ * the bookings of their own JVM, so the writing transaction checks the table
+ * before inserting.
+ *
+ * The check runs without locks. The room versions are read first, and after
+ * the check each room's version is bumped with a compare-and-set; if another
+ * booking for the same room committed in between, the bump matches no row
+ * and the transaction fails with an OptimisticLockingFailureException, which
+ * {@link RetryPolicy} answers by running the whole booking again. The room
+ * row is then only locked from the bump to the commit, never while the
+ * check runs. Rooms are bumped in id order, so batches cannot deadlock, and
+ * no other row is held until the commit: change numbers come from
+ * {@link ChangeNumbers}, bookings of different rooms do not wait on each other.
+ */
+@Component
+public class BookingGuard {
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    AppointmentSeriesRepository seriesRepository;
+
+    /** Checks the appointments against committed rows and claims their rooms. Must run inside the writing transaction. */
+    public void claim(List<Appointment> appointments){
+        TreeMap<Long, Long> versions = new TreeMap<>();
+        // The series of each room, loaded once however many of the appointments it holds.
+        Map<Long, List<AppointmentSeries>> series = new HashMap<>();
+        for (Appointment appointment : appointments){
+            long roomId = appointment.getRoom().getId();
+            if (!versions.containsKey(roomId)){
+                versions.put(roomId, roomVersion(roomId));
+                series.put(roomId, seriesRepository.findByRoomIdWithExceptions(roomId));
+            }
+        }
+        for (Appointment appointment : appointments){
+            long roomId = appointment.getRoom().getId();
+            if (appointmentRepository.existsByRoomIdAndStartsAtBeforeAndFinishesAtAfter(roomId, appointment.getFinishesAt(), appointment.getStartsAt())){
+                throw new SlotTakenException(appointment);
+            }
+            for (AppointmentSeries recurring : series.get(roomId)){
+                if (recurring.overlaps(appointment.getStartsAt(), appointment.getFinishesAt())){
+                    throw new SlotTakenException(appointment);
+                }
+            }
+        }
+        for (Map.Entry<Long, Long> room : versions.entrySet()){
+            bump(room.getKey(), room.getValue());
+        }
+    }
+
+    /** The version to pass to {@link #bump(long, long)}, read before the conflict check. */
+    public long roomVersion(long roomId){
+        return roomRepository.findVersionById(roomId).orElse(0L);
+    }
+
+    /** Fails when the room was booked by someone else since its version was read. The row stays locked until the transaction ends. */
+    public void bump(long roomId, long version){
+        if (roomRepository.bumpVersion(roomId, version) == 0){
+            throw new OptimisticLockingFailureException("Room " + roomId + " was booked concurrently");
+        }
+    }
+
+    public static class SlotTakenException extends RuntimeException {
+
+        public SlotTakenException(Appointment appointment){
+            super("Room " + appointment.getRoom().getRoomName() + " is already booked between "
+                    + appointment.getStartsAt() + " and " + appointment.getFinishesAt());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.entities.Appointment;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.sites.SiteContext;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * Week calendars of doctors and rooms, appointments bucketed by day.
+ *
+ * Each (resource, week) is computed with one range query (two for a week
+ * before the archive horizon, see {@link AppointmentArchive}) and cached
+ * until an appointment touching that week for that doctor or room is created
+ * or deleted. A calendar computed while an invalidation happened is returned but
+ * not cached, so a stale week never sticks. The weeks holding today's and
+ * tomorrow's appointments are pre-warmed on a timer.
+ *
+ * Only the default site is cached, the invalidations follow its changes
+ * alone; calendars of other sites are read from their database every time.
+ */
+@Component
+public class CalendarCache {
+
+    public enum ResourceType { DOCTOR, ROOM }
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @Autowired
+    AppointmentArchive appointmentArchive;
+
+    @Value("${techhub.calendar.max-entries:10000}")
+    int maxEntries;
+
+    private final ConcurrentHashMap<WeekKey, WeekCalendar> weeks = new ConcurrentHashMap<>();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public WeekCalendar doctorWeek(long doctorId, LocalDate day){
+        return week(new WeekKey(ResourceType.DOCTOR, String.valueOf(doctorId), weekStart(day)));
+    }
+
+    public WeekCalendar roomWeek(String roomName, LocalDate day){
+        return week(new WeekKey(ResourceType.ROOM, roomName, weekStart(day)));
+    }
+
+    @EventListener(condition = "#event.defaultSite")
+    public void onChange(EntityChangeEvent event){
+        if (!event.isAbout(Appointment.class)){
+            return;
+        }
+        if (event.getKind() == EntityChangeEvent.Kind.CLEARED){
+            invalidations.incrementAndGet();
+            weeks.clear();
+            return;
+        }
+        Appointment appointment = (Appointment) event.getEntity();
+        if (appointment.getStartsAt() == null || appointment.getFinishesAt() == null){
+            return;
+        }
+        invalidations.incrementAndGet();
+        LocalDate last = appointment.getFinishesAt().minusNanos(1).toLocalDate();
+        for (LocalDate week = weekStart(appointment.getStartsAt().toLocalDate()); !week.isAfter(last); week = week.plusWeeks(1)){
+            if (appointment.getDoctor() != null){
+                weeks.remove(new WeekKey(ResourceType.DOCTOR, String.valueOf(appointment.getDoctor().getId()), week));
+            }
+            if (appointment.getRoom() != null && appointment.getRoom().getRoomName() != null){
+                weeks.remove(new WeekKey(ResourceType.ROOM, appointment.getRoom().getRoomName(), week));
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${techhub.calendar.prewarm-interval-ms:300000}")
+    public void prewarm(){
+        LocalDate today = LocalDate.now();
+        weeks.keySet().removeIf(key -> key.weekStart.isBefore(weekStart(today)));
+
+        List<Appointment> upcoming = appointmentRepository.findByStartsAtBeforeAndFinishesAtAfter(
+                today.plusDays(2).atStartOfDay(), today.atStartOfDay());
+        for (Appointment appointment : upcoming){
+            for (LocalDate day = today; day.isBefore(today.plusDays(2)); day = day.plusDays(1)){
+                if (appointment.getDoctor() != null){
+                    doctorWeek(appointment.getDoctor().getId(), day);
+                }
+                if (appointment.getRoom() != null && appointment.getRoom().getRoomName() != null){
+                    roomWeek(appointment.getRoom().getRoomName(), day);
+                }
+            }
+        }
+    }
+
+    public int size(){
+        return weeks.size();
+    }
+
+    private WeekCalendar week(WeekKey key){
+        if (!SiteContext.isDefault()){
+            return load(key);
+        }
+        WeekCalendar cached = weeks.get(key);
+        if (cached != null){
+            return cached;
+        }
+        long generation = invalidations.get();
+        WeekCalendar calendar = load(key);
+        if (invalidations.get() == generation && weeks.size() < maxEntries){
+            weeks.putIfAbsent(key, calendar);
+        }
+        return calendar;
+    }
+
+    private WeekCalendar load(WeekKey key){
+        LocalDateTime from = key.weekStart.atStartOfDay();
+        LocalDateTime to = key.weekStart.plusWeeks(1).atStartOfDay();
+        List<Appointment> appointments = key.type == ResourceType.DOCTOR
+                ? appointmentArchive.findByDoctor(Long.parseLong(key.key), from, to)
+                : roomDirectory.idOf(key.key)
+                        .map(roomId -> appointmentArchive.findByRoom(roomId, from, to))
+                        .orElse(Collections.emptyList());
+
+        List<CalendarDay> days = new ArrayList<>(7);
+        for (int i = 0; i < 7; i++){
+            LocalDate date = key.weekStart.plusDays(i);
+            List<Appointment> onDay = new ArrayList<>();
+            for (Appointment appointment : appointments){
+                if (appointment.getStartsAt().isBefore(date.plusDays(1).atStartOfDay())
+                        && appointment.getFinishesAt().isAfter(date.atStartOfDay())){
+                    onDay.add(appointment);
+                }
+            }
+            days.add(new CalendarDay(date, Collections.unmodifiableList(onDay)));
+        }
+        return new WeekCalendar(key.type, key.key, key.weekStart, Collections.unmodifiableList(days));
+    }
+
+    private static LocalDate weekStart(LocalDate day){
+        return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private static class WeekKey {
+        final ResourceType type;
+        final String key;
+        final LocalDate weekStart;
+
+        WeekKey(ResourceType type, String key, LocalDate weekStart){
+            this.type = type;
+            this.key = key;
+            this.weekStart = weekStart;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof WeekKey)){
+                return false;
+            }
+            WeekKey other = (WeekKey) o;
+            return type == other.type && key.equals(other.key) && weekStart.equals(other.weekStart);
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(type, key, weekStart);
+        }
+    }
+
+    public static class WeekCalendar {
+        private final ResourceType resourceType;
+        private final String resourceKey;
+        private final LocalDate weekStart;
+        private final List<CalendarDay> days;
+
+        public WeekCalendar(ResourceType resourceType, String resourceKey, LocalDate weekStart, List<CalendarDay> days){
+            this.resourceType = resourceType;
+            this.resourceKey = resourceKey;
+            this.weekStart = weekStart;
+            this.days = days;
+        }
+
+        public ResourceType getResourceType(){
+            return this.resourceType;
+        }
+
+        /** Room name, or doctor id. */
+        public String getResourceKey(){
+            return this.resourceKey;
+        }
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd/MM/yyyy")
+        public LocalDate getWeekStart(){
+            return this.weekStart;
+        }
+
+        public List<CalendarDay> getDays(){
+            return this.days;
+        }
+    }
+
+    public static class CalendarDay {
+        private final LocalDate date;
+        private final List<Appointment> appointments;
+
+        public CalendarDay(LocalDate date, List<Appointment> appointments){
+            this.date = date;
+            this.appointments = appointments;
+        }
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd/MM/yyyy")
+        public LocalDate getDate(){
+            return this.date;
+        }
+
+        /** Appointments overlapping the day, ones spanning midnight appear on both days. */
+        public List<Appointment> getAppointments(){
+            return this.appointments;
+        }
+    }
+}
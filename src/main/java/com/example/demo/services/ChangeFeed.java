@@ -0,0 +1,260 @@
+package com.example.demo.services;
+
+import com.example.demo.events.EntityChangeEvent;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fan-out of entity changes to long-lived subscribers (the SSE endpoint).
+ *
+ * Publishing only stamps the change with a sequence number, appends it to a
+ * bounded history and offers it to every subscriber's bounded queue, so a
+ * request never waits on a slow client. Each subscriber is drained by a
+ * small writer pool, one drain task per subscriber at a time. A subscriber
+ * whose queue fills up gets an OVERFLOW event and is closed; it reconnects
+ * with the id of the last event it saw and is replayed from the history.
+ *
+ * Ids are "{boot}:{sequence}". A resume token from another boot, or one older
+ * than the history, gets a RESET event instead: the client has to reload.
+ */
+@Component
+public class ChangeFeed {
+
+    public interface Subscriber {
+        void send(FeedEvent event) throws IOException;
+        void close();
+    }
+
+    @Value("${techhub.feed.buffer-size:256}")
+    int bufferSize;
+
+    @Value("${techhub.feed.history-size:1000}")
+    int historySize;
+
+    @Value("${techhub.feed.writer-threads:4}")
+    int writerThreads;
+
+    private final String boot = Long.toString(System.currentTimeMillis(), 36);
+    private final ArrayDeque<FeedEvent> history = new ArrayDeque<>();
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private long sequence = 0;
+    private ExecutorService writers;
+
+    @PostConstruct
+    void init(){
+        writers = Executors.newFixedThreadPool(writerThreads, runnable -> {
+            Thread thread = new Thread(runnable, "change-feed-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    void shutdown(){
+        for (Subscription subscription : subscriptions){
+            subscription.subscriber.close();
+        }
+        writers.shutdownNow();
+    }
+
+    @EventListener(condition = "#event.defaultSite")
+    public void onChange(EntityChangeEvent event){
+        String type = event.getEntityType().getSimpleName().toLowerCase();
+        synchronized (this){
+            FeedEvent feedEvent = new FeedEvent(boot + ":" + (++sequence), event.getKind().name(), type, event.getEntity());
+            history.addLast(feedEvent);
+            if (history.size() > historySize){
+                history.removeFirst();
+            }
+            for (Subscription subscription : subscriptions){
+                if (subscription.accepts(type)){
+                    subscription.offer(feedEvent);
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers a subscriber for the given entity types (all when empty). With
+     * a resume token, the events after it are delivered first.
+     */
+    public Subscription subscribe(String lastEventId, Set<String> types, Subscriber subscriber){
+        Subscription subscription = new Subscription(subscriber, types);
+        synchronized (this){
+            if (lastEventId != null && !lastEventId.isEmpty()){
+                List<FeedEvent> missed = since(lastEventId);
+                if (missed == null || missed.size() > bufferSize){
+                    subscription.offer(FeedEvent.control("RESET"));
+                } else {
+                    for (FeedEvent event : missed){
+                        if (subscription.accepts(event.getType())){
+                            subscription.offer(event);
+                        }
+                    }
+                }
+            }
+            subscriptions.add(subscription);
+        }
+        return subscription;
+    }
+
+    @Scheduled(fixedDelayString = "${techhub.feed.heartbeat-ms:15000}")
+    public void heartbeat(){
+        for (Subscription subscription : subscriptions){
+            subscription.offer(FeedEvent.control("HEARTBEAT"));
+        }
+    }
+
+    public int getSubscriberCount(){
+        return subscriptions.size();
+    }
+
+    /** Events after the token, or null when they are no longer all in the history. */
+    private List<FeedEvent> since(String lastEventId){
+        int separator = lastEventId.indexOf(':');
+        if (separator < 0 || !lastEventId.substring(0, separator).equals(boot)){
+            return null;
+        }
+        long last;
+        try {
+            last = Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e){
+            return null;
+        }
+        long oldest = sequence - history.size() + 1;
+        if (last < oldest - 1 || last > sequence){
+            return null;
+        }
+        List<FeedEvent> missed = new ArrayList<>();
+        Iterator<FeedEvent> it = history.descendingIterator();
+        for (long seq = sequence; seq > last; seq--){
+            missed.add(0, it.next());
+        }
+        return missed;
+    }
+
+    public class Subscription {
+        private final Subscriber subscriber;
+        private final Set<String> types;
+        private final ArrayBlockingQueue<FeedEvent> queue;
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private volatile boolean overflowed = false;
+        private volatile boolean closed = false;
+
+        Subscription(Subscriber subscriber, Set<String> types){
+            this.subscriber = subscriber;
+            this.types = types;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        boolean accepts(String type){
+            return types == null || types.isEmpty() || types.contains(type);
+        }
+
+        void offer(FeedEvent event){
+            if (closed){
+                return;
+            }
+            if (!queue.offer(event) && !event.isControl()){
+                overflowed = true;
+            }
+            schedule();
+        }
+
+        private void schedule(){
+            if (draining.compareAndSet(false, true)){
+                writers.execute(this::drain);
+            }
+        }
+
+        private void drain(){
+            try {
+                FeedEvent event;
+                while (!closed && (event = queue.poll()) != null){
+                    subscriber.send(event);
+                }
+                if (overflowed && !closed){
+                    subscriber.send(FeedEvent.control("OVERFLOW"));
+                    cancel();
+                }
+            } catch (IOException | RuntimeException e){
+                cancel();
+            } finally {
+                draining.set(false);
+            }
+            if (!closed && !queue.isEmpty()){
+                schedule();
+            }
+        }
+
+        /** Stops delivery and forgets the subscriber. Safe to call more than once. */
+        public void cancel(){
+            if (closed){
+                return;
+            }
+            closed = true;
+            subscriptions.remove(this);
+            queue.clear();
+            subscriber.close();
+        }
+    }
+
+    public static class FeedEvent {
+        private final String id;
+        private final String kind;
+        private final String type;
+        private final Object entity;
+
+        FeedEvent(String id, String kind, String type, Object entity){
+            this.id = id;
+            this.kind = kind;
+            this.type = type;
+            this.entity = entity;
+        }
+
+        static FeedEvent control(String kind){
+            return new FeedEvent(null, kind, null, null);
+        }
+
+        /** Resume token, null for control events (RESET, OVERFLOW, HEARTBEAT). */
+        public String getId(){
+            return this.id;
+        }
+
+        /** CREATED, DELETED, CLEARED or a control kind. */
+        public String getKind(){
+            return this.kind;
+        }
+
+        /** appointment, doctor, patient or room. */
+        public String getType(){
+            return this.type;
+        }
+
+        public Object getEntity(){
+            return this.entity;
+        }
+
+        public boolean isControl(){
+            return this.id == null;
+        }
+    }
+}
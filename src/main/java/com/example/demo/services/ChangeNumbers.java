@@ -0,0 +1,221 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.sites.SiteContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Change numbers for {@link AppointmentChangeLog}, handed out without a lock
+ * that lasts as long as the writing transaction.
+ *
+ * Every instance takes a block of block-size numbers from the "appointments"
+ * change sequence in a short transaction of its own and hands them out from
+ * memory, so bookings of different rooms never wait on each other for a
+ * number. The price is that numbers commit out of order: one instance may
+ * commit 7 after another one committed 150.
+ *
+ * Readers therefore only go up to the {@link #safePoint()}, below which every
+ * number has committed or never will. Each instance keeps the numbers it
+ * handed to transactions that have not ended yet and publishes the lowest one
+ * as its {@link ChangeLease}: written with the block, refreshed every
+ * lease-refresh-ms while anything is in flight, deleted when nothing is. The
+ * rest of a block is dropped once its last transaction ends, so an idle
+ * instance never holds the safe point back.
+ *
+ * A lease that was not renewed for lease-timeout-ms belongs to an instance
+ * that died, and the database rolled back its transactions; keep the timeout
+ * well above the longest writing transaction. Blocks and leases are per site.
+ */
+@Component
+public class ChangeNumbers {
+
+    @Autowired
+    ChangeSequenceRepository sequenceRepository;
+
+    @Autowired
+    ChangeLeaseRepository leaseRepository;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Value("${techhub.sync.block-size:100}")
+    int blockSize;
+
+    @Value("${techhub.sync.lease-timeout-ms:30000}")
+    long leaseTimeoutMs;
+
+    private final String owner = UUID.randomUUID().toString();
+    private final ConcurrentHashMap<String, Pool> pools = new ConcurrentHashMap<>();
+    private TransactionTemplate separate;
+
+    @PostConstruct
+    void init(){
+        separate = new TransactionTemplate(transactionManager);
+        separate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Takes count consecutive numbers for the current transaction and returns
+     * the first. They hold the safe point back until the transaction ends.
+     */
+    public long take(int count){
+        if (!TransactionSynchronizationManager.isSynchronizationActive()){
+            throw new IllegalStateException("Change numbers must be taken inside the writing transaction");
+        }
+        Pool pool = pool();
+        Taken taken = (Taken) TransactionSynchronizationManager.getResource(pool);
+        if (taken == null){
+            taken = new Taken(pool);
+            TransactionSynchronizationManager.bindResource(pool, taken);
+            TransactionSynchronizationManager.registerSynchronization(taken);
+        }
+        synchronized (pool){
+            if (pool.end - pool.next < count){
+                int size = Math.max(blockSize, count);
+                pool.next = grab(pool, size);
+                pool.end = pool.next + size;
+            }
+            long first = pool.next;
+            pool.next += count;
+            pool.inFlight.put(first, count);
+            taken.firsts.add(first);
+            return first;
+        }
+    }
+
+    /**
+     * The highest change number below which nothing can commit any more. The
+     * current transaction's own numbers do not count, it sees its own writes.
+     */
+    public long safePoint(){
+        Pool pool = pool();
+        long point = sequenceRepository.findValueByName(AppointmentChangeLog.SEQUENCE).orElse(0L);
+        Long others = leaseRepository.findLowestOfOthers(owner, LocalDateTime.now().minusNanos(leaseTimeoutMs * 1_000_000));
+        if (others != null){
+            point = Math.min(point, others - 1);
+        }
+        Taken own = (Taken) TransactionSynchronizationManager.getResource(pool);
+        synchronized (pool){
+            return Math.min(point, pool.lowest(own) - 1);
+        }
+    }
+
+    /** Renews the leases of the sites with numbers in flight and moves them up to the lowest one left. */
+    @Scheduled(fixedDelayString = "${techhub.sync.lease-refresh-ms:200}")
+    public void renew(){
+        for (Pool pool : pools.values()){
+            synchronized (pool){
+                if (pool.leased){
+                    lease(pool, pool.inFlight.isEmpty() ? -1 : pool.inFlight.firstKey());
+                }
+            }
+        }
+    }
+
+    private Pool pool(){
+        return pools.computeIfAbsent(SiteContext.name(), Pool::new);
+    }
+
+    // The sequence row is locked only by this short transaction, committed before the number is used.
+    private long grab(Pool pool, int size){
+        long first = SiteContext.call(pool.site, () -> separate.execute(status -> {
+            ChangeSequence sequence = sequenceRepository.lockOrCreate(AppointmentChangeLog.SEQUENCE);
+            long value = sequence.getValue() + 1;
+            sequence.setValue(sequence.getValue() + size);
+            sequenceRepository.save(sequence);
+            long low = pool.inFlight.isEmpty() ? value : Math.min(pool.inFlight.firstKey(), value);
+            leaseRepository.save(new ChangeLease(owner, low, LocalDateTime.now()));
+            return value;
+        }));
+        pool.leased = true;
+        return first;
+    }
+
+    private void finish(Pool pool, List<Long> firsts){
+        synchronized (pool){
+            for (Long first : firsts){
+                pool.inFlight.remove(first);
+            }
+            if (pool.inFlight.isEmpty()){
+                pool.next = pool.end;
+                if (pool.leased){
+                    lease(pool, -1);
+                }
+            }
+        }
+    }
+
+    /** Writes the lease with the given low, or deletes it for -1. Caller holds the pool. */
+    private void lease(Pool pool, long low){
+        SiteContext.call(pool.site, () -> separate.execute(status -> {
+            if (low < 0){
+                leaseRepository.findById(owner).ifPresent(leaseRepository::delete);
+            } else {
+                leaseRepository.save(new ChangeLease(owner, low, LocalDateTime.now()));
+            }
+            return null;
+        }));
+        pool.leased = low >= 0;
+    }
+
+    /** The numbers of one site. Guarded by itself. */
+    private static class Pool {
+        final String site;
+        // First number of every run handed out to a transaction that has not ended, with its length.
+        final TreeMap<Long, Integer> inFlight = new TreeMap<>();
+        long next;
+        long end;
+        boolean leased;
+
+        Pool(String site){
+            this.site = site;
+        }
+
+        /** The lowest number that may still commit, leaving out the runs of the given transaction. */
+        long lowest(Taken own){
+            long lowest = next < end ? next : Long.MAX_VALUE;
+            for (Map.Entry<Long, Integer> run : inFlight.entrySet()){
+                if (own == null || !own.firsts.contains(run.getKey())){
+                    return Math.min(lowest, run.getKey());
+                }
+            }
+            return lowest;
+        }
+    }
+
+    /** The runs one transaction took, released when it ends either way. */
+    private class Taken implements TransactionSynchronization {
+        final Pool pool;
+        final List<Long> firsts = new ArrayList<>();
+
+        Taken(Pool pool){
+            this.pool = pool;
+        }
+
+        @Override
+        public void afterCompletion(int status){
+            TransactionSynchronizationManager.unbindResourceIfPossible(pool);
+            finish(pool, firsts);
+        }
+    }
+}
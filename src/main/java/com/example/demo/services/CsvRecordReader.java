@@ -0,0 +1,113 @@
+package com.example.demo.services;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal streaming CSV reader. Reads one record at a time straight from the
+ * underlying {@link Reader}, so memory stays flat whatever the size of the input.
+ * Supports quoted fields, escaped quotes ("") and LF / CRLF line endings.
+ */
+public class CsvRecordReader {
+
+    private final Reader reader;
+    private final StringBuilder field = new StringBuilder();
+    private int line = 0;
+    private int recordLine = 0;
+    private int pushedBack = -2;
+
+    public CsvRecordReader(Reader reader){
+        this.reader = reader;
+    }
+
+    /** Line number (1-based) where the last record returned by {@link #next()} started. */
+    public int getLine(){
+        return this.recordLine;
+    }
+
+    /** Returns the next record, or null at the end of the input. Blank lines are skipped. */
+    public List<String> next() throws IOException {
+        List<String> record = new ArrayList<>();
+        boolean quoted = false;
+        boolean inRecord = false;
+        field.setLength(0);
+
+        int c;
+        while ((c = read()) != -1){
+            if (!inRecord){
+                line++;
+                recordLine = line;
+                inRecord = true;
+            }
+            if (quoted){
+                if (c == '"'){
+                    int n = read();
+                    if (n == '"'){
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        unread(n);
+                    }
+                } else {
+                    if (c == '\n'){
+                        line++;
+                    }
+                    field.append((char) c);
+                }
+                continue;
+            }
+            if (c == '"' && field.length() == 0){
+                quoted = true;
+            } else if (c == ','){
+                record.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\r'){
+                int n = read();
+                if (n != '\n'){
+                    unread(n);
+                }
+                if (endOfRecord(record)){
+                    return record;
+                }
+                inRecord = false;
+            } else if (c == '\n'){
+                if (endOfRecord(record)){
+                    return record;
+                }
+                inRecord = false;
+            } else {
+                field.append((char) c);
+            }
+        }
+
+        if (inRecord && endOfRecord(record)){
+            return record;
+        }
+        return null;
+    }
+
+    private boolean endOfRecord(List<String> record){
+        if (record.isEmpty() && field.toString().trim().isEmpty()){
+            field.setLength(0);
+            return false;
+        }
+        record.add(field.toString());
+        field.setLength(0);
+        return true;
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != -2){
+            int c = pushedBack;
+            pushedBack = -2;
+            return c;
+        }
+        return reader.read();
+    }
+
+    private void unread(int c){
+        pushedBack = c;
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.entities.Doctor;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+@Component
+public class DoctorSearchIndex extends PersonSearchIndex<Doctor> {
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    public DoctorSearchIndex(){
+        super(Doctor.class);
+    }
+
+    @Override
+    protected long idOf(Doctor doctor){
+        return doctor.getId();
+    }
+
+    @Override
+    protected List<Doctor> loadPage(long afterId, int size){
+        return doctorRepository.findByIdGreaterThan(afterId, PageRequest.of(0, size, Sort.by("id")));
+    }
+
+    @Override
+    protected List<Doctor> findByPrefix(String prefix, int limit){
+        return doctorRepository.findByNameOrEmailPrefix(prefix, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected List<Doctor> findAllById(Collection<Long> ids){
+        return doctorRepository.findAllById(ids);
+    }
+}
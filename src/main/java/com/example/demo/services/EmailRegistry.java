@@ -0,0 +1,118 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+
+import java.util.stream.Stream;
+
+import javax.annotation.PostConstruct;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Answers "is this email already used by a doctor / patient?" without a round
+ * trip for the common case of a new address.
+ *
+ * One Bloom filter per table holds every known email (lower case). A miss in
+ * the filter means the email is definitely new; a hit is only a probable
+ * duplicate and is confirmed with findByEmail. Deleted emails stay in the
+ * filter, reusing one just takes the database path. The unique constraint on
+ * the email column remains the final guard.
+ */
+@Component
+public class EmailRegistry {
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${techhub.email-filter.expected-insertions:1000000}")
+    long expectedInsertions;
+
+    @Value("${techhub.email-filter.false-positive-probability:0.01}")
+    double falsePositiveProbability;
+
+    private BloomFilter doctorEmails;
+    private BloomFilter patientEmails;
+    private volatile boolean ready = false;
+
+    @PostConstruct
+    void init(){
+        doctorEmails = new BloomFilter(expectedInsertions, falsePositiveProbability);
+        patientEmails = new BloomFilter(expectedInsertions, falsePositiveProbability);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<String> emails = doctorRepository.streamAllEmails()){
+                emails.forEach(email -> put(doctorEmails, email));
+            }
+            try (Stream<String> emails = patientRepository.streamAllEmails()){
+                emails.forEach(email -> put(patientEmails, email));
+            }
+        });
+        ready = true;
+    }
+
+    @EventListener(condition = "#event.defaultSite")
+    public void onChange(EntityChangeEvent event){
+        BloomFilter filter = filterFor(event.getEntityType());
+        if (filter == null){
+            return;
+        }
+        if (event.getKind() == EntityChangeEvent.Kind.CREATED){
+            put(filter, ((Person) event.getEntity()).getEmail());
+        } else if (event.getKind() == EntityChangeEvent.Kind.CLEARED){
+            filter.clear();
+        }
+    }
+
+    public boolean isTaken(Class<? extends Person> type, String email){
+        if (email == null){
+            return false;
+        }
+        if (ready && !filterFor(type).mightContain(key(email))){
+            return false;
+        }
+        if (Doctor.class.isAssignableFrom(type)){
+            return doctorRepository.findByEmail(email).isPresent();
+        }
+        return patientRepository.findByEmail(email).isPresent();
+    }
+
+    public boolean isReady(){
+        return this.ready;
+    }
+
+    private BloomFilter filterFor(Class<?> type){
+        if (Doctor.class.isAssignableFrom(type)){
+            return doctorEmails;
+        }
+        if (Patient.class.isAssignableFrom(type)){
+            return patientEmails;
+        }
+        return null;
+    }
+
+    private static void put(BloomFilter filter, String email){
+        if (email != null){
+            filter.put(key(email));
+        }
+    }
+
+    private static String key(String email){
+        return email.trim().toLowerCase();
+    }
+}
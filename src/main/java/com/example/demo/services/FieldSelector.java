@@ -0,0 +1,248 @@
+package com.example.demo.services;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Tuple;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.From;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.criteria.Selection;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.Attribute.PersistentAttributeType;
+import javax.persistence.metamodel.ManagedType;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.stereotype.Service;
+
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+
+/**
+ * Sparse fieldsets for the list endpoints (?fields=id,room.roomName,startsAt).
+ *
+ * The selection is turned into a tuple query over exactly the requested
+ * columns, joining an association only when one of its fields is asked for,
+ * so nothing else is loaded, let alone serialized. A field names a property
+ * of the response: a dotted path goes into an association, and an
+ * association on its own stands for all of its fields. Rows come back as
+ * maps nested the same way the entity would be, in the entity's property
+ * order.
+ */
+@Service
+public class FieldSelector {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    private final Map<Class<?>, List<String>> properties = new ConcurrentHashMap<>();
+
+    /** Parses a fields parameter against the entity; throws IllegalArgumentException for a field the response does not have. */
+    public FieldSelection parse(Class<?> type, String fields){
+        Set<String> paths = new LinkedHashSet<>();
+        Set<String> shown = new LinkedHashSet<>();
+        for (String field : fields.split(",")){
+            String path = field.trim();
+            if (path.isEmpty()){
+                continue;
+            }
+            expand(entityManager.getMetamodel().managedType(type), "", path.split("\\.", -1), 0, paths);
+            shown.add(path.split("\\.")[0]);
+        }
+        if (paths.isEmpty()){
+            throw new IllegalArgumentException("No fields selected");
+        }
+        return new FieldSelection(new ArrayList<>(paths), shown);
+    }
+
+    /** The part of the selection the given entity has, for reading the same fields from a table that keeps fewer of them. */
+    public FieldSelection retain(Class<?> type, FieldSelection fields){
+        List<String> paths = new ArrayList<>();
+        for (String path : fields.getPaths()){
+            Set<String> resolved = new LinkedHashSet<>();
+            try {
+                expand(entityManager.getMetamodel().managedType(type), "", path.split("\\."), 0, resolved);
+            } catch (IllegalArgumentException e){
+                continue;
+            }
+            paths.add(path);
+        }
+        return new FieldSelection(paths, fields.shown);
+    }
+
+    /** The selected fields of every row matching where (all rows when null), ordered by the given top-level fields. */
+    public <T> List<Map<String, Object>> select(Class<T> type, FieldSelection fields, Specification<T> where, String... orderBy){
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Tuple> query = builder.createTupleQuery();
+        Root<T> root = query.from(type);
+        Map<String, From<?, ?>> joins = new HashMap<>();
+
+        List<Selection<?>> selections = new ArrayList<>();
+        for (String path : fields.getPaths()){
+            selections.add(path(root, joins, path));
+        }
+        query.multiselect(selections);
+        if (where != null){
+            Predicate predicate = where.toPredicate(root, query, builder);
+            if (predicate != null){
+                query.where(predicate);
+            }
+        }
+        List<Order> order = new ArrayList<>();
+        for (String path : orderBy){
+            order.add(builder.asc(path(root, joins, path)));
+        }
+        query.orderBy(order);
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (Tuple tuple : entityManager.createQuery(query).getResultList()){
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (int i = 0; i < fields.getPaths().size(); i++){
+                put(row, fields.getPaths().get(i), tuple.get(i));
+            }
+            rows.add(collapse(row));
+        }
+        return rows;
+    }
+
+    private void expand(ManagedType<?> type, String prefix, String[] names, int index, Set<String> paths){
+        String name = names[index];
+        String path = prefix + name;
+        if (!serialized(type.getJavaType()).contains(name)){
+            throw new IllegalArgumentException("Unknown field " + path);
+        }
+        Attribute<?, ?> attribute = type.getAttribute(name);
+        PersistentAttributeType kind = attribute.getPersistentAttributeType();
+        if (kind == PersistentAttributeType.BASIC){
+            if (index != names.length - 1){
+                throw new IllegalArgumentException("Field " + path + " has no fields");
+            }
+            paths.add(path);
+        } else if (kind == PersistentAttributeType.MANY_TO_ONE || kind == PersistentAttributeType.ONE_TO_ONE){
+            ManagedType<?> target = entityManager.getMetamodel().managedType(attribute.getJavaType());
+            if (index == names.length - 1){
+                for (String property : serialized(target.getJavaType())){
+                    if (isBasic(target, property)){
+                        paths.add(path + "." + property);
+                    }
+                }
+            } else {
+                expand(target, path + ".", names, index + 1, paths);
+            }
+        } else {
+            throw new IllegalArgumentException("Field " + path + " cannot be selected");
+        }
+    }
+
+    private static boolean isBasic(ManagedType<?> type, String name){
+        try {
+            return type.getAttribute(name).getPersistentAttributeType() == PersistentAttributeType.BASIC;
+        } catch (IllegalArgumentException e){
+            return false;
+        }
+    }
+
+    /** The properties Jackson writes for the class, in the order it writes them. */
+    private List<String> serialized(Class<?> type){
+        return properties.computeIfAbsent(type, key -> {
+            BeanDescription description = objectMapper.getSerializationConfig().introspect(objectMapper.constructType(key));
+            List<String> names = new ArrayList<>();
+            for (BeanPropertyDefinition property : description.findProperties()){
+                if (property.couldSerialize()){
+                    names.add(property.getName());
+                }
+            }
+            return Collections.unmodifiableList(names);
+        });
+    }
+
+    private static Path<?> path(Root<?> root, Map<String, From<?, ?>> joins, String path){
+        String[] names = path.split("\\.");
+        From<?, ?> from = root;
+        StringBuilder prefix = new StringBuilder();
+        for (int i = 0; i < names.length - 1; i++){
+            prefix.append(names[i]).append('.');
+            From<?, ?> parent = from;
+            String name = names[i];
+            from = joins.computeIfAbsent(prefix.toString(), key -> parent.join(name, JoinType.LEFT));
+        }
+        return from.get(names[names.length - 1]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void put(Map<String, Object> row, String path, Object value){
+        int dot = path.indexOf('.');
+        if (dot < 0){
+            row.put(path, value);
+            return;
+        }
+        Map<String, Object> nested = (Map<String, Object>) row.computeIfAbsent(path.substring(0, dot), key -> new LinkedHashMap<String, Object>());
+        put(nested, path.substring(dot + 1), value);
+    }
+
+    // A left-joined association that is not there reads as nulls, it is shown as null the way the entity would be.
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> collapse(Map<String, Object> row){
+        for (Map.Entry<String, Object> entry : row.entrySet()){
+            if (entry.getValue() instanceof Map){
+                Map<String, Object> nested = collapse((Map<String, Object>) entry.getValue());
+                if (nested.values().stream().allMatch(Objects::isNull)){
+                    entry.setValue(null);
+                }
+            }
+        }
+        return row;
+    }
+
+    /** Leaf paths to read, and the top-level fields that were asked for. */
+    public static final class FieldSelection {
+
+        private final List<String> paths;
+        private final Set<String> shown;
+
+        FieldSelection(List<String> paths, Set<String> shown){
+            this.paths = Collections.unmodifiableList(paths);
+            this.shown = Collections.unmodifiableSet(shown);
+        }
+
+        public List<String> getPaths(){
+            return this.paths;
+        }
+
+        /** Also reads the given top-level fields, e.g. to sort by; {@link #trim} leaves them out again unless they were asked for. */
+        public FieldSelection including(String... fields){
+            Set<String> all = new LinkedHashSet<>(paths);
+            all.addAll(Arrays.asList(fields));
+            return new FieldSelection(new ArrayList<>(all), shown);
+        }
+
+        /** Drops the fields that were only read for {@link #including}. */
+        public List<Map<String, Object>> trim(List<Map<String, Object>> rows){
+            for (Map<String, Object> row : rows){
+                row.keySet().retainAll(shown);
+            }
+            return rows;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.demo.services;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Outcome of a bulk import: how many rows made it in, how many were rejected
+ * and why. Only the first {@code maxErrors} rejections are listed, the
+ * {@code failed} counter always covers all of them.
+ */
+public class ImportReport {
+
+    private long imported;
+    private long failed;
+    private final List<RowError> errors = new ArrayList<>();
+    private final int maxErrors;
+
+    public ImportReport(int maxErrors){
+        this.maxErrors = maxErrors;
+    }
+
+    public long getImported(){
+        return this.imported;
+    }
+
+    public long getFailed(){
+        return this.failed;
+    }
+
+    public List<RowError> getErrors(){
+        return this.errors;
+    }
+
+    public boolean isErrorsTruncated(){
+        return this.failed > this.errors.size();
+    }
+
+    void imported(int rows){
+        this.imported += rows;
+    }
+
+    void reject(int line, String message){
+        this.failed++;
+        if (this.errors.size() < this.maxErrors){
+            this.errors.add(new RowError(line, message));
+        }
+    }
+
+    public static class RowError {
+        private final int line;
+        private final String message;
+
+        public RowError(int line, String message){
+            this.line = line;
+            this.message = message;
+        }
+
+        public int getLine(){
+            return this.line;
+        }
+
+        public String getMessage(){
+            return this.message;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Fast restart for {@link RoomOccupancy}: a compact binary snapshot of the
+ * bitmap, written to a memory-mapped file, plus a replay of the change log
+ * tail on boot (techhub.occupancy.snapshot.path, off when empty).
+ *
+ * Layout: a 32 byte header (magic, version, change token, CRC32 and length of
+ * the body, room count), then per room its name and days, and per day the
+ * epoch day, the off-grid count and the slot words. The file is written next
+ * to the target and moved over it, and the CRC is checked on load, so a crash
+ * mid-write leaves the previous snapshot usable.
+ *
+ * Only committed bookings go in: slots reserved for a booking still in
+ * flight (a synchronous insert, or a PENDING write-behind ticket) are left
+ * out of the copy, the row reaches the replay once it commits.
+ *
+ * The token is the change safe point ({@link ChangeNumbers}) read before the
+ * bitmap is copied. A change committed just before that may not have reached
+ * the bitmap yet, so the replay starts replay-overlap changes earlier. Change
+ * numbers do not follow commit order, so the tail is not applied change by
+ * change: the replay collects the room days it touched and loads those days
+ * again from the table, which is right however often a change is seen. When
+ * the tail cannot be replayed (deleted everything, pruned tombstones,
+ * tombstones from before they carried times) the bitmap is loaded from the
+ * table.
+ *
+ * Until either finishes this reports OUT_OF_SERVICE, which keeps the
+ * readiness group down.
+ */
+@Component
+public class OccupancySnapshot implements HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(OccupancySnapshot.class);
+
+    private static final int MAGIC = 0x4f434331; // "OCC1"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final int DAY_BYTES = 8 + 4 + 8 * RoomOccupancy.WORDS_PER_DAY;
+    private static final int REPLAY_PAGE_SIZE = 1000;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    AppointmentTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    ChangeSequenceRepository sequenceRepository;
+
+    @Autowired
+    ChangeNumbers changeNumbers;
+
+    @Value("${techhub.occupancy.snapshot.path:}")
+    String path;
+
+    @Value("${techhub.occupancy.snapshot.replay-overlap:1000}")
+    long replayOverlap;
+
+    private volatile String source;
+    private volatile long token = -1;
+    private volatile long replayed;
+    private volatile long loadMillis;
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void restore(){
+        long start = System.currentTimeMillis();
+        if (isEnabled() && Files.isReadable(Paths.get(path))){
+            if (restoreFrom(Paths.get(path))){
+                return;
+            }
+            roomOccupancy.clear();
+        }
+        roomOccupancy.load();
+        finished("table", currentToken(), 0, start);
+    }
+
+    /** Loads the bitmap from a snapshot and its change log tail. False when the table has to be read instead. */
+    public boolean restoreFrom(Path snapshot){
+        long start = System.currentTimeMillis();
+        try {
+            long snapshotToken = read(snapshot);
+            long count = replay(snapshotToken);
+            if (count >= 0){
+                roomOccupancy.markLoaded();
+                finished("snapshot", snapshotToken, count, start);
+                return true;
+            }
+            log.info("Change log tail after {} cannot be replayed, loading occupancy from the table", snapshotToken);
+        } catch (IOException | RuntimeException e){
+            log.warn("Occupancy snapshot {} not usable, loading from the table: {}", snapshot, e.getMessage());
+        }
+        return false;
+    }
+
+    @Scheduled(fixedDelayString = "${techhub.occupancy.snapshot.interval-ms:300000}",
+               initialDelayString = "${techhub.occupancy.snapshot.interval-ms:300000}")
+    public void scheduledWrite(){
+        if (isEnabled() && roomOccupancy.isLoaded()){
+            try {
+                write(Paths.get(path));
+            } catch (IOException e){
+                log.warn("Could not write occupancy snapshot {}", path, e);
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown(){
+        scheduledWrite();
+    }
+
+    public boolean isEnabled(){
+        return path != null && !path.isEmpty();
+    }
+
+    @Override
+    public Health health(){
+        if (source == null){
+            return Health.outOfService().withDetail("source", isEnabled() ? "snapshot" : "table").build();
+        }
+        return Health.up()
+                .withDetail("source", source)
+                .withDetail("token", token)
+                .withDetail("replayed", replayed)
+                .withDetail("loadMillis", loadMillis)
+                .build();
+    }
+
+    /** Writes the current bitmap. Returns the change token it is consistent with. */
+    public long write(Path target) throws IOException {
+        long snapshotToken = currentToken();
+        Map<String, List<Day>> rooms = new LinkedHashMap<>();
+        roomOccupancy.forEachDay((roomName, epochDay, words, irregular) ->
+                rooms.computeIfAbsent(roomName, name -> new ArrayList<>()).add(new Day(epochDay, words, irregular)));
+
+        int bodyBytes = 0;
+        for (Map.Entry<String, List<Day>> room : rooms.entrySet()){
+            bodyBytes += 2 + room.getKey().getBytes(StandardCharsets.UTF_8).length + 4 + room.getValue().size() * DAY_BYTES;
+        }
+
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + bodyBytes);
+            buffer.position(HEADER_BYTES);
+            for (Map.Entry<String, List<Day>> room : rooms.entrySet()){
+                byte[] name = room.getKey().getBytes(StandardCharsets.UTF_8);
+                buffer.putShort((short) name.length).put(name).putInt(room.getValue().size());
+                for (Day day : room.getValue()){
+                    buffer.putLong(day.epochDay).putInt(day.irregular);
+                    for (long word : day.words){
+                        buffer.putLong(word);
+                    }
+                }
+            }
+            buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, snapshotToken)
+                  .putLong(16, crc(buffer, bodyBytes)).putInt(24, bodyBytes).putInt(28, rooms.size());
+            buffer.force();
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return snapshotToken;
+    }
+
+    /** Maps the snapshot into the bitmap. Returns its change token. */
+    long read(Path source) throws IOException {
+        try (FileChannel channel = FileChannel.open(source, StandardOpenOption.READ)){
+            if (channel.size() < HEADER_BYTES){
+                throw new IOException("truncated header");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION){
+                throw new IOException("not an occupancy snapshot");
+            }
+            int bodyBytes = buffer.getInt(24);
+            if (HEADER_BYTES + (long) bodyBytes != channel.size() || crc(buffer, bodyBytes) != buffer.getLong(16)){
+                throw new IOException("checksum mismatch");
+            }
+
+            roomOccupancy.clear();
+            int roomCount = buffer.getInt(28);
+            buffer.position(HEADER_BYTES);
+            long[] words = new long[RoomOccupancy.WORDS_PER_DAY];
+            for (int r = 0; r < roomCount; r++){
+                byte[] name = new byte[buffer.getShort()];
+                buffer.get(name);
+                String roomName = new String(name, StandardCharsets.UTF_8);
+                int dayCount = buffer.getInt();
+                for (int d = 0; d < dayCount; d++){
+                    long epochDay = buffer.getLong();
+                    int irregular = buffer.getInt();
+                    for (int w = 0; w < words.length; w++){
+                        words[w] = buffer.getLong();
+                    }
+                    roomOccupancy.restoreDay(roomName, epochDay, words, irregular);
+                }
+            }
+            return buffer.getLong(8);
+        }
+    }
+
+    /** Reloads the room days touched after the token (and the overlap before it). Returns how many changes, or -1 when it cannot. */
+    long replay(long snapshotToken){
+        long from = Math.max(0, snapshotToken - replayOverlap);
+        long pruned = sequenceRepository.findById(AppointmentChangeLog.PRUNED).map(ChangeSequence::getValue).orElse(0L);
+        if (pruned > from || tombstoneRepository.findFirstByAppointmentIdIsNullAndChangeSeqGreaterThanOrderByChangeSeqDesc(from).isPresent()){
+            return -1;
+        }
+
+        Map<String, Set<Long>> touched = new HashMap<>();
+        long count = 0;
+        long seq = from;
+        List<Appointment> appointments;
+        do {
+            appointments = appointmentRepository.findByChangeSeqGreaterThanOrderByChangeSeq(seq, PageRequest.of(0, REPLAY_PAGE_SIZE));
+            for (Appointment appointment : appointments){
+                touch(touched, appointment.getRoom() != null ? appointment.getRoom().getRoomName() : null, appointment.getStartsAt(), appointment.getFinishesAt());
+                seq = appointment.getChangeSeq();
+            }
+            count += appointments.size();
+        } while (appointments.size() == REPLAY_PAGE_SIZE);
+
+        seq = from;
+        List<AppointmentTombstone> tombstones;
+        do {
+            tombstones = tombstoneRepository.findByChangeSeqGreaterThanOrderByChangeSeq(seq, PageRequest.of(0, REPLAY_PAGE_SIZE));
+            for (AppointmentTombstone tombstone : tombstones){
+                if (tombstone.getStartsAt() == null){
+                    return -1;
+                }
+                touch(touched, tombstone.getRoomName(), tombstone.getStartsAt(), tombstone.getFinishesAt());
+                seq = tombstone.getChangeSeq();
+            }
+            count += tombstones.size();
+        } while (tombstones.size() == REPLAY_PAGE_SIZE);
+
+        for (Map.Entry<String, Set<Long>> room : touched.entrySet()){
+            TreeSet<Long> days = new TreeSet<>(room.getValue());
+            List<Appointment> rows = appointmentRepository.findByRoomRoomNameAndStartsAtBeforeAndFinishesAtAfter(room.getKey(),
+                    LocalDate.ofEpochDay(days.last() + 1).atStartOfDay(), LocalDate.ofEpochDay(days.first()).atStartOfDay());
+            roomOccupancy.reload(room.getKey(), days, rows);
+        }
+        return count;
+    }
+
+    private static void touch(Map<String, Set<Long>> touched, String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        if (roomName != null){
+            touched.computeIfAbsent(roomName, name -> new HashSet<>()).addAll(RoomOccupancy.days(startsAt, finishesAt));
+        }
+    }
+
+    private long currentToken(){
+        return changeNumbers.safePoint();
+    }
+
+    private void finished(String source, long token, long replayed, long start){
+        this.token = token;
+        this.replayed = replayed;
+        this.loadMillis = System.currentTimeMillis() - start;
+        this.source = source;
+        log.info("Room occupancy loaded from the {} in {} ms ({} changes replayed)", source, loadMillis, replayed);
+    }
+
+    private static long crc(ByteBuffer buffer, int bodyBytes){
+        ByteBuffer body = buffer.duplicate();
+        body.position(HEADER_BYTES).limit(HEADER_BYTES + bodyBytes);
+        CRC32 crc = new CRC32();
+        crc.update(body);
+        return crc.getValue();
+    }
+
+    private static class Day {
+        final long epochDay;
+        final long[] words;
+        final int irregular;
+
+        Day(long epochDay, long[] words, int irregular){
+            this.epochDay = epochDay;
+            this.words = words;
+            this.irregular = irregular;
+        }
+    }
+}
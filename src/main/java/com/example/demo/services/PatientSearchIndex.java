@@ -0,0 +1,43 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.PatientRepository;
+import com.example.demo.entities.Patient;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+@Component
+public class PatientSearchIndex extends PersonSearchIndex<Patient> {
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    public PatientSearchIndex(){
+        super(Patient.class);
+    }
+
+    @Override
+    protected long idOf(Patient patient){
+        return patient.getId();
+    }
+
+    @Override
+    protected List<Patient> loadPage(long afterId, int size){
+        return patientRepository.findByIdGreaterThan(afterId, PageRequest.of(0, size, Sort.by("id")));
+    }
+
+    @Override
+    protected List<Patient> findByPrefix(String prefix, int limit){
+        return patientRepository.findByNameOrEmailPrefix(prefix, PageRequest.of(0, limit));
+    }
+
+    @Override
+    protected List<Patient> findAllById(Collection<Long> ids){
+        return patientRepository.findAllById(ids);
+    }
+}
@@ -0,0 +1,250 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Streaming CSV import of doctors and patients.
+ *
+ * Rows are parsed one at a time from the request body and written in chunks,
+ * each chunk in its own transaction and sent to the database as JDBC batches
+ * (see hibernate.jdbc.batch_size). The persistence context is cleared after
+ * every chunk so memory does not grow with the size of the upload.
+ *
+ * Expected columns are firstName,lastName,age,email. A header line is optional;
+ * when present the columns may come in any order. Rows whose email is already
+ * taken, in the database or earlier in the file, are reported and skipped.
+ */
+@Service
+public class PersonCsvImportService {
+
+    private static final Pattern EMAIL = Pattern.compile("^[^@\\s]+@[^@\\s]+$");
+    private static final int MAX_NAME_LENGTH = 255;
+    private static final int MAX_AGE = 150;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    EmailRegistry emailRegistry;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Value("${techhub.import.chunk-size:1000}")
+    int chunkSize;
+
+    @Value("${techhub.import.max-reported-errors:1000}")
+    int maxReportedErrors;
+
+    public ImportReport importDoctors(InputStream csv) throws IOException {
+        return importPeople(csv, Doctor.class, Doctor::new, doctorRepository);
+    }
+
+    public ImportReport importPatients(InputStream csv) throws IOException {
+        return importPeople(csv, Patient.class, Patient::new, patientRepository);
+    }
+
+    private <T extends Person> ImportReport importPeople(InputStream csv, Class<T> type, PersonFactory<T> factory, JpaRepository<T, Long> repository) throws IOException {
+        ImportReport report = new ImportReport(maxReportedErrors);
+        CsvRecordReader reader = new CsvRecordReader(new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8)));
+
+        int[] columns = {0, 1, 2, 3};
+        List<PersonRow> chunk = new ArrayList<>(chunkSize);
+        Set<String> chunkEmails = new HashSet<>();
+        boolean first = true;
+
+        List<String> record;
+        while ((record = reader.next()) != null){
+            if (first){
+                first = false;
+                if (isHeader(record)){
+                    columns = headerColumns(record);
+                    if (columns == null){
+                        report.reject(reader.getLine(), "Header must contain firstName, lastName, age and email");
+                        return report;
+                    }
+                    continue;
+                }
+            }
+
+            PersonRow row = new PersonRow(reader.getLine());
+            String error = row.parse(record, columns);
+            if (error != null){
+                report.reject(row.line, error);
+                continue;
+            }
+
+            // Earlier chunks are already known to the email registry, only this one has to be checked by hand.
+            if (!chunkEmails.add(row.email.toLowerCase()) || emailRegistry.isTaken(type, row.email)){
+                report.reject(row.line, "Duplicate email '" + row.email + "'");
+                continue;
+            }
+
+            chunk.add(row);
+            if (chunk.size() >= chunkSize){
+                write(chunk, factory, repository, report);
+                chunkEmails.clear();
+            }
+        }
+        write(chunk, factory, repository, report);
+
+        return report;
+    }
+
+    private <T extends Person> void write(List<PersonRow> chunk, PersonFactory<T> factory, JpaRepository<T, Long> repository, ImportReport report){
+        if (chunk.isEmpty()){
+            return;
+        }
+        try {
+            published(transactionTemplate.execute(status -> persist(chunk, factory, repository)));
+            report.imported(chunk.size());
+        } catch (RuntimeException e){
+            // Something in the chunk was rejected by the database, retry row by row to find out what.
+            for (PersonRow row : chunk){
+                try {
+                    published(transactionTemplate.execute(status -> persist(Collections.singletonList(row), factory, repository)));
+                    report.imported(1);
+                } catch (RuntimeException rowError){
+                    report.reject(row.line, rootMessage(rowError));
+                }
+            }
+        }
+        chunk.clear();
+    }
+
+    private <T extends Person> List<T> persist(List<PersonRow> rows, PersonFactory<T> factory, JpaRepository<T, Long> repository){
+        List<T> people = new ArrayList<>(rows.size());
+        for (PersonRow row : rows){
+            people.add(factory.create(row.firstName, row.lastName, row.age, row.email));
+        }
+        repository.saveAll(people);
+        entityManager.flush();
+        entityManager.clear();
+        return people;
+    }
+
+    private void published(List<? extends Person> people){
+        for (Person person : people){
+            eventPublisher.publishEvent(EntityChangeEvent.created(person));
+        }
+    }
+
+    private static boolean isHeader(List<String> record){
+        for (String cell : record){
+            if (normalize(cell).equals("email")){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] headerColumns(List<String> header){
+        String[] names = {"firstname", "lastname", "age", "email"};
+        int[] columns = new int[names.length];
+        for (int i = 0; i < names.length; i++){
+            columns[i] = -1;
+            for (int j = 0; j < header.size(); j++){
+                if (normalize(header.get(j)).equals(names[i])){
+                    columns[i] = j;
+                }
+            }
+            if (columns[i] < 0){
+                return null;
+            }
+        }
+        return columns;
+    }
+
+    private static String normalize(String cell){
+        return cell.replaceAll("[^A-Za-z]", "").toLowerCase();
+    }
+
+    private static String rootMessage(Throwable e){
+        Throwable cause = e;
+        while (cause.getCause() != null){
+            cause = cause.getCause();
+        }
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    interface PersonFactory<T extends Person> {
+        T create(String firstName, String lastName, int age, String email);
+    }
+
+    static class PersonRow {
+        final int line;
+        String firstName;
+        String lastName;
+        int age;
+        String email;
+
+        PersonRow(int line){
+            this.line = line;
+        }
+
+        /** Fills the row from the record, returns a description of the problem when the record is not valid. */
+        String parse(List<String> record, int[] columns){
+            for (int column : columns){
+                if (column >= record.size()){
+                    return "Expected at least " + (column + 1) + " columns but got " + record.size();
+                }
+            }
+            firstName = record.get(columns[0]).trim();
+            lastName = record.get(columns[1]).trim();
+            email = record.get(columns[3]).trim();
+            String rawAge = record.get(columns[2]).trim();
+
+            if (firstName.isEmpty() || firstName.length() > MAX_NAME_LENGTH){
+                return "Invalid firstName";
+            }
+            if (lastName.isEmpty() || lastName.length() > MAX_NAME_LENGTH){
+                return "Invalid lastName";
+            }
+            try {
+                age = Integer.parseInt(rawAge);
+            } catch (NumberFormatException e){
+                return "Invalid age '" + rawAge + "'";
+            }
+            if (age < 0 || age > MAX_AGE){
+                return "Invalid age '" + rawAge + "'";
+            }
+            if (email.length() > MAX_NAME_LENGTH || !EMAIL.matcher(email).matches()){
+                return "Invalid email '" + email + "'";
+            }
+            return null;
+        }
+    }
+}
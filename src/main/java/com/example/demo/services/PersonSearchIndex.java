@@ -0,0 +1,395 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.Person;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.sites.SiteContext;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+/**
+ * In-memory search index over the names and email of a {@link Person} table.
+ *
+ * Every first name / last name word and the email address are normalized
+ * (lower case, accents stripped) and kept in a sorted map, so a prefix lookup is
+ * a range scan over the matching terms. Each distinct term is also split in
+ * trigrams, which gives the candidates for fuzzy matching (typos, infixes).
+ *
+ * The index is filled once the application is ready and then follows
+ * {@link EntityChangeEvent}s of the default site. Until it is loaded, and
+ * always for the other sites, searches go to that site's database,
+ * which only supports plain prefix matching: the longest word of the query
+ * is looked up there as a prefix (wildcards in it escaped), and the other
+ * words are then checked against the terms of each result the way the
+ * index would.
+ */
+public abstract class PersonSearchIndex<T extends Person> {
+
+    private static final int LOAD_PAGE_SIZE = 10000;
+    private static final int MAX_MATCHES_PER_WORD = 10000;
+    private static final int MAX_FUZZY_CANDIDATES = 5000;
+
+    private static final int EXACT = 3;
+    private static final int PREFIX = 2;
+    private static final int FUZZY = 1;
+
+    private static final String SEPARATORS = "[\\s,;]+";
+
+    private final Class<T> type;
+
+    // term -> ids of the people having it
+    private final ConcurrentSkipListMap<String, Set<Long>> terms = new ConcurrentSkipListMap<>();
+    // trigram -> terms containing it
+    private final ConcurrentHashMap<String, Set<String>> grams = new ConcurrentHashMap<>();
+    // id -> terms indexed for it, needed to unlink on delete
+    private final ConcurrentHashMap<Long, String[]> termsById = new ConcurrentHashMap<>();
+
+    private volatile boolean ready = false;
+
+    protected PersonSearchIndex(Class<T> type){
+        this.type = type;
+    }
+
+    protected abstract long idOf(T person);
+
+    /** Next page of people with an id greater than the given one, ordered by id. */
+    protected abstract List<T> loadPage(long afterId, int size);
+
+    /** People whose last name, first name or email starts with the prefix, taken literally. */
+    protected abstract List<T> findByPrefix(String prefix, int limit);
+
+    protected abstract List<T> findAllById(Collection<Long> ids);
+
+    public boolean isReady(){
+        return this.ready;
+    }
+
+    public int size(){
+        return this.termsById.size();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        long afterId = 0;
+        List<T> page;
+        do {
+            page = loadPage(afterId, LOAD_PAGE_SIZE);
+            for (T person : page){
+                add(person);
+                afterId = idOf(person);
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        this.ready = true;
+    }
+
+    @EventListener(condition = "#event.defaultSite")
+    public void onChange(EntityChangeEvent event){
+        if (!event.isAbout(type)){
+            return;
+        }
+        switch (event.getKind()){
+            case CREATED:
+                add(type.cast(event.getEntity()));
+                break;
+            case DELETED:
+                remove(idOf(type.cast(event.getEntity())));
+                break;
+            case CLEARED:
+                clear();
+                break;
+        }
+    }
+
+    public synchronized void add(T person){
+        long id = idOf(person);
+        String[] personTerms = termsOf(person);
+        String[] previous = termsById.put(id, personTerms);
+        if (previous != null){
+            unlink(id, previous);
+        }
+        for (String term : personTerms){
+            link(id, term);
+        }
+    }
+
+    public synchronized void remove(long id){
+        String[] previous = termsById.remove(id);
+        if (previous != null){
+            unlink(id, previous);
+        }
+    }
+
+    public synchronized void clear(){
+        terms.clear();
+        grams.clear();
+        termsById.clear();
+    }
+
+    /**
+     * People matching every word of the query, best matches first. A word
+     * matches a term exactly, as a prefix or, failing those, approximately.
+     */
+    public List<T> search(String query, int limit){
+        List<String> words = words(query);
+        if (words.isEmpty()){
+            return Collections.emptyList();
+        }
+        if (!ready || !SiteContext.isDefault()){
+            return searchTable(query, words, limit);
+        }
+
+        Map<Long, Integer> scores = null;
+        for (String word : words){
+            Map<Long, Integer> matches = match(word, limit);
+            if (scores == null){
+                scores = matches;
+            } else {
+                Map<Long, Integer> both = new HashMap<>();
+                for (Map.Entry<Long, Integer> e : scores.entrySet()){
+                    Integer score = matches.get(e.getKey());
+                    if (score != null){
+                        both.put(e.getKey(), e.getValue() + score);
+                    }
+                }
+                scores = both;
+            }
+            if (scores.isEmpty()){
+                return Collections.emptyList();
+            }
+        }
+
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort((a, b) -> a.getValue().equals(b.getValue())
+                ? Long.compare(a.getKey(), b.getKey())
+                : Integer.compare(b.getValue(), a.getValue()));
+
+        List<Long> ids = new ArrayList<>(Math.min(limit, ranked.size()));
+        for (int i = 0; i < ranked.size() && ids.size() < limit; i++){
+            ids.add(ranked.get(i).getKey());
+        }
+        return inOrder(ids, findAllById(ids));
+    }
+
+    private List<T> searchTable(String query, List<String> words, int limit){
+        // As typed, the column collation decides about case and accents.
+        String longest = "";
+        for (String typed : query.trim().split(SEPARATORS)){
+            longest = typed.length() > longest.length() ? typed : longest;
+        }
+        if (words.size() == 1){
+            return findByPrefix(longest, limit);
+        }
+
+        List<T> found = new ArrayList<>();
+        for (T person : findByPrefix(longest, MAX_MATCHES_PER_WORD)){
+            if (matchesAll(termsOf(person), words)){
+                found.add(person);
+                if (found.size() >= limit){
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    private static boolean matchesAll(String[] personTerms, List<String> words){
+        for (String word : words){
+            boolean matched = false;
+            for (String term : personTerms){
+                if (term.startsWith(word)){
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Map<Long, Integer> match(String word, int limit){
+        Map<Long, Integer> matches = new HashMap<>();
+
+        prefix:
+        for (Map.Entry<String, Set<Long>> e : terms.subMap(word, true, word + Character.MAX_VALUE, true).entrySet()){
+            int score = e.getKey().equals(word) ? EXACT : PREFIX;
+            for (Long id : e.getValue()){
+                matches.merge(id, score, Math::max);
+                if (matches.size() >= MAX_MATCHES_PER_WORD){
+                    break prefix;
+                }
+            }
+        }
+
+        if (matches.size() < limit && word.length() >= 3){
+            for (String term : fuzzyTerms(word)){
+                Set<Long> ids = terms.get(term);
+                if (ids == null){
+                    continue;
+                }
+                for (Long id : ids){
+                    matches.merge(id, FUZZY, Math::max);
+                }
+            }
+        }
+        return matches;
+    }
+
+    /** Terms sharing a trigram with the word that contain it or are within a small edit distance of it. */
+    private Set<String> fuzzyTerms(String word){
+        Set<String> result = new LinkedHashSet<>();
+        int maxEdits = word.length() <= 4 ? 1 : 2;
+        int seen = 0;
+
+        for (String gram : trigrams(word)){
+            Set<String> candidates = grams.get(gram);
+            if (candidates == null){
+                continue;
+            }
+            for (String term : candidates){
+                if (++seen > MAX_FUZZY_CANDIDATES){
+                    return result;
+                }
+                if (result.contains(term)){
+                    continue;
+                }
+                if (term.contains(word) || editDistance(word, term, maxEdits) <= maxEdits){
+                    result.add(term);
+                }
+            }
+        }
+        return result;
+    }
+
+    private void link(long id, String term){
+        Set<Long> ids = terms.get(term);
+        if (ids == null){
+            ids = ConcurrentHashMap.newKeySet();
+            terms.put(term, ids);
+            for (String gram : trigrams(term)){
+                grams.computeIfAbsent(gram, g -> ConcurrentHashMap.newKeySet()).add(term);
+            }
+        }
+        ids.add(id);
+    }
+
+    private void unlink(long id, String[] previous){
+        for (String term : previous){
+            Set<Long> ids = terms.get(term);
+            if (ids == null){
+                continue;
+            }
+            ids.remove(id);
+            if (ids.isEmpty()){
+                terms.remove(term);
+                for (String gram : trigrams(term)){
+                    Set<String> gramTerms = grams.get(gram);
+                    if (gramTerms != null){
+                        gramTerms.remove(term);
+                        if (gramTerms.isEmpty()){
+                            grams.remove(gram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private List<T> inOrder(List<Long> ids, List<T> people){
+        Map<Long, T> byId = new HashMap<>();
+        for (T person : people){
+            byId.put(idOf(person), person);
+        }
+        List<T> ordered = new ArrayList<>(ids.size());
+        for (Long id : ids){
+            T person = byId.get(id);
+            if (person != null){
+                ordered.add(person);
+            }
+        }
+        return ordered;
+    }
+
+    private static String[] termsOf(Person person){
+        Set<String> result = new LinkedHashSet<>();
+        result.addAll(words(person.getFirstName()));
+        result.addAll(words(person.getLastName()));
+        if (person.getEmail() != null){
+            String email = normalize(person.getEmail()).trim();
+            if (!email.isEmpty()){
+                result.add(email);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private static List<String> words(String text){
+        List<String> result = new ArrayList<>();
+        if (text == null){
+            return result;
+        }
+        for (String word : normalize(text).split(SEPARATORS)){
+            if (!word.isEmpty()){
+                result.add(word);
+            }
+        }
+        return result;
+    }
+
+    static String normalize(String text){
+        return Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase();
+    }
+
+    static List<String> trigrams(String term){
+        String padded = "$" + term + "$";
+        List<String> result = new ArrayList<>(padded.length());
+        for (int i = 0; i + 3 <= padded.length(); i++){
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    /** Optimal string alignment distance, gives up early once it exceeds max. */
+    static int editDistance(String a, String b, int max){
+        if (Math.abs(a.length() - b.length()) > max){
+            return max + 1;
+        }
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++){
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++){
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++){
+            int rowMin = Integer.MAX_VALUE;
+            for (int j = 1; j <= b.length(); j++){
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)){
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, d[i][j]);
+            }
+            if (rowMin > max){
+                return max + 1;
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+}
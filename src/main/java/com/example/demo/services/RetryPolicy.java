@@ -0,0 +1,90 @@
+package com.example.demo.services;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import javax.persistence.OptimisticLockException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+/**
+ * Runs a write transaction again when it lost an optimistic version check
+ * (an @Version column or a {@link BookingGuard} room bump) to a concurrent
+ * writer.
+ *
+ * Between attempts the caller sleeps a random time between 0 and
+ * base-delay-ms * 2^(attempt - 1), capped at max-delay-ms ("full jitter"),
+ * so writers that collided once do not collide again in lockstep. After
+ * max-attempts the last conflict is thrown to the caller.
+ *
+ * The action must open its own transaction: a conflict inside a transaction
+ * the caller already holds leaves it rollback-only, so in that case the
+ * action runs once and the conflict goes straight to the caller.
+ *
+ * Metrics, tagged by operation: techhub.concurrency.conflicts (every lost
+ * check), techhub.concurrency.retries (attempts started again) and
+ * techhub.concurrency.exhausted (operations that gave up).
+ */
+@Component
+public class RetryPolicy {
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${techhub.retry.max-attempts:5}")
+    int maxAttempts;
+
+    @Value("${techhub.retry.base-delay-ms:5}")
+    long baseDelayMs;
+
+    @Value("${techhub.retry.max-delay-ms:200}")
+    long maxDelayMs;
+
+    public <T> T execute(String operation, Supplier<T> action){
+        boolean retryable = !TransactionSynchronizationManager.isActualTransactionActive();
+        for (int attempt = 1; ; attempt++){
+            try {
+                return action.get();
+            } catch (OptimisticLockingFailureException | OptimisticLockException e){
+                counter("techhub.concurrency.conflicts", operation).increment();
+                if (!retryable){
+                    throw e;
+                }
+                if (attempt >= maxAttempts){
+                    counter("techhub.concurrency.exhausted", operation).increment();
+                    throw e;
+                }
+                counter("techhub.concurrency.retries", operation).increment();
+                if (!backOff(attempt)){
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /** False when interrupted, the caller then gives up with the conflict it has. */
+    private boolean backOff(int attempt){
+        long ceiling = Math.min(maxDelayMs, baseDelayMs << Math.min(attempt - 1, 20));
+        if (ceiling <= 0){
+            return true;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+            return true;
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private Counter counter(String name, String operation){
+        return meterRegistry.counter(name, "operation", operation);
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.RoomRepository;
+import com.example.demo.entities.Room;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.sites.SiteContext;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Room name to id dictionary. The REST API addresses rooms by name while
+ * rows reference them by their numeric key, so every name seen once is
+ * answered from here without touching the room table. Kept current from room
+ * change events; a name that is not cached is looked up through the unique
+ * name index. Every site numbers its rooms on its own, so names are cached
+ * per site.
+ */
+@Component
+public class RoomDirectory {
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    private final ConcurrentHashMap<String, Long> ids = new ConcurrentHashMap<>();
+
+    public Optional<Long> idOf(String roomName){
+        if (roomName == null){
+            return Optional.empty();
+        }
+        Long id = ids.get(key(SiteContext.name(), roomName));
+        if (id != null){
+            return Optional.of(id);
+        }
+        Optional<Room> room = roomRepository.findByRoomName(roomName);
+        room.ifPresent(found -> remember(roomName, found.getId()));
+        return room.map(Room::getId);
+    }
+
+    /**
+     * The room as a detached reference (id and name), enough to be joined to
+     * by a new row. Version and site are not filled in, do not hand it out.
+     */
+    public Optional<Room> find(String roomName){
+        return idOf(roomName).map(id -> new Room(id, roomName));
+    }
+
+    /** The stored room with all of its columns, by primary key once the name is known. */
+    public Optional<Room> findStored(String roomName){
+        return idOf(roomName).flatMap(roomRepository::findById);
+    }
+
+    /**
+     * The stored room for a room given by name, creating it the first time a
+     * name is booked. A room created here is added to created, for the caller
+     * to announce once its transaction commits. Must run inside the writing
+     * transaction. When another transaction inserted the same name first, the
+     * unique name index rejects this one with an optimistic locking failure, so
+     * that {@link RetryPolicy} runs the writing transaction again and the next
+     * attempt finds the stored room.
+     */
+    public Room resolve(Room room, List<Object> created){
+        if (room == null || room.getId() != 0 || room.getRoomName() == null){
+            return room;
+        }
+        Optional<Room> found = find(room.getRoomName());
+        if (found.isPresent()){
+            return found.get();
+        }
+        Room stored;
+        try {
+            stored = roomRepository.saveAndFlush(new Room(room.getRoomName()));
+        } catch (DataIntegrityViolationException e){
+            throw new OptimisticLockingFailureException("Room " + room.getRoomName() + " was created concurrently", e);
+        }
+        remember(room.getRoomName(), stored.getId());
+        created.add(stored);
+        return stored;
+    }
+
+    // Only cache what is committed, a rolled back booking must not leave a dangling id behind.
+    private void remember(String roomName, long id){
+        String key = key(SiteContext.name(), roomName);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()){
+            ids.put(key, id);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization(){
+            @Override
+            public void afterCommit(){
+                ids.put(key, id);
+            }
+        });
+    }
+
+    private static String key(String site, String roomName){
+        return site + '/' + roomName;
+    }
+
+    @EventListener
+    public void onChange(EntityChangeEvent event){
+        if (!event.isAbout(Room.class)){
+            return;
+        }
+        switch (event.getKind()){
+            case CREATED:
+                Room room = (Room) event.getEntity();
+                ids.put(key(event.getSite(), room.getRoomName()), room.getId());
+                break;
+            case DELETED:
+                ids.remove(key(event.getSite(), ((Room) event.getEntity()).getRoomName()));
+                break;
+            case CLEARED:
+                ids.keySet().removeIf(key -> key.startsWith(event.getSite() + '/'));
+                break;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.sites.SiteContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves every future appointment out of a room, into the other rooms (or
+ * the ones given), keeping their times.
+ *
+ * The plan is a greedy interval partitioning: the appointments are taken by
+ * start time and each goes to a target room whose timeline is free for it,
+ * preferring the room that was busy until the latest before it starts (the
+ * tightest fit, which keeps the long gaps for the long appointments). With
+ * no other bookings in the way this uses as few rooms as the overlap of the
+ * appointments allows. Timelines come from {@link ScheduleStore} for the
+ * default site, from the table otherwise, plus the series occurrences of
+ * each target room; a lookup is a floor search in a sorted map.
+ *
+ * It is all or nothing: when an appointment fits nowhere, nothing moves and
+ * the plan comes back with the ones left over. Otherwise all moves commit in
+ * one transaction through {@link AppointmentChangeLog#moveAll(List, List)},
+ * whose {@link BookingGuard} claim catches bookings the timelines had not
+ * seen yet; the whole run is retried by {@link RetryPolicy}.
+ */
+@Service
+public class RoomEvacuation {
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    AppointmentSeriesRepository seriesRepository;
+
+    @Autowired
+    AppointmentChangeLog appointmentChangeLog;
+
+    @Autowired
+    ScheduleStore scheduleStore;
+
+    @Autowired
+    RetryPolicy retryPolicy;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    /**
+     * Evacuates the room into the targets, or into every other room when
+     * targets is empty. Throws a SlotTakenException when a booking made
+     * elsewhere landed in the plan, or the conflict RetryPolicy gave up on.
+     */
+    public Evacuation evacuate(Room room, Collection<Room> targets){
+        List<Appointment> before = new ArrayList<>();
+        Evacuation evacuation = retryPolicy.execute("room.evacuate", () -> transactionTemplate.execute(status -> {
+            before.clear();
+            List<Appointment> appointments = appointmentRepository.findByRoomIdAndStartsAtAfterOrderByStartsAtAscIdAsc(room.getId(), LocalDateTime.now());
+            List<Room> rooms = new ArrayList<>();
+            for (Room target : targets.isEmpty() ? roomRepository.findAll() : targets){
+                if (target.getId() != room.getId()){
+                    rooms.add(target);
+                }
+            }
+            rooms.sort(Comparator.comparingLong(Room::getId));
+
+            Evacuation plan = plan(room, appointments, rooms);
+            if (!plan.isComplete() || appointments.isEmpty()){
+                return plan;
+            }
+            List<Room> into = new ArrayList<>();
+            for (Appointment appointment : appointments){
+                Appointment copy = new Appointment(appointment.getPatient(), appointment.getDoctor(), room,
+                        appointment.getStartsAt(), appointment.getFinishesAt());
+                copy.setId(appointment.getId());
+                before.add(copy);
+                into.add(plan.target.get(appointment.getId()));
+            }
+            appointmentChangeLog.moveAll(appointments, into);
+            return plan;
+        }));
+
+        if (!evacuation.isComplete()){
+            return evacuation;
+        }
+        // The old rows first: the views take a row they already hold as a no-op.
+        for (Appointment appointment : before){
+            eventPublisher.publishEvent(EntityChangeEvent.deleted(appointment));
+        }
+        for (Appointment appointment : evacuation.moved){
+            eventPublisher.publishEvent(EntityChangeEvent.created(appointment));
+        }
+        return evacuation;
+    }
+
+    /** Picks a room for each appointment, appointments sorted by start. */
+    Evacuation plan(Room room, List<Appointment> appointments, List<Room> rooms){
+        Evacuation evacuation = new Evacuation(room.getRoomName());
+        if (appointments.isEmpty()){
+            return evacuation;
+        }
+        LocalDateTime from = appointments.get(0).getStartsAt();
+        LocalDateTime to = from;
+        for (Appointment appointment : appointments){
+            to = appointment.getFinishesAt().isAfter(to) ? appointment.getFinishesAt() : to;
+        }
+
+        List<Timeline> timelines = new ArrayList<>();
+        Map<String, List<int[]>> busy = busy(from, to);
+        for (Room target : rooms){
+            Timeline timeline = new Timeline(target, seriesRepository.findByRoomIdWithExceptions(target.getId()));
+            for (int[] interval : busy.getOrDefault(target.getRoomName(), new ArrayList<>())){
+                timeline.add(interval[0], interval[1]);
+            }
+            timelines.add(timeline);
+        }
+
+        for (Appointment appointment : appointments){
+            int start = ScheduleStore.minutes(appointment.getStartsAt());
+            int end = ScheduleStore.minutes(appointment.getFinishesAt());
+            Timeline best = null;
+            int bestFreeSince = Integer.MIN_VALUE;
+            for (Timeline timeline : timelines){
+                int freeSince = timeline.freeSince(start, end);
+                if (freeSince > bestFreeSince && !timeline.hitsSeries(appointment)){
+                    best = timeline;
+                    bestFreeSince = freeSince;
+                }
+            }
+            if (best == null){
+                evacuation.unplaced.add(appointment.getId());
+            } else {
+                best.add(start, end);
+                evacuation.target.put(appointment.getId(), best.room);
+                evacuation.moved.add(appointment);
+            }
+        }
+        return evacuation;
+    }
+
+    private Map<String, List<int[]>> busy(LocalDateTime from, LocalDateTime to){
+        if (SiteContext.isDefault() && scheduleStore.isLoaded()){
+            return scheduleStore.intervals(from, to);
+        }
+        Map<String, List<int[]>> busy = new HashMap<>();
+        for (Appointment appointment : appointmentRepository.findByStartsAtBeforeAndFinishesAtAfter(to, from)){
+            busy.computeIfAbsent(appointment.getRoom().getRoomName(), name -> new ArrayList<>())
+                    .add(new int[]{ScheduleStore.minutes(appointment.getStartsAt()), ScheduleStore.minutes(appointment.getFinishesAt())});
+        }
+        return busy;
+    }
+
+    /** Bookings of one target room as disjoint [start, end) minute ranges keyed by start. */
+    private static class Timeline {
+        final Room room;
+        final List<AppointmentSeries> series;
+        final TreeMap<Integer, Integer> busy = new TreeMap<>();
+
+        Timeline(Room room, List<AppointmentSeries> series){
+            this.room = room;
+            this.series = series;
+        }
+
+        void add(int start, int end){
+            busy.merge(start, end, Math::max);
+        }
+
+        /** End of the last booking before [start, end) (MIN_VALUE + 1 when none), or MIN_VALUE when the range is taken. */
+        int freeSince(int start, int end){
+            Map.Entry<Integer, Integer> previous = busy.lowerEntry(end);
+            if (previous == null){
+                return Integer.MIN_VALUE + 1;
+            }
+            return previous.getValue() > start ? Integer.MIN_VALUE : previous.getValue();
+        }
+
+        boolean hitsSeries(Appointment appointment){
+            for (AppointmentSeries one : series){
+                if (one.overlaps(appointment.getStartsAt(), appointment.getFinishesAt())){
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /** The outcome: appointment id to its new room name, and the appointments no room could take. */
+    public static class Evacuation {
+        private final String roomName;
+        private final Map<Long, Room> target = new LinkedHashMap<>();
+        private final List<Appointment> moved = new ArrayList<>();
+        private final List<Long> unplaced = new ArrayList<>();
+
+        Evacuation(String roomName){
+            this.roomName = roomName;
+        }
+
+        public String getRoomName(){
+            return this.roomName;
+        }
+
+        public Map<Long, String> getMoved(){
+            Map<Long, String> moved = new LinkedHashMap<>();
+            target.forEach((id, room) -> moved.put(id, room.getRoomName()));
+            return moved;
+        }
+
+        public List<Long> getUnplaced(){
+            return this.unplaced;
+        }
+
+        /** False when some appointment fits nowhere; nothing was moved then. */
+        public boolean isComplete(){
+            return this.unplaced.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,493 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.entities.Appointment;
+import com.example.demo.events.AppointmentsArchivedEvent;
+import com.example.demo.events.EntityChangeEvent;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * Occupancy of every room as one bitset per day, one bit per 5 minute slot
+ * (288 bits, 5 longs). Checking or booking a slot range is a handful of masked
+ * word operations, and the utilization of a room for a day is a bit count.
+ *
+ * Only appointments aligned to slot boundaries are stored as bits. Unaligned
+ * ones are counted per day instead: while a day has any, a free answer from
+ * the bitmap cannot be trusted and callers fall back to
+ * {@link Appointment#overlaps(Appointment)}. A taken answer is always exact.
+ *
+ * Slots reserved by {@link #tryReserve(Appointment)} are also marked as
+ * pending until the booking's created event (it committed) or its release.
+ * They count for conflicts and utilization like any other, but are left out
+ * of {@link #forEachDay(DayVisitor)}, so a snapshot only holds committed
+ * bookings.
+ */
+@Component
+public class RoomOccupancy {
+
+    public static final int SLOT_MINUTES = 5;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+    static final int WORDS_PER_DAY = (SLOTS_PER_DAY + 63) / 64;
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    public enum SlotState {
+        /** The range was free and is now reserved. */
+        FREE,
+        /** An existing appointment overlaps the range. */
+        TAKEN,
+        /** The bitmap cannot tell, check against the appointments themselves. */
+        UNKNOWN
+    }
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    private final ConcurrentHashMap<String, RoomDays> rooms = new ConcurrentHashMap<>();
+
+    // Set once the bitmap reflects the table, by this full load or by OccupancySnapshot.
+    private volatile boolean loaded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady(){
+        if (!loaded){
+            load();
+        }
+    }
+
+    /** Rebuilds the bitmap from the whole appointment table. */
+    public void load(){
+        long afterId = 0;
+        List<Appointment> page;
+        do {
+            page = appointmentRepository.findByIdGreaterThan(afterId, PageRequest.of(0, LOAD_PAGE_SIZE, Sort.by("id")));
+            for (Appointment appointment : page){
+                record(appointment);
+                afterId = appointment.getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        loaded = true;
+    }
+
+    public boolean isLoaded(){
+        return this.loaded;
+    }
+
+    void markLoaded(){
+        this.loaded = true;
+    }
+
+    @EventListener(condition = "#event.defaultSite")
+    public void onChange(EntityChangeEvent event){
+        if (!event.isAbout(Appointment.class)){
+            return;
+        }
+        switch (event.getKind()){
+            case CREATED:
+                record((Appointment) event.getEntity());
+                break;
+            case DELETED:
+                forget((Appointment) event.getEntity());
+                break;
+            case CLEARED:
+                clear();
+                break;
+        }
+    }
+
+    /**
+     * Drops the days before the archive horizon, booking checks look for
+     * archived appointments in the archive. Appointments still in the hot
+     * table that started before it put their earlier days back.
+     */
+    @EventListener(condition = "#event.defaultSite")
+    public void onArchived(AppointmentsArchivedEvent event){
+        LocalDateTime horizon = event.getBefore().toLocalDate().atStartOfDay();
+        long horizonDay = horizon.toLocalDate().toEpochDay();
+        for (RoomDays days : rooms.values()){
+            synchronized (days){
+                days.days.keySet().removeIf(day -> day < horizonDay);
+            }
+        }
+
+        Map<String, List<Appointment>> byRoom = new HashMap<>();
+        for (Appointment appointment : appointmentRepository.findByStartsAtBeforeAndFinishesAtAfter(horizon, horizon.minusNanos(1))){
+            if (isValid(appointment)){
+                byRoom.computeIfAbsent(appointment.getRoom().getRoomName(), name -> new ArrayList<>()).add(appointment);
+            }
+        }
+        for (Map.Entry<String, List<Appointment>> room : byRoom.entrySet()){
+            Set<Long> earlier = new HashSet<>();
+            for (Appointment appointment : room.getValue()){
+                for (Long day : days(appointment.getStartsAt(), appointment.getFinishesAt())){
+                    if (day < horizonDay){
+                        earlier.add(day);
+                    }
+                }
+            }
+            reload(room.getKey(), earlier, room.getValue());
+        }
+    }
+
+    /**
+     * Checks the range of the appointment and, if the bitmap can vouch for it
+     * being free, reserves it in the same step. Until the bitmap is loaded it
+     * vouches for nothing.
+     */
+    public SlotState tryReserve(Appointment appointment){
+        if (!loaded){
+            return SlotState.UNKNOWN;
+        }
+        RoomDays days = roomOf(appointment);
+        boolean aligned = isAligned(appointment.getStartsAt()) && isAligned(appointment.getFinishesAt());
+
+        synchronized (days){
+            boolean exact = true;
+            for (DayRange range : ranges(appointment.getStartsAt(), appointment.getFinishesAt())){
+                DayBits day = days.get(range.day);
+                if (day == null){
+                    continue;
+                }
+                if (day.any(range.from, range.to)){
+                    return SlotState.TAKEN;
+                }
+                exact &= day.irregular == 0;
+            }
+            if (!aligned || !exact){
+                return SlotState.UNKNOWN;
+            }
+            for (DayRange range : ranges(appointment.getStartsAt(), appointment.getFinishesAt())){
+                DayBits day = days.getOrCreate(range.day);
+                day.set(range.from, range.to);
+                day.reserve(range.from, range.to);
+            }
+            return SlotState.FREE;
+        }
+    }
+
+    /** Gives back a range obtained with {@link #tryReserve(Appointment)} when the booking did not go through. */
+    public void release(Appointment appointment){
+        forget(appointment);
+    }
+
+    public Utilization utilization(String roomName, LocalDate date){
+        RoomDays days = rooms.get(roomName);
+        DayBits day = days == null ? null : days.get(date.toEpochDay());
+        if (day == null){
+            return new Utilization(roomName, date, 0, true);
+        }
+        synchronized (days){
+            return new Utilization(roomName, date, day.count(), day.irregular == 0);
+        }
+    }
+
+    public List<Utilization> utilization(LocalDate date){
+        List<Utilization> result = new ArrayList<>();
+        for (String roomName : new TreeMap<>(rooms).keySet()){
+            result.add(utilization(roomName, date));
+        }
+        return result;
+    }
+
+    public void clear(){
+        rooms.clear();
+    }
+
+    /** Visits every stored day, each room under its lock. The words array is a copy without the pending reservations. */
+    void forEachDay(DayVisitor visitor){
+        for (Map.Entry<String, RoomDays> room : rooms.entrySet()){
+            RoomDays days = room.getValue();
+            synchronized (days){
+                for (Map.Entry<Long, DayBits> day : days.days.entrySet()){
+                    visitor.visit(room.getKey(), day.getKey(), day.getValue().committed(), day.getValue().irregular);
+                }
+            }
+        }
+    }
+
+    /** Puts back one day as written by {@link #forEachDay(DayVisitor)}. */
+    void restoreDay(String roomName, long epochDay, long[] words, int irregular){
+        RoomDays days = rooms.computeIfAbsent(roomName, name -> new RoomDays());
+        synchronized (days){
+            DayBits day = days.getOrCreate(epochDay);
+            System.arraycopy(words, 0, day.words, 0, WORDS_PER_DAY);
+            day.irregular = irregular;
+        }
+    }
+
+    /**
+     * Drops the given days of a room and fills them again from the
+     * appointments, which must hold every row overlapping them. Unlike
+     * record and forget this is safe to repeat and needs no order.
+     */
+    void reload(String roomName, Set<Long> epochDays, List<Appointment> appointments){
+        RoomDays days = rooms.computeIfAbsent(roomName, name -> new RoomDays());
+        synchronized (days){
+            days.days.keySet().removeAll(epochDays);
+            for (Appointment appointment : appointments){
+                if (isValid(appointment)){
+                    mark(days, appointment, epochDays);
+                }
+            }
+        }
+    }
+
+    /** The epoch days an appointment occupies, none when it has no valid times. */
+    static List<Long> days(LocalDateTime startsAt, LocalDateTime finishesAt){
+        List<Long> result = new ArrayList<>();
+        if (startsAt != null && finishesAt != null && startsAt.isBefore(finishesAt)){
+            for (DayRange range : ranges(startsAt, finishesAt)){
+                result.add(range.day);
+            }
+        }
+        return result;
+    }
+
+    void record(Appointment appointment){
+        if (!isValid(appointment)){
+            return;
+        }
+        RoomDays days = roomOf(appointment);
+        synchronized (days){
+            mark(days, appointment, null);
+        }
+    }
+
+    // Sets the appointment's slots on the given days only, or on all of them for null. Caller holds the room.
+    private static void mark(RoomDays days, Appointment appointment, Set<Long> only){
+        boolean aligned = isAligned(appointment.getStartsAt()) && isAligned(appointment.getFinishesAt());
+        for (DayRange range : ranges(appointment.getStartsAt(), appointment.getFinishesAt())){
+            if (only != null && !only.contains(range.day)){
+                continue;
+            }
+            DayBits day = days.getOrCreate(range.day);
+            if (aligned){
+                day.set(range.from, range.to);
+                day.unreserve(range.from, range.to);
+            } else {
+                day.irregular++;
+            }
+        }
+    }
+
+    void forget(Appointment appointment){
+        if (!isValid(appointment)){
+            return;
+        }
+        RoomDays days = roomOf(appointment);
+        boolean aligned = isAligned(appointment.getStartsAt()) && isAligned(appointment.getFinishesAt());
+        synchronized (days){
+            for (DayRange range : ranges(appointment.getStartsAt(), appointment.getFinishesAt())){
+                DayBits day = days.get(range.day);
+                if (day == null){
+                    continue;
+                }
+                if (aligned){
+                    day.clear(range.from, range.to);
+                    day.unreserve(range.from, range.to);
+                } else if (day.irregular > 0){
+                    day.irregular--;
+                }
+            }
+        }
+    }
+
+    private RoomDays roomOf(Appointment appointment){
+        return rooms.computeIfAbsent(appointment.getRoom().getRoomName(), name -> new RoomDays());
+    }
+
+    private static boolean isValid(Appointment appointment){
+        return appointment.getRoom() != null && appointment.getRoom().getRoomName() != null
+                && appointment.getStartsAt() != null && appointment.getFinishesAt() != null
+                && appointment.getStartsAt().isBefore(appointment.getFinishesAt());
+    }
+
+    private static boolean isAligned(LocalDateTime time){
+        return time.getSecond() == 0 && time.getNano() == 0 && time.getMinute() % SLOT_MINUTES == 0;
+    }
+
+    /** Per day slot ranges [from, to) covering [start, end), partial slots included. */
+    private static List<DayRange> ranges(LocalDateTime start, LocalDateTime end){
+        List<DayRange> result = new ArrayList<>(1);
+        LocalDate firstDay = start.toLocalDate();
+        LocalDate lastDay = end.minusNanos(1).toLocalDate();
+        for (LocalDate day = firstDay; !day.isAfter(lastDay); day = day.plusDays(1)){
+            int from = day.equals(firstDay) ? minuteOfDay(start) / SLOT_MINUTES : 0;
+            int to = SLOTS_PER_DAY;
+            if (day.equals(end.toLocalDate())){
+                int seconds = end.toLocalTime().toSecondOfDay();
+                to = (seconds + SLOT_MINUTES * 60 - 1) / (SLOT_MINUTES * 60);
+                if (end.getNano() > 0 && seconds % (SLOT_MINUTES * 60) == 0){
+                    to++;
+                }
+            }
+            result.add(new DayRange(day.toEpochDay(), from, to));
+        }
+        return result;
+    }
+
+    private static int minuteOfDay(LocalDateTime time){
+        return time.getHour() * 60 + time.getMinute();
+    }
+
+    interface DayVisitor {
+        void visit(String roomName, long epochDay, long[] words, int irregular);
+    }
+
+    private static class DayRange {
+        final long day;
+        final int from;
+        final int to;
+
+        DayRange(long day, int from, int to){
+            this.day = day;
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static class RoomDays {
+        private final Map<Long, DayBits> days = new ConcurrentHashMap<>();
+
+        DayBits get(long day){
+            return days.get(day);
+        }
+
+        DayBits getOrCreate(long day){
+            return days.computeIfAbsent(day, d -> new DayBits());
+        }
+    }
+
+    /** Slots of one room for one day. Guarded by the owning {@link RoomDays}. */
+    static class DayBits {
+        final long[] words = new long[WORDS_PER_DAY];
+        int irregular;
+        // Reserved and not committed yet, allocated on the first reservation.
+        long[] pending;
+
+        boolean any(int from, int to){
+            for (int w = from >>> 6; w <= (to - 1) >>> 6; w++){
+                if ((words[w] & mask(w, from, to)) != 0){
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void set(int from, int to){
+            for (int w = from >>> 6; w <= (to - 1) >>> 6; w++){
+                words[w] |= mask(w, from, to);
+            }
+        }
+
+        void clear(int from, int to){
+            for (int w = from >>> 6; w <= (to - 1) >>> 6; w++){
+                words[w] &= ~mask(w, from, to);
+            }
+        }
+
+        void reserve(int from, int to){
+            if (pending == null){
+                pending = new long[WORDS_PER_DAY];
+            }
+            for (int w = from >>> 6; w <= (to - 1) >>> 6; w++){
+                pending[w] |= mask(w, from, to);
+            }
+        }
+
+        void unreserve(int from, int to){
+            if (pending == null){
+                return;
+            }
+            for (int w = from >>> 6; w <= (to - 1) >>> 6; w++){
+                pending[w] &= ~mask(w, from, to);
+            }
+        }
+
+        /** A copy of the words with the pending reservations taken out. */
+        long[] committed(){
+            long[] copy = words.clone();
+            if (pending != null){
+                for (int w = 0; w < copy.length; w++){
+                    copy[w] &= ~pending[w];
+                }
+            }
+            return copy;
+        }
+
+        int count(){
+            int count = 0;
+            for (long word : words){
+                count += Long.bitCount(word);
+            }
+            return count;
+        }
+
+        /** Bits of word w that fall inside [from, to). */
+        private static long mask(int w, int from, int to){
+            int lo = Math.max(from - (w << 6), 0);
+            int hi = Math.min(to - (w << 6), 64);
+            long upper = hi == 64 ? -1L : (1L << hi) - 1;
+            return upper & (-1L << lo);
+        }
+    }
+
+    public static class Utilization {
+        private final String roomName;
+        private final LocalDate date;
+        private final int bookedSlots;
+        private final boolean exact;
+
+        public Utilization(String roomName, LocalDate date, int bookedSlots, boolean exact){
+            this.roomName = roomName;
+            this.date = date;
+            this.bookedSlots = bookedSlots;
+            this.exact = exact;
+        }
+
+        public String getRoomName(){
+            return this.roomName;
+        }
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd/MM/yyyy")
+        public LocalDate getDate(){
+            return this.date;
+        }
+
+        public int getBookedSlots(){
+            return this.bookedSlots;
+        }
+
+        public int getTotalSlots(){
+            return SLOTS_PER_DAY;
+        }
+
+        public double getPercent(){
+            return Math.round(10000.0 * bookedSlots / SLOTS_PER_DAY) / 100.0;
+        }
+
+        /** False when the day also holds appointments off the 5 minute grid, which are not counted. */
+        public boolean isExact(){
+            return this.exact;
+        }
+    }
+}
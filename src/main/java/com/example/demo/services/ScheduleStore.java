@@ -0,0 +1,306 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.entities.Appointment;
+import com.example.demo.events.AppointmentsArchivedEvent;
+import com.example.demo.events.EntityChangeEvent;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+/**
+ * Every appointment as one row of primitive columns, for conflict checks
+ * that would otherwise load and walk Appointment objects: start and end in
+ * epoch minutes, and room, doctor and patient as small dictionary ids. A row
+ * costs 28 bytes, there is nothing for the collector to trace, and with
+ * techhub.schedule.off-heap the columns live in direct buffers outside the
+ * heap altogether.
+ *
+ * The checks scan the columns with the semantics of
+ * {@link Appointment#overlaps(Appointment)} and allocate nothing. Times are
+ * kept to the minute, which is all the API accepts. Deleted rows are marked
+ * free and reused.
+ */
+@Component
+public class ScheduleStore {
+
+    private static final int FREE = -1;
+    private static final int LOAD_PAGE_SIZE = 10000;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Value("${techhub.schedule.off-heap:false}")
+    boolean offHeap;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private IntBuffer starts;
+    private IntBuffer ends;
+    private IntBuffer rooms;
+    private IntBuffer doctors;
+    private IntBuffer patients;
+    private LongBuffer ids;
+    private int capacity;
+    private int size;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    private final Map<Long, Integer> rowById = new HashMap<>();
+    private final Map<String, Integer> roomIds = new HashMap<>();
+    private final Map<Long, Integer> doctorIds = new HashMap<>();
+    private final Map<Long, Integer> patientIds = new HashMap<>();
+
+    private volatile boolean loaded;
+
+    public ScheduleStore(){
+        super();
+    }
+
+    public ScheduleStore(boolean offHeap){
+        this.offHeap = offHeap;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        clear();
+        long afterId = 0;
+        List<Appointment> page;
+        do {
+            page = appointmentRepository.findByIdGreaterThan(afterId, PageRequest.of(0, LOAD_PAGE_SIZE, Sort.by("id")));
+            for (Appointment appointment : page){
+                add(appointment);
+                afterId = appointment.getId();
+            }
+        } while (page.size() == LOAD_PAGE_SIZE);
+        loaded = true;
+    }
+
+    @EventListener(condition = "#event.defaultSite")
+    public void onChange(EntityChangeEvent event){
+        if (!event.isAbout(Appointment.class)){
+            return;
+        }
+        switch (event.getKind()){
+            case CREATED:
+                add((Appointment) event.getEntity());
+                break;
+            case DELETED:
+                remove(((Appointment) event.getEntity()).getId());
+                break;
+            case CLEARED:
+                clear();
+                break;
+        }
+    }
+
+    /** Archived appointments are in the past, booking checks look for them in the archive. */
+    @EventListener(condition = "#event.defaultSite")
+    public void onArchived(AppointmentsArchivedEvent event){
+        for (Long id : event.getIds()){
+            remove(id);
+        }
+    }
+
+    public boolean isLoaded(){
+        return this.loaded;
+    }
+
+    public int size(){
+        lock.readLock().lock();
+        try {
+            return size - freeCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void add(Appointment appointment){
+        if (appointment.getRoom() == null || appointment.getRoom().getRoomName() == null
+                || appointment.getStartsAt() == null || appointment.getFinishesAt() == null){
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (rowById.containsKey(appointment.getId())){
+                return;
+            }
+            int row;
+            if (freeCount > 0){
+                row = freeRows[--freeCount];
+            } else {
+                ensureCapacity(size + 1);
+                row = size++;
+            }
+            starts.put(row, minutes(appointment.getStartsAt()));
+            ends.put(row, minutes(appointment.getFinishesAt()));
+            rooms.put(row, code(roomIds, appointment.getRoom().getRoomName()));
+            doctors.put(row, appointment.getDoctor() != null ? code(doctorIds, appointment.getDoctor().getId()) : FREE);
+            patients.put(row, appointment.getPatient() != null ? code(patientIds, appointment.getPatient().getId()) : FREE);
+            ids.put(row, appointment.getId());
+            rowById.put(appointment.getId(), row);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id){
+        lock.writeLock().lock();
+        try {
+            Integer row = rowById.remove(id);
+            if (row == null){
+                return;
+            }
+            rooms.put(row, FREE);
+            if (freeCount == freeRows.length){
+                int[] grown = new int[freeRows.length * 2];
+                System.arraycopy(freeRows, 0, grown, 0, freeCount);
+                freeRows = grown;
+            }
+            freeRows[freeCount++] = row;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear(){
+        lock.writeLock().lock();
+        try {
+            size = 0;
+            freeCount = 0;
+            rowById.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Whether a stored appointment in the same room overlaps it, as {@link Appointment#overlaps(Appointment)} decides. */
+    public boolean conflicts(Appointment appointment){
+        return conflicts(appointment.getRoom().getRoomName(), appointment.getStartsAt(), appointment.getFinishesAt());
+    }
+
+    public boolean conflicts(String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        int start = minutes(startsAt);
+        int end = minutes(finishesAt);
+        lock.readLock().lock();
+        try {
+            Integer room = roomIds.get(roomName);
+            return room != null && scan(rooms, room, start, end) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Whether the doctor already has an appointment overlapping the range, in any room. */
+    public boolean isDoctorBusy(long doctorId, LocalDateTime startsAt, LocalDateTime finishesAt){
+        int start = minutes(startsAt);
+        int end = minutes(finishesAt);
+        lock.readLock().lock();
+        try {
+            Integer doctor = doctorIds.get(doctorId);
+            return doctor != null && scan(doctors, doctor, start, end) >= 0;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** [start, end) in epoch minutes of every stored appointment overlapping [from, to), by room name. */
+    public Map<String, List<int[]>> intervals(LocalDateTime from, LocalDateTime to){
+        int start = minutes(from);
+        int end = minutes(to);
+        Map<String, List<int[]>> result = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            String[] names = new String[roomIds.size()];
+            roomIds.forEach((name, code) -> names[code] = name);
+            for (int row = 0; row < size; row++){
+                int room = rooms.get(row);
+                if (room != FREE && starts.get(row) < end && ends.get(row) > start){
+                    result.computeIfAbsent(names[room], name -> new ArrayList<>()).add(new int[]{starts.get(row), ends.get(row)});
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /** First live row whose key column matches and whose range overlaps [start, end), or -1. Caller holds the read lock. */
+    private int scan(IntBuffer keys, int key, int start, int end){
+        for (int row = 0; row < size; row++){
+            if (keys.get(row) == key && rooms.get(row) != FREE && overlaps(starts.get(row), ends.get(row), start, end)){
+                return row;
+            }
+        }
+        return -1;
+    }
+
+    /** {@link Appointment#overlaps(Appointment)} on minutes: stored is [s, e), candidate is [os, oe). */
+    static boolean overlaps(int s, int e, int os, int oe){
+        return s == os || oe == e
+                || (oe > s && oe < e)
+                || (os > s && os < e)
+                || (os < s && oe > e);
+    }
+
+    static int minutes(LocalDateTime time){
+        return (int) Math.floorDiv(time.toEpochSecond(ZoneOffset.UTC), 60);
+    }
+
+    private static <K> int code(Map<K, Integer> dictionary, K key){
+        Integer code = dictionary.get(key);
+        if (code == null){
+            code = dictionary.size();
+            dictionary.put(key, code);
+        }
+        return code;
+    }
+
+    private void ensureCapacity(int needed){
+        if (needed <= capacity){
+            return;
+        }
+        int grown = Math.max(1024, Math.max(needed, capacity * 2));
+        starts = copy(starts, allocateInts(grown));
+        ends = copy(ends, allocateInts(grown));
+        rooms = copy(rooms, allocateInts(grown));
+        doctors = copy(doctors, allocateInts(grown));
+        patients = copy(patients, allocateInts(grown));
+        LongBuffer longs = offHeap
+                ? ByteBuffer.allocateDirect(grown * 8).order(ByteOrder.nativeOrder()).asLongBuffer()
+                : LongBuffer.allocate(grown);
+        for (int row = 0; row < size; row++){
+            longs.put(row, ids.get(row));
+        }
+        ids = longs;
+        capacity = grown;
+    }
+
+    private IntBuffer allocateInts(int count){
+        return offHeap ? ByteBuffer.allocateDirect(count * 4).order(ByteOrder.nativeOrder()).asIntBuffer() : IntBuffer.allocate(count);
+    }
+
+    private IntBuffer copy(IntBuffer from, IntBuffer to){
+        for (int row = 0; row < size; row++){
+            to.put(row, from.get(row));
+        }
+        return to;
+    }
+}
@@ -0,0 +1,322 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.entities.AppointmentSeries.Occurrence;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.sites.SiteContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static com.example.demo.entities.AppointmentSeries.minutes;
+
+/**
+ * Books recurring series and keeps them clear of each other and of single
+ * appointments in the same room, without expanding them.
+ *
+ * Series against an appointment is a range of occurrence indexes (see
+ * {@link AppointmentSeries#overlaps(LocalDateTime, LocalDateTime)}). Series
+ * against series is a linear Diophantine equation: occurrence k of A and j of
+ * B overlap when start(A) - start(B) + k * period(A) - j * period(B) falls
+ * strictly between -duration(A) and duration(B). Both periods are whole days,
+ * so only a handful of differences are possible, and for each one the
+ * solutions (k, j) form one arithmetic progression, clipped to both series'
+ * index ranges.
+ *
+ * Writes are serialized on this instance so two series cannot pass their
+ * checks at the same time, and bump the room version of {@link BookingGuard}
+ * after the check so a write that raced another instance is run again by
+ * {@link RetryPolicy}.
+ *
+ * The check of a single booking runs on every POST /appointment, so the
+ * series of each room are kept in memory once read, for the default site.
+ * Any series change made here drops them; a series created through another
+ * instance is missed until then, and caught by the {@link BookingGuard}
+ * check in the booking's own transaction.
+ */
+@Service
+public class SeriesScheduler {
+
+    public enum Outcome { ADDED, NOT_FOUND, NOT_AN_OCCURRENCE, CONFLICT }
+
+    private static final LocalDateTime END_OF_TIME = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    @Autowired
+    AppointmentSeriesRepository seriesRepository;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @Autowired
+    BookingGuard bookingGuard;
+
+    @Autowired
+    RetryPolicy retryPolicy;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    private final ConcurrentHashMap<Long, List<AppointmentSeries>> byRoom = new ConcurrentHashMap<>();
+    // Bumped on every series change, so a read that started before it is not cached.
+    private final AtomicLong generation = new AtomicLong();
+
+    public List<AppointmentSeries> findAll(){
+        return seriesRepository.findAllWithExceptions();
+    }
+
+    public Optional<AppointmentSeries> find(long id){
+        return seriesRepository.findWithExceptions(id);
+    }
+
+    /** Occurrences of every series (of one room when roomName is given) overlapping [from, to). */
+    public List<Occurrence> occurrences(String roomName, LocalDateTime from, LocalDateTime to){
+        List<AppointmentSeries> series;
+        if (roomName == null){
+            series = findAll();
+        } else {
+            Optional<Long> roomId = roomDirectory.idOf(roomName);
+            series = roomId.isPresent() ? seriesRepository.findByRoomIdWithExceptions(roomId.get()) : new ArrayList<>();
+        }
+        List<Occurrence> result = new ArrayList<>();
+        for (AppointmentSeries s : series){
+            result.addAll(s.occurrences(from, to));
+        }
+        result.sort(Comparator.comparing(Occurrence::getStartsAt));
+        return result;
+    }
+
+    /** Whether a single appointment would land on an occurrence of a series in its room. */
+    public boolean conflicts(Appointment appointment){
+        if (appointment.getRoom() == null || appointment.getRoom().getRoomName() == null){
+            return false;
+        }
+        Optional<Long> roomId = roomDirectory.idOf(appointment.getRoom().getRoomName());
+        if (!roomId.isPresent()){
+            return false;
+        }
+        for (AppointmentSeries series : seriesOf(roomId.get())){
+            if (series.overlaps(appointment)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @EventListener(condition = "#event.defaultSite")
+    public void onChange(EntityChangeEvent event){
+        if (event.isAbout(AppointmentSeries.class)){
+            forgetSeries();
+        }
+    }
+
+    private List<AppointmentSeries> seriesOf(long roomId){
+        if (!SiteContext.isDefault()){
+            return seriesRepository.findByRoomIdWithExceptions(roomId);
+        }
+        List<AppointmentSeries> cached = byRoom.get(roomId);
+        if (cached != null){
+            return cached;
+        }
+        long seen = generation.get();
+        List<AppointmentSeries> series = seriesRepository.findByRoomIdWithExceptions(roomId);
+        synchronized (byRoom){
+            if (generation.get() == seen){
+                byRoom.put(roomId, series);
+            }
+        }
+        return series;
+    }
+
+    private void forgetSeries(){
+        synchronized (byRoom){
+            generation.incrementAndGet();
+            byRoom.clear();
+        }
+    }
+
+    /** Saves the series, or returns null when it collides with what the room already has. */
+    public synchronized AppointmentSeries create(AppointmentSeries series){
+        AppointmentSeries saved = retryPolicy.execute("series.create", () -> transactionTemplate.execute(status -> {
+            long roomId = series.getRoom().getId();
+            long version = bookingGuard.roomVersion(roomId);
+            if (collides(series)){
+                return null;
+            }
+            bookingGuard.bump(roomId, version);
+            return seriesRepository.save(series);
+        }));
+        if (saved != null){
+            eventPublisher.publishEvent(EntityChangeEvent.created(saved));
+        }
+        return saved;
+    }
+
+    /** Cancels or moves one occurrence, replacing an earlier exception for the same date. */
+    public synchronized Outcome addException(long seriesId, SeriesException requested){
+        Outcome outcome = retryPolicy.execute("series.add_exception", () -> transactionTemplate.execute(status -> {
+            Optional<AppointmentSeries> found = seriesRepository.findWithExceptions(seriesId);
+            if (!found.isPresent()){
+                return Outcome.NOT_FOUND;
+            }
+            AppointmentSeries series = found.get();
+            long roomId = series.getRoom().getId();
+            long version = bookingGuard.roomVersion(roomId);
+            // A rolled back attempt may have flushed (and numbered) the one it was given.
+            SeriesException exception = requested.copy();
+            long index = series.indexOf(exception.getOccurrenceDate());
+            if (index < 0){
+                return Outcome.NOT_AN_OCCURRENCE;
+            }
+
+            for (Iterator<SeriesException> it = series.getExceptions().iterator(); it.hasNext();){
+                if (it.next().getOccurrenceDate().equals(exception.getOccurrenceDate())){
+                    it.remove();
+                    // Let the old row go before the new one takes its (series, date) key.
+                    seriesRepository.flush();
+                    break;
+                }
+            }
+            series.addException(exception);
+
+            if (exception.isMoved() && (movedOntoItself(series, index, exception) || collides(series))){
+                status.setRollbackOnly();
+                return Outcome.CONFLICT;
+            }
+            bookingGuard.bump(roomId, version);
+            seriesRepository.save(series);
+            return Outcome.ADDED;
+        }));
+        if (outcome == Outcome.ADDED && SiteContext.isDefault()){
+            forgetSeries();
+        }
+        return outcome;
+    }
+
+    public boolean delete(long seriesId){
+        Optional<AppointmentSeries> series = seriesRepository.findById(seriesId);
+        if (!series.isPresent()){
+            return false;
+        }
+        seriesRepository.delete(series.get());
+        eventPublisher.publishEvent(EntityChangeEvent.deleted(series.get()));
+        return true;
+    }
+
+    private boolean collides(AppointmentSeries series){
+        long roomId = series.getRoom().getId();
+        for (AppointmentSeries other : seriesRepository.findByRoomIdWithExceptions(roomId)){
+            if (other.getId() != series.getId() && overlaps(series, other)){
+                return true;
+            }
+        }
+
+        LocalDateTime from = series.getStartsAt();
+        LocalDateTime last = series.getLastStartsAt();
+        LocalDateTime to = last == null ? END_OF_TIME : last.plusMinutes(series.getDurationMinutes());
+        for (SeriesException exception : series.getExceptions()){
+            if (exception.isMoved()){
+                from = exception.getStartsAt().isBefore(from) ? exception.getStartsAt() : from;
+                to = exception.getFinishesAt().isAfter(to) ? exception.getFinishesAt() : to;
+            }
+        }
+        for (Appointment appointment : appointmentRepository.findByRoomIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(roomId, to, from)){
+            if (series.overlaps(appointment.getStartsAt(), appointment.getFinishesAt())){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** A moved occurrence must not land on another occurrence of its own series. */
+    private static boolean movedOntoItself(AppointmentSeries series, long index, SeriesException moved){
+        for (Occurrence occurrence : series.occurrences(moved.getStartsAt(), moved.getFinishesAt())){
+            if (occurrence.getIndex() != index){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Whether any occurrence of a overlaps any occurrence of b, exceptions included. */
+    static boolean overlaps(AppointmentSeries a, AppointmentSeries b){
+        if (regularOverlap(a, b)){
+            return true;
+        }
+        for (SeriesException exception : a.getExceptions()){
+            if (exception.isMoved() && b.overlaps(exception.getStartsAt(), exception.getFinishesAt())){
+                return true;
+            }
+        }
+        for (SeriesException exception : b.getExceptions()){
+            if (exception.isMoved() && a.overlaps(exception.getStartsAt(), exception.getFinishesAt())){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regularOverlap(AppointmentSeries a, AppointmentSeries b){
+        long lastA = a.getLastIndex();
+        long lastB = b.getLastIndex();
+        if (lastA < 0 || lastB < 0){
+            return false;
+        }
+        long pa = a.getPeriodMinutes();
+        long pb = b.getPeriodMinutes();
+        long[] egcd = extendedGcd(pa, pb);
+        long g = egcd[0];
+        long stepK = pb / g;
+        long stepJ = pa / g;
+        long delta = minutes(a.getStartsAt()) - minutes(b.getStartsAt());
+        // Each blocked (k, j) pair needs an exception on k or on j, and within one difference every pair has its own k and j.
+        int budget = a.getExceptions().size() + b.getExceptions().size() + 1;
+
+        long lo = -a.getDurationMinutes() + 1;
+        for (long t = lo + Math.floorMod(delta - lo, g); t < b.getDurationMinutes(); t += g){
+            // k * pa - j * pb = t - delta
+            long c = (t - delta) / g;
+            long k0 = egcd[1] * c;
+            long j0 = -egcd[2] * c;
+            long mLo = Math.max(ceilDiv(-k0, stepK), ceilDiv(-j0, stepJ));
+            long mHi = Math.min(Math.floorDiv(lastA - k0, stepK), Math.floorDiv(lastB - j0, stepJ));
+            for (long m = mLo, tries = 0; m <= mHi && tries < budget; m++, tries++){
+                if (!a.isException(k0 + stepK * m) && !b.isException(j0 + stepJ * m)){
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /** {g, x, y} with a * x + b * y = g = gcd(a, b). */
+    private static long[] extendedGcd(long a, long b){
+        if (b == 0){
+            return new long[]{a, 1, 0};
+        }
+        long[] r = extendedGcd(b, a % b);
+        return new long[]{r[0], r[2], r[1] - (a / b) * r[2]};
+    }
+
+    private static long ceilDiv(long a, long b){
+        return -Math.floorDiv(-a, b);
+    }
+}
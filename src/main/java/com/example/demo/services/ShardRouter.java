@@ -0,0 +1,170 @@
+package com.example.demo.services;
+
+import com.example.demo.sites.SiteContext;
+import com.example.demo.sites.SiteProperties;
+import com.example.demo.sites.SiteRoutingDataSource;
+import com.example.demo.sites.SiteSchema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs reads on every site at once and merges the answers.
+ *
+ * Each site is queried on its own thread, in its own read-only transaction
+ * and pool, so a listing takes as long as the slowest site rather than the
+ * sum of them. Every site's rows are sorted and the lists are merged with a
+ * k-way merge, keeping the combined order without sorting everything again.
+ *
+ * On start it also brings the schema of the non-default sites up to the
+ * mapping when Hibernate manages the schema (ddl-auto update or create).
+ */
+@Service
+public class ShardRouter {
+
+    @Autowired
+    SiteProperties siteProperties;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Autowired
+    ObjectProvider<SiteSchema> siteSchema;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    @Value("${spring.jpa.hibernate.ddl-auto:none}")
+    String ddlAuto;
+
+    private List<String> sites = Collections.emptyList();
+    private ExecutorService executor;
+    private TransactionTemplate readOnly;
+
+    @PostConstruct
+    void init(){
+        SiteContext.setDefault(siteProperties.getDefaultSite());
+        if (!(dataSource instanceof SiteRoutingDataSource)){
+            return;
+        }
+        List<String> others = ((SiteRoutingDataSource) dataSource).getSites();
+        SiteSchema schema = siteSchema.getIfAvailable();
+        if (schema != null && Arrays.asList("update", "create", "create-drop").contains(ddlAuto)){
+            // Waits for a background (deferred) bootstrap, the metadata is only there once it is done.
+            entityManagerFactory.getMetamodel();
+            schema.update(others);
+        }
+
+        List<String> all = new ArrayList<>();
+        all.add(siteProperties.getDefaultSite());
+        all.addAll(others);
+        sites = Collections.unmodifiableList(all);
+
+        AtomicInteger threads = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(Math.max(1, Math.min(siteProperties.getScatterThreads(), sites.size())), task -> {
+            Thread thread = new Thread(task, "site-scatter-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+    }
+
+    @PreDestroy
+    void shutdown(){
+        if (executor != null){
+            executor.shutdownNow();
+        }
+    }
+
+    public boolean isSharded(){
+        return executor != null;
+    }
+
+    /** Every site, the default one first. */
+    public List<String> sites(){
+        return sites;
+    }
+
+    /** Runs the query on every site in parallel and merges the results in the given order. */
+    public <T> List<T> gather(Supplier<List<T>> query, Comparator<? super T> order){
+        List<Future<List<T>>> parts = new ArrayList<>();
+        for (String site : sites){
+            parts.add(executor.submit(() -> SiteContext.call(site, () -> readOnly.execute(status -> {
+                List<T> rows = new ArrayList<>(query.get());
+                rows.sort(order);
+                return rows;
+            }))));
+        }
+        List<List<T>> results = new ArrayList<>();
+        try {
+            for (Future<List<T>> part : parts){
+                results.add(part.get());
+            }
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while reading the sites", e);
+        } catch (ExecutionException e){
+            if (e.getCause() instanceof RuntimeException){
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            for (Future<List<T>> part : parts){
+                part.cancel(true);
+            }
+        }
+        return merge(results, order);
+    }
+
+    /** K-way merge of lists that are each sorted by order. */
+    static <T> List<T> merge(List<List<T>> sorted, Comparator<? super T> order){
+        int total = 0;
+        for (List<T> part : sorted){
+            total += part.size();
+        }
+        List<T> merged = new ArrayList<>(total);
+        // Heads are {list, position}, ordered by the element they point at.
+        PriorityQueue<int[]> heads = new PriorityQueue<>(Math.max(1, sorted.size()),
+                (a, b) -> order.compare(sorted.get(a[0]).get(a[1]), sorted.get(b[0]).get(b[1])));
+        for (int i = 0; i < sorted.size(); i++){
+            if (!sorted.get(i).isEmpty()){
+                heads.add(new int[]{i, 0});
+            }
+        }
+        while (!heads.isEmpty()){
+            int[] head = heads.poll();
+            List<T> part = sorted.get(head[0]);
+            merged.add(part.get(head[1]));
+            if (++head[1] < part.size()){
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+}
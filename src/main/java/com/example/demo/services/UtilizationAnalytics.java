@@ -0,0 +1,517 @@
+package com.example.demo.services;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.annotation.PreDestroy;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+
+/**
+ * Booked minutes and appointment counts per room and per doctor, per day.
+ *
+ * Counters are kept in memory and updated on every appointment create and
+ * delete, so a report only sums the days it covers instead of scanning the
+ * appointment table. An appointment's minutes are split over the days it
+ * spans; it is counted once, on its first day. Weeks and months are sums of
+ * days. Changed counters are written to the utilization_summary table by a
+ * periodic flush, and read back from it on startup.
+ *
+ * Each flush also stores the highest change number (Appointment#getChangeSeq)
+ * it has counters for: the highest one applied from a change event before
+ * the changed counters were taken, or the safe point a rebuild scanned up
+ * to. Counters changed after the last flush are lost in a crash; the change
+ * log has moved past the stored number then, and startup rebuilds instead
+ * of trusting the table. A clean shutdown flushes first, so a restart
+ * without changes in between reads the table.
+ *
+ * {@link #rebuild()} recomputes everything from the appointment table and
+ * the archive ({@link AppointmentArchive}, whose moves publish no change
+ * events and leave the counters alone) as fork-join jobs over id ranges.
+ * Bookings made while it runs may be off until the next rebuild.
+ */
+@Component
+public class UtilizationAnalytics {
+
+    static final String FLUSHED = "utilization-summary-flushed";
+
+    public enum ResourceType { ROOM, DOCTOR }
+
+    public enum Granularity {
+        DAY, WEEK, MONTH;
+
+        LocalDate periodStart(LocalDate day){
+            switch (this){
+                case WEEK:
+                    return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+                case MONTH:
+                    return day.withDayOfMonth(1);
+                default:
+                    return day;
+            }
+        }
+
+        LocalDate periodEnd(LocalDate periodStart){
+            switch (this){
+                case WEEK:
+                    return periodStart.plusDays(6);
+                case MONTH:
+                    return periodStart.with(TemporalAdjusters.lastDayOfMonth());
+                default:
+                    return periodStart;
+            }
+        }
+    }
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    ArchivedAppointmentRepository archiveRepository;
+
+    @Autowired
+    UtilizationSummaryRepository summaryRepository;
+
+    @Autowired
+    ChangeSequenceRepository sequenceRepository;
+
+    @Autowired
+    ChangeNumbers changeNumbers;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${techhub.analytics.available-minutes-per-day:1440}")
+    long availableMinutesPerDay;
+
+    @Value("${techhub.analytics.rebuild-chunk:5000}")
+    int rebuildChunk;
+
+    private final ConcurrentSkipListMap<LocalDate, ConcurrentHashMap<Resource, Counter>> days = new ConcurrentSkipListMap<>();
+    private final Set<Key> dirty = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean truncate = new AtomicBoolean(false);
+
+    // Held by flush, and by rebuild from swapping the counters until they are flushed.
+    private final Object flushLock = new Object();
+    // Highest change number the counters hold, raised after the counters by apply and rebuild.
+    private final AtomicLong appliedToken = new AtomicLong(-1);
+    // Change number stored by the last flush. Guarded by flushLock.
+    private long flushedToken = -1;
+
+    /** Replaces the counters with the stored summary, or rebuilds them when the summary may be missing changes. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        List<UtilizationSummary> rows = summaryRepository.findAll();
+        long flushed = sequenceRepository.findById(FLUSHED).map(ChangeSequence::getValue).orElse(-1L);
+        if (rows.isEmpty() ? appointmentRepository.count() + archiveRepository.count() > 0 : flushed < currentToken()){
+            rebuild();
+            return;
+        }
+        synchronized (this){
+            days.clear();
+            dirty.clear();
+            appliedToken.accumulateAndGet(flushed, Math::max);
+            for (UtilizationSummary row : rows){
+                Counter counter = counter(row.getDay(), new Resource(ResourceType.valueOf(row.getResourceType()), row.getResourceKey()));
+                counter.minutes.add(row.getBookedMinutes());
+                counter.appointments.add(row.getAppointments());
+            }
+        }
+    }
+
+    @PreDestroy
+    void shutdown(){
+        flush();
+    }
+
+    @EventListener(condition = "#event.defaultSite")
+    public void onChange(EntityChangeEvent event){
+        if (!event.isAbout(Appointment.class)){
+            return;
+        }
+        switch (event.getKind()){
+            case CREATED:
+                apply((Appointment) event.getEntity(), 1);
+                break;
+            case DELETED:
+                apply((Appointment) event.getEntity(), -1);
+                break;
+            case CLEARED:
+                days.clear();
+                dirty.clear();
+                truncate.set(true);
+                break;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${techhub.analytics.flush-interval-ms:5000}")
+    public void flush(){
+        synchronized (flushLock){
+            flush(appliedToken.get());
+        }
+    }
+
+    // The token is read before the dirty keys are taken: the changes applied up to it are in this flush or an earlier one.
+    private void flush(long token){
+        if (dirty.isEmpty() && !truncate.get() && token == flushedToken){
+            return;
+        }
+        List<Key> keys = new ArrayList<>();
+        for (Iterator<Key> it = dirty.iterator(); it.hasNext();){
+            keys.add(it.next());
+            it.remove();
+        }
+        boolean truncated = truncate.getAndSet(false);
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (truncated){
+                    summaryRepository.deleteAllInBatch();
+                }
+                for (Key key : keys){
+                    Map<Resource, Counter> resources = days.get(key.day);
+                    Counter counter = resources == null ? null : resources.get(key.resource);
+                    long minutes = counter == null ? 0 : counter.minutes.sum();
+                    long appointments = counter == null ? 0 : counter.appointments.sum();
+
+                    UtilizationSummary row = truncated ? null : summaryRepository
+                            .findByResourceTypeAndResourceKeyAndDay(key.resource.type.name(), key.resource.key, key.day)
+                            .orElse(null);
+                    if (row == null){
+                        if (appointments == 0 && minutes == 0){
+                            continue;
+                        }
+                        row = new UtilizationSummary(key.resource.type.name(), key.resource.key, key.day, minutes, appointments);
+                    } else {
+                        row.setBookedMinutes(minutes);
+                        row.setAppointments(appointments);
+                    }
+                    summaryRepository.save(row);
+                }
+                ChangeSequence flushed = sequenceRepository.findById(FLUSHED).orElseGet(() -> new ChangeSequence(FLUSHED));
+                flushed.setValue(token);
+                sequenceRepository.save(flushed);
+            });
+            flushedToken = token;
+        } catch (RuntimeException e){
+            // Try again on the next flush.
+            dirty.addAll(keys);
+            if (truncated){
+                truncate.set(true);
+            }
+            throw e;
+        }
+    }
+
+    /** Recomputes all counters from the appointment table and the archive, in parallel over id ranges. */
+    public void rebuild(){
+        long token = currentToken();
+        Long minId = appointmentRepository.findMinId();
+        Long maxId = appointmentRepository.findMaxId();
+        Long minArchivedId = archiveRepository.findMinId();
+        Long maxArchivedId = archiveRepository.findMaxId();
+
+        Map<Key, long[]> totals = new HashMap<>();
+        ForkJoinPool pool = new ForkJoinPool();
+        try {
+            if (minId != null && maxId != null){
+                add(totals, pool.invoke(new RebuildTask(appointmentRepository::findByIdBetween, minId, maxId)));
+            }
+            if (minArchivedId != null && maxArchivedId != null){
+                add(totals, pool.invoke(new RebuildTask(this::findArchivedBetween, minArchivedId, maxArchivedId)));
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        // A flush that took the old counters must not commit after the rebuilt ones.
+        synchronized (flushLock){
+            synchronized (this){
+                days.clear();
+                dirty.clear();
+                for (Map.Entry<Key, long[]> e : totals.entrySet()){
+                    Counter counter = counter(e.getKey().day, e.getKey().resource);
+                    counter.minutes.add(e.getValue()[0]);
+                    counter.appointments.add(e.getValue()[1]);
+                }
+                dirty.addAll(totals.keySet());
+                truncate.set(true);
+                // The counters are the scan now, changes applied meanwhile are not vouched for.
+                appliedToken.set(token);
+            }
+            flush(token);
+        }
+    }
+
+    public List<UtilizationRow> report(Granularity granularity, LocalDate from, LocalDate to, ResourceType type){
+        Map<Resource, Map<LocalDate, long[]>> periods = new HashMap<>();
+        for (Map.Entry<LocalDate, ConcurrentHashMap<Resource, Counter>> day : days.subMap(from, true, to, true).entrySet()){
+            LocalDate periodStart = granularity.periodStart(day.getKey());
+            for (Map.Entry<Resource, Counter> e : day.getValue().entrySet()){
+                if (type != null && e.getKey().type != type){
+                    continue;
+                }
+                long[] totals = periods.computeIfAbsent(e.getKey(), r -> new HashMap<>())
+                        .computeIfAbsent(periodStart, p -> new long[2]);
+                totals[0] += e.getValue().minutes.sum();
+                totals[1] += e.getValue().appointments.sum();
+            }
+        }
+
+        List<UtilizationRow> rows = new ArrayList<>();
+        for (Map.Entry<Resource, Map<LocalDate, long[]>> resource : periods.entrySet()){
+            for (Map.Entry<LocalDate, long[]> period : resource.getValue().entrySet()){
+                LocalDate start = period.getKey().isBefore(from) ? from : period.getKey();
+                LocalDate periodEnd = granularity.periodEnd(period.getKey());
+                LocalDate end = periodEnd.isAfter(to) ? to : periodEnd;
+                long available = (ChronoUnit.DAYS.between(start, end) + 1) * availableMinutesPerDay;
+                long[] totals = period.getValue();
+                if (totals[0] == 0 && totals[1] == 0){
+                    continue;
+                }
+                rows.add(new UtilizationRow(resource.getKey().type, resource.getKey().key, period.getKey(),
+                        totals[0], totals[1], available));
+            }
+        }
+        rows.sort(Comparator.comparing(UtilizationRow::getResourceType)
+                .thenComparing(UtilizationRow::getResourceKey)
+                .thenComparing(UtilizationRow::getPeriodStart));
+        return rows;
+    }
+
+    private synchronized void apply(Appointment appointment, int sign){
+        forEachDay(appointment, (day, resource, minutes, appointments) -> {
+            Counter counter = counter(day, resource);
+            counter.minutes.add(sign * minutes);
+            counter.appointments.add(sign * appointments);
+            dirty.add(new Key(day, resource));
+        });
+        appliedToken.accumulateAndGet(appointment.getChangeSeq(), Math::max);
+    }
+
+    private List<Appointment> findArchivedBetween(long fromId, long toId){
+        List<Appointment> appointments = new ArrayList<>();
+        for (ArchivedAppointment archived : archiveRepository.findByIdBetween(fromId, toId)){
+            appointments.add(archived.toAppointment());
+        }
+        return appointments;
+    }
+
+    private static void add(Map<Key, long[]> totals, Map<Key, long[]> more){
+        for (Map.Entry<Key, long[]> e : more.entrySet()){
+            long[] t = totals.computeIfAbsent(e.getKey(), k -> new long[2]);
+            t[0] += e.getValue()[0];
+            t[1] += e.getValue()[1];
+        }
+    }
+
+    private long currentToken(){
+        return changeNumbers.safePoint();
+    }
+
+    private Counter counter(LocalDate day, Resource resource){
+        return days.computeIfAbsent(day, d -> new ConcurrentHashMap<>())
+                .computeIfAbsent(resource, r -> new Counter());
+    }
+
+    private static void forEachDay(Appointment appointment, DayConsumer consumer){
+        if (appointment.getStartsAt() == null || appointment.getFinishesAt() == null
+                || !appointment.getStartsAt().isBefore(appointment.getFinishesAt())){
+            return;
+        }
+        List<Resource> resources = new ArrayList<>(2);
+        if (appointment.getRoom() != null && appointment.getRoom().getRoomName() != null){
+            resources.add(new Resource(ResourceType.ROOM, appointment.getRoom().getRoomName()));
+        }
+        if (appointment.getDoctor() != null){
+            resources.add(new Resource(ResourceType.DOCTOR, String.valueOf(appointment.getDoctor().getId())));
+        }
+
+        LocalDateTime cursor = appointment.getStartsAt();
+        long appointments = 1;
+        while (cursor.isBefore(appointment.getFinishesAt())){
+            LocalDateTime nextDay = cursor.toLocalDate().plusDays(1).atStartOfDay();
+            LocalDateTime sliceEnd = appointment.getFinishesAt().isBefore(nextDay) ? appointment.getFinishesAt() : nextDay;
+            long minutes = Duration.between(cursor, sliceEnd).toMinutes();
+            for (Resource resource : resources){
+                consumer.accept(cursor.toLocalDate(), resource, minutes, appointments);
+            }
+            appointments = 0;
+            cursor = sliceEnd;
+        }
+    }
+
+    private interface DayConsumer {
+        void accept(LocalDate day, Resource resource, long minutes, long appointments);
+    }
+
+    /** One of the tables the rebuild reads, by id range. */
+    private interface IdRangeReader {
+        List<Appointment> read(long fromId, long toId);
+    }
+
+    private class RebuildTask extends RecursiveTask<Map<Key, long[]>> {
+        private final IdRangeReader reader;
+        private final long fromId;
+        private final long toId;
+
+        RebuildTask(IdRangeReader reader, long fromId, long toId){
+            this.reader = reader;
+            this.fromId = fromId;
+            this.toId = toId;
+        }
+
+        @Override
+        protected Map<Key, long[]> compute(){
+            if (toId - fromId < rebuildChunk){
+                Map<Key, long[]> totals = new HashMap<>();
+                for (Appointment appointment : reader.read(fromId, toId)){
+                    forEachDay(appointment, (day, resource, minutes, appointments) -> {
+                        long[] t = totals.computeIfAbsent(new Key(day, resource), k -> new long[2]);
+                        t[0] += minutes;
+                        t[1] += appointments;
+                    });
+                }
+                return totals;
+            }
+            long middle = fromId + (toId - fromId) / 2;
+            RebuildTask left = new RebuildTask(reader, fromId, middle);
+            left.fork();
+            Map<Key, long[]> totals = new RebuildTask(reader, middle + 1, toId).compute();
+            add(totals, left.join());
+            return totals;
+        }
+    }
+
+    private static class Counter {
+        final LongAdder minutes = new LongAdder();
+        final LongAdder appointments = new LongAdder();
+    }
+
+    private static class Resource {
+        final ResourceType type;
+        final String key;
+
+        Resource(ResourceType type, String key){
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Resource)){
+                return false;
+            }
+            Resource other = (Resource) o;
+            return type == other.type && key.equals(other.key);
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(type, key);
+        }
+    }
+
+    private static class Key {
+        final LocalDate day;
+        final Resource resource;
+
+        Key(LocalDate day, Resource resource){
+            this.day = day;
+            this.resource = resource;
+        }
+
+        @Override
+        public boolean equals(Object o){
+            if (!(o instanceof Key)){
+                return false;
+            }
+            Key other = (Key) o;
+            return day.equals(other.day) && resource.equals(other.resource);
+        }
+
+        @Override
+        public int hashCode(){
+            return Objects.hash(day, resource);
+        }
+    }
+
+    public static class UtilizationRow {
+        private final ResourceType resourceType;
+        private final String resourceKey;
+        private final LocalDate periodStart;
+        private final long bookedMinutes;
+        private final long appointments;
+        private final long availableMinutes;
+
+        public UtilizationRow(ResourceType resourceType, String resourceKey, LocalDate periodStart, long bookedMinutes, long appointments, long availableMinutes){
+            this.resourceType = resourceType;
+            this.resourceKey = resourceKey;
+            this.periodStart = periodStart;
+            this.bookedMinutes = bookedMinutes;
+            this.appointments = appointments;
+            this.availableMinutes = availableMinutes;
+        }
+
+        public ResourceType getResourceType(){
+            return this.resourceType;
+        }
+
+        /** Room name, or doctor id. */
+        public String getResourceKey(){
+            return this.resourceKey;
+        }
+
+        @JsonFormat(shape = JsonFormat.Shape.STRING, pattern = "dd/MM/yyyy")
+        public LocalDate getPeriodStart(){
+            return this.periodStart;
+        }
+
+        public long getBookedMinutes(){
+            return this.bookedMinutes;
+        }
+
+        public long getAppointments(){
+            return this.appointments;
+        }
+
+        public long getAvailableMinutes(){
+            return this.availableMinutes;
+        }
+
+        public double getUtilization(){
+            return availableMinutes == 0 ? 0 : Math.round(10000.0 * bookedMinutes / availableMinutes) / 100.0;
+        }
+    }
+}
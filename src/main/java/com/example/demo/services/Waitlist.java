@@ -0,0 +1,333 @@
+package com.example.demo.services;
+
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.repositories.WaitlistEntryRepository;
+import com.example.demo.services.BookingGuard.SlotTakenException;
+import com.example.demo.sites.SiteContext;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+/**
+ * Waiting requests, booked automatically into slots that cancellations free.
+ *
+ * Requests are kept in memory in priority queues per room and per doctor
+ * (sorted sets, highest priority then oldest first, so taking or removing an
+ * entry is O(log n)). A cancelled appointment frees its room and its doctor
+ * for its time: the best request is the first one, in either queue, whose
+ * room and doctor (where given) match and whose window holds its duration
+ * inside the freed slot. The walk down a queue stops after max-scan entries,
+ * so a long queue of requests that do not fit costs a bounded amount.
+ *
+ * The booking and the removal of the request are one transaction, the
+ * booking going through {@link AppointmentChangeLog} like any other (the
+ * {@link BookingGuard} overlap check and {@link RetryPolicy}). Backfills run
+ * on a single background thread, after the cancelling request's listeners.
+ * Only the default site has a waitlist.
+ *
+ * Metrics: techhub.waitlist.backfill (time from the cancellation to the
+ * backfilled booking's commit), techhub.waitlist.unfilled (cancellations no
+ * request could take) and techhub.waitlist.depth (requests waiting).
+ */
+@Service
+public class Waitlist {
+
+    private static final Logger log = LoggerFactory.getLogger(Waitlist.class);
+
+    private static final Comparator<Waiting> ORDER = Comparator.comparingInt((Waiting waiting) -> -waiting.priority)
+            .thenComparing(waiting -> waiting.createdAt)
+            .thenComparingLong(waiting -> waiting.id);
+
+    @Autowired
+    WaitlistEntryRepository entryRepository;
+
+    @Autowired
+    AppointmentChangeLog appointmentChangeLog;
+
+    @Autowired
+    RetryPolicy retryPolicy;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Value("${techhub.waitlist.max-scan:256}")
+    int maxScan;
+
+    private final Map<Long, Waiting> waiting = new HashMap<>();
+    private final Map<Long, TreeSet<Waiting>> byRoom = new HashMap<>();
+    private final Map<Long, TreeSet<Waiting>> byDoctor = new HashMap<>();
+
+    private ExecutorService executor;
+    private Timer backfillLatency;
+    private Counter unfilled;
+
+    @PostConstruct
+    void init(){
+        executor = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "waitlist-backfill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        backfillLatency = Timer.builder("techhub.waitlist.backfill")
+                .description("Time from a cancellation to the waiting request booked into its slot")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        unfilled = Counter.builder("techhub.waitlist.unfilled")
+                .description("Cancellations no waiting request could take")
+                .register(meterRegistry);
+        Gauge.builder("techhub.waitlist.depth", this, Waitlist::size).register(meterRegistry);
+    }
+
+    @PreDestroy
+    void shutdown(){
+        executor.shutdownNow();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load(){
+        LocalDateTime now = LocalDateTime.now();
+        List<WaitlistEntry> expired = new ArrayList<>();
+        List<Waiting> current = new ArrayList<>();
+        for (WaitlistEntry entry : entryRepository.findAll()){
+            if (entry.getLatestEnd().isAfter(now)){
+                current.add(new Waiting(entry));
+            } else {
+                expired.add(entry);
+            }
+        }
+        synchronized (this){
+            waiting.clear();
+            byRoom.clear();
+            byDoctor.clear();
+            current.forEach(this::index);
+        }
+        if (!expired.isEmpty()){
+            entryRepository.deleteAllInBatch(expired);
+        }
+    }
+
+    public List<WaitlistEntry> findAll(){
+        return entryRepository.findAllByOrderByPriorityDescCreatedAtAscIdAsc();
+    }
+
+    public WaitlistEntry add(WaitlistEntry entry){
+        WaitlistEntry saved = entryRepository.save(entry);
+        synchronized (this){
+            index(new Waiting(saved));
+        }
+        return saved;
+    }
+
+    public boolean remove(long id){
+        synchronized (this){
+            Waiting removed = waiting.get(id);
+            if (removed != null){
+                unindex(removed);
+            }
+        }
+        try {
+            entryRepository.deleteById(id);
+            return true;
+        } catch (EmptyResultDataAccessException e){
+            return false;
+        }
+    }
+
+    public synchronized int size(){
+        return waiting.size();
+    }
+
+    /** Called once a cancellation is committed and published; the slot is offered to the waitlist in the background. */
+    public void slotFreed(Appointment cancelled){
+        if (!SiteContext.isDefault()){
+            return;
+        }
+        long cancelledAt = System.nanoTime();
+        executor.execute(() -> {
+            try {
+                if (backfill(cancelled).isPresent()){
+                    backfillLatency.record(System.nanoTime() - cancelledAt, TimeUnit.NANOSECONDS);
+                } else {
+                    unfilled.increment();
+                }
+            } catch (RuntimeException e){
+                log.warn("Backfilling the slot of appointment {} failed", cancelled.getId(), e);
+            }
+        });
+    }
+
+    /**
+     * Books the best waiting request into the slot the cancelled appointment
+     * held, if one fits. A request removed meanwhile is passed over; when the
+     * slot turns out to be taken already, or the booking fails for any other
+     * reason, the request goes back in its queue.
+     */
+    public Optional<Appointment> backfill(Appointment cancelled){
+        if (cancelled.getRoom() == null || cancelled.getDoctor() == null || !cancelled.getStartsAt().isAfter(LocalDateTime.now())){
+            return Optional.empty();
+        }
+        long roomId = cancelled.getRoom().getId();
+        long doctorId = cancelled.getDoctor().getId();
+        while (true){
+            Waiting best = take(roomId, doctorId, cancelled.getStartsAt(), cancelled.getFinishesAt());
+            if (best == null){
+                return Optional.empty();
+            }
+            LocalDateTime startsAt = best.earliestStart.isAfter(cancelled.getStartsAt()) ? best.earliestStart : cancelled.getStartsAt();
+            Patient patient = new Patient();
+            patient.setId(best.patientId);
+            Appointment appointment = new Appointment(patient, cancelled.getDoctor(), cancelled.getRoom(),
+                    startsAt, startsAt.plusMinutes(best.durationMinutes));
+            try {
+                Appointment booked = retryPolicy.execute("waitlist.backfill", () -> transactionTemplate.execute(status -> {
+                    entryRepository.deleteById(best.id);
+                    return appointmentChangeLog.save(appointment);
+                }));
+                eventPublisher.publishEvent(EntityChangeEvent.created(booked));
+                return Optional.of(booked);
+            } catch (EmptyResultDataAccessException e){
+                // Taken off the waitlist since, try the next one.
+            } catch (SlotTakenException | OptimisticLockingFailureException e){
+                requeue(best);
+                return Optional.empty();
+            } catch (RuntimeException e){
+                // The row is still in the table, so the request goes back in its queue too.
+                requeue(best);
+                throw e;
+            }
+        }
+    }
+
+    private synchronized void requeue(Waiting entry){
+        index(entry);
+    }
+
+    /** Takes the best request for the freed slot out of the queues, or null. */
+    private synchronized Waiting take(long roomId, long doctorId, LocalDateTime start, LocalDateTime end){
+        List<Waiting> expired = new ArrayList<>();
+        Waiting fromRoom = first(byRoom.get(roomId), roomId, doctorId, start, end, expired);
+        Waiting fromDoctor = first(byDoctor.get(doctorId), roomId, doctorId, start, end, expired);
+        expired.forEach(this::unindex);
+
+        Waiting best = fromRoom == null || (fromDoctor != null && ORDER.compare(fromDoctor, fromRoom) < 0) ? fromDoctor : fromRoom;
+        if (best != null){
+            unindex(best);
+        }
+        return best;
+    }
+
+    private Waiting first(TreeSet<Waiting> queue, long roomId, long doctorId, LocalDateTime start, LocalDateTime end, List<Waiting> expired){
+        if (queue == null){
+            return null;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int scanned = 0;
+        for (Waiting candidate : queue){
+            if (scanned++ >= maxScan){
+                break;
+            }
+            if (!candidate.latestEnd.isAfter(now)){
+                // Left in the table, a restart drops it; it only has to leave the queues.
+                expired.add(candidate);
+            } else if (candidate.fits(roomId, doctorId, start, end)){
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private void index(Waiting entry){
+        waiting.put(entry.id, entry);
+        if (entry.roomId != 0){
+            byRoom.computeIfAbsent(entry.roomId, key -> new TreeSet<>(ORDER)).add(entry);
+        }
+        if (entry.doctorId != 0){
+            byDoctor.computeIfAbsent(entry.doctorId, key -> new TreeSet<>(ORDER)).add(entry);
+        }
+    }
+
+    private void unindex(Waiting entry){
+        waiting.remove(entry.id);
+        remove(byRoom, entry.roomId, entry);
+        remove(byDoctor, entry.doctorId, entry);
+    }
+
+    private static void remove(Map<Long, TreeSet<Waiting>> queues, long key, Waiting entry){
+        TreeSet<Waiting> queue = queues.get(key);
+        if (queue != null && queue.remove(entry) && queue.isEmpty()){
+            queues.remove(key);
+        }
+    }
+
+    /** What the queues need of a {@link WaitlistEntry}, ids instead of entities. */
+    static final class Waiting {
+
+        final long id;
+        final long patientId;
+        final long doctorId;
+        final long roomId;
+        final LocalDateTime earliestStart;
+        final LocalDateTime latestEnd;
+        final int durationMinutes;
+        final int priority;
+        final LocalDateTime createdAt;
+
+        Waiting(WaitlistEntry entry){
+            this.id = entry.getId();
+            this.patientId = entry.getPatient().getId();
+            this.doctorId = entry.getDoctor() != null ? entry.getDoctor().getId() : 0;
+            this.roomId = entry.getRoom() != null ? entry.getRoom().getId() : 0;
+            this.earliestStart = entry.getEarliestStart();
+            this.latestEnd = entry.getLatestEnd();
+            this.durationMinutes = entry.getDurationMinutes();
+            this.priority = entry.getPriority();
+            this.createdAt = entry.getCreatedAt();
+        }
+
+        /** Whether the request takes this room and doctor and can be placed inside [start, end). */
+        boolean fits(long roomId, long doctorId, LocalDateTime start, LocalDateTime end){
+            if ((this.roomId != 0 && this.roomId != roomId) || (this.doctorId != 0 && this.doctorId != doctorId)){
+                return false;
+            }
+            LocalDateTime from = earliestStart.isAfter(start) ? earliestStart : start;
+            LocalDateTime to = latestEnd.isBefore(end) ? latestEnd : end;
+            return !from.plusMinutes(durationMinutes).isAfter(to);
+        }
+    }
+}
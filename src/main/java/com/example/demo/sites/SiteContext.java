@@ -0,0 +1,72 @@
+package com.example.demo.sites;
+
+import java.util.function.Supplier;
+
+/**
+ * The hospital site the current thread works for. Every site has its own
+ * database (see {@link SiteRoutingDataSource}); a thread that never set a
+ * site works on the default one, which is also the only site the in-memory
+ * views (occupancy, schedule store, calendars, analytics, search, change
+ * feed) are built from.
+ *
+ * Web requests pick their site with the X-Site header ({@link SiteFilter}).
+ * The site must be set before a transaction starts and stay until it ends,
+ * since the connection is chosen when it is first needed.
+ */
+public final class SiteContext {
+
+    public static final String HEADER = "X-Site";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private static volatile String defaultSite = "main";
+
+    private SiteContext(){
+    }
+
+    /** The site set on this thread, null for the default site. */
+    public static String get(){
+        return CURRENT.get();
+    }
+
+    /** The site this thread works for, the default one included. */
+    public static String name(){
+        String site = CURRENT.get();
+        return site != null ? site : defaultSite;
+    }
+
+    public static boolean isDefault(){
+        return CURRENT.get() == null;
+    }
+
+    public static String getDefault(){
+        return defaultSite;
+    }
+
+    public static void setDefault(String site){
+        defaultSite = site;
+    }
+
+    public static void set(String site){
+        if (site == null || site.equals(defaultSite)){
+            CURRENT.remove();
+        } else {
+            CURRENT.set(site);
+        }
+    }
+
+    public static void clear(){
+        CURRENT.remove();
+    }
+
+    /** Runs the action for the given site and puts back whatever site the thread had before. */
+    public static <T> T call(String site, Supplier<T> action){
+        String previous = CURRENT.get();
+        set(site);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.example.demo.sites;
+
+import java.io.IOException;
+import java.util.Set;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+/**
+ * Binds the request to the site named by the X-Site header for its whole
+ * length, before the open entity manager takes a connection. Unknown sites
+ * are rejected with 400.
+ */
+public class SiteFilter extends OncePerRequestFilter {
+
+    private final Set<String> sites;
+
+    public SiteFilter(Set<String> sites){
+        this.sites = sites;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String site = request.getHeader(SiteContext.HEADER);
+        if (site != null && !sites.contains(site)){
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown site " + site);
+            return;
+        }
+        SiteContext.set(site);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            SiteContext.clear();
+        }
+    }
+}
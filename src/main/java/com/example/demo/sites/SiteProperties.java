@@ -0,0 +1,90 @@
+package com.example.demo.sites;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * techhub.sites.*: the default site runs on spring.datasource, every entry
+ * under datasources is another site with its own database and pool.
+ */
+@ConfigurationProperties("techhub.sites")
+public class SiteProperties {
+
+    private boolean enabled = false;
+    private String defaultSite = "main";
+    private int scatterThreads = 8;
+    private Map<String, Site> datasources = new LinkedHashMap<>();
+
+    public boolean isEnabled(){
+        return this.enabled;
+    }
+    public void setEnabled(boolean enabled){
+        this.enabled = enabled;
+    }
+
+    public String getDefaultSite(){
+        return this.defaultSite;
+    }
+    public void setDefaultSite(String defaultSite){
+        this.defaultSite = defaultSite;
+    }
+
+    public int getScatterThreads(){
+        return this.scatterThreads;
+    }
+    public void setScatterThreads(int scatterThreads){
+        this.scatterThreads = scatterThreads;
+    }
+
+    public Map<String, Site> getDatasources(){
+        return this.datasources;
+    }
+    public void setDatasources(Map<String, Site> datasources){
+        this.datasources = datasources;
+    }
+
+    public static class Site {
+        private String url;
+        private String username;
+        private String password;
+        private String driverClassName;
+        private int maximumPoolSize = 10;
+
+        public String getUrl(){
+            return this.url;
+        }
+        public void setUrl(String url){
+            this.url = url;
+        }
+
+        public String getUsername(){
+            return this.username;
+        }
+        public void setUsername(String username){
+            this.username = username;
+        }
+
+        public String getPassword(){
+            return this.password;
+        }
+        public void setPassword(String password){
+            this.password = password;
+        }
+
+        public String getDriverClassName(){
+            return this.driverClassName;
+        }
+        public void setDriverClassName(String driverClassName){
+            this.driverClassName = driverClassName;
+        }
+
+        public int getMaximumPoolSize(){
+            return this.maximumPoolSize;
+        }
+        public void setMaximumPoolSize(int maximumPoolSize){
+            this.maximumPoolSize = maximumPoolSize;
+        }
+    }
+}
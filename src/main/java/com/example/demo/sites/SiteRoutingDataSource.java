@@ -0,0 +1,52 @@
+package com.example.demo.sites;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.sql.DataSource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+/**
+ * One connection pool per site, picked by {@link SiteContext} each time a
+ * connection is taken. A site that is not configured is an error rather than
+ * a silent fallback to the default database.
+ */
+public class SiteRoutingDataSource extends AbstractRoutingDataSource implements AutoCloseable {
+
+    private final Map<String, DataSource> sites;
+
+    public SiteRoutingDataSource(DataSource defaultSite, Map<String, DataSource> sites){
+        this.sites = new LinkedHashMap<>(sites);
+        setDefaultTargetDataSource(defaultSite);
+        setTargetDataSources(new LinkedHashMap<Object, Object>(sites));
+        setLenientFallback(false);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey(){
+        return SiteContext.get();
+    }
+
+    /** The sites besides the default one, in configuration order. */
+    public List<String> getSites(){
+        return new ArrayList<>(sites.keySet());
+    }
+
+    @Override
+    public void close(){
+        for (DataSource dataSource : sites.values()){
+            if (dataSource instanceof HikariDataSource){
+                ((HikariDataSource) dataSource).close();
+            }
+        }
+        Object defaultSite = getResolvedDefaultDataSource();
+        if (defaultSite instanceof HikariDataSource){
+            ((HikariDataSource) defaultSite).close();
+        }
+    }
+}
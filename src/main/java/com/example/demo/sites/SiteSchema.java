@@ -0,0 +1,55 @@
+package com.example.demo.sites;
+
+import java.util.EnumSet;
+import java.util.List;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+import org.hibernate.tool.hbm2ddl.SchemaUpdate;
+import org.hibernate.tool.schema.TargetType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hibernate only creates or updates the schema of the database it boots on,
+ * which is the default site. This keeps the mapping metadata of that boot
+ * and applies the same schema update to every other site.
+ */
+public class SiteSchema implements Integrator {
+
+    private static final Logger log = LoggerFactory.getLogger(SiteSchema.class);
+
+    private volatile Metadata metadata;
+    private volatile SessionFactoryServiceRegistry serviceRegistry;
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry){
+        this.metadata = metadata;
+        this.serviceRegistry = serviceRegistry;
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry){
+        this.metadata = null;
+        this.serviceRegistry = null;
+    }
+
+    /** Brings the schema of each site up to the entity mapping. */
+    public void update(List<String> sites){
+        if (metadata == null){
+            throw new IllegalStateException("The entity manager factory has not been built yet");
+        }
+        for (String site : sites){
+            SiteContext.call(site, () -> {
+                SchemaUpdate update = new SchemaUpdate();
+                update.execute(EnumSet.of(TargetType.DATABASE), metadata, serviceRegistry);
+                for (Object error : update.getExceptions()){
+                    log.warn("Schema update of site {}: {}", site, error);
+                }
+                return null;
+            });
+        }
+    }
+}
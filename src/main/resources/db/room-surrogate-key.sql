@@ -0,0 +1,136 @@
+-- Moves room from its name as primary key to a numeric id (MySQL).
+-- Run with the application stopped, before deploying the version that maps
+-- Room.id. Hibernate recreates the room foreign keys on the next start.
+-- Every step checks information_schema first, so tables that do not exist in
+-- this database are skipped and the script can be run again, also after it
+-- stopped halfway.
+
+DROP PROCEDURE IF EXISTS run_statement;
+DROP PROCEDURE IF EXISTS drop_room_foreign_keys;
+DROP PROCEDURE IF EXISTS rekey_room_column;
+DROP PROCEDURE IF EXISTS move_room_to_id;
+
+DELIMITER //
+CREATE PROCEDURE run_statement(IN stmt TEXT)
+BEGIN
+    SET @stmt = stmt;
+    PREPARE s FROM @stmt;
+    EXECUTE s;
+    DEALLOCATE PREPARE s;
+END //
+
+CREATE PROCEDURE drop_room_foreign_keys()
+BEGIN
+    DECLARE done INT DEFAULT 0;
+    DECLARE tbl VARCHAR(64);
+    DECLARE fk VARCHAR(64);
+    DECLARE keys_cursor CURSOR FOR
+        SELECT table_name, constraint_name FROM information_schema.referential_constraints
+        WHERE constraint_schema = DATABASE() AND referenced_table_name = 'room';
+    DECLARE CONTINUE HANDLER FOR NOT FOUND SET done = 1;
+    OPEN keys_cursor;
+    read_loop: LOOP
+        FETCH keys_cursor INTO tbl, fk;
+        IF done THEN
+            LEAVE read_loop;
+        END IF;
+        CALL run_statement(CONCAT('ALTER TABLE `', tbl, '` DROP FOREIGN KEY `', fk, '`'));
+    END LOOP;
+    CLOSE keys_cursor;
+END //
+
+-- Turns tbl.room_id from the room name into the room id, through a room_key
+-- column. Does nothing for a table that is missing or already converted.
+CREATE PROCEDURE rekey_room_column(IN tbl VARCHAR(64))
+BEGIN
+    DECLARE found INT;
+    SELECT COUNT(*) INTO found FROM information_schema.tables
+        WHERE table_schema = DATABASE() AND table_name = tbl;
+    IF found > 0 THEN
+        SELECT COUNT(*) INTO found FROM information_schema.columns
+            WHERE table_schema = DATABASE() AND table_name = tbl AND column_name = 'room_id' AND data_type <> 'bigint';
+        IF found > 0 THEN
+            SELECT COUNT(*) INTO found FROM information_schema.columns
+                WHERE table_schema = DATABASE() AND table_name = tbl AND column_name = 'room_key';
+            IF found = 0 THEN
+                CALL run_statement(CONCAT('ALTER TABLE `', tbl, '` ADD COLUMN room_key BIGINT NULL'));
+            END IF;
+            CALL run_statement(CONCAT('UPDATE `', tbl, '` t JOIN room r ON r.room_name = t.room_id SET t.room_key = r.id'));
+            CALL run_statement(CONCAT('ALTER TABLE `', tbl, '` DROP COLUMN room_id'));
+        END IF;
+        SELECT COUNT(*) INTO found FROM information_schema.columns
+            WHERE table_schema = DATABASE() AND table_name = tbl AND column_name = 'room_key';
+        IF found > 0 THEN
+            CALL run_statement(CONCAT('ALTER TABLE `', tbl, '` CHANGE room_key room_id BIGINT NULL'));
+        END IF;
+    END IF;
+END //
+
+CREATE PROCEDURE move_room_to_id()
+BEGIN
+    DECLARE found INT;
+
+    -- Number the rooms from the shared Hibernate sequence, then move the sequence past them.
+    SELECT COUNT(*) INTO found FROM information_schema.columns
+        WHERE table_schema = DATABASE() AND table_name = 'room' AND column_name = 'id';
+    IF found = 0 THEN
+        ALTER TABLE room ADD COLUMN id BIGINT NULL;
+    END IF;
+    SELECT COUNT(*) INTO found FROM room WHERE id IS NULL;
+    IF found > 0 THEN
+        SET @next = (SELECT next_val FROM hibernate_sequence);
+        SET @row = -1;
+        UPDATE room SET id = @next + (@row := @row + 1) WHERE id IS NULL ORDER BY room_name;
+        UPDATE hibernate_sequence SET next_val = next_val + found;
+    END IF;
+
+    CALL rekey_room_column('appointment');
+    CALL rekey_room_column('appointment_series');
+
+    -- Dropping room_id would leave the archive's room index on starts_at alone.
+    SELECT COUNT(*) INTO found FROM information_schema.columns
+        WHERE table_schema = DATABASE() AND table_name = 'appointment_archive' AND column_name = 'room_id' AND data_type <> 'bigint';
+    IF found > 0 THEN
+        SELECT COUNT(*) INTO found FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = 'appointment_archive' AND index_name = 'idx_appointment_archive_room_starts_at';
+        IF found > 0 THEN
+            ALTER TABLE appointment_archive DROP INDEX idx_appointment_archive_room_starts_at;
+        END IF;
+    END IF;
+    CALL rekey_room_column('appointment_archive');
+    SELECT COUNT(*) INTO found FROM information_schema.tables
+        WHERE table_schema = DATABASE() AND table_name = 'appointment_archive';
+    IF found > 0 THEN
+        SELECT COUNT(*) INTO found FROM information_schema.statistics
+            WHERE table_schema = DATABASE() AND table_name = 'appointment_archive' AND index_name = 'idx_appointment_archive_room_starts_at';
+        IF found = 0 THEN
+            CREATE INDEX idx_appointment_archive_room_starts_at ON appointment_archive (room_id, starts_at);
+        END IF;
+    END IF;
+
+    SELECT COUNT(*) INTO found FROM information_schema.key_column_usage
+        WHERE table_schema = DATABASE() AND table_name = 'room' AND constraint_name = 'PRIMARY' AND column_name = 'id';
+    IF found = 0 THEN
+        SELECT COUNT(*) INTO found FROM information_schema.table_constraints
+            WHERE table_schema = DATABASE() AND table_name = 'room' AND constraint_type = 'PRIMARY KEY';
+        IF found > 0 THEN
+            ALTER TABLE room DROP PRIMARY KEY;
+        END IF;
+        ALTER TABLE room MODIFY id BIGINT NOT NULL;
+        ALTER TABLE room ADD PRIMARY KEY (id);
+    END IF;
+    SELECT COUNT(*) INTO found FROM information_schema.statistics
+        WHERE table_schema = DATABASE() AND table_name = 'room' AND index_name = 'uk_room_name';
+    IF found = 0 THEN
+        ALTER TABLE room ADD CONSTRAINT uk_room_name UNIQUE (room_name);
+    END IF;
+END //
+DELIMITER ;
+
+CALL drop_room_foreign_keys();
+CALL move_room_to_id();
+
+DROP PROCEDURE move_room_to_id;
+DROP PROCEDURE rekey_room_column;
+DROP PROCEDURE drop_room_foreign_keys;
+DROP PROCEDURE run_statement;
@@ -0,0 +1,52 @@
+package com.example.demo;
+
+import static org.mockito.Mockito.when;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.controllers.AnalyticsController;
+import com.example.demo.services.UtilizationAnalytics;
+import com.example.demo.services.UtilizationAnalytics.Granularity;
+import com.example.demo.services.UtilizationAnalytics.ResourceType;
+import com.example.demo.services.UtilizationAnalytics.UtilizationRow;
+
+@WebMvcTest(AnalyticsController.class)
+class AnalyticsControllerUnitTest{
+
+    @MockBean
+    private UtilizationAnalytics utilizationAnalytics;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void shouldGetWeeklyRoomUtilization() throws Exception{
+        LocalDate from = LocalDate.of(2023, 4, 24);
+        LocalDate to = LocalDate.of(2023, 4, 30);
+        when(utilizationAnalytics.report(Granularity.WEEK, from, to, ResourceType.ROOM))
+            .thenReturn(Collections.singletonList(new UtilizationRow(ResourceType.ROOM, "Dermatology", from, 2016, 30, 10080)));
+
+        mockMvc.perform(get("/api/analytics/utilization")
+                    .param("granularity", "week").param("from", "24/04/2023").param("to", "30/04/2023").param("resource", "room"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].resourceKey").value("Dermatology"))
+                .andExpect(jsonPath("$[0].periodStart").value("24/04/2023"))
+                .andExpect(jsonPath("$[0].utilization").value(20.0));
+    }
+
+    @Test
+    void shouldRejectUnknownGranularity() throws Exception{
+        mockMvc.perform(get("/api/analytics/utilization").param("granularity", "fortnight"))
+                .andExpect(status().isBadRequest());
+    }
+}
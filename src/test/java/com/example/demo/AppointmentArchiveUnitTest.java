@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import static com.example.demo.QueryCounting.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.services.AppointmentArchive;
+import com.example.demo.services.RoomDirectory;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({AppointmentArchive.class, RoomDirectory.class, QueryCounting.class})
+@TestPropertySource(properties = "techhub.archive.chunk-size=2")
+class AppointmentArchiveUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    AppointmentArchive archive;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    ArchivedAppointmentRepository archiveRepository;
+
+    private final LocalDateTime horizon = LocalDateTime.of(2023, 4, 1, 0, 0);
+
+    private Room room;
+
+    private Appointment book(LocalDateTime startsAt){
+        if (room == null){
+            room = entityManager.persist(new Room("Dermatology"));
+        }
+        int n = (int) appointmentRepository.count() + (int) archiveRepository.count();
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya" + n + "@email.com"));
+        Doctor doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia" + n + "@hospital.accwe"));
+        return entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusMinutes(30)));
+    }
+
+    @Test
+    void should_move_finished_appointments_in_chunks(){
+        Appointment old1 = book(horizon.minusDays(40));
+        Appointment old2 = book(horizon.minusDays(20));
+        Appointment old3 = book(horizon.minusHours(1));
+        Appointment recent = book(horizon.minusMinutes(10));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(archive.archiveBefore(horizon)).isEqualTo(3);
+
+        assertThat(appointmentRepository.findAll()).extracting(Appointment::getId).containsExactly(recent.getId());
+        assertThat(archiveRepository.findAll()).extracting(ArchivedAppointment::getId)
+                .containsExactlyInAnyOrder(old1.getId(), old2.getId(), old3.getId());
+        assertThat(archive.getArchivedBefore()).isEqualTo(horizon);
+        assertThat(archive.findArchived(old2.getId())).get().extracting(Appointment::getStartsAt).isEqualTo(old2.getStartsAt());
+    }
+
+    @Test
+    void should_read_the_archive_only_for_ranges_before_the_horizon(){
+        Appointment old = book(horizon.minusDays(1).withHour(9));
+        Appointment recent = book(horizon.plusDays(1).withHour(9));
+        entityManager.flush();
+        archive.archiveBefore(horizon);
+        entityManager.clear();
+
+        assertThat(archive.covers(horizon)).isFalse();
+        assertThat(archive.find(horizon, horizon.plusDays(7))).extracting(Appointment::getId).containsExactly(recent.getId());
+        assertThat(archive.find(horizon.minusDays(7), horizon.plusDays(7))).extracting(Appointment::getId)
+                .containsExactly(old.getId(), recent.getId());
+    }
+
+    @Test
+    void should_check_bookings_in_the_archived_past(){
+        Appointment old = book(horizon.minusDays(1).withHour(9));
+        entityManager.flush();
+        archive.archiveBefore(horizon);
+
+        Appointment overlapping = new Appointment(null, null, room, old.getStartsAt().plusMinutes(15), old.getFinishesAt().plusMinutes(15));
+        Appointment after = new Appointment(null, null, room, old.getFinishesAt(), old.getFinishesAt().plusMinutes(30));
+        assertThat(archive.conflicts(overlapping)).isTrue();
+        assertThat(archive.conflicts(after)).isFalse();
+    }
+
+    @Test
+    void should_read_archived_appointments_with_their_parties_in_one_select() throws Throwable{
+        book(horizon.minusDays(3).withHour(9));
+        book(horizon.minusDays(2).withHour(9));
+        book(horizon.minusDays(1).withHour(9));
+        entityManager.flush();
+        archive.archiveBefore(horizon);
+        entityManager.clear();
+
+        List<List<Appointment>> found = new ArrayList<>();
+        // One select on the hot table, one on the archive, none per patient, doctor or room.
+        assertThat(during(() -> found.add(archive.find(horizon.minusDays(7), horizon))).getSelects()).isEqualTo(2);
+        assertThat(found.get(0)).hasSize(3).allSatisfy(appointment -> assertThat(appointment.getPatient().getEmail()).isNotNull());
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.event.ApplicationEvents;
+import org.springframework.test.context.event.RecordApplicationEvents;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.repositories.*;
+import com.example.demo.services.AppointmentChangeLog;
+import com.example.demo.services.ChangeNumbers;
+import com.example.demo.services.BookingGuard;
+import com.example.demo.services.RetryPolicy;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.AppointmentChangeLog.ChangeSet;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({AppointmentChangeLog.class, ChangeNumbers.class, RoomDirectory.class, BookingGuard.class, RetryPolicy.class, SimpleMeterRegistry.class})
+@RecordApplicationEvents
+class AppointmentChangeLogUnitTest {
+
+    @Autowired
+    AppointmentChangeLog changeLog;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    ApplicationEvents events;
+
+    private int booked = 0;
+
+    private Appointment book(){
+        booked++;
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya" + booked + "@email.com");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia" + booked + "@hospital.accwe");
+        Room room = new Room("Room " + booked);
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0).plusHours(booked);
+        return changeLog.save(new Appointment(patient, doctor, room, startsAt, startsAt.plusMinutes(30)));
+    }
+
+    @Test
+    void should_return_everything_without_a_token(){
+        Appointment first = book();
+        Appointment second = book();
+
+        ChangeSet changes = changeLog.changes(null, 500);
+
+        assertThat(changes.isReset()).isTrue();
+        assertThat(changes.getAppointments()).containsExactly(first, second);
+        assertThat(changes.getToken()).isEqualTo(String.valueOf(second.getChangeSeq()));
+    }
+
+    @Test
+    void should_return_only_changes_after_the_token(){
+        Appointment first = book();
+        Appointment second = book();
+        String token = changeLog.changes(null, 500).getToken();
+
+        changeLog.delete(first);
+        Appointment third = book();
+
+        ChangeSet changes = changeLog.changes(Long.parseLong(token), 500);
+
+        assertThat(changes.isReset()).isFalse();
+        assertThat(changes.getDeleted()).containsExactly(first.getId());
+        assertThat(changes.getAppointments()).containsExactly(third);
+        assertThat(changes.getAppointments()).doesNotContain(second);
+        assertThat(changeLog.changes(Long.parseLong(changes.getToken()), 500).getAppointments()).isEmpty();
+    }
+
+    @Test
+    void should_page_through_changes(){
+        book();
+        book();
+        Appointment third = book();
+
+        ChangeSet page = changeLog.changes(null, 2);
+        assertThat(page.getAppointments()).hasSize(2);
+        assertThat(page.isHasMore()).isTrue();
+
+        ChangeSet next = changeLog.changes(Long.parseLong(page.getToken()), 2);
+        assertThat(next.getAppointments()).containsExactly(third);
+        assertThat(next.isHasMore()).isFalse();
+    }
+
+    @Test
+    void should_reset_clients_after_delete_all(){
+        book();
+        String token = changeLog.changes(null, 500).getToken();
+
+        changeLog.deleteAll();
+        Appointment after = book();
+
+        ChangeSet changes = changeLog.changes(Long.parseLong(token), 500);
+        assertThat(changes.isReset()).isTrue();
+        assertThat(changes.getAppointments()).containsExactly(after);
+    }
+
+    @Test
+    void should_report_a_moved_appointment_as_changed_not_deleted(){
+        Appointment moved = book();
+        Room target = book().getRoom();
+        String token = changeLog.changes(null, 500).getToken();
+
+        changeLog.moveAll(Collections.singletonList(moved), Collections.singletonList(target));
+
+        ChangeSet changes = changeLog.changes(Long.parseLong(token), 500);
+        assertThat(changes.getDeleted()).isEmpty();
+        assertThat(changes.getAppointments()).containsExactly(moved);
+        assertThat(changes.getToken()).isEqualTo(String.valueOf(moved.getChangeSeq()));
+    }
+
+    @Test
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    void should_announce_the_parties_a_booking_inserted_once_it_commits(){
+        Patient patient = patientRepository.save(new Patient("Jose Luis", "Olaya", 37, "j.olaya.stored@email.com"));
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia.new@hospital.accwe");
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 25, 9, 0);
+        Appointment appointment = changeLog.save(new Appointment(patient, doctor,
+                new Room("Announced Room"), startsAt, startsAt.plusMinutes(30)));
+        try {
+            assertThat(events.stream(EntityChangeEvent.class))
+                    .allMatch(event -> event.getKind() == EntityChangeEvent.Kind.CREATED)
+                    .extracting(EntityChangeEvent::getEntity)
+                    .containsExactlyInAnyOrder(appointment.getRoom(), doctor);
+        } finally {
+            appointmentRepository.delete(appointment);
+            patientRepository.delete(patient);
+            doctorRepository.delete(doctor);
+            roomRepository.delete(appointment.getRoom());
+        }
+    }
+}
@@ -2,6 +2,8 @@ package com.example.demo;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -18,10 +20,12 @@ import java.util.Optional;
 import java.time.LocalDateTime;
 import java.time.format.*;
 
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.LinkedMultiValueMap;
@@ -30,20 +34,111 @@ import org.springframework.util.MultiValueMap;
 import com.example.demo.controllers.AppointmentController;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.services.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 @WebMvcTest(AppointmentController.class)
+@Import({RoomOccupancy.class, MultiGet.class, AppointmentExpansion.class})
 class AppointmentControllerUnitTest{
 
     @MockBean
     private AppointmentRepository appointmentRepository;
 
+    @MockBean
+    private AppointmentChangeLog appointmentChangeLog;
+
+    @MockBean
+    private AppointmentWriteBehind writeBehind;
+
+    @MockBean
+    private SeriesScheduler seriesScheduler;
+
+    @MockBean
+    private AppointmentArchive appointmentArchive;
+
+    @MockBean
+    private ScheduleStore scheduleStore;
+
+    @MockBean
+    private ShardRouter shardRouter;
+
+    @MockBean
+    private FieldSelector fieldSelector;
+
+    @MockBean
+    private Waitlist waitlist;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
     @Autowired 
     private MockMvc mockMvc;
 
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private RoomOccupancy roomOccupancy;
+
+    @BeforeEach
+    void resetOccupancy(){
+        roomOccupancy.clear();
+    }
+
+    private static AppointmentSummary summary(long id, LocalDateTime startsAt){
+        return new AppointmentSummary(id, 3L, 4L, 5L, startsAt, startsAt.plusHours(1));
+    }
+
+    @Test
+    void shouldGetAppointmentsByIdInRequestOrderReadingThroughToTheArchive() throws Exception{
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 19, 30);
+
+        when(appointmentRepository.findSummariesByIdIn(Arrays.asList(5L, 4L))).thenReturn(Collections.singletonList(summary(4, startsAt)));
+        when(appointmentArchive.findArchivedSummaries(Collections.singletonList(5L))).thenReturn(Collections.singletonList(summary(5, startsAt.minusYears(1))));
+        mockMvc.perform(get("/api/appointments").param("ids", "5,4"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(5))
+                .andExpect(jsonPath("$[1].id").value(4));
+    }
+
+    @Test
+    void shouldListSummariesUnlessAskedToExpand() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        patient.setId(3);
+        Room room = new Room(5, "Dermatology");
+
+        when(appointmentRepository.findAllSummaries()).thenReturn(Collections.singletonList(summary(1, LocalDateTime.of(2023, 4, 24, 19, 30))));
+        when(patientRepository.findAllById(Collections.singletonList(3L))).thenReturn(Collections.singletonList(patient));
+        when(roomRepository.findAllById(Collections.singletonList(5L))).thenReturn(Collections.singletonList(room));
+
+        mockMvc.perform(get("/api/appointments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].patientId").value(3))
+                .andExpect(jsonPath("$[0].patient").doesNotExist());
+        mockMvc.perform(get("/api/appointments").param("expand", "patient,room"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].patient.firstName").value("Jose Luis"))
+                .andExpect(jsonPath("$[0].room.roomName").value("Dermatology"))
+                .andExpect(jsonPath("$[0].doctorId").value(4))
+                .andExpect(jsonPath("$[0].doctor").doesNotExist());
+        mockMvc.perform(get("/api/appointments").param("expand", "nurse"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldRejectAppointmentIdsCombinedWithFields() throws Exception{
+        mockMvc.perform(get("/api/appointments").param("ids", "4,5").param("fields", "id,startsAt"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(fieldSelector);
+    }
+
     @Test
     void shouldCreateAppointment() throws Exception {
         
@@ -160,8 +255,7 @@ class AppointmentControllerUnitTest{
     
     @Test
     void shouldGetNoAppointments() throws Exception{
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        when(appointmentRepository.findAllSummaries()).thenReturn(new ArrayList<AppointmentSummary>());
         mockMvc.perform(get("/api/appointments"))
                 .andExpect(status().isNoContent());
                 
@@ -169,28 +263,16 @@ class AppointmentControllerUnitTest{
 
     @Test
     void shouldGetTwoAppointments() throws Exception{
-        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
-        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
-        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
-        Doctor doctor2 = new Doctor ("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
-        Room room = new Room("Dermatology");
-
         DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
-        
+
         LocalDateTime startsAt= LocalDateTime.parse("19:00 24/04/2023", formatter);
         LocalDateTime startsAt2= LocalDateTime.parse("19:30 24/04/2023", formatter);
 
-        LocalDateTime finishesAt = LocalDateTime.parse("20:00 24/04/2023", formatter);
-        LocalDateTime finishesAt2 = LocalDateTime.parse("20:30 24/04/2023", formatter);
-
-        Appointment appointment = new Appointment(patient, doctor, room, startsAt, finishesAt);
-        Appointment appointment2 = new Appointment(patient2, doctor2, room, startsAt2, finishesAt2);
+        List<AppointmentSummary> appointments = new ArrayList<AppointmentSummary>();
+        appointments.add(summary(1, startsAt));
+        appointments.add(summary(2, startsAt2));
 
-        List<Appointment> appointments = new ArrayList<Appointment>();
-        appointments.add(appointment);
-        appointments.add(appointment2);
-
-        when(appointmentRepository.findAll()).thenReturn(appointments);
+        when(appointmentRepository.findAllSummaries()).thenReturn(appointments);
         mockMvc.perform(get("/api/appointments"))
                 .andExpect(status().isOk());
                 
@@ -274,5 +356,142 @@ class AppointmentControllerUnitTest{
                 .andExpect(status().isOk());
                 
     }
-}
 
+    @Test
+    void shouldNotCreateAppointmentInsideAnotherOne() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment appointment = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("19:00 24/04/2023", formatter), LocalDateTime.parse("21:00 24/04/2023", formatter));
+        Appointment appointment2 = new Appointment(patient2, doctor, room,
+                LocalDateTime.parse("19:32 24/04/2023", formatter), LocalDateTime.parse("20:07 24/04/2023", formatter));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment2)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldCheckOffGridAppointmentsAgainstStoredOnes() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Patient patient2 = new Patient("Paulino", "Antunez", 37, "p.antunez@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+        Appointment stored = new Appointment(patient, doctor, room,
+                LocalDateTime.parse("19:02 24/04/2023", formatter), LocalDateTime.parse("19:33 24/04/2023", formatter));
+        Appointment appointment = new Appointment(patient2, doctor, room,
+                LocalDateTime.parse("19:31 24/04/2023", formatter), LocalDateTime.parse("19:47 24/04/2023", formatter));
+
+        when(appointmentRepository.findAll()).thenReturn(new ArrayList<>(Collections.singletonList(stored)));
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldGetAppointmentChangesSinceToken() throws Exception{
+        when(appointmentChangeLog.changes(41L, 500))
+            .thenReturn(new AppointmentChangeLog.ChangeSet("43", false, Collections.emptyList(), Arrays.asList(7L, 9L), false));
+
+        mockMvc.perform(get("/api/appointments/changes").param("since", "41"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.token").value("43"))
+                .andExpect(jsonPath("$.reset").value(false))
+                .andExpect(jsonPath("$.deleted[1]").value(9));
+    }
+
+    @Test
+    void shouldRejectMalformedChangeToken() throws Exception{
+        mockMvc.perform(get("/api/appointments/changes").param("since", "yesterday"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldAcceptAppointmentInWriteBehindMode() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        Appointment appointment = new Appointment(patient, doctor, room,
+                LocalDateTime.of(2023, 4, 24, 19, 30), LocalDateTime.of(2023, 4, 24, 20, 30));
+
+        AppointmentWriteBehind.Ticket ticket = mock(AppointmentWriteBehind.Ticket.class);
+        when(ticket.getId()).thenReturn(5L);
+        when(writeBehind.isEnabled()).thenReturn(true);
+        when(writeBehind.submit(any(Appointment.class))).thenReturn(ticket);
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/appointments/pending/5"));
+    }
+
+    @Test
+    void shouldNotCreateAppointmentOnASeriesOccurrence() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        Appointment appointment = new Appointment(patient, doctor, room,
+                LocalDateTime.of(2023, 4, 24, 19, 30), LocalDateTime.of(2023, 4, 24, 20, 30));
+
+        when(seriesScheduler.conflicts(any(Appointment.class))).thenReturn(true);
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable());
+
+        assertThat(roomOccupancy.utilization("Dermatology", appointment.getStartsAt().toLocalDate()).getBookedSlots()).isZero();
+    }
+
+    @Test
+    void shouldFallBackToTheArchiveById() throws Exception{
+        Appointment archived = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"),
+                LocalDateTime.of(2022, 4, 24, 19, 0), LocalDateTime.of(2022, 4, 24, 20, 0));
+        archived.setId(7);
+
+        when(appointmentRepository.findById(7L)).thenReturn(Optional.empty());
+        when(appointmentArchive.findArchived(7L)).thenReturn(Optional.of(archived));
+
+        mockMvc.perform(get("/api/appointments/7"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(7));
+    }
+
+    @Test
+    void shouldListAppointmentsInARange() throws Exception{
+        when(appointmentArchive.findSummaries(LocalDateTime.of(2022, 4, 1, 0, 0), LocalDateTime.of(2022, 5, 1, 0, 0)))
+                .thenReturn(Collections.singletonList(summary(1, LocalDateTime.of(2022, 4, 24, 19, 0))));
+
+        mockMvc.perform(get("/api/appointments").param("from", "01/04/2022").param("to", "30/04/2022"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].startsAt").value("19:00 24/04/2022"));
+        mockMvc.perform(get("/api/appointments").param("from", "30/04/2022").param("to", "01/04/2022"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldCheckOffGridAppointmentsAgainstTheScheduleStore() throws Exception{
+        Appointment appointment = new Appointment(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"),
+                new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"), new Room("Dermatology"),
+                LocalDateTime.of(2023, 4, 24, 19, 31), LocalDateTime.of(2023, 4, 24, 19, 47));
+
+        when(scheduleStore.isLoaded()).thenReturn(true);
+        when(scheduleStore.conflicts(any(Appointment.class))).thenReturn(true);
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isNotAcceptable());
+    }
+}
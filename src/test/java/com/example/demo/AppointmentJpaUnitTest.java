@@ -1,9 +1,11 @@
 package com.example.demo;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
+import org.hibernate.Hibernate;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
@@ -258,4 +260,52 @@ class AppointmentJpaUnitTest {
         assertThat(appointments).isEmpty();
     }
     
+    @Test
+    void should_list_summaries_from_the_appointment_row(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room);
+        Appointment late = entityManager.persist(new Appointment(patient, doctor, room, startsAt.plusHours(2), startsAt.plusHours(3)));
+        Appointment early = entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusHours(1)));
+        entityManager.flush();
+        entityManager.clear();
+
+        List<AppointmentSummary> summaries = repoAppointments.findAllSummaries();
+
+        assertThat(summaries).extracting(AppointmentSummary::getId).containsExactly(early.getId(), late.getId());
+        assertThat(summaries.get(0).getPatientId()).isEqualTo(patient.getId());
+        assertThat(summaries.get(0).getDoctorId()).isEqualTo(doctor.getId());
+        assertThat(summaries.get(0).getRoomId()).isEqualTo(room.getId());
+        assertThat(summaries.get(0).getFinishesAt()).isEqualTo(startsAt.plusHours(1));
+        assertThat(repoAppointments.findSummariesBetween(startsAt.plusMinutes(90), startsAt.plusHours(4)))
+            .extracting(AppointmentSummary::getId).containsExactly(late.getId());
+    }
+
+    @Test
+    void should_fetch_the_parties_with_the_appointment_when_listing(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room);
+        Appointment appointment = entityManager.persist(new Appointment(patient, doctor, room, LocalDateTime.now(), LocalDateTime.now()));
+        entityManager.flush();
+        entityManager.clear();
+
+        Appointment found = repoAppointments.findById(appointment.getId()).get();
+
+        assertThat(Hibernate.isPropertyInitialized(found, "patient")).isTrue();
+        assertThat(Hibernate.isPropertyInitialized(found, "doctor")).isTrue();
+        assertThat(Hibernate.isPropertyInitialized(found, "room")).isTrue();
+        assertThat(Hibernate.isInitialized(found.getRoom())).isTrue();
+    }
+
 }
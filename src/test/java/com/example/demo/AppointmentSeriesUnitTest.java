@@ -0,0 +1,70 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.entities.*;
+import com.example.demo.entities.AppointmentSeries.Frequency;
+
+class AppointmentSeriesUnitTest {
+
+    // Monday 24/04/2023 10:00, 50 minutes
+    private final LocalDateTime first = LocalDateTime.of(2023, 4, 24, 10, 0);
+
+    private AppointmentSeries weekly(int interval, Integer count, LocalDate until){
+        return new AppointmentSeries(null, null, new Room("Dermatology"), first, 50, Frequency.WEEKLY, interval, count, until);
+    }
+
+    @Test
+    void should_expand_only_the_requested_range(){
+        AppointmentSeries series = weekly(1, null, null);
+
+        assertThat(series.occurrences(LocalDateTime.of(2024, 1, 1, 0, 0), LocalDateTime.of(2024, 1, 31, 0, 0)))
+            .extracting(o -> o.getStartsAt().toLocalDate())
+            .containsExactly(LocalDate.of(2024, 1, 1), LocalDate.of(2024, 1, 8), LocalDate.of(2024, 1, 15),
+                LocalDate.of(2024, 1, 22), LocalDate.of(2024, 1, 29));
+    }
+
+    @Test
+    void should_stop_at_count_and_until(){
+        assertThat(weekly(1, 3, null).getLastStartsAt()).isEqualTo(first.plusWeeks(2));
+        assertThat(weekly(2, null, LocalDate.of(2023, 5, 22)).getLastStartsAt()).isEqualTo(first.plusWeeks(4));
+        assertThat(weekly(1, null, LocalDate.of(2023, 4, 23)).getLastIndex()).isEqualTo(-1);
+        assertThat(weekly(1, null, null).getLastStartsAt()).isNull();
+    }
+
+    @Test
+    void should_find_overlaps_by_arithmetic(){
+        AppointmentSeries series = weekly(2, null, null);
+        LocalDateTime inTwoYears = first.plusWeeks(104);
+
+        assertThat(series.overlaps(inTwoYears.plusMinutes(49), inTwoYears.plusHours(2))).isTrue();
+        assertThat(series.overlaps(inTwoYears.plusMinutes(50), inTwoYears.plusHours(2))).isFalse();
+        assertThat(series.overlaps(inTwoYears.plusWeeks(1), inTwoYears.plusWeeks(1).plusHours(1))).isFalse();
+        assertThat(series.overlaps(first.minusHours(1), first)).isFalse();
+    }
+
+    @Test
+    void should_apply_cancellations_and_moves(){
+        AppointmentSeries series = weekly(1, 4, null);
+        series.addException(SeriesException.cancel(LocalDate.of(2023, 5, 1)));
+        series.addException(SeriesException.move(LocalDate.of(2023, 5, 8),
+            LocalDateTime.of(2023, 5, 9, 16, 0), LocalDateTime.of(2023, 5, 9, 17, 0)));
+
+        assertThat(series.overlaps(LocalDateTime.of(2023, 5, 1, 10, 0), LocalDateTime.of(2023, 5, 1, 11, 0))).isFalse();
+        assertThat(series.overlaps(LocalDateTime.of(2023, 5, 8, 10, 0), LocalDateTime.of(2023, 5, 8, 11, 0))).isFalse();
+        assertThat(series.overlaps(LocalDateTime.of(2023, 5, 9, 16, 30), LocalDateTime.of(2023, 5, 9, 18, 0))).isTrue();
+        assertThat(series.occurrences(first, first.plusWeeks(4)))
+            .extracting("index", "moved")
+            .containsExactly(tuple(0L, false), tuple(2L, true),
+                tuple(3L, false));
+        assertThat(series.indexOf(LocalDate.of(2023, 5, 15))).isEqualTo(3);
+        assertThat(series.indexOf(LocalDate.of(2023, 5, 16))).isEqualTo(-1);
+        assertThat(series.indexOf(LocalDate.of(2023, 5, 22))).isEqualTo(-1);
+    }
+}
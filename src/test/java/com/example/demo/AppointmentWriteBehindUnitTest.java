@@ -0,0 +1,113 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.services.*;
+import com.example.demo.services.AppointmentWriteBehind.State;
+import com.example.demo.services.AppointmentWriteBehind.Ticket;
+import com.example.demo.services.RoomOccupancy.SlotState;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({AppointmentWriteBehind.class, AppointmentChangeLog.class, ChangeNumbers.class, RoomDirectory.class, BookingGuard.class, RetryPolicy.class, RoomOccupancy.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"techhub.booking.write-behind.enabled=true", "techhub.booking.write-behind.max-delay-ms=50"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class AppointmentWriteBehindUnitTest {
+
+    @Autowired
+    AppointmentWriteBehind writeBehind;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @AfterEach
+    void cleanUp(){
+        appointmentRepository.deleteAll();
+        patientRepository.deleteAll();
+        doctorRepository.deleteAll();
+        roomOccupancy.clear();
+    }
+
+    private Appointment reserve(int hour, String patientEmail){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, patientEmail);
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia" + hour + "@hospital.accwe");
+        Room room = new Room("Room " + hour);
+        Appointment appointment = new Appointment(patient, doctor, room,
+                LocalDateTime.of(2023, 4, 24, hour, 0), LocalDateTime.of(2023, 4, 24, hour, 30));
+        assertThat(roomOccupancy.tryReserve(appointment)).isEqualTo(SlotState.FREE);
+        return appointment;
+    }
+
+    private static void awaitDone(Ticket ticket) throws InterruptedException{
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (ticket.getState() == State.PENDING && System.nanoTime() < deadline){
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void should_commit_queued_appointments_in_batches() throws Exception{
+        Ticket first = writeBehind.submit(reserve(9, "a@email.com"));
+        Ticket second = writeBehind.submit(reserve(10, "b@email.com"));
+        Ticket third = writeBehind.submit(reserve(11, "c@email.com"));
+        awaitDone(first);
+        awaitDone(second);
+        awaitDone(third);
+
+        assertThat(first.getState()).isEqualTo(State.COMMITTED);
+        assertThat(third.getState()).isEqualTo(State.COMMITTED);
+        assertThat(first.getAppointmentId()).isNotNull();
+        assertThat(appointmentRepository.findAll()).hasSize(3);
+        assertThat(meterRegistry.get("techhub.appointments.write_behind.flush").timer().count()).isGreaterThanOrEqualTo(1);
+        assertThat(meterRegistry.get("techhub.appointments.write_behind.batch_size").summary().max()).isGreaterThan(1);
+    }
+
+    @Test
+    void should_fail_only_the_rejected_appointment_and_release_its_slot() throws Exception{
+        patientRepository.save(new Patient("Paulino", "Antunez", 37, "taken@email.com"));
+
+        Appointment rejected = reserve(9, "taken@email.com");
+        Ticket bad = writeBehind.submit(rejected);
+        Ticket good = writeBehind.submit(reserve(10, "free@email.com"));
+        awaitDone(bad);
+        awaitDone(good);
+
+        assertThat(bad.getState()).isEqualTo(State.FAILED);
+        assertThat(good.getState()).isEqualTo(State.COMMITTED);
+        assertThat(appointmentRepository.findAll()).hasSize(1);
+        assertThat(roomOccupancy.tryReserve(rejected)).isEqualTo(SlotState.FREE);
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.events.EntityChangeEvent.Kind;
+import com.example.demo.repositories.AuditRecordRepository;
+import com.example.demo.repositories.DoctorRepository;
+import com.example.demo.services.AuditLog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({AuditLog.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"techhub.audit.sink=TABLE", "techhub.audit.buffer-size=8", "techhub.audit.batch-size=4"})
+class AuditLogUnitTest {
+
+    @Autowired
+    AuditLog auditLog;
+
+    @Autowired
+    AuditRecordRepository auditRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @AfterEach
+    void clear(){
+        auditRepository.deleteAll();
+        doctorRepository.deleteAll();
+    }
+
+    private List<AuditRecord> awaitWritten() throws InterruptedException{
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(10);
+        while (auditLog.getLag() > 0 && System.currentTimeMillis() < deadline){
+            Thread.sleep(5);
+        }
+        assertThat(auditLog.getLag()).isZero();
+        return auditRepository.findAllByOrderBySeq();
+    }
+
+    @Test
+    void should_record_creates_deletes_and_clears_in_order() throws InterruptedException{
+        Doctor doctor = doctorRepository.save(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+
+        auditLog.onChange(EntityChangeEvent.created(doctor));
+        auditLog.onChange(EntityChangeEvent.deleted(doctor));
+        auditLog.onChange(EntityChangeEvent.cleared(Doctor.class));
+        List<AuditRecord> records = awaitWritten();
+
+        assertThat(records).extracting(AuditRecord::getAction).containsExactly("CREATED", "DELETED", "CLEARED");
+        assertThat(records).extracting(AuditRecord::getEntityType).containsOnly("Doctor");
+        assertThat(records).extracting(AuditRecord::getEntityId).containsExactly(doctor.getId(), doctor.getId(), null);
+    }
+
+    @Test
+    void should_keep_every_event_when_publishers_outrun_the_ring() throws InterruptedException{
+        int threads = 4;
+        int perThread = 50;
+        ExecutorService publishers = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++){
+            publishers.execute(() -> {
+                for (long id = 1; id <= perThread; id++){
+                    auditLog.publish(Kind.CREATED, Doctor.class, id, "main");
+                }
+            });
+        }
+        publishers.shutdown();
+        assertThat(publishers.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        List<AuditRecord> records = awaitWritten();
+
+        assertThat(records).hasSize(threads * perThread);
+        for (int i = 1; i < records.size(); i++){
+            assertThat(records.get(i).getSeq()).isEqualTo(records.get(0).getSeq() + i);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.demo.services.BloomFilter;
+
+class BloomFilterUnitTest {
+
+    @Test
+    void should_contain_every_inserted_key(){
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++){
+            filter.put("patient" + i + "@email.com");
+        }
+        for (int i = 0; i < 10000; i++){
+            assertThat(filter.mightContain("patient" + i + "@email.com")).isTrue();
+        }
+        assertThat(filter.getInsertions()).isEqualTo(10000);
+    }
+
+    @Test
+    void should_keep_false_positives_close_to_the_configured_rate(){
+        BloomFilter filter = new BloomFilter(10000, 0.01);
+        for (int i = 0; i < 10000; i++){
+            filter.put("patient" + i + "@email.com");
+        }
+        int falsePositives = 0;
+        for (int i = 0; i < 10000; i++){
+            if (filter.mightContain("doctor" + i + "@hospital.accwe")){
+                falsePositives++;
+            }
+        }
+        assertThat(falsePositives).isLessThan(300);
+    }
+
+    @Test
+    void should_forget_everything_when_cleared(){
+        BloomFilter filter = new BloomFilter(100, 0.01);
+        filter.put("j.olaya@email.com");
+        filter.clear();
+
+        assertThat(filter.mightContain("j.olaya@email.com")).isFalse();
+        assertThat(filter.getInsertions()).isZero();
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.services.AppointmentChangeLog;
+import com.example.demo.services.BookingGuard.SlotTakenException;
+
+
+/** Two application instances sharing one database, as behind the load balancer. */
+class BookingGuardUnitTest {
+
+    private static final String URL = "jdbc:h2:mem:cluster;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000";
+
+    private static ConfigurableApplicationContext first;
+    private static ConfigurableApplicationContext second;
+
+    private static int booked = 0;
+
+    @BeforeAll
+    static void start(){
+        first = instance();
+        second = instance();
+        first.getBean(RoomRepository.class).save(new Room("Dermatology"));
+        first.getBean(RoomRepository.class).save(new Room("Oncology"));
+    }
+
+    @AfterAll
+    static void stop(){
+        second.close();
+        first.close();
+    }
+
+    private static ConfigurableApplicationContext instance(){
+        return new SpringApplicationBuilder(TechhubApplication.class)
+            .web(WebApplicationType.NONE)
+            .run("--spring.datasource.url=" + URL, "--spring.jpa.hibernate.ddl-auto=update");
+    }
+
+    private Appointment appointment(String roomName, LocalDateTime startsAt, int minutes){
+        booked++;
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya" + booked + "@cluster.com");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia" + booked + "@cluster.accwe");
+        return new Appointment(patient, doctor, new Room(roomName), startsAt, startsAt.plusMinutes(minutes));
+    }
+
+    private List<Boolean> bookConcurrently(Appointment onFirst, Appointment onSecond) throws Exception{
+        CountDownLatch go = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            results.add(executor.submit(booking(first, onFirst, go)));
+            results.add(executor.submit(booking(second, onSecond, go)));
+            go.countDown();
+            List<Boolean> booked = new ArrayList<>();
+            for (Future<Boolean> result : results){
+                booked.add(result.get());
+            }
+            return booked;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static Callable<Boolean> booking(ConfigurableApplicationContext instance, Appointment appointment, CountDownLatch go){
+        return () -> {
+            go.await();
+            try {
+                instance.getBean(AppointmentChangeLog.class).save(appointment);
+                return true;
+            } catch (SlotTakenException e){
+                return false;
+            }
+        };
+    }
+
+    private static Object await(CountDownLatch latch){
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    @Test
+    void should_let_only_one_instance_book_an_overlapping_slot() throws Exception{
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        List<Boolean> booked = bookConcurrently(appointment("Dermatology", startsAt, 30), appointment("Dermatology", startsAt.plusMinutes(15), 30));
+
+        assertThat(booked).containsExactlyInAnyOrder(true, false);
+        assertThat(second.getBean(AppointmentRepository.class)
+            .findByRoomIdAndStartsAtBeforeAndFinishesAtAfterOrderByStartsAt(
+                second.getBean(RoomRepository.class).findByRoomName("Dermatology").get().getId(), startsAt.plusHours(1), startsAt))
+            .hasSize(1);
+    }
+
+    @Test
+    void should_book_different_rooms_on_both_instances() throws Exception{
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 25, 9, 0);
+
+        List<Boolean> booked = bookConcurrently(appointment("Dermatology", startsAt, 30), appointment("Oncology", startsAt, 30));
+
+        assertThat(booked).containsExactly(true, true);
+    }
+
+    @Test
+    void should_book_another_room_while_a_booking_is_still_open() throws Exception{
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 26, 9, 0);
+        Appointment held = appointment("Dermatology", startsAt, 30);
+        Appointment other = appointment("Oncology", startsAt, 30);
+        AppointmentChangeLog changeLog = second.getBean(AppointmentChangeLog.class);
+        CountDownLatch saved = new CountDownLatch(1);
+        CountDownLatch commit = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> open = executor.submit(() -> first.getBean(TransactionTemplate.class).execute(status -> {
+                first.getBean(AppointmentChangeLog.class).save(held);
+                saved.countDown();
+                return await(commit);
+            }));
+            assertThat(saved.await(10, TimeUnit.SECONDS)).isTrue();
+
+            // Dermatology and the open booking's change number stay taken until it commits, Oncology does not wait for them.
+            assertThat(executor.submit(booking(second, other, new CountDownLatch(0))).get(5, TimeUnit.SECONDS)).isTrue();
+
+            // The open booking has the lower number, a sync stops short of the booking that committed first.
+            AppointmentChangeLog.ChangeSet before = changeLog.changes(null, 500);
+            assertThat(before.getAppointments()).extracting(Appointment::getId).doesNotContain(other.getId());
+
+            commit.countDown();
+            open.get(10, TimeUnit.SECONDS);
+
+            AppointmentChangeLog.ChangeSet after = changeLog.changes(Long.parseLong(before.getToken()), 500);
+            assertThat(after.getAppointments()).extracting(Appointment::getId).contains(held.getId(), other.getId());
+        } finally {
+            commit.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.AppointmentArchive;
+import com.example.demo.services.CalendarCache;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.CalendarCache.WeekCalendar;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({CalendarCache.class, RoomDirectory.class, AppointmentArchive.class})
+class CalendarCacheUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    CalendarCache calendarCache;
+
+    @Autowired
+    AppointmentArchive archive;
+
+    private Doctor doctor;
+    private Room room;
+
+    // Monday
+    private final LocalDate week = LocalDate.of(2023, 4, 24);
+
+    @BeforeEach
+    void setUp(){
+        calendarCache.onChange(EntityChangeEvent.cleared(Appointment.class));
+        doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        room = entityManager.persist(new Room("Dermatology"));
+    }
+
+    private Appointment book(LocalDateTime startsAt, LocalDateTime finishesAt){
+        Patient patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya" + startsAt.getDayOfYear() + startsAt.getHour() + "@email.com"));
+        return entityManager.persist(new Appointment(patient, doctor, room, startsAt, finishesAt));
+    }
+
+    @Test
+    void should_bucket_the_week_by_day(){
+        book(week.atTime(9, 0), week.atTime(10, 0));
+        book(week.plusDays(2).atTime(23, 30), week.plusDays(3).atTime(0, 30));
+        book(week.plusWeeks(1).atTime(9, 0), week.plusWeeks(1).atTime(10, 0));
+
+        WeekCalendar calendar = calendarCache.doctorWeek(doctor.getId(), week.plusDays(4));
+
+        assertThat(calendar.getWeekStart()).isEqualTo(week);
+        assertThat(calendar.getDays()).hasSize(7);
+        assertThat(calendar.getDays()).extracting(day -> day.getAppointments().size())
+            .containsExactly(1, 0, 1, 1, 0, 0, 0);
+    }
+
+    @Test
+    void should_cache_until_an_appointment_touches_the_week(){
+        WeekCalendar thisWeek = calendarCache.roomWeek("Dermatology", week);
+        WeekCalendar nextWeek = calendarCache.roomWeek("Dermatology", week.plusWeeks(1));
+        assertThat(calendarCache.roomWeek("Dermatology", week.plusDays(6))).isSameAs(thisWeek);
+
+        Appointment appointment = book(week.atTime(9, 0), week.atTime(10, 0));
+        calendarCache.onChange(EntityChangeEvent.created(appointment));
+
+        WeekCalendar refreshed = calendarCache.roomWeek("Dermatology", week);
+        assertThat(refreshed).isNotSameAs(thisWeek);
+        assertThat(refreshed.getDays().get(0).getAppointments()).containsExactly(appointment);
+        assertThat(calendarCache.roomWeek("Dermatology", week.plusWeeks(1))).isSameAs(nextWeek);
+    }
+
+    @Test
+    void should_read_archived_weeks_from_the_archive(){
+        Appointment old = book(week.atTime(9, 0), week.atTime(10, 0));
+        entityManager.flush();
+        archive.archiveBefore(week.plusDays(1).atStartOfDay());
+        entityManager.clear();
+
+        assertThat(calendarCache.roomWeek("Dermatology", week).getDays().get(0).getAppointments())
+            .extracting(Appointment::getId).containsExactly(old.getId());
+        assertThat(calendarCache.doctorWeek(doctor.getId(), week).getDays().get(0).getAppointments())
+            .extracting(Appointment::getId).containsExactly(old.getId());
+    }
+
+    @Test
+    void should_prewarm_today_and_tomorrow(){
+        LocalDate today = LocalDate.now();
+        book(today.atTime(9, 0), today.atTime(10, 0));
+
+        calendarCache.prewarm();
+
+        assertThat(calendarCache.size()).isGreaterThanOrEqualTo(2);
+        assertThat(calendarCache.doctorWeek(doctor.getId(), today).getDays())
+            .flatExtracting(day -> day.getAppointments()).hasSize(1);
+    }
+}
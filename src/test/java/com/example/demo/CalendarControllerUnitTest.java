@@ -0,0 +1,71 @@
+package com.example.demo;
+
+import static org.mockito.Mockito.when;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.controllers.CalendarController;
+import com.example.demo.entities.Room;
+import com.example.demo.repositories.*;
+import com.example.demo.services.CalendarCache;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.CalendarCache.CalendarDay;
+import com.example.demo.services.CalendarCache.ResourceType;
+import com.example.demo.services.CalendarCache.WeekCalendar;
+
+@WebMvcTest(CalendarController.class)
+@Import(RoomDirectory.class)
+class CalendarControllerUnitTest{
+
+    @MockBean
+    private CalendarCache calendarCache;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void shouldGetRoomCalendar() throws Exception{
+        LocalDate monday = LocalDate.of(2023, 4, 24);
+        List<CalendarDay> days = new ArrayList<>();
+        for (int i = 0; i < 7; i++){
+            days.add(new CalendarDay(monday.plusDays(i), Collections.emptyList()));
+        }
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(new Room("Dermatology")));
+        when(calendarCache.roomWeek("Dermatology", LocalDate.of(2023, 4, 26)))
+            .thenReturn(new WeekCalendar(ResourceType.ROOM, "Dermatology", monday, days));
+
+        mockMvc.perform(get("/api/rooms/Dermatology/calendar").param("date", "26/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.weekStart").value("24/04/2023"))
+                .andExpect(jsonPath("$.days.length()").value(7))
+                .andExpect(jsonPath("$.days[6].date").value("30/04/2023"));
+    }
+
+    @Test
+    void shouldNotGetCalendarOfUnknownDoctor() throws Exception{
+        when(doctorRepository.existsById(1L)).thenReturn(false);
+
+        mockMvc.perform(get("/api/doctors/1/calendar"))
+                .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.demo;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.controllers.ChangeFeedController;
+import com.example.demo.services.ChangeFeed;
+
+@WebMvcTest(ChangeFeedController.class)
+class ChangeFeedControllerUnitTest{
+
+    @MockBean
+    private ChangeFeed changeFeed;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void shouldSubscribeWithResumeToken() throws Exception{
+        mockMvc.perform(get("/api/events").header("Last-Event-ID", "boot:7").param("types", "appointment")
+                    .accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted());
+
+        verify(changeFeed).subscribe(eq("boot:7"), eq(Collections.singleton("appointment")), any(ChangeFeed.Subscriber.class));
+    }
+}
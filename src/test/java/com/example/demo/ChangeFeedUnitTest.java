@@ -0,0 +1,125 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.ChangeFeed;
+import com.example.demo.services.ChangeFeed.FeedEvent;
+import com.example.demo.services.ChangeFeed.Subscription;
+
+@SpringJUnitConfig(ChangeFeed.class)
+@TestPropertySource(properties = "techhub.feed.buffer-size=4")
+class ChangeFeedUnitTest {
+
+    @Autowired
+    ChangeFeed changeFeed;
+
+    static class Collector implements ChangeFeed.Subscriber {
+        final LinkedBlockingQueue<FeedEvent> events = new LinkedBlockingQueue<>();
+        final CountDownLatch closed = new CountDownLatch(1);
+
+        @Override
+        public void send(FeedEvent event){
+            events.add(event);
+        }
+
+        @Override
+        public void close(){
+            closed.countDown();
+        }
+
+        List<FeedEvent> take(int count) throws InterruptedException{
+            List<FeedEvent> taken = new ArrayList<>();
+            for (int i = 0; i < count; i++){
+                FeedEvent event = events.poll(5, TimeUnit.SECONDS);
+                assertThat(event).as("event %d of %d", i + 1, count).isNotNull();
+                taken.add(event);
+            }
+            return taken;
+        }
+    }
+
+    @Test
+    void should_push_changes_of_the_subscribed_types() throws Exception{
+        Collector collector = new Collector();
+        Subscription subscription = changeFeed.subscribe(null, Collections.singleton("room"), collector);
+
+        changeFeed.onChange(EntityChangeEvent.created(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe")));
+        changeFeed.onChange(EntityChangeEvent.created(new Room("Dermatology")));
+        changeFeed.onChange(EntityChangeEvent.cleared(Room.class));
+
+        assertThat(collector.take(2)).extracting("kind", "type")
+            .containsExactly(tuple("CREATED", "room"), tuple("CLEARED", "room"));
+        subscription.cancel();
+    }
+
+    @Test
+    void should_resume_after_the_last_seen_event() throws Exception{
+        Collector first = new Collector();
+        Subscription subscription = changeFeed.subscribe(null, null, first);
+        changeFeed.onChange(EntityChangeEvent.created(new Room("Dermatology")));
+        changeFeed.onChange(EntityChangeEvent.created(new Room("Cardiology")));
+        changeFeed.onChange(EntityChangeEvent.created(new Room("Neurology")));
+        List<FeedEvent> seen = first.take(3);
+        subscription.cancel();
+
+        Collector resumed = new Collector();
+        Subscription again = changeFeed.subscribe(seen.get(0).getId(), null, resumed);
+
+        assertThat(resumed.take(2)).extracting(FeedEvent::getId)
+            .containsExactly(seen.get(1).getId(), seen.get(2).getId());
+        again.cancel();
+    }
+
+    @Test
+    void should_ask_for_a_reload_on_an_unknown_token() throws Exception{
+        Collector collector = new Collector();
+        Subscription subscription = changeFeed.subscribe("previous-boot:42", null, collector);
+
+        assertThat(collector.take(1).get(0).getKind()).isEqualTo("RESET");
+        subscription.cancel();
+    }
+
+    @Test
+    void should_drop_a_subscriber_that_cannot_keep_up() throws Exception{
+        CountDownLatch unblock = new CountDownLatch(1);
+        Collector slow = new Collector(){
+            @Override
+            public void send(FeedEvent event){
+                try {
+                    unblock.await();
+                } catch (InterruptedException e){
+                    Thread.currentThread().interrupt();
+                }
+                super.send(event);
+            }
+        };
+        int before = changeFeed.getSubscriberCount();
+        changeFeed.subscribe(null, null, slow);
+
+        // One event is held by the blocked writer, the next four fill the buffer.
+        for (int i = 0; i < 10; i++){
+            changeFeed.onChange(EntityChangeEvent.created(new Room("Room " + i)));
+        }
+        unblock.countDown();
+
+        assertThat(slow.closed.await(5, TimeUnit.SECONDS)).isTrue();
+        List<FeedEvent> delivered = new ArrayList<>(slow.events);
+        assertThat(delivered.get(delivered.size() - 1).getKind()).isEqualTo("OVERFLOW");
+        assertThat(changeFeed.getSubscriberCount()).isEqualTo(before);
+    }
+}
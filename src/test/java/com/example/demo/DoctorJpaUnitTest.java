@@ -2,6 +2,9 @@ package com.example.demo;
 
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import javax.persistence.PersistenceException;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -72,6 +75,26 @@ class DoctorJpaUnitTest {
         assertThat(foundDoc).isEqualTo(doc2);
     }
 
+    @Test
+    void should_find_doctor_by_email(){
+        Doctor doc1 = new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe");
+        Doctor doc2 = new Doctor("Cornelio","Andrea", 59, "c.andrea@hospital.accwe");
+
+        entityManager.persist(doc1);
+        entityManager.persist(doc2);
+
+        assertThat(repository.findByEmail("c.andrea@hospital.accwe")).contains(doc2);
+        assertThat(repository.findByEmail("nobody@hospital.accwe")).isEmpty();
+    }
+
+    @Test
+    void should_not_save_two_doctors_with_the_same_email(){
+        entityManager.persist(new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe"));
+
+        assertThatThrownBy(() -> entityManager.persistAndFlush(new Doctor("Juana","Carla", 43, "j.carlos@hospital.accwe")))
+            .isInstanceOf(PersistenceException.class);
+    }
+
     @Test
     void should_delete_doctor(){
         Doctor doc1 = new Doctor("Juan","Carlos", 34, "j.carlos@hospital.accwe");
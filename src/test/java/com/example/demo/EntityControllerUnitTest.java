@@ -3,6 +3,8 @@ package com.example.demo;
 
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
 import static org.mockito.Mockito.when;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -23,6 +25,8 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.util.LinkedMultiValueMap;
@@ -31,6 +35,7 @@ import org.springframework.util.MultiValueMap;
 import com.example.demo.controllers.*;
 import com.example.demo.repositories.*;
 import com.example.demo.entities.*;
+import com.example.demo.services.*;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
 
@@ -41,11 +46,24 @@ import com.fasterxml.jackson.databind.ObjectMapper;
  */
 
 @WebMvcTest(DoctorController.class)
+@Import(MultiGet.class)
 class DoctorControllerUnitTest{
 
     @MockBean
     private DoctorRepository doctorRepository;
 
+    @MockBean
+    private FieldSelector fieldSelector;
+
+    @MockBean
+    private PersonCsvImportService importService;
+
+    @MockBean
+    private DoctorSearchIndex searchIndex;
+
+    @MockBean
+    private EmailRegistry emailRegistry;
+
     @Autowired 
     private MockMvc mockMvc;
 
@@ -57,15 +75,107 @@ class DoctorControllerUnitTest{
         // DELETE ME
         assertThat(true).isEqualTo(false);
     }
+
+    @Test
+    void shouldImportDoctorsFromCsv() throws Exception{
+        String csv = "firstName,lastName,age,email\nPerla,Amalia,24,p.amalia@hospital.accwe\n";
+
+        when(importService.importDoctors(any())).thenReturn(new ImportReport(10));
+        mockMvc.perform(post("/api/doctors/import").contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(0))
+                .andExpect(jsonPath("$.failed").value(0));
+
+        verify(importService).importDoctors(any());
+    }
+
+    @Test
+    void shouldCreateDoctor() throws Exception{
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+
+        mockMvc.perform(post("/api/doctor").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(doctor)))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void shouldNotCreateDoctorWithTakenEmail() throws Exception{
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+
+        when(emailRegistry.isTaken(Doctor.class, "p.amalia@hospital.accwe")).thenReturn(true);
+        mockMvc.perform(post("/api/doctor").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(doctor)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldSearchDoctors() throws Exception{
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(1);
+
+        when(searchIndex.search("ama", 20)).thenReturn(Collections.singletonList(doctor));
+        mockMvc.perform(get("/api/doctors/search").param("q", "ama"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].lastName").value("Amalia"));
+    }
+
+    @Test
+    void shouldFindNoDoctorsWhenSearchHasNoMatch() throws Exception{
+        when(searchIndex.search("nobody", 20)).thenReturn(Collections.emptyList());
+        mockMvc.perform(get("/api/doctors/search").param("q", "nobody"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void shouldGetDoctorsByIdInRequestOrder() throws Exception{
+        Doctor perla = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        perla.setId(1);
+        Doctor miren = new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe");
+        miren.setId(3);
+
+        when(doctorRepository.findAllById(Arrays.asList(3L, 1L, 2L))).thenReturn(Arrays.asList(perla, miren));
+        mockMvc.perform(get("/api/doctors").param("ids", "3,1,3,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].id").value(3))
+                .andExpect(jsonPath("$[1].id").value(1));
+    }
+
+    @Test
+    void shouldRejectDoctorIdsCombinedWithFields() throws Exception{
+        mockMvc.perform(get("/api/doctors").param("ids", "1,2").param("fields", "id,lastName"))
+                .andExpect(status().isBadRequest());
+
+        verifyNoInteractions(fieldSelector);
+    }
+
+    @Test
+    void shouldRejectMalformedDoctorIds() throws Exception{
+        mockMvc.perform(get("/api/doctors").param("ids", "1,two"))
+                .andExpect(status().isBadRequest());
+    }
 }
 
 
 @WebMvcTest(PatientController.class)
+@Import(MultiGet.class)
 class PatientControllerUnitTest{
 
     @MockBean
     private PatientRepository patientRepository;
 
+    @MockBean
+    private FieldSelector fieldSelector;
+
+    @MockBean
+    private PersonCsvImportService importService;
+
+    @MockBean
+    private PatientSearchIndex searchIndex;
+
+    @MockBean
+    private EmailRegistry emailRegistry;
+
     @Autowired 
     private MockMvc mockMvc;
 
@@ -78,14 +188,71 @@ class PatientControllerUnitTest{
         assertThat(true).isEqualTo(false);
     }
 
+    @Test
+    void shouldImportPatientsFromCsv() throws Exception{
+        String csv = "firstName,lastName,age,email\nPerla,Amalia,24,p.amalia@hospital.accwe\n";
+
+        when(importService.importPatients(any())).thenReturn(new ImportReport(10));
+        mockMvc.perform(post("/api/patients/import").contentType("text/csv").content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(0))
+                .andExpect(jsonPath("$.failed").value(0));
+
+        verify(importService).importPatients(any());
+    }
+
+    @Test
+    void shouldCreatePatient() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 24, "j.olaya@email.com");
+
+        mockMvc.perform(post("/api/patient").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(patient)))
+                .andExpect(status().isCreated());
+    }
+
+    @Test
+    void shouldNotCreatePatientWithTakenEmail() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 24, "j.olaya@email.com");
+
+        when(emailRegistry.isTaken(Patient.class, "j.olaya@email.com")).thenReturn(true);
+        mockMvc.perform(post("/api/patient").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(patient)))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void shouldSearchPatients() throws Exception{
+        Patient patient = new Patient("Jose Luis", "Olaya", 24, "j.olaya@email.com");
+        patient.setId(1);
+
+        when(searchIndex.search("ola", 20)).thenReturn(Collections.singletonList(patient));
+        mockMvc.perform(get("/api/patients/search").param("q", "ola"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].lastName").value("Olaya"));
+    }
+
+    @Test
+    void shouldFindNoPatientsWhenSearchHasNoMatch() throws Exception{
+        when(searchIndex.search("nobody", 20)).thenReturn(Collections.emptyList());
+        mockMvc.perform(get("/api/patients/search").param("q", "nobody"))
+                .andExpect(status().isNoContent());
+    }
+
 }
 
 @WebMvcTest(RoomController.class)
+@Import(RoomDirectory.class)
 class RoomControllerUnitTest{
 
     @MockBean
     private RoomRepository roomRepository;
 
+    @MockBean
+    private FieldSelector fieldSelector;
+
+    @MockBean
+    private RoomEvacuation roomEvacuation;
+
     @Autowired 
     private MockMvc mockMvc;
 
@@ -98,4 +265,16 @@ class RoomControllerUnitTest{
         assertThat(true).isEqualTo(false);
     }
 
+    @Test
+    void shouldReturnTheStoredRoomWhenTheNameWasCreatedConcurrently() throws Exception{
+        Room stored = new Room(7, "Dermatology");
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.empty(), Optional.of(stored));
+        when(roomRepository.saveAndFlush(any(Room.class))).thenThrow(new DataIntegrityViolationException("uk_room_name"));
+
+        mockMvc.perform(post("/api/room").contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Room("Dermatology"))))
+                .andExpect(status().isCreated())
+                .andExpect(jsonPath("$.roomName").value("Dermatology"));
+    }
+
 }
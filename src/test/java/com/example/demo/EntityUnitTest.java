@@ -47,4 +47,32 @@ class EntityUnitTest {
      * Implement tests for each Entity class: Doctor, Patient, Room and Appointment.
      * Make sure you are as exhaustive as possible. Coverage is checked ;)
      */
+
+    @Test
+    void appointments_overlap_when_one_contains_the_other(){
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        Room room = new Room("Dermatology");
+
+        Appointment inner = new Appointment(p1, d1, room,
+                LocalDateTime.parse("19:30 24/04/2023", formatter), LocalDateTime.parse("20:00 24/04/2023", formatter));
+        Appointment outer = new Appointment(p1, d1, room,
+                LocalDateTime.parse("19:00 24/04/2023", formatter), LocalDateTime.parse("21:00 24/04/2023", formatter));
+
+        assertThat(inner.overlaps(outer)).isTrue();
+        assertThat(outer.overlaps(inner)).isTrue();
+    }
+
+    @Test
+    void back_to_back_appointments_do_not_overlap(){
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+        Room room = new Room("Dermatology");
+
+        Appointment first = new Appointment(p1, d1, room,
+                LocalDateTime.parse("19:00 24/04/2023", formatter), LocalDateTime.parse("19:30 24/04/2023", formatter));
+        Appointment second = new Appointment(p1, d1, room,
+                LocalDateTime.parse("19:30 24/04/2023", formatter), LocalDateTime.parse("20:00 24/04/2023", formatter));
+
+        assertThat(first.overlaps(second)).isFalse();
+        assertThat(second.overlaps(first)).isFalse();
+    }
 }
@@ -0,0 +1,96 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.FieldSelector;
+import com.example.demo.services.FieldSelector.FieldSelection;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import(FieldSelector.class)
+class FieldSelectorUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private FieldSelector fieldSelector;
+
+    private Appointment persistAppointment(){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        Room room = new Room("Dermatology");
+        LocalDateTime startsAt = LocalDateTime.of(2023, 4, 24, 9, 0);
+
+        entityManager.persist(patient);
+        entityManager.persist(doctor);
+        entityManager.persist(room);
+        Appointment appointment = entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusMinutes(30)));
+        entityManager.flush();
+        entityManager.clear();
+        return appointment;
+    }
+
+    @Test
+    void should_read_only_the_selected_fields_nested_like_the_entity(){
+        Appointment appointment = persistAppointment();
+
+        List<Map<String, Object>> rows = fieldSelector.select(Appointment.class,
+                fieldSelector.parse(Appointment.class, "id, room.roomName,startsAt"), null, "id");
+
+        assertThat(rows).hasSize(1);
+        assertThat(rows.get(0)).containsOnlyKeys("id", "room", "startsAt");
+        assertThat(rows.get(0).get("id")).isEqualTo(appointment.getId());
+        assertThat(rows.get(0).get("room")).isEqualTo(Collections.singletonMap("roomName", "Dermatology"));
+        assertThat(rows.get(0).get("startsAt")).isEqualTo(appointment.getStartsAt());
+    }
+
+    @Test
+    void should_expand_an_association_to_its_fields(){
+        persistAppointment();
+
+        Map<String, Object> row = fieldSelector.select(Appointment.class, fieldSelector.parse(Appointment.class, "patient"), null).get(0);
+
+        assertThat(row).containsOnlyKeys("patient");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> patient = (Map<String, Object>) row.get("patient");
+        assertThat(patient).containsEntry("firstName", "Jose Luis").containsEntry("email", "j.olaya@email.com").containsKey("id");
+    }
+
+    @Test
+    void should_leave_out_fields_only_read_for_sorting(){
+        persistAppointment();
+        FieldSelection selection = fieldSelector.parse(Appointment.class, "doctor.lastName");
+
+        List<Map<String, Object>> rows = fieldSelector.select(Appointment.class, selection.including("startsAt", "id"), null, "startsAt");
+
+        assertThat(rows.get(0)).containsKeys("doctor", "startsAt", "id");
+        assertThat(selection.trim(rows).get(0)).containsOnlyKeys("doctor");
+    }
+
+    @Test
+    void should_reject_fields_the_response_does_not_have(){
+        assertThatThrownBy(() -> fieldSelector.parse(Appointment.class, "id,password")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> fieldSelector.parse(Appointment.class, "startsAt.hour")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> fieldSelector.parse(Appointment.class, " , ")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
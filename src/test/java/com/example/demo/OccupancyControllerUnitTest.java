@@ -0,0 +1,61 @@
+package com.example.demo;
+
+import static org.mockito.Mockito.when;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDate;
+import java.util.Collections;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.controllers.OccupancyController;
+import com.example.demo.services.RoomOccupancy;
+import com.example.demo.services.RoomOccupancy.Utilization;
+import com.example.demo.sites.SiteContext;
+
+@WebMvcTest(OccupancyController.class)
+class OccupancyControllerUnitTest{
+
+    @MockBean
+    private RoomOccupancy roomOccupancy;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void shouldGetRoomOccupancyForADay() throws Exception{
+        LocalDate date = LocalDate.of(2023, 4, 24);
+        when(roomOccupancy.utilization("Dermatology", date)).thenReturn(new Utilization("Dermatology", date, 144, true));
+
+        mockMvc.perform(get("/api/rooms/Dermatology/occupancy").param("date", "24/04/2023"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.bookedSlots").value(144))
+                .andExpect(jsonPath("$.percent").value(50.0))
+                .andExpect(jsonPath("$.date").value("24/04/2023"));
+    }
+
+    @Test
+    void shouldGetNoOccupancyWithoutRooms() throws Exception{
+        when(roomOccupancy.utilization(LocalDate.of(2023, 4, 24))).thenReturn(Collections.emptyList());
+
+        mockMvc.perform(get("/api/occupancy").param("date", "24/04/2023"))
+                .andExpect(status().isNoContent());
+    }
+
+    @Test
+    void shouldNotAnswerForAnotherSite() throws Exception{
+        SiteContext.set("north");
+        try {
+            mockMvc.perform(get("/api/rooms/Dermatology/occupancy").param("date", "24/04/2023"))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            SiteContext.clear();
+        }
+    }
+}
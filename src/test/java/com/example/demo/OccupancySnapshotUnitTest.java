@@ -0,0 +1,175 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.AppointmentChangeLog;
+import com.example.demo.services.ChangeNumbers;
+import com.example.demo.services.OccupancySnapshot;
+import com.example.demo.services.BookingGuard;
+import com.example.demo.services.RetryPolicy;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.RoomEvacuation;
+import com.example.demo.services.RoomOccupancy;
+import com.example.demo.services.RoomOccupancy.SlotState;
+import com.example.demo.services.ScheduleStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({OccupancySnapshot.class, RoomOccupancy.class, AppointmentChangeLog.class, ChangeNumbers.class, RoomDirectory.class, BookingGuard.class, RetryPolicy.class,
+        RoomEvacuation.class, ScheduleStore.class, SimpleMeterRegistry.class})
+class OccupancySnapshotUnitTest {
+
+    @Autowired
+    OccupancySnapshot snapshot;
+
+    @Autowired
+    RoomOccupancy roomOccupancy;
+
+    @Autowired
+    AppointmentChangeLog changeLog;
+
+    @Autowired
+    RoomEvacuation roomEvacuation;
+
+    @TempDir
+    Path dir;
+
+    private final LocalDate day = LocalDate.of(2023, 4, 24);
+
+    private int booked = 0;
+
+    @BeforeEach
+    void setUp(){
+        roomOccupancy.clear();
+    }
+
+    private Appointment book(String room, int hour, int minute, int minutes){
+        return book(day, room, hour, minute, minutes);
+    }
+
+    private Appointment book(LocalDate day, String room, int hour, int minute, int minutes){
+        booked++;
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya" + booked + "@email.com");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia" + booked + "@hospital.accwe");
+        LocalDateTime startsAt = day.atTime(hour, minute);
+        Appointment appointment = changeLog.save(new Appointment(patient, doctor, new Room(room), startsAt, startsAt.plusMinutes(minutes)));
+        roomOccupancy.onReady();
+        roomOccupancy.onChange(EntityChangeEvent.created(appointment));
+        return appointment;
+    }
+
+    private SlotState probe(String room, int hour, int minute){
+        return probe(day, room, hour, minute);
+    }
+
+    private SlotState probe(LocalDate day, String room, int hour, int minute){
+        Appointment probe = new Appointment(null, null, new Room(room), day.atTime(hour, minute), day.atTime(hour, minute).plusMinutes(5));
+        SlotState state = roomOccupancy.tryReserve(probe);
+        if (state == SlotState.FREE){
+            roomOccupancy.release(probe);
+        }
+        return state;
+    }
+
+    @Test
+    void should_restore_the_snapshot_and_replay_the_tail() throws IOException {
+        book("Dermatology", 9, 0, 60);
+        Appointment cancelled = book("Oncology", 9, 0, 30);
+        Path file = dir.resolve("occupancy.snapshot");
+        snapshot.write(file);
+
+        changeLog.delete(cancelled);
+        book("Oncology", 11, 0, 30);
+        roomOccupancy.clear();
+
+        assertThat(snapshot.restoreFrom(file)).isTrue();
+
+        assertThat(probe("Dermatology", 9, 30)).isEqualTo(SlotState.TAKEN);
+        assertThat(probe("Oncology", 9, 0)).isEqualTo(SlotState.FREE);
+        assertThat(probe("Oncology", 11, 15)).isEqualTo(SlotState.TAKEN);
+        assertThat(roomOccupancy.utilization("Dermatology", day).getBookedSlots()).isEqualTo(12);
+        assertThat(snapshot.health().getStatus()).isEqualTo(Status.UP);
+        assertThat(snapshot.health().getDetails()).containsEntry("source", "snapshot");
+    }
+
+    @Test
+    void should_free_the_evacuated_room_after_a_restart() throws IOException {
+        LocalDate later = LocalDate.now().plusDays(3);
+        Appointment closing = book(later, "Radiology", 9, 0, 60);
+        Appointment other = book(later, "Oncology", 14, 0, 30);
+        Path file = dir.resolve("occupancy.snapshot");
+        snapshot.write(file);
+
+        assertThat(roomEvacuation.evacuate(closing.getRoom(), Collections.singletonList(other.getRoom())).isComplete()).isTrue();
+        roomOccupancy.clear();
+
+        assertThat(snapshot.restoreFrom(file)).isTrue();
+
+        assertThat(probe(later, "Radiology", 9, 30)).isEqualTo(SlotState.FREE);
+        assertThat(probe(later, "Oncology", 9, 30)).isEqualTo(SlotState.TAKEN);
+        assertThat(probe(later, "Oncology", 14, 0)).isEqualTo(SlotState.TAKEN);
+    }
+
+    @Test
+    void should_leave_uncommitted_reservations_out() throws IOException {
+        book("Dermatology", 9, 0, 60);
+        Appointment pending = new Appointment(null, null, new Room("Oncology"), day.atTime(10, 0), day.atTime(10, 30));
+        assertThat(roomOccupancy.tryReserve(pending)).isEqualTo(SlotState.FREE);
+        Path file = dir.resolve("occupancy.snapshot");
+        snapshot.write(file);
+        roomOccupancy.clear();
+
+        assertThat(snapshot.restoreFrom(file)).isTrue();
+
+        assertThat(probe("Dermatology", 9, 30)).isEqualTo(SlotState.TAKEN);
+        assertThat(probe("Oncology", 10, 0)).isEqualTo(SlotState.FREE);
+    }
+
+    @Test
+    void should_keep_off_grid_days_on_the_exact_check() throws IOException {
+        book("Dermatology", 9, 7, 20);
+        Path file = dir.resolve("occupancy.snapshot");
+        snapshot.write(file);
+        roomOccupancy.clear();
+
+        assertThat(snapshot.restoreFrom(file)).isTrue();
+
+        assertThat(roomOccupancy.utilization("Dermatology", day).isExact()).isFalse();
+    }
+
+    @Test
+    void should_refuse_a_damaged_snapshot() throws IOException {
+        book("Dermatology", 9, 0, 60);
+        Path file = dir.resolve("occupancy.snapshot");
+        snapshot.write(file);
+
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        assertThat(snapshot.restoreFrom(file)).isFalse();
+    }
+}
@@ -2,11 +2,15 @@ package com.example.demo;
 
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import javax.persistence.PersistenceException;
 
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
 import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.data.domain.PageRequest;
 
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
@@ -72,6 +76,26 @@ class PatientJpaUnitTest {
         assertThat(foundPatient).isEqualTo(patient2);
     }
 
+    @Test
+    void should_find_patient_by_email(){
+        Patient patient1 = new Patient("Juan","Carlos", 34, "j.carlos@hospital.accwe");
+        Patient patient2 = new Patient("Cornelio","Andrea", 59, "c.andrea@hospital.accwe");
+
+        entityManager.persist(patient1);
+        entityManager.persist(patient2);
+
+        assertThat(repository.findByEmail("c.andrea@hospital.accwe")).contains(patient2);
+        assertThat(repository.findByEmail("nobody@hospital.accwe")).isEmpty();
+    }
+
+    @Test
+    void should_not_save_two_patients_with_the_same_email(){
+        entityManager.persist(new Patient("Juan","Carlos", 34, "j.carlos@hospital.accwe"));
+
+        assertThatThrownBy(() -> entityManager.persistAndFlush(new Patient("Juana","Carla", 43, "j.carlos@hospital.accwe")))
+            .isInstanceOf(PersistenceException.class);
+    }
+
     @Test
     void should_delete_patient(){
         Patient patient1 = new Patient("Juan","Carlos", 34, "j.carlos@hospital.accwe");
@@ -103,4 +127,15 @@ class PatientJpaUnitTest {
         assertThat(repository.findAll()).isEmpty();
     }
     
+
+    @Test
+    void should_take_wildcards_in_a_name_prefix_literally(){
+        Patient underscore = entityManager.persist(new Patient("Jose", "O_laya", 37, "j.o_laya@email.com"));
+        entityManager.persist(new Patient("Jose", "Olaya", 37, "j.olaya@email.com"));
+        Patient percent = entityManager.persist(new Patient("Jose", "100%", 37, "j.percent@email.com"));
+
+        assertThat(repository.findByNameOrEmailPrefix("O_", PageRequest.of(0, 10))).containsExactly(underscore);
+        assertThat(repository.findByNameOrEmailPrefix("100%", PageRequest.of(0, 10))).containsExactly(percent);
+        assertThat(repository.findByNameOrEmailPrefix("1%", PageRequest.of(0, 10))).isEmpty();
+    }
 }
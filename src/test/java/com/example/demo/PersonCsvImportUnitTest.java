@@ -0,0 +1,105 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.repositories.*;
+import com.example.demo.services.*;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({PersonCsvImportService.class, EmailRegistry.class})
+class PersonCsvImportUnitTest {
+
+    @Autowired
+    PersonCsvImportService importService;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    private static InputStream csv(String content){
+        return new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void should_import_doctors_without_header() throws Exception{
+        ImportReport report = importService.importDoctors(csv(
+            "Perla,Amalia,24,p.amalia@hospital.accwe\n" +
+            "Miren,Iniesta,24,m.iniesta@hospital.accwe\n"));
+
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(report.getFailed()).isZero();
+        assertThat(doctorRepository.findAll()).hasSize(2);
+    }
+
+    @Test
+    void should_import_patients_with_reordered_header_and_quotes() throws Exception{
+        ImportReport report = importService.importPatients(csv(
+            "email,age,lastName,firstName\r\n" +
+            "j.olaya@email.com,37,Olaya,\"Jose Luis\"\r\n" +
+            "\r\n" +
+            "p.antunez@email.com,37,\"Antunez, Jr.\",Paulino\r\n"));
+
+        assertThat(report.getImported()).isEqualTo(2);
+        assertThat(patientRepository.findAll())
+            .extracting("firstName", "lastName")
+            .containsExactlyInAnyOrder(
+                tuple("Jose Luis", "Olaya"),
+                tuple("Paulino", "Antunez, Jr."));
+    }
+
+    @Test
+    void should_report_invalid_rows_and_keep_the_valid_ones() throws Exception{
+        ImportReport report = importService.importPatients(csv(
+            "firstName,lastName,age,email\n" +
+            "Jose Luis,Olaya,37,j.olaya@email.com\n" +
+            ",Antunez,37,p.antunez@email.com\n" +
+            "Mariela,Eric,forty,m.eric@email.com\n" +
+            "Balduino,Yamile,67,not-an-email\n" +
+            "Clarisa,Julia\n"));
+
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getFailed()).isEqualTo(4);
+        assertThat(report.getErrors()).extracting("line").containsExactly(3, 4, 5, 6);
+        assertThat(patientRepository.findAll()).hasSize(1);
+    }
+
+    @Test
+    void should_reject_header_without_required_columns() throws Exception{
+        ImportReport report = importService.importDoctors(csv("name,email\nPerla,p.amalia@hospital.accwe\n"));
+
+        assertThat(report.getImported()).isZero();
+        assertThat(report.getFailed()).isEqualTo(1);
+        assertThat(doctorRepository.findAll()).isEmpty();
+    }
+
+    @Test
+    void should_reject_duplicate_emails() throws Exception{
+        importService.importDoctors(csv("Perla,Amalia,24,p.amalia@hospital.accwe\n"));
+
+        ImportReport report = importService.importDoctors(csv(
+            "Miren,Iniesta,24,m.iniesta@hospital.accwe\n" +
+            "Perla,Amalia,24,p.amalia@hospital.accwe\n" +
+            "Miren,Iniesta,24,M.Iniesta@hospital.accwe\n"));
+
+        assertThat(report.getImported()).isEqualTo(1);
+        assertThat(report.getErrors()).extracting("line").containsExactly(2, 3);
+        assertThat(doctorRepository.findAll()).hasSize(2);
+    }
+}
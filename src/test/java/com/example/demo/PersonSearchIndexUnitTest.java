@@ -0,0 +1,102 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.*;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import(PatientSearchIndex.class)
+class PersonSearchIndexUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    PatientSearchIndex index;
+
+    private Patient p1;
+    private Patient p2;
+    private Patient p3;
+
+    @BeforeEach
+    void setUp(){
+        index.clear();
+
+        p1 = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        p2 = new Patient("Mariela", "Eric", 42, "m.eric@email.com");
+        p3 = new Patient("Olivia", "Ñúñez", 67, "o.nunez@email.com");
+
+        entityManager.persist(p1);
+        entityManager.persist(p2);
+        entityManager.persist(p3);
+
+        index.load();
+    }
+
+    @Test
+    void should_load_every_patient(){
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.size()).isEqualTo(3);
+    }
+
+    @Test
+    void should_find_by_name_prefix(){
+        assertThat(index.search("Ola", 10)).containsExactly(p1);
+        assertThat(index.search("mari", 10)).containsExactly(p2);
+    }
+
+    @Test
+    void should_find_by_email_prefix(){
+        assertThat(index.search("m.eric@", 10)).containsExactly(p2);
+    }
+
+    @Test
+    void should_require_every_word_to_match(){
+        assertThat(index.search("jose ola", 10)).containsExactly(p1);
+        assertThat(index.search("jose eric", 10)).isEmpty();
+    }
+
+    @Test
+    void should_ignore_case_and_accents(){
+        assertThat(index.search("NUNEZ", 10)).containsExactly(p3);
+    }
+
+    @Test
+    void should_find_with_a_typo(){
+        assertThat(index.search("marela", 10)).containsExactly(p2);
+        assertThat(index.search("oalya", 10)).containsExactly(p1);
+    }
+
+    @Test
+    void should_rank_prefix_matches_before_fuzzy_ones(){
+        Patient p4 = new Patient("Olaia", "Ruiz", 30, "o.ruiz@email.com");
+        entityManager.persist(p4);
+        index.add(p4);
+
+        List<Patient> found = index.search("olaya", 10);
+        assertThat(found).containsExactly(p1, p4);
+    }
+
+    @Test
+    void should_forget_removed_patients(){
+        index.remove(p2.getId());
+
+        assertThat(index.search("mariela", 10)).isEmpty();
+        assertThat(index.size()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.demo;
+
+import static com.example.demo.QueryCounting.*;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.QueryCounting.Counts;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+
+/**
+ * SQL statements per request on the main endpoints. Listings must cost the
+ * same however many rows they return, so a change that brings back N+1
+ * selects or per-row writes fails here.
+ */
+@SpringBootTest(properties = "spring.datasource.url=jdbc:h2:mem:query_count;DB_CLOSE_DELAY=-1")
+@AutoConfigureMockMvc
+@Import(QueryCounting.class)
+class QueryCountUnitTest {
+
+    private static final LocalDateTime MONDAY = LocalDateTime.of(2030, 4, 22, 8, 0);
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AppointmentRepository appointmentRepository;
+
+    @Autowired
+    private DoctorRepository doctorRepository;
+
+    private int booked = 0;
+
+    @BeforeEach
+    void clear() throws Exception{
+        mockMvc.perform(delete("/api/appointments")).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/patients")).andExpect(status().isOk());
+        mockMvc.perform(delete("/api/doctors")).andExpect(status().isOk());
+        booked = 0;
+    }
+
+    private Appointment book(String roomName) throws Exception{
+        int n = booked++;
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya" + n + "@counted.com");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia" + n + "@counted.accwe");
+        LocalDateTime startsAt = MONDAY.plusHours(n);
+        Appointment appointment = new Appointment(patient, doctor, new Room(roomName), startsAt, startsAt.plusMinutes(30));
+
+        mockMvc.perform(post("/api/appointment").contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(appointment)))
+                .andExpect(status().isOk());
+        return appointmentRepository.findByStartsAtBeforeAndFinishesAtAfter(startsAt.plusMinutes(1), startsAt).get(0);
+    }
+
+    private void bookMany(int count) throws Exception{
+        for (int i = 0; i < count; i++){
+            book(i % 2 == 0 ? "Dermatology" : "Oncology");
+        }
+    }
+
+    @Test
+    void should_list_appointments_in_one_select() throws Exception{
+        bookMany(6);
+
+        reset();
+        mockMvc.perform(get("/api/appointments"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].patient").doesNotExist());
+
+        assertSelectCount(1);
+    }
+
+    @Test
+    void should_expand_each_party_of_a_listing_in_one_select() throws Exception{
+        bookMany(6);
+
+        reset();
+        mockMvc.perform(get("/api/appointments").param("expand", "patient,doctor,room"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].patient.firstName").value("Jose Luis"))
+                .andExpect(jsonPath("$[0].room.roomName").exists());
+
+        assertSelectCount(4);
+    }
+
+    @Test
+    void should_get_an_appointment_with_its_parties_in_one_select() throws Exception{
+        Appointment appointment = book("Dermatology");
+
+        reset();
+        mockMvc.perform(get("/api/appointments/" + appointment.getId())).andExpect(status().isOk());
+
+        assertSelectCount(1);
+    }
+
+    @Test
+    void should_list_summaries_in_one_select() throws Exception{
+        bookMany(6);
+
+        reset();
+        mockMvc.perform(get("/api/appointments/summaries")).andExpect(status().isOk());
+
+        assertSelectCount(1);
+    }
+
+    @Test
+    void should_list_selected_fields_in_one_select() throws Exception{
+        bookMany(6);
+
+        reset();
+        mockMvc.perform(get("/api/appointments").param("fields", "id,room.roomName,startsAt"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].room.roomName").exists())
+                .andExpect(jsonPath("$[0].patient").doesNotExist());
+
+        assertSelectCount(1);
+    }
+
+    @Test
+    void should_list_doctors_patients_and_rooms_in_one_select_each() throws Throwable{
+        bookMany(6);
+
+        assertThat(during(() -> mockMvc.perform(get("/api/doctors")).andExpect(status().isOk())).getSelects()).isEqualTo(1);
+        assertThat(during(() -> mockMvc.perform(get("/api/patients")).andExpect(status().isOk())).getSelects()).isEqualTo(1);
+        assertThat(during(() -> mockMvc.perform(get("/api/rooms")).andExpect(status().isOk())).getSelects()).isEqualTo(1);
+    }
+
+    @Test
+    void should_get_appointments_and_their_parties_by_id_in_one_select_per_type() throws Throwable{
+        bookMany(6);
+        Appointment first = book("Dermatology");
+        Appointment second = book("Oncology");
+        String ids = second.getId() + "," + first.getId();
+
+        assertThat(during(() -> mockMvc.perform(get("/api/appointments").param("ids", ids))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].id").value(second.getId()))
+                .andExpect(jsonPath("$[1].id").value(first.getId()))).getSelects()).isEqualTo(1);
+        assertThat(during(() -> mockMvc.perform(get("/api/doctors").param("ids", second.getDoctor().getId() + "," + first.getDoctor().getId()))
+                .andExpect(status().isOk())).getSelects()).isEqualTo(1);
+        assertThat(during(() -> mockMvc.perform(get("/api/patients").param("ids", second.getPatient().getId() + "," + first.getPatient().getId()))
+                .andExpect(status().isOk())).getSelects()).isEqualTo(1);
+    }
+
+    @Test
+    void should_book_with_the_same_statements_however_many_appointments_exist() throws Throwable{
+        bookMany(4);
+        Counts few = during(() -> book("Dermatology"));
+
+        bookMany(20);
+        Counts many = during(() -> book("Dermatology"));
+
+        assertThat(many).isEqualTo(few);
+    }
+
+    @Test
+    void should_delete_an_appointment_without_per_row_statements() throws Exception{
+        bookMany(6);
+        Appointment appointment = book("Oncology");
+
+        reset();
+        mockMvc.perform(delete("/api/appointments/" + appointment.getId())).andExpect(status().isOk());
+
+        // The appointment alone, its patient and doctor stay; one tombstone.
+        assertDeleteCount(1);
+        assertInsertCount(1);
+    }
+
+    @Test
+    void should_delete_all_appointments_in_one_statement() throws Exception{
+        bookMany(6);
+
+        reset();
+        mockMvc.perform(delete("/api/appointments")).andExpect(status().isOk());
+
+        // One bulk delete and the tombstone that resets sync clients.
+        assertDeleteCount(1);
+        assertInsertCount(1);
+        assertThat(appointmentRepository.count()).isZero();
+    }
+
+    @Test
+    void should_delete_all_doctors_in_one_statement() throws Exception{
+        for (int i = 0; i < 5; i++){
+            doctorRepository.save(new Doctor("Carina", "Zaray", 49, "c.zaray" + i + "@counted.accwe"));
+        }
+
+        reset();
+        mockMvc.perform(delete("/api/doctors")).andExpect(status().isOk());
+
+        assertDeleteCount(1);
+        assertThat(doctorRepository.count()).isZero();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import javax.sql.DataSource;
+
+import net.ttddyy.dsproxy.QueryCount;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+
+import org.junit.jupiter.api.function.Executable;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+
+/**
+ * Counts the SQL statements the test thread sends, by kind, to catch N+1
+ * selects and per-row writes that functional assertions do not see.
+ *
+ * Import it into a Spring test (@Import(QueryCounting.class)) and the
+ * DataSource is wrapped in a datasource-proxy that counts every statement
+ * on the thread that executes it. MockMvc requests run on the test thread,
+ * so {@link #during(Executable)} gives the statements of one request, and
+ * {@link #reset()} followed by the assert methods those of a whole test.
+ * A JDBC batch is one statement, it is one round trip.
+ */
+@TestConfiguration
+public class QueryCounting {
+
+    private static final String DATA_SOURCE = "techhub";
+
+    @Bean
+    static BeanPostProcessor countingDataSource(){
+        return new BeanPostProcessor(){
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName){
+                if (bean instanceof DataSource && !(bean instanceof ProxyDataSource)){
+                    return ProxyDataSourceBuilder.create((DataSource) bean).name(DATA_SOURCE).countQuery().build();
+                }
+                return bean;
+            }
+        };
+    }
+
+    /** Starts counting the current thread's statements from zero. */
+    public static void reset(){
+        QueryCountHolder.clear();
+    }
+
+    /** The statements counted on the current thread since the last reset. */
+    public static Counts current(){
+        QueryCount count = QueryCountHolder.get(DATA_SOURCE);
+        if (count == null){
+            return new Counts(0, 0, 0, 0);
+        }
+        return new Counts(count.getSelect(), count.getInsert(), count.getUpdate(), count.getDelete());
+    }
+
+    /** The statements the action sent, e.g. one MockMvc request. Counting starts over afterwards. */
+    public static Counts during(Executable action) throws Throwable{
+        reset();
+        try {
+            action.execute();
+            return current();
+        } finally {
+            reset();
+        }
+    }
+
+    public static void assertSelectCount(int expected){
+        assertThat(current().getSelects()).as("SELECT statements").isEqualTo(expected);
+    }
+
+    public static void assertInsertCount(int expected){
+        assertThat(current().getInserts()).as("INSERT statements").isEqualTo(expected);
+    }
+
+    public static void assertUpdateCount(int expected){
+        assertThat(current().getUpdates()).as("UPDATE statements").isEqualTo(expected);
+    }
+
+    public static void assertDeleteCount(int expected){
+        assertThat(current().getDeletes()).as("DELETE statements").isEqualTo(expected);
+    }
+
+    /** Statement counts by kind; equal when every kind is. */
+    public static final class Counts {
+
+        private final long selects;
+        private final long inserts;
+        private final long updates;
+        private final long deletes;
+
+        Counts(long selects, long inserts, long updates, long deletes){
+            this.selects = selects;
+            this.inserts = inserts;
+            this.updates = updates;
+            this.deletes = deletes;
+        }
+
+        public long getSelects(){
+            return this.selects;
+        }
+
+        public long getInserts(){
+            return this.inserts;
+        }
+
+        public long getUpdates(){
+            return this.updates;
+        }
+
+        public long getDeletes(){
+            return this.deletes;
+        }
+
+        public long getTotal(){
+            return selects + inserts + updates + deletes;
+        }
+
+        @Override
+        public boolean equals(Object other){
+            if (!(other instanceof Counts)){
+                return false;
+            }
+            Counts counts = (Counts) other;
+            return selects == counts.selects && inserts == counts.inserts && updates == counts.updates && deletes == counts.deletes;
+        }
+
+        @Override
+        public int hashCode(){
+            return (int) (((selects * 31 + inserts) * 31 + updates) * 31 + deletes);
+        }
+
+        @Override
+        public String toString(){
+            return "select=" + selects + ", insert=" + inserts + ", update=" + updates + ", delete=" + deletes;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import com.example.demo.services.RetryPolicy;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+@SpringJUnitConfig({RetryPolicy.class, SimpleMeterRegistry.class})
+@TestPropertySource(properties = {"techhub.retry.max-attempts=3", "techhub.retry.base-delay-ms=1", "techhub.retry.max-delay-ms=2"})
+class RetryPolicyUnitTest {
+
+    @Autowired
+    RetryPolicy retryPolicy;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    private double count(String name, String operation){
+        return meterRegistry.counter(name, "operation", operation).count();
+    }
+
+    @Test
+    void should_run_a_conflicting_action_again(){
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = retryPolicy.execute("retried", () -> {
+            if (attempts.incrementAndGet() < 3){
+                throw new OptimisticLockingFailureException("lost");
+            }
+            return "booked";
+        });
+
+        assertThat(result).isEqualTo("booked");
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(count("techhub.concurrency.conflicts", "retried")).isEqualTo(2);
+        assertThat(count("techhub.concurrency.retries", "retried")).isEqualTo(2);
+        assertThat(count("techhub.concurrency.exhausted", "retried")).isZero();
+    }
+
+    @Test
+    void should_give_up_after_max_attempts(){
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retryPolicy.execute("exhausted", () -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("lost");
+        })).isInstanceOf(OptimisticLockingFailureException.class);
+
+        assertThat(attempts.get()).isEqualTo(3);
+        assertThat(count("techhub.concurrency.conflicts", "exhausted")).isEqualTo(3);
+        assertThat(count("techhub.concurrency.exhausted", "exhausted")).isEqualTo(1);
+    }
+
+    @Test
+    void should_not_retry_other_failures(){
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> retryPolicy.execute("failed", () -> {
+            attempts.incrementAndGet();
+            throw new IllegalStateException("broken");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(attempts.get()).isEqualTo(1);
+        assertThat(count("techhub.concurrency.conflicts", "failed")).isZero();
+    }
+}
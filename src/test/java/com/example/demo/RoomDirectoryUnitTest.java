@@ -0,0 +1,87 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.AppointmentChangeLog;
+import com.example.demo.services.ChangeNumbers;
+import com.example.demo.services.BookingGuard;
+import com.example.demo.services.RetryPolicy;
+import com.example.demo.services.RoomDirectory;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({RoomDirectory.class, AppointmentChangeLog.class, ChangeNumbers.class, BookingGuard.class, RetryPolicy.class, SimpleMeterRegistry.class})
+class RoomDirectoryUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    RoomDirectory roomDirectory;
+
+    @Autowired
+    AppointmentChangeLog changeLog;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    private Appointment appointment(String email, String roomName, int hour){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, email + "@email.com");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, email + "@hospital.accwe");
+        return new Appointment(patient, doctor, new Room(roomName), LocalDateTime.of(2023, 4, 24, hour, 0), LocalDateTime.of(2023, 4, 24, hour, 30));
+    }
+
+    @Test
+    void should_share_one_room_row_between_bookings_by_name(){
+        Appointment first = changeLog.save(appointment("directory.a", "Oncology", 9));
+        Appointment second = changeLog.save(appointment("directory.b", "Oncology", 10));
+        entityManager.flush();
+
+        assertThat(first.getRoom().getId()).isNotZero().isEqualTo(second.getRoom().getId());
+        assertThat(roomRepository.findAll()).filteredOn(room -> room.getRoomName().equals("Oncology")).hasSize(1);
+        assertThat(roomDirectory.idOf("Oncology")).contains(first.getRoom().getId());
+        assertThat(roomDirectory.find("Oncology").get().getRoomName()).isEqualTo("Oncology");
+    }
+
+    @Test
+    void should_forget_deleted_rooms(){
+        Room room = entityManager.persist(new Room("Radiology"));
+        roomDirectory.onChange(EntityChangeEvent.created(room));
+        assertThat(roomDirectory.idOf("Radiology")).contains(room.getId());
+
+        entityManager.remove(room);
+        roomDirectory.onChange(EntityChangeEvent.deleted(room));
+        assertThat(roomDirectory.idOf("Radiology")).isEmpty();
+        assertThat(roomDirectory.idOf("Cardiology")).isEmpty();
+    }
+
+    @Test
+    void should_hand_out_the_stored_room_with_its_version(){
+        changeLog.save(appointment("directory.c", "Cardiology", 9));
+        changeLog.save(appointment("directory.d", "Cardiology", 10));
+        entityManager.flush();
+        entityManager.clear();
+
+        Room stored = roomDirectory.findStored("Cardiology").get();
+        assertThat(stored.getVersion()).isEqualTo(roomRepository.findByRoomName("Cardiology").get().getVersion()).isPositive();
+        assertThat(stored.getSite()).isNotNull();
+        assertThat(roomDirectory.findStored("Pediatrics")).isEmpty();
+    }
+}
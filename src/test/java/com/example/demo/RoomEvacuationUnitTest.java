@@ -0,0 +1,108 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentChangeLog;
+import com.example.demo.services.ChangeNumbers;
+import com.example.demo.services.BookingGuard;
+import com.example.demo.services.RetryPolicy;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.RoomEvacuation;
+import com.example.demo.services.RoomEvacuation.Evacuation;
+import com.example.demo.services.ScheduleStore;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({RoomEvacuation.class, AppointmentChangeLog.class, ChangeNumbers.class, ScheduleStore.class, RoomDirectory.class, BookingGuard.class,
+        RetryPolicy.class, SimpleMeterRegistry.class})
+class RoomEvacuationUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    RoomEvacuation roomEvacuation;
+
+    private Patient patient;
+    private Doctor doctor;
+    private Room closing;
+    private Room cardiology;
+    private Room dermatology;
+    private Room oncology;
+
+    private final LocalDateTime nine = LocalDateTime.now().plusDays(3).truncatedTo(ChronoUnit.DAYS).plusHours(9);
+
+    @BeforeEach
+    void setUp(){
+        patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        closing = entityManager.persist(new Room("Radiology"));
+        cardiology = entityManager.persist(new Room("Cardiology"));
+        dermatology = entityManager.persist(new Room("Dermatology"));
+        oncology = entityManager.persist(new Room("Oncology"));
+    }
+
+    private Appointment book(Room room, LocalDateTime startsAt, int minutes){
+        return entityManager.persist(new Appointment(patient, doctor, room, startsAt, startsAt.plusMinutes(minutes)));
+    }
+
+    private String roomOf(Appointment appointment){
+        return entityManager.find(Appointment.class, appointment.getId()).getRoom().getRoomName();
+    }
+
+    @Test
+    void should_pack_the_appointments_into_the_tightest_free_rooms(){
+        book(cardiology, nine, 60);
+        Appointment first = book(closing, nine, 60);
+        Appointment second = book(closing, nine.plusMinutes(30), 60);
+        Appointment third = book(closing, nine.plusHours(1), 60);
+        Appointment past = book(closing, LocalDateTime.now().minusDays(1), 30);
+
+        Evacuation evacuation = roomEvacuation.evacuate(closing, Collections.emptyList());
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(evacuation.isComplete()).isTrue();
+        assertThat(evacuation.getMoved()).containsExactly(
+                entry(first.getId(), "Dermatology"), entry(second.getId(), "Oncology"), entry(third.getId(), "Cardiology"));
+        assertThat(roomOf(first)).isEqualTo("Dermatology");
+        assertThat(roomOf(second)).isEqualTo("Oncology");
+        assertThat(roomOf(third)).isEqualTo("Cardiology");
+        assertThat(roomOf(past)).isEqualTo("Radiology");
+    }
+
+    @Test
+    void should_move_nothing_when_an_appointment_fits_nowhere(){
+        book(cardiology, nine, 60);
+        Appointment first = book(closing, nine.minusHours(1), 60);
+        Appointment second = book(closing, nine.plusMinutes(30), 60);
+
+        Evacuation evacuation = roomEvacuation.evacuate(closing, Collections.singletonList(cardiology));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(evacuation.isComplete()).isFalse();
+        assertThat(evacuation.getUnplaced()).containsExactly(second.getId());
+        assertThat(roomOf(first)).isEqualTo("Radiology");
+        assertThat(roomOf(second)).isEqualTo("Radiology");
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.repositories.AppointmentRepository;
+import com.example.demo.services.RoomOccupancy;
+import com.example.demo.services.RoomOccupancy.SlotState;
+
+class RoomOccupancyUnitTest {
+
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
+
+    private final RoomOccupancy occupancy = new RoomOccupancy();
+
+    private static Appointment appointment(String room, String startsAt, String finishesAt){
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com");
+        Doctor doctor = new Doctor ("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        return new Appointment(patient, doctor, new Room(room),
+                LocalDateTime.parse(startsAt, FORMATTER), LocalDateTime.parse(finishesAt, FORMATTER));
+    }
+
+    // Loaded from an empty table.
+    @BeforeEach
+    void load(){
+        ReflectionTestUtils.setField(occupancy, "appointmentRepository", mock(AppointmentRepository.class));
+        occupancy.load();
+    }
+
+    @Test
+    void should_not_vouch_for_a_slot_before_it_is_loaded(){
+        RoomOccupancy loading = new RoomOccupancy();
+
+        assertThat(loading.tryReserve(appointment("Dermatology", "19:30 24/04/2023", "20:30 24/04/2023"))).isEqualTo(SlotState.UNKNOWN);
+    }
+
+    @Test
+    void should_reserve_free_aligned_slots_once(){
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "19:30 24/04/2023", "20:30 24/04/2023"))).isEqualTo(SlotState.FREE);
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "20:00 24/04/2023", "20:15 24/04/2023"))).isEqualTo(SlotState.TAKEN);
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "19:00 24/04/2023", "21:00 24/04/2023"))).isEqualTo(SlotState.TAKEN);
+    }
+
+    @Test
+    void should_allow_back_to_back_appointments(){
+        occupancy.tryReserve(appointment("Dermatology", "19:30 24/04/2023", "20:30 24/04/2023"));
+
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "20:30 24/04/2023", "21:00 24/04/2023"))).isEqualTo(SlotState.FREE);
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "19:00 24/04/2023", "19:30 24/04/2023"))).isEqualTo(SlotState.FREE);
+    }
+
+    @Test
+    void should_keep_rooms_apart(){
+        occupancy.tryReserve(appointment("Dermatology", "19:30 24/04/2023", "20:30 24/04/2023"));
+
+        assertThat(occupancy.tryReserve(appointment("Oncology", "19:30 24/04/2023", "20:30 24/04/2023"))).isEqualTo(SlotState.FREE);
+    }
+
+    @Test
+    void should_reject_off_grid_ranges_touching_a_booked_slot(){
+        occupancy.tryReserve(appointment("Dermatology", "19:30 24/04/2023", "20:30 24/04/2023"));
+
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "20:27 24/04/2023", "20:41 24/04/2023"))).isEqualTo(SlotState.TAKEN);
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "20:31 24/04/2023", "20:41 24/04/2023"))).isEqualTo(SlotState.UNKNOWN);
+    }
+
+    @Test
+    void should_not_vouch_for_days_with_off_grid_appointments(){
+        occupancy.onChange(EntityChangeEvent.created(appointment("Dermatology", "10:02 24/04/2023", "10:33 24/04/2023")));
+
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "12:00 24/04/2023", "12:30 24/04/2023"))).isEqualTo(SlotState.UNKNOWN);
+        assertThat(occupancy.tryReserve(appointment("Dermatology", "12:00 25/04/2023", "12:30 25/04/2023"))).isEqualTo(SlotState.FREE);
+    }
+
+    @Test
+    void should_span_midnight(){
+        occupancy.tryReserve(appointment("Emergency", "23:00 24/04/2023", "01:00 25/04/2023"));
+
+        assertThat(occupancy.tryReserve(appointment("Emergency", "00:30 25/04/2023", "00:45 25/04/2023"))).isEqualTo(SlotState.TAKEN);
+        assertThat(occupancy.utilization("Emergency", LocalDate.of(2023, 4, 24)).getBookedSlots()).isEqualTo(12);
+        assertThat(occupancy.utilization("Emergency", LocalDate.of(2023, 4, 25)).getBookedSlots()).isEqualTo(12);
+    }
+
+    @Test
+    void should_free_slots_on_delete_and_release(){
+        Appointment booked = appointment("Dermatology", "19:30 24/04/2023", "20:30 24/04/2023");
+        occupancy.tryReserve(booked);
+        occupancy.onChange(EntityChangeEvent.deleted(booked));
+
+        Appointment other = appointment("Dermatology", "20:00 24/04/2023", "20:15 24/04/2023");
+        assertThat(occupancy.tryReserve(other)).isEqualTo(SlotState.FREE);
+        occupancy.release(other);
+
+        assertThat(occupancy.utilization("Dermatology", LocalDate.of(2023, 4, 24)).getBookedSlots()).isZero();
+    }
+
+    @Test
+    void should_report_utilization(){
+        occupancy.tryReserve(appointment("Dermatology", "08:00 24/04/2023", "20:00 24/04/2023"));
+
+        RoomOccupancy.Utilization utilization = occupancy.utilization("Dermatology", LocalDate.of(2023, 4, 24));
+        assertThat(utilization.getBookedSlots()).isEqualTo(144);
+        assertThat(utilization.getPercent()).isEqualTo(50.0);
+        assertThat(utilization.isExact()).isTrue();
+        assertThat(occupancy.utilization(LocalDate.of(2023, 4, 24))).hasSize(1);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.ScheduleStore;
+
+class ScheduleStoreUnitTest {
+
+    private final LocalDateTime base = LocalDateTime.of(2023, 4, 24, 19, 0);
+
+    private Appointment appointment(long id, String room, long doctorId, int fromMinute, int toMinute){
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe");
+        doctor.setId(doctorId);
+        Appointment appointment = new Appointment(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"), doctor,
+                new Room(room), base.plusMinutes(fromMinute), base.plusMinutes(toMinute));
+        appointment.setId(id);
+        return appointment;
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void should_agree_with_appointment_overlaps(boolean offHeap){
+        ScheduleStore store = new ScheduleStore(offHeap);
+        Appointment stored = appointment(1, "Dermatology", 1, 10, 20);
+        store.add(stored);
+
+        for (int from = 0; from < 30; from++){
+            for (int to = from + 1; to <= 30; to++){
+                Appointment candidate = appointment(2, "Dermatology", 2, from, to);
+                assertThat(store.conflicts(candidate)).as("%d-%d", from, to).isEqualTo(stored.overlaps(candidate));
+            }
+        }
+        assertThat(store.conflicts(appointment(2, "Oncology", 2, 10, 20))).isFalse();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void should_grow_and_reuse_deleted_rows(boolean offHeap){
+        ScheduleStore store = new ScheduleStore(offHeap);
+        for (int i = 0; i < 5000; i++){
+            store.add(appointment(i + 1, "Room " + (i % 50), i % 7, i, i + 1));
+        }
+        assertThat(store.size()).isEqualTo(5000);
+        assertThat(store.conflicts("Room 3", base.plusMinutes(4003), base.plusMinutes(4004))).isTrue();
+
+        store.remove(4004);
+        assertThat(store.conflicts("Room 3", base.plusMinutes(4003), base.plusMinutes(4004))).isFalse();
+        store.add(appointment(9999, "Room 3", 1, 4003, 4004));
+        assertThat(store.size()).isEqualTo(5000);
+        assertThat(store.conflicts("Room 3", base.plusMinutes(4003), base.plusMinutes(4004))).isTrue();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void should_find_busy_doctors_across_rooms(boolean offHeap){
+        ScheduleStore store = new ScheduleStore(offHeap);
+        store.add(appointment(1, "Dermatology", 7, 0, 30));
+
+        assertThat(store.isDoctorBusy(7, base.plusMinutes(15), base.plusMinutes(45))).isTrue();
+        assertThat(store.isDoctorBusy(7, base.plusMinutes(30), base.plusMinutes(45))).isFalse();
+        assertThat(store.isDoctorBusy(8, base.plusMinutes(15), base.plusMinutes(45))).isFalse();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.demo;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+import java.util.Optional;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import com.example.demo.controllers.SeriesController;
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.services.SeriesScheduler;
+import com.example.demo.services.RoomDirectory;
+
+@WebMvcTest(SeriesController.class)
+@Import(RoomDirectory.class)
+class SeriesControllerUnitTest{
+
+    @MockBean
+    private SeriesScheduler seriesScheduler;
+
+    @MockBean
+    private PatientRepository patientRepository;
+
+    @MockBean
+    private DoctorRepository doctorRepository;
+
+    @MockBean
+    private RoomRepository roomRepository;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    private static final String WEEKLY = "{\"patient\":{\"id\":1},\"doctor\":{\"id\":2},\"room\":{\"roomName\":\"Dermatology\"},"
+            + "\"startsAt\":\"10:00 24/04/2023\",\"durationMinutes\":50,\"frequency\":\"WEEKLY\",\"interval\":1,\"count\":%d}";
+
+    @Test
+    void shouldNotCreateConflictingSeries() throws Exception{
+        when(patientRepository.findById(1L)).thenReturn(Optional.of(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com")));
+        when(doctorRepository.findById(2L)).thenReturn(Optional.of(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe")));
+        when(roomRepository.findByRoomName("Dermatology")).thenReturn(Optional.of(new Room("Dermatology")));
+        when(seriesScheduler.create(any(AppointmentSeries.class))).thenReturn(null);
+
+        mockMvc.perform(post("/api/series").contentType(MediaType.APPLICATION_JSON).content(String.format(WEEKLY, 10)))
+                .andExpect(status().isNotAcceptable());
+    }
+
+    @Test
+    void shouldNotCreateSeriesWithoutOccurrences() throws Exception{
+        mockMvc.perform(post("/api/series").contentType(MediaType.APPLICATION_JSON).content(String.format(WEEKLY, 0)))
+                .andExpect(status().isBadRequest());
+    }
+}
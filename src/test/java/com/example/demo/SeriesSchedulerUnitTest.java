@@ -0,0 +1,119 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.entities.AppointmentSeries.Frequency;
+import com.example.demo.services.SeriesScheduler;
+import com.example.demo.services.BookingGuard;
+import com.example.demo.services.RetryPolicy;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.SeriesScheduler.Outcome;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({SeriesScheduler.class, RoomDirectory.class, BookingGuard.class, RetryPolicy.class, SimpleMeterRegistry.class})
+class SeriesSchedulerUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    SeriesScheduler scheduler;
+
+    private Patient patient;
+    private Doctor doctor;
+    private Room room;
+
+    // Monday
+    private final LocalDateTime monday = LocalDateTime.of(2023, 4, 24, 10, 0);
+
+    @BeforeEach
+    void setUp(){
+        patient = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        room = entityManager.persist(new Room("Dermatology"));
+    }
+
+    private AppointmentSeries series(LocalDateTime startsAt, int minutes, Frequency frequency, int interval, Integer count){
+        return new AppointmentSeries(patient, doctor, room, startsAt, minutes, frequency, interval, count, null);
+    }
+
+    @Test
+    void should_reject_a_series_hitting_another_one_a_year_later(){
+        assertThat(scheduler.create(series(monday, 60, Frequency.WEEKLY, 2, null))).isNotNull();
+
+        // Every 53 weeks from week 1: the second occurrence, week 54, is an even week.
+        assertThat(scheduler.create(series(monday.plusWeeks(1).plusMinutes(30), 60, Frequency.WEEKLY, 53, null))).isNull();
+        assertThat(scheduler.create(series(monday.plusWeeks(1).plusMinutes(30), 60, Frequency.WEEKLY, 53, 1))).isNotNull();
+    }
+
+    @Test
+    void should_fit_daily_and_weekly_series_side_by_side(){
+        assertThat(scheduler.create(series(monday, 60, Frequency.WEEKLY, 1, null))).isNotNull();
+        assertThat(scheduler.create(series(monday.plusDays(1).withMinute(30), 60, Frequency.DAILY, 1, null))).isNull();
+        assertThat(scheduler.create(series(monday.withHour(11), 60, Frequency.DAILY, 1, null))).isNotNull();
+    }
+
+    @Test
+    void should_check_series_against_single_appointments(){
+        entityManager.persist(new Appointment(patient, doctor, room, monday.plusWeeks(10), monday.plusWeeks(10).plusMinutes(15)));
+
+        assertThat(scheduler.create(series(monday, 60, Frequency.WEEKLY, 1, 10))).isNotNull();
+        assertThat(scheduler.create(series(monday.plusMinutes(60), 60, Frequency.WEEKLY, 1, 11))).isNotNull();
+        assertThat(scheduler.create(series(monday.minusMinutes(30), 60, Frequency.WEEKLY, 5, null))).isNull();
+
+        Appointment single = new Appointment(patient, doctor, room, monday.plusWeeks(3).plusMinutes(30), monday.plusWeeks(3).plusMinutes(45));
+        assertThat(scheduler.conflicts(single)).isTrue();
+    }
+
+    @Test
+    void should_free_cancelled_occurrences_and_check_moved_ones(){
+        AppointmentSeries saved = scheduler.create(series(monday, 60, Frequency.WEEKLY, 1, null));
+        Appointment single = new Appointment(patient, doctor, room, monday.plusWeeks(2), monday.plusWeeks(2).plusMinutes(30));
+        assertThat(scheduler.conflicts(single)).isTrue();
+
+        assertThat(scheduler.addException(saved.getId(), SeriesException.cancel(LocalDate.of(2023, 5, 8)))).isEqualTo(Outcome.ADDED);
+        entityManager.flush();
+        entityManager.clear();
+        assertThat(scheduler.conflicts(single)).isFalse();
+
+        assertThat(scheduler.addException(saved.getId(), SeriesException.move(LocalDate.of(2023, 5, 15),
+            monday.plusWeeks(4).minusMinutes(30), monday.plusWeeks(4).plusMinutes(30)))).isEqualTo(Outcome.CONFLICT);
+        assertThat(scheduler.addException(saved.getId(), SeriesException.move(LocalDate.of(2023, 5, 15),
+            monday.plusWeeks(3).plusDays(1), monday.plusWeeks(3).plusDays(1).plusHours(1)))).isEqualTo(Outcome.ADDED);
+        assertThat(scheduler.addException(saved.getId(), SeriesException.cancel(LocalDate.of(2023, 5, 16)))).isEqualTo(Outcome.NOT_AN_OCCURRENCE);
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(scheduler.find(saved.getId()).get().getExceptions()).hasSize(2);
+    }
+
+    @Test
+    void should_drop_the_series_it_keeps_for_a_room_when_one_changes(){
+        Appointment single = new Appointment(patient, doctor, room, monday.plusWeeks(1), monday.plusWeeks(1).plusMinutes(30));
+        assertThat(scheduler.conflicts(single)).isFalse();
+
+        AppointmentSeries saved = scheduler.create(series(monday, 60, Frequency.WEEKLY, 1, null));
+        assertThat(scheduler.conflicts(single)).isTrue();
+
+        assertThat(scheduler.delete(saved.getId())).isTrue();
+        assertThat(scheduler.conflicts(single)).isFalse();
+    }
+}
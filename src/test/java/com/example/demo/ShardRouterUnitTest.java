@@ -0,0 +1,86 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import com.example.demo.entities.*;
+import com.example.demo.repositories.*;
+import com.example.demo.services.AppointmentChangeLog;
+import com.example.demo.services.ShardRouter;
+import com.example.demo.sites.SiteContext;
+
+
+/** One instance serving two sites, each on its own in-memory database. */
+class ShardRouterUnitTest {
+
+    private static ConfigurableApplicationContext context;
+
+    private static int booked = 0;
+
+    @BeforeAll
+    static void start(){
+        context = new SpringApplicationBuilder(TechhubApplication.class)
+            .web(WebApplicationType.NONE)
+            .run("--spring.datasource.url=jdbc:h2:mem:site_main;DB_CLOSE_DELAY=-1",
+                 "--spring.jpa.hibernate.ddl-auto=update",
+                 "--techhub.sites.enabled=true",
+                 "--techhub.sites.datasources.north.url=jdbc:h2:mem:site_north;DB_CLOSE_DELAY=-1",
+                 "--techhub.sites.datasources.north.username=sa");
+    }
+
+    @AfterAll
+    static void stop(){
+        context.close();
+    }
+
+    private Appointment book(String site, String roomName, LocalDateTime startsAt){
+        booked++;
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya" + booked + "@sites.com");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia" + booked + "@sites.accwe");
+        Appointment appointment = new Appointment(patient, doctor, new Room(roomName), startsAt, startsAt.plusMinutes(30));
+        return SiteContext.call(site, () -> context.getBean(AppointmentChangeLog.class).save(appointment));
+    }
+
+    @Test
+    void should_keep_each_site_in_its_own_database_and_merge_listings_by_start(){
+        LocalDateTime monday = LocalDateTime.of(2023, 4, 24, 9, 0);
+        Appointment mainLate = book("main", "Dermatology", monday.plusHours(2));
+        Appointment northEarly = book("north", "Dermatology", monday);
+        Appointment mainEarly = book("main", "Oncology", monday.plusHours(1));
+
+        ShardRouter router = context.getBean(ShardRouter.class);
+        AppointmentRepository appointments = context.getBean(AppointmentRepository.class);
+
+        assertThat(router.isSharded()).isTrue();
+        assertThat(router.sites()).containsExactly("main", "north");
+        assertThat(northEarly.getSite()).isEqualTo("north");
+        assertThat(SiteContext.call("north", appointments::findAll)).extracting(Appointment::getId).containsExactly(northEarly.getId());
+        assertThat(appointments.findAll()).extracting(Appointment::getSite).containsOnly("main");
+
+        List<Appointment> merged = router.gather(appointments::findAll, Comparator.comparing(Appointment::getStartsAt));
+
+        assertThat(merged).extracting(Appointment::getStartsAt)
+            .containsExactly(northEarly.getStartsAt(), mainEarly.getStartsAt(), mainLate.getStartsAt());
+    }
+
+    @Test
+    void should_book_the_same_room_name_on_both_sites(){
+        LocalDateTime tuesday = LocalDateTime.of(2023, 4, 25, 9, 0);
+
+        Appointment main = book("main", "Cardiology", tuesday);
+        Appointment north = book("north", "Cardiology", tuesday);
+
+        assertThat(main.getRoom().getSite()).isEqualTo("main");
+        assertThat(north.getRoom().getSite()).isEqualTo("north");
+    }
+}
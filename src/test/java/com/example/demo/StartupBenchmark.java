@@ -0,0 +1,103 @@
+package com.example.demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.ServerSocket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to first request of {@link TechhubApplication}: from launching the
+ * JVM until GET /api/rooms answers, the way a rolling deploy waits for a new
+ * instance. Each configuration is started several times in a fresh JVM on
+ * H2 and the median, min and max are printed.
+ *
+ * Run by mvn -Pfast-startup verify, or by hand with the test classpath:
+ * java -cp ... com.example.demo.StartupBenchmark [cds-archive] [runs]
+ */
+public class StartupBenchmark {
+
+    private static final long TIMEOUT_MS = 120_000;
+
+    public static void main(String[] args) throws Exception{
+        String archive = args.length > 0 ? args[0] : null;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        report("default", measure(runs, Collections.emptyList(), Collections.emptyList()));
+        report("fast-startup", measure(runs, Collections.emptyList(), Collections.singletonList("--spring.profiles.active=fast-startup")));
+        if (archive != null && new File(archive).isFile()){
+            report("fast-startup + AppCDS", measure(runs, Collections.singletonList("-XX:SharedArchiveFile=" + archive),
+                    Collections.singletonList("--spring.profiles.active=fast-startup")));
+        }
+    }
+
+    private static List<Long> measure(int runs, List<String> jvmArgs, List<String> appArgs) throws Exception{
+        List<Long> times = new ArrayList<>();
+        for (int i = 0; i < runs; i++){
+            times.add(timeToFirstRequest(jvmArgs, appArgs));
+        }
+        Collections.sort(times);
+        return times;
+    }
+
+    private static long timeToFirstRequest(List<String> jvmArgs, List<String> appArgs) throws Exception{
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", System.getProperty("java.class.path"), TechhubApplication.class.getName(),
+                "--server.port=" + port, "--spring.datasource.url=jdbc:h2:mem:startup"));
+        command.addAll(appArgs);
+
+        long start = System.nanoTime();
+        File log = new File(System.getProperty("java.io.tmpdir"), "techhub-startup.log");
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log).start();
+        try {
+            URL url = new URL("http://localhost:" + port + "/api/rooms");
+            while (System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(TIMEOUT_MS)){
+                if (!process.isAlive()){
+                    throw new IllegalStateException("Application exited with " + process.exitValue());
+                }
+                if (answers(url)){
+                    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException("No answer within " + TIMEOUT_MS + " ms");
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)){
+                process.destroyForcibly();
+            }
+        }
+    }
+
+    private static boolean answers(URL url){
+        try {
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout(100);
+            connection.setReadTimeout(30_000);
+            int status = connection.getResponseCode();
+            connection.disconnect();
+            return status < 500;
+        } catch (IOException e){
+            return false;
+        }
+    }
+
+    private static int freePort() throws IOException{
+        try (ServerSocket socket = new ServerSocket(0)){
+            return socket.getLocalPort();
+        }
+    }
+
+    private static void report(String name, List<Long> times){
+        System.out.printf("%-24s time to first request: median %d ms, min %d ms, max %d ms (%d runs)%n",
+                name, times.get(times.size() / 2), times.get(0), times.get(times.size() - 1), times.size());
+    }
+}
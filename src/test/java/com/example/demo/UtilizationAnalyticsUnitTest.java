@@ -0,0 +1,204 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.repositories.*;
+import com.example.demo.entities.*;
+import com.example.demo.events.EntityChangeEvent;
+import com.example.demo.services.AppointmentArchive;
+import com.example.demo.services.ChangeNumbers;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.UtilizationAnalytics;
+import com.example.demo.services.UtilizationAnalytics.Granularity;
+import com.example.demo.services.UtilizationAnalytics.ResourceType;
+import com.example.demo.services.UtilizationAnalytics.UtilizationRow;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({UtilizationAnalytics.class, ChangeNumbers.class, AppointmentArchive.class, RoomDirectory.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UtilizationAnalyticsUnitTest {
+
+    @Autowired
+    UtilizationAnalytics analytics;
+
+    @Autowired
+    AppointmentRepository appointmentRepository;
+
+    @Autowired
+    ArchivedAppointmentRepository archiveRepository;
+
+    @Autowired
+    AppointmentArchive archive;
+
+    @Autowired
+    UtilizationSummaryRepository summaryRepository;
+
+    @Autowired
+    RoomRepository roomRepository;
+
+    @Autowired
+    PatientRepository patientRepository;
+
+    @Autowired
+    DoctorRepository doctorRepository;
+
+    @Autowired
+    ChangeSequenceRepository sequenceRepository;
+
+    @AfterEach
+    void cleanUp(){
+        analytics.onChange(EntityChangeEvent.cleared(Appointment.class));
+        appointmentRepository.deleteAll();
+        archiveRepository.deleteAll();
+        patientRepository.deleteAll();
+        doctorRepository.deleteAll();
+        roomRepository.deleteAll();
+        analytics.flush();
+    }
+
+    private int booked = 0;
+
+    private Appointment appointment(Room room, LocalDateTime startsAt, LocalDateTime finishesAt){
+        booked++;
+        Patient patient = new Patient("Jose Luis", "Olaya", 37, "j.olaya" + booked + "@email.com");
+        Doctor doctor = new Doctor("Perla", "Amalia", 24, "p.amalia" + booked + "@hospital.accwe");
+        return new Appointment(patient, doctor, room, startsAt, finishesAt);
+    }
+
+    private Room room(String roomName){
+        return roomRepository.findByRoomName(roomName).orElseGet(() -> roomRepository.save(new Room(roomName)));
+    }
+
+    private Appointment book(String roomName, LocalDateTime startsAt, LocalDateTime finishesAt){
+        return appointmentRepository.save(appointment(room(roomName), startsAt, finishesAt));
+    }
+
+    @Test
+    void should_count_minutes_per_room_and_day(){
+        LocalDate day = LocalDate.of(2023, 4, 24);
+        Room room = room("Dermatology");
+        for (Appointment appointment : appointmentRepository.saveAll(Arrays.asList(
+                appointment(room, day.atTime(9, 0), day.atTime(10, 30)),
+                appointment(room, day.atTime(11, 0), day.atTime(11, 30))))){
+            analytics.onChange(EntityChangeEvent.created(appointment));
+        }
+
+        List<UtilizationRow> rows = analytics.report(Granularity.DAY, day, day, ResourceType.ROOM);
+
+        assertThat(rows).extracting("resourceKey", "bookedMinutes", "appointments")
+            .containsExactly(tuple("Dermatology", 120L, 2L));
+        assertThat(rows.get(0).getUtilization()).isEqualTo(8.33);
+    }
+
+    @Test
+    void should_split_appointments_across_midnight_and_sum_weeks(){
+        LocalDate sunday = LocalDate.of(2023, 4, 23);
+        Appointment appointment = book("Dermatology", sunday.atTime(23, 0), sunday.plusDays(1).atTime(1, 0));
+        analytics.onChange(EntityChangeEvent.created(appointment));
+
+        assertThat(analytics.report(Granularity.DAY, sunday, sunday.plusDays(1), ResourceType.ROOM))
+            .extracting("periodStart", "bookedMinutes", "appointments")
+            .containsExactly(tuple(sunday, 60L, 1L), tuple(sunday.plusDays(1), 60L, 0L));
+
+        assertThat(analytics.report(Granularity.WEEK, sunday, sunday.plusDays(1), ResourceType.ROOM))
+            .extracting("periodStart", "bookedMinutes", "availableMinutes")
+            .containsExactly(tuple(LocalDate.of(2023, 4, 17), 60L, 1440L), tuple(sunday.plusDays(1), 60L, 1440L));
+
+        analytics.onChange(EntityChangeEvent.deleted(appointment));
+        assertThat(analytics.report(Granularity.MONTH, sunday, sunday.plusDays(1), null)).isEmpty();
+    }
+
+    @Test
+    void should_persist_and_rebuild_the_summary(){
+        LocalDate day = LocalDate.of(2023, 4, 24);
+        Appointment appointment = book("Dermatology", day.atTime(9, 0), day.atTime(10, 0));
+        analytics.onChange(EntityChangeEvent.created(appointment));
+        analytics.flush();
+
+        assertThat(summaryRepository.findAll())
+            .extracting("resourceType", "bookedMinutes")
+            .containsExactlyInAnyOrder(tuple("ROOM", 60L), tuple("DOCTOR", 60L));
+
+        book("Cardiology", day.atTime(9, 0), day.atTime(9, 45));
+        analytics.rebuild();
+
+        assertThat(analytics.report(Granularity.DAY, day, day, ResourceType.ROOM))
+            .extracting("resourceKey", "bookedMinutes")
+            .containsExactly(tuple("Cardiology", 45L), tuple("Dermatology", 60L));
+        assertThat(summaryRepository.findAll()).hasSize(4);
+    }
+
+    @Test
+    void should_keep_archived_appointments_in_a_rebuild(){
+        LocalDate day = LocalDate.of(2023, 4, 24);
+        book("Dermatology", day.atTime(9, 0), day.atTime(10, 0));
+        book("Dermatology", day.plusDays(1).atTime(9, 0), day.plusDays(1).atTime(9, 30));
+        assertThat(archive.archiveBefore(day.plusDays(1).atStartOfDay())).isEqualTo(1);
+
+        analytics.rebuild();
+
+        assertThat(analytics.report(Granularity.DAY, day, day.plusDays(1), ResourceType.ROOM))
+            .extracting("periodStart", "bookedMinutes")
+            .containsExactly(tuple(day, 60L), tuple(day.plusDays(1), 30L));
+    }
+
+    @Test
+    void should_rebuild_on_load_when_changes_came_after_the_last_flush(){
+        LocalDate day = LocalDate.of(2023, 4, 24);
+        Appointment appointment = book("Dermatology", day.atTime(9, 0), day.atTime(10, 0));
+        analytics.onChange(EntityChangeEvent.created(appointment));
+        analytics.flush();
+
+        // Committed after the flush, its counters never reached the table: a crash before the next flush.
+        book("Cardiology", day.atTime(9, 0), day.atTime(9, 45));
+        ChangeSequence sequence = sequenceRepository.findById("appointments").orElseGet(() -> new ChangeSequence("appointments"));
+        sequence.setValue(sequence.getValue() + 1);
+        sequenceRepository.save(sequence);
+
+        analytics.load();
+
+        assertThat(analytics.report(Granularity.DAY, day, day, ResourceType.ROOM))
+            .extracting("resourceKey", "bookedMinutes")
+            .containsExactly(tuple("Cardiology", 45L), tuple("Dermatology", 60L));
+    }
+
+    @Test
+    void should_store_only_the_changes_it_has_applied(){
+        LocalDate day = LocalDate.of(2023, 4, 24);
+        long base = sequenceRepository.findValueByName("appointments").orElse(0L);
+        Appointment applied = appointment(room("Dermatology"), day.atTime(9, 0), day.atTime(10, 0));
+        applied.setChangeSeq(base + 1);
+        analytics.onChange(EntityChangeEvent.created(appointmentRepository.save(applied)));
+
+        // Committed with a later number, its event not applied yet when the flush runs.
+        Appointment pending = appointment(room("Cardiology"), day.atTime(9, 0), day.atTime(9, 45));
+        pending.setChangeSeq(base + 2);
+        appointmentRepository.save(pending);
+        ChangeSequence sequence = sequenceRepository.findById("appointments").orElseGet(() -> new ChangeSequence("appointments"));
+        sequence.setValue(base + 2);
+        sequenceRepository.save(sequence);
+
+        analytics.flush();
+
+        assertThat(sequenceRepository.findValueByName("utilization-summary-flushed")).contains(base + 1);
+    }
+}
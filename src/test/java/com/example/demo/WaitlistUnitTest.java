@@ -0,0 +1,106 @@
+package com.example.demo;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Optional;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase.Replace;
+
+import com.example.demo.entities.*;
+import com.example.demo.services.AppointmentChangeLog;
+import com.example.demo.services.ChangeNumbers;
+import com.example.demo.services.BookingGuard;
+import com.example.demo.services.RetryPolicy;
+import com.example.demo.services.RoomDirectory;
+import com.example.demo.services.Waitlist;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+
+@DataJpaTest
+@AutoConfigureTestDatabase(replace=Replace.NONE)
+@Import({Waitlist.class, AppointmentChangeLog.class, ChangeNumbers.class, RoomDirectory.class, BookingGuard.class, RetryPolicy.class, SimpleMeterRegistry.class})
+class WaitlistUnitTest {
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    AppointmentChangeLog changeLog;
+
+    @Autowired
+    Waitlist waitlist;
+
+    private Patient cancelling;
+    private Patient waiting;
+    private Patient urgent;
+    private Doctor doctor;
+    private Doctor otherDoctor;
+    private Room room;
+
+    private final LocalDateTime startsAt = LocalDateTime.now().plusDays(7).truncatedTo(ChronoUnit.DAYS).plusHours(10);
+
+    @BeforeEach
+    void setUp(){
+        cancelling = entityManager.persist(new Patient("Jose Luis", "Olaya", 37, "j.olaya@email.com"));
+        waiting = entityManager.persist(new Patient("Paulino", "Antunez", 37, "p.antunez@email.com"));
+        urgent = entityManager.persist(new Patient("Cornelio", "Andrea", 59, "c.andrea@email.com"));
+        doctor = entityManager.persist(new Doctor("Perla", "Amalia", 24, "p.amalia@hospital.accwe"));
+        otherDoctor = entityManager.persist(new Doctor("Miren", "Iniesta", 24, "m.iniesta@hospital.accwe"));
+        room = entityManager.persist(new Room("Dermatology"));
+        waitlist.load();
+    }
+
+    private Appointment cancel(){
+        Appointment appointment = changeLog.save(new Appointment(cancelling, doctor, room, startsAt, startsAt.plusHours(1)));
+        changeLog.delete(appointment);
+        return appointment;
+    }
+
+    @Test
+    void should_book_the_highest_priority_request_that_fits(){
+        waitlist.add(new WaitlistEntry(waiting, doctor, null, startsAt.minusHours(2), startsAt.plusHours(2), 30, 1));
+        waitlist.add(new WaitlistEntry(urgent, otherDoctor, null, startsAt.minusHours(2), startsAt.plusHours(2), 30, 9));
+        waitlist.add(new WaitlistEntry(urgent, null, room, startsAt.plusMinutes(15), startsAt.plusHours(3), 45, 5));
+
+        Optional<Appointment> booked = waitlist.backfill(cancel());
+
+        assertThat(booked).isPresent();
+        assertThat(booked.get().getPatient().getId()).isEqualTo(urgent.getId());
+        assertThat(booked.get().getDoctor().getId()).isEqualTo(doctor.getId());
+        assertThat(booked.get().getRoom().getId()).isEqualTo(room.getId());
+        assertThat(booked.get().getStartsAt()).isEqualTo(startsAt.plusMinutes(15));
+        assertThat(booked.get().getFinishesAt()).isEqualTo(startsAt.plusHours(1));
+        assertThat(waitlist.size()).isEqualTo(2);
+        assertThat(waitlist.findAll()).extracting(WaitlistEntry::getPriority).containsExactly(9, 1);
+    }
+
+    @Test
+    void should_leave_the_slot_when_no_request_fits(){
+        waitlist.add(new WaitlistEntry(waiting, doctor, null, startsAt.minusHours(2), startsAt.plusHours(2), 90, 1));
+        waitlist.add(new WaitlistEntry(urgent, null, room, startsAt.plusMinutes(45), startsAt.plusHours(3), 30, 5));
+
+        assertThat(waitlist.backfill(cancel())).isEmpty();
+        assertThat(waitlist.size()).isEqualTo(2);
+    }
+
+    @Test
+    void should_keep_the_request_when_the_slot_was_taken_meanwhile(){
+        waitlist.add(new WaitlistEntry(waiting, null, room, startsAt, startsAt.plusHours(1), 60, 1));
+        Appointment cancelled = cancel();
+        changeLog.save(new Appointment(urgent, otherDoctor, room, startsAt.plusMinutes(30), startsAt.plusHours(1)));
+
+        assertThat(waitlist.backfill(cancelled)).isEmpty();
+        assertThat(waitlist.size()).isEqualTo(1);
+    }
+}